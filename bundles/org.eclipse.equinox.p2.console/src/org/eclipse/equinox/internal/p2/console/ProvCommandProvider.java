@@ -254,8 +254,9 @@ public class ProvCommandProvider implements CommandProvider {
 		URI repoURL = null;
 		if (urlString != null && !urlString.equals(WILDCARD_ANY))
 			repoURL = toURI(interpreter, urlString);
-		IInstallableUnit[] units = sort(ProvisioningHelper.getInstallableUnits(agent, repoURL,
-				QueryUtil.createIUQuery(id, VersionRange.create(version)), null));
+		// print the units as they are found rather than once all of them are matched
+		IQueryResult<IInstallableUnit> units = ProvisioningHelper.getInstallableUnits(agent, repoURL,
+				QueryUtil.createStreamingQuery(QueryUtil.createIUQuery(id, VersionRange.create(version))), null);
 		for (IInstallableUnit unit : units) {
 			println(interpreter, unit);
 		}
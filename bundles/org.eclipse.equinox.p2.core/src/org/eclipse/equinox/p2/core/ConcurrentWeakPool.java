@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.core;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An object pool backed by weak references that can be used by concurrent
+ * threads. Objects stored in this pool will be garbage collected once all strong
+ * references to the objects are broken, like with a {@link WeakPool}.
+ * <p>
+ * The pool is split in stripes, each locked independently while objects are
+ * added, and finding an object already pooled takes no lock at all. The entries
+ * of collected objects are removed as the pool is used.
+ * </p>
+ * @since 2.7
+ */
+public class ConcurrentWeakPool<T> implements IPool<T> {
+	/**
+	 * The reference held for each pooled object, equal to the references to
+	 * equal objects as long as its object is not collected.
+	 */
+	private static final class Entry<T> extends WeakReference<T> {
+		private final int hash;
+
+		Entry(T referent, int hash, ReferenceQueue<T> queue) {
+			super(referent, queue);
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this)
+				return true;
+			if (!(obj instanceof Entry))
+				return false;
+			Entry<?> other = (Entry<?>) obj;
+			Object referent = get();
+			return hash == other.hash && referent != null && referent.equals(other.get());
+		}
+	}
+
+	/**
+	 * The key looking up the entry of an object equal to a given one.
+	 */
+	private static final class Lookup {
+		private final Object object;
+		private final int hash;
+
+		Lookup(Object object, int hash) {
+			this.object = object;
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Entry && ((Entry<?>) obj).hash == hash && object.equals(((Entry<?>) obj).get());
+		}
+	}
+
+	private static final class Stripe<T> {
+		final ConcurrentHashMap<Object, Entry<T>> entries = new ConcurrentHashMap<>();
+		final ReferenceQueue<T> queue = new ReferenceQueue<>();
+
+		T find(T object, int hash) {
+			Entry<T> entry = entries.get(new Lookup(object, hash));
+			return entry != null ? entry.get() : null;
+		}
+
+		synchronized T add(T object, int hash) {
+			expunge();
+			Entry<T> entry = new Entry<>(object, hash, queue);
+			Entry<T> existing = entries.putIfAbsent(entry, entry);
+			if (existing != null) {
+				T reference = existing.get();
+				if (reference != null)
+					return reference;
+				// collected since it was found equal
+				entries.remove(existing);
+				entries.put(entry, entry);
+			}
+			return object;
+		}
+
+		void expunge() {
+			for (Object collected; (collected = queue.poll()) != null;)
+				entries.remove(collected);
+		}
+	}
+
+	private final Stripe<T>[] stripes;
+	private final int shift;
+
+	/**
+	 * Creates a pool with a number of stripes suited to the number of
+	 * processors.
+	 */
+	public ConcurrentWeakPool() {
+		this(4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a pool with at least the given number of stripes, up to 65536.
+	 *
+	 * @param concurrency the expected number of threads adding objects at the same time
+	 */
+	@SuppressWarnings("unchecked")
+	public ConcurrentWeakPool(int concurrency) {
+		int bits = 1;
+		while (bits < 16 && 1 << bits < concurrency)
+			bits++;
+		int count = 1 << bits;
+		shift = 32 - bits;
+		stripes = new Stripe[count];
+		for (int i = 0; i < count; i++)
+			stripes[i] = new Stripe<>();
+	}
+
+	@Override
+	public T add(T newObject) {
+		if (newObject == null) {
+			return null;
+		}
+
+		int hash = newObject.hashCode();
+		// pick the stripe from the high bits, the maps of the stripes use the low ones
+		Stripe<T> stripe = stripes[(hash * 0x9E3779B9) >>> shift];
+		T reference = stripe.find(newObject, hash);
+		return reference != null ? reference : stripe.add(newObject, hash);
+	}
+
+	/**
+	 * Returns the object of this pool equal to the given one, or <code>null</code>
+	 * if there is none. The given object is not added.
+	 *
+	 * @param object the object to look up
+	 * @return the pooled object or <code>null</code>
+	 */
+	public T find(T object) {
+		if (object == null)
+			return null;
+		int hash = object.hashCode();
+		return stripes[(hash * 0x9E3779B9) >>> shift].find(object, hash);
+	}
+
+	/**
+	 * Returns the number of objects in this pool, including the objects collected
+	 * but not yet removed.
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe<T> stripe : stripes)
+			size += stripe.entries.size();
+		return size;
+	}
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.director;
+
+import java.util.*;
+import org.sat4j.core.VecInt;
+import org.sat4j.pb.IPBSolver;
+import org.sat4j.pb.tools.DependencyHelper;
+import org.sat4j.pb.tools.XplainPB;
+import org.sat4j.specs.*;
+
+/**
+ * A {@link DependencyHelper} adding the constraints of the {@link Projector}
+ * straight to the solver as arrays of literals.
+ * <p>
+ * The variable of an abstract variable is kept in the variable itself, and the
+ * variable of any other object, such as an installable unit, in an identity
+ * table of primitive ints, so the objects of the encoding are translated to
+ * their dense int ids without being hashed again nor boxed, and every
+ * constraint is built as a single int array instead of going through lists,
+ * object arrays and builders.
+ * </p><p>
+ * The solver is wrapped for explanations exactly as the regular helper does,
+ * and variables are allocated and constraints added in the same order as
+ * through its fluent API, so the solver is given the same problem. The names of
+ * the constraints are kept here since the constraints bypass the regular helper.
+ * </p>
+ */
+public class DenseDependencyHelper extends DependencyHelper<Object, Explanation> {
+	private final XplainPB xplain;
+	private final Map<IConstr, Explanation> names = new HashMap<>();
+	// Open addressing identity table from the objects to their variables
+	private Object[] keys = new Object[1024];
+	private int[] values = new int[1024];
+	private int size;
+
+	public DenseDependencyHelper(IPBSolver solver) {
+		this(new XplainPB(solver));
+	}
+
+	private DenseDependencyHelper(XplainPB xplain) {
+		super(xplain, false);
+		this.xplain = xplain;
+	}
+
+	@Override
+	protected int getIntValue(Object thing, boolean create) {
+		if (thing instanceof Projector.AbstractVariable) {
+			Projector.AbstractVariable variable = (Projector.AbstractVariable) thing;
+			// an abstract variable outlives the helper when the projector encodes again
+			if (variable.helper != this) {
+				variable.literal = super.getIntValue(thing, create);
+				variable.helper = this;
+			}
+			return variable.literal;
+		}
+		int slot = slot(thing);
+		if (keys[slot] == thing)
+			return values[slot];
+		int literal = super.getIntValue(thing, create);
+		// negated objects are wrappers created on demand, only remember plain variables
+		if (literal > 0) {
+			keys[slot] = thing;
+			values[slot] = literal;
+			if (++size * 2 > keys.length)
+				grow();
+		}
+		return literal;
+	}
+
+	// Returns the slot of the given object, or the free slot where to put it
+	private int slot(Object thing) {
+		int mask = keys.length - 1;
+		int slot = System.identityHashCode(thing) & mask;
+		while (keys[slot] != null && keys[slot] != thing)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void grow() {
+		Object[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new Object[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int slot = slot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Adds the clause <code>left -> right[0] or ... or right[n]</code>.
+	 */
+	public void implication(Object left, List<?> right, Explanation name) throws ContradictionException {
+		int[] literals = new int[1 + right.size()];
+		literals[0] = -getIntValue(left);
+		fill(literals, 1, right);
+		named(xplain.addClause(new VecInt(literals)), name);
+	}
+
+	/**
+	 * Adds the clause <code>left[0] and ... and left[m] -> right[0] or ... or right[n]</code>.
+	 */
+	public void implication(Object[] left, List<?> right, Explanation name) throws ContradictionException {
+		int[] literals = new int[left.length + right.size()];
+		for (int i = 0; i < left.length; i++)
+			literals[i] = -getIntValue(left[i]);
+		fill(literals, left.length, right);
+		named(xplain.addClause(new VecInt(literals)), name);
+	}
+
+	/**
+	 * Adds one clause <code>left -> not right[i]</code> per element of the right
+	 * argument.
+	 */
+	public void negatedImplication(Object left, List<?> right, Explanation name) throws ContradictionException {
+		for (Object thing : right) {
+			int leftLiteral = -getIntValue(left);
+			named(xplain.addClause(new VecInt(new int[] {leftLiteral, -getIntValue(thing)})), name);
+		}
+	}
+
+	/**
+	 * Adds the constraint that at most one of the given objects is true.
+	 */
+	public void atMostOne(Object[] things, Explanation name) throws ContradictionException {
+		int[] literals = new int[things.length];
+		for (int i = 0; i < things.length; i++)
+			literals[i] = getIntValue(things[i]);
+		named(xplain.addAtMost(new VecInt(literals), 1), name);
+	}
+
+	@Override
+	public void setFalse(Object thing, Explanation name) throws ContradictionException {
+		named(xplain.addClause(new VecInt(new int[] {-getIntValue(thing)})), name);
+	}
+
+	@Override
+	public Set<Explanation> why() throws TimeoutException {
+		Set<Explanation> result = new TreeSet<>();
+		for (IConstr constraint : xplain.explain()) {
+			Explanation name = names.get(constraint);
+			if (name != null)
+				result.add(name);
+		}
+		return result;
+	}
+
+	@Override
+	public void stopExplanation() {
+		xplain.cancelExplanation();
+	}
+
+	@Override
+	public int getNumberOfConstraints() {
+		return names.size();
+	}
+
+	private void fill(int[] literals, int from, List<?> things) {
+		int i = from;
+		for (Object thing : things)
+			literals[i++] = getIntValue(thing);
+	}
+
+	private void named(IConstr constraint, Explanation name) {
+		// constraints already satisfied are not added to the solver, there is nothing to name
+		if (constraint != null)
+			names.put(constraint, name);
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.director;
+
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.util.*;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.equinox.p2.engine.IProfile;
+import org.eclipse.equinox.p2.engine.ProvisioningContext;
+import org.eclipse.equinox.p2.metadata.expression.ExpressionUtil;
+import org.eclipse.equinox.p2.query.ExpressionMatchQuery;
+import org.eclipse.equinox.p2.repository.IRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+
+/**
+ * Remembers the explanations of the last requests found to be unsatisfiable, so
+ * that planning the same request again against the same profile and the same
+ * repositories fails without solving nor explaining it again.
+ * <p>
+ * A request is identified by the id and timestamp of its profile, the changes
+ * it asks for, the properties and extra installable units of its provisioning
+ * context, and the location and timestamp of the metadata repositories of the
+ * context, see {@link #createKey}.
+ * </p>
+ * Each {@link SimplePlanner} owns an instance, used by whatever threads plan
+ * with that planner. Every access to the remembered explanations synchronizes
+ * on the cache; creating a key does not touch it.
+ */
+public class ExplanationCache {
+	private static final int MAX_ENTRIES = 8;
+
+	private final Map<List<Object>, Set<Explanation>> explanations = new LinkedHashMap<List<Object>, Set<Explanation>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<Object>, Set<Explanation>> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/**
+	 * Identifies the content of a metadata repository by its location and
+	 * timestamp. The repository instance itself is only weakly referenced, so
+	 * that a reloaded repository gets another key without the key keeping the
+	 * previous instance alive.
+	 */
+	private static final class RepositoryKey {
+		private final URI location;
+		private final String timestamp;
+		private final WeakReference<IMetadataRepository> repository;
+		private final int hashCode;
+
+		RepositoryKey(IMetadataRepository repository, String timestamp) {
+			this.location = repository.getLocation();
+			this.timestamp = timestamp;
+			this.repository = new WeakReference<>(repository);
+			this.hashCode = Objects.hash(location, timestamp, System.identityHashCode(repository));
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof RepositoryKey))
+				return false;
+			RepositoryKey other = (RepositoryKey) obj;
+			IMetadataRepository referent = repository.get();
+			return hashCode == other.hashCode && referent != null && referent == other.repository.get() && Objects.equals(location, other.location) && Objects.equals(timestamp, other.timestamp);
+		}
+	}
+
+	/**
+	 * Returns the key identifying the given request planned in the given context,
+	 * or <code>null</code> if the request cannot be identified, that is when its
+	 * profile was never persisted or when a modifiable repository of the context
+	 * has no timestamp to tell its changes.
+	 */
+	public static List<Object> createKey(ProfileChangeRequest request, ProvisioningContext context, IProgressMonitor monitor) {
+		IProfile profile = request.getProfile();
+		if (profile.getTimestamp() == 0)
+			return null;
+		Set<RepositoryKey> repositories = new HashSet<>();
+		for (IMetadataRepository repository : context.getMetadataRepositories(monitor).query(new ExpressionMatchQuery<>(IMetadataRepository.class, ExpressionUtil.TRUE_EXPRESSION), null)) {
+			String timestamp = repository.getProperty(IRepository.PROP_TIMESTAMP);
+			if (timestamp == null && repository.isModifiable())
+				return null;
+			repositories.add(new RepositoryKey(repository, timestamp));
+		}
+		return Arrays.asList(profile.getProfileId(), profile.getTimestamp(), //
+				new HashSet<>(request.getAdditions()), new HashSet<>(request.getRemovals()), //
+				new HashMap<>(request.getPropertiesToAdd()), new HashSet<>(Arrays.asList(request.getPropertiesToRemove())), //
+				new HashMap<>(request.getInstallableUnitProfilePropertiesToAdd()), new HashMap<>(request.getInstallableUnitProfilePropertiesToRemove()), //
+				request.getExtraRequirements() == null ? Collections.emptySet() : new HashSet<>(request.getExtraRequirements()), //
+				new HashMap<>(context.getProperties()), new HashSet<>(context.getExtraInstallableUnits()), //
+				repositories);
+	}
+
+	/**
+	 * Returns whether no explanation is remembered, in which case there is no
+	 * need to identify a request before planning it.
+	 */
+	public synchronized boolean isEmpty() {
+		return explanations.isEmpty();
+	}
+
+	/**
+	 * Returns the explanation remembered for the given request key, or
+	 * <code>null</code> if the request is not known to be unsatisfiable.
+	 */
+	public synchronized Set<Explanation> get(List<Object> key) {
+		return explanations.get(key);
+	}
+
+	public synchronized void put(List<Object> key, Set<Explanation> explanation) {
+		explanations.put(key, Collections.unmodifiableSet(explanation));
+	}
+}
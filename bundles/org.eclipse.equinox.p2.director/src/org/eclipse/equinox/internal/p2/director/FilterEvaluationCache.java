@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.director;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
+
+/**
+ * Remembers whether the filters met during one planning run match the
+ * selection context of that run.
+ * <p>
+ * Many IUs and requirements share the same filter instance, since parsed
+ * filters are cached, so filters are remembered by identity and each distinct
+ * filter is evaluated once. The {@link Slicer} and the {@link Projector} of a
+ * run share one instance, which the threads of a parallel slicing use without
+ * locking.
+ * </p>
+ */
+public class FilterEvaluationCache {
+	/**
+	 * The key of a filter, comparing filters by identity.
+	 */
+	private static final class FilterKey {
+		private final IMatchExpression<IInstallableUnit> filter;
+
+		FilterKey(IMatchExpression<IInstallableUnit> filter) {
+			this.filter = filter;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(filter);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof FilterKey && ((FilterKey) obj).filter == filter;
+		}
+	}
+
+	private final IInstallableUnit selectionContext;
+	private final ConcurrentHashMap<FilterKey, Boolean> results = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public FilterEvaluationCache(IInstallableUnit selectionContext) {
+		this.selectionContext = selectionContext;
+	}
+
+	public IInstallableUnit getSelectionContext() {
+		return selectionContext;
+	}
+
+	/**
+	 * Returns whether the given filter matches the selection context. A
+	 * <code>null</code> filter always matches.
+	 */
+	public boolean isMatch(IMatchExpression<IInstallableUnit> filter) {
+		if (filter == null)
+			return true;
+		FilterKey key = new FilterKey(filter);
+		Boolean result = results.get(key);
+		if (result != null) {
+			hits.increment();
+			return result.booleanValue();
+		}
+		misses.increment();
+		// concurrent evaluations of one filter agree
+		boolean match = filter.isMatch(selectionContext);
+		results.put(key, Boolean.valueOf(match));
+		return match;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@Override
+	public String toString() {
+		long hitCount = hits.sum();
+		long lookups = hitCount + misses.sum();
+		return "Filter evaluations: " + results.size() + " distinct filters, " + hitCount + " hits out of " + lookups + " lookups"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+}
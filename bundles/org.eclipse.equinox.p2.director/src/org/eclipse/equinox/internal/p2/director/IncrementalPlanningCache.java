@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.director;
+
+import java.util.*;
+import org.eclipse.equinox.internal.p2.core.helpers.CollectionUtils;
+import org.eclipse.equinox.internal.p2.metadata.expression.BoundedCache;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IRequirement;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
+import org.eclipse.equinox.p2.query.IQueryResult;
+import org.eclipse.equinox.p2.query.QueryUtil;
+
+/**
+ * Keeps the request independent part of a resolution so that a series of
+ * planning requests issued against the same set of available installable units
+ * only pays for what changed between two requests.
+ * <p>
+ * The cache is bound to one set of available IUs. It holds the indexed
+ * {@link QueryableArray} built over them and, for every requirement match
+ * expression evaluated so far, the IUs of that set satisfying it. The
+ * {@link Slicer} and the {@link Projector} consult it instead of querying, so
+ * once the IUs reachable from the previous request are known, slicing and
+ * encoding the next request only have to query for the requirements that
+ * request introduces. At most {@link #MAX_MATCHES} match results are kept, the
+ * ones not used recently being forgotten first.
+ * </p>
+ * <p>
+ * The SAT encoding itself is not reused: each request still gets a new solver
+ * with all its variables and clauses. sat4j's DependencyHelper cannot retract
+ * constraints, and the optimization adds bounds on the objective function of
+ * the request as permanent constraints, so a solver cannot be carried over to
+ * the next request.
+ * </p>
+ * An instance is shared by the requests planned at the same time, by the
+ * threads of a parallel slicing and by the projectors of a solver portfolio.
+ * The units it is built for do not change once it is created, and the match
+ * results are read and stored without locking: threads missing the same
+ * expression at the same time may each query it, the first result stored
+ * being the one every thread gets.
+ */
+public class IncrementalPlanningCache {
+	/**
+	 * The maximum number of requirement match results remembered.
+	 */
+	public static final int MAX_MATCHES = 16384;
+
+	private final QueryableArray input;
+	private final Set<IInstallableUnit> inputIdentities;
+	private final Set<IInstallableUnit> inputMembers;
+	private final BoundedCache<IMatchExpression<IInstallableUnit>, List<IInstallableUnit>> matches = new BoundedCache<>(MAX_MATCHES);
+
+	/**
+	 * A subset of installable units, usually a slice, in which matches are looked
+	 * up using the matches cached for the whole input.
+	 */
+	class Scope {
+		private final Set<IInstallableUnit> members;
+		private final List<IInstallableUnit> outsiders;
+
+		Scope(Collection<IInstallableUnit> ius) {
+			members = new HashSet<>(ius);
+			outsiders = new ArrayList<>();
+			for (IInstallableUnit iu : ius) {
+				if (!inputMembers.contains(iu))
+					outsiders.add(iu);
+			}
+		}
+
+		/**
+		 * Returns the members of this scope satisfying the given requirement, in the
+		 * order they appear in the input.
+		 */
+		List<IInstallableUnit> getMatches(IRequirement req) {
+			List<IInstallableUnit> candidates = IncrementalPlanningCache.this.getMatches(req);
+			List<IInstallableUnit> result = new ArrayList<>(candidates.size());
+			for (IInstallableUnit candidate : candidates) {
+				if (members.contains(candidate))
+					result.add(candidate);
+			}
+			for (IInstallableUnit outsider : outsiders) {
+				if (req.isMatch(outsider))
+					result.add(outsider);
+			}
+			return result;
+		}
+	}
+
+	public IncrementalPlanningCache(IInstallableUnit[] availableIUs) {
+		input = new QueryableArray(availableIUs);
+		inputIdentities = Collections.newSetFromMap(new IdentityHashMap<>(availableIUs.length));
+		inputIdentities.addAll(Arrays.asList(availableIUs));
+		inputMembers = new HashSet<>(Arrays.asList(availableIUs));
+	}
+
+	/**
+	 * Returns whether this cache was built for exactly the given installable units.
+	 * Units are compared by identity since two units with the same id and version
+	 * are not guaranteed to carry the same requirements.
+	 */
+	public boolean isValidFor(IInstallableUnit[] availableIUs) {
+		if (availableIUs.length != inputIdentities.size())
+			return false;
+		for (IInstallableUnit iu : availableIUs) {
+			if (!inputIdentities.contains(iu))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the queryable over the installable units this cache was built for.
+	 */
+	public QueryableArray getInput() {
+		return input;
+	}
+
+	/**
+	 * Returns all the installable units of the input satisfying the given
+	 * requirement, regardless of their filter.
+	 */
+	List<IInstallableUnit> getMatches(IRequirement req) {
+		IMatchExpression<IInstallableUnit> expression = req.getMatches();
+		List<IInstallableUnit> result = matches.get(expression);
+		if (result == null) {
+			IQueryResult<IInstallableUnit> found = input.query(QueryUtil.createMatchQuery(expression), null);
+			result = matches.put(expression, CollectionUtils.unmodifiableList(found.toArray(IInstallableUnit.class)));
+		}
+		return result;
+	}
+
+	Scope createScope(Collection<IInstallableUnit> ius) {
+		return new Scope(ius);
+	}
+
+	/**
+	 * Returns the number of requirement match results currently remembered.
+	 */
+	public int getMatchCount() {
+		return matches.size();
+	}
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.director;
+
+import java.util.*;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.equinox.internal.p2.engine.ProvisioningPlan;
+import org.eclipse.equinox.p2.engine.IProvisioningPlan;
+import org.eclipse.equinox.p2.engine.ProvisioningContext;
+
+/**
+ * An optional cache of the plans computed by the {@link SimplePlanner}. The
+ * planner uses it when an instance is registered as a service of its agent
+ * under {@link #SERVICE_NAME}.
+ * <p>
+ * A plan is remembered for the id and timestamp of the profile it was computed
+ * for, the changes requested, the properties and extra installable units of the
+ * provisioning context, and the location and timestamp of the metadata
+ * repositories of the context. Asking again for the same plan returns a
+ * copy of the remembered one, bound to the new request profile and context,
+ * without slicing nor solving. Only successful plans are remembered. Keys are
+ * created with {@link ExplanationCache#createKey}.
+ * </p>
+ * Being an agent service, an instance is shared by every planner of the agent
+ * and used from any thread. The remembered plans and the counters are guarded
+ * by the monitor of the cache, which is only held to look an entry up or to
+ * store it: plans are copied outside of it.
+ */
+public class PlanCache {
+	/**
+	 * Service name of the plan cache in a provisioning agent.
+	 */
+	public static final String SERVICE_NAME = PlanCache.class.getName();
+
+	private static final int DEFAULT_MAX_ENTRIES = 16;
+
+	private final Map<List<Object>, ProvisioningPlan> plans;
+	private int hits;
+	private int misses;
+
+	public PlanCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * Creates a cache remembering at most the given number of plans, the least
+	 * recently used ones being forgotten first.
+	 */
+	public PlanCache(final int maxEntries) {
+		plans = new LinkedHashMap<List<Object>, ProvisioningPlan>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, ProvisioningPlan> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns a copy of the plan remembered for the given key, bound to the given
+	 * request and context, or <code>null</code> if there is none.
+	 */
+	public IProvisioningPlan get(List<Object> key, ProfileChangeRequest request, ProvisioningContext context) {
+		ProvisioningPlan plan;
+		synchronized (this) {
+			plan = plans.get(key);
+			if (plan == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+		ProvisioningPlan installerPlan = (ProvisioningPlan) plan.getInstallerPlan();
+		if (installerPlan != null)
+			installerPlan = copy(installerPlan, installerPlan.getProfile() == plan.getProfile() ? request : null, installerPlan.getContext(), null);
+		return copy(plan, request, context, installerPlan);
+	}
+
+	private static ProvisioningPlan copy(ProvisioningPlan plan, ProfileChangeRequest request, ProvisioningContext context, IProvisioningPlan installerPlan) {
+		ProvisioningPlan result = new ProvisioningPlan(plan.getStatus(), request == null ? plan.getProfile() : request.getProfile(), plan.getOperands(), context, installerPlan);
+		result.setFuturePlan(plan.getFutureState());
+		return result;
+	}
+
+	/**
+	 * Remembers the given plan for the given key. Plans which are not
+	 * successful, or which were not created by the engine of the agent, are
+	 * ignored.
+	 */
+	public void put(List<Object> key, IProvisioningPlan plan) {
+		if (!(plan instanceof ProvisioningPlan) || plan.getStatus().getSeverity() > IStatus.WARNING)
+			return;
+		if (plan.getInstallerPlan() != null && !(plan.getInstallerPlan() instanceof ProvisioningPlan))
+			return;
+		// keep a copy since the plan returned to the caller may still be modified
+		ProvisioningPlan installerPlan = (ProvisioningPlan) plan.getInstallerPlan();
+		if (installerPlan != null)
+			installerPlan = copy(installerPlan, null, installerPlan.getContext(), null);
+		ProvisioningPlan copy = copy((ProvisioningPlan) plan, null, plan.getContext(), installerPlan);
+		synchronized (this) {
+			plans.put(key, copy);
+		}
+	}
+
+	/**
+	 * Forgets all the plans remembered.
+	 */
+	public synchronized void clear() {
+		plans.clear();
+	}
+
+	/**
+	 * Returns the number of requests answered from the cache so far.
+	 */
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of requests which had to be planned so far.
+	 */
+	public synchronized int getMisses() {
+		return misses;
+	}
+}
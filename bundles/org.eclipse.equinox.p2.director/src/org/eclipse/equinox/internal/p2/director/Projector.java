@@ -29,14 +29,16 @@ import org.eclipse.equinox.internal.p2.director.Explanation.NotInstallableRoot;
 import org.eclipse.equinox.internal.p2.metadata.IRequiredCapability;
 import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
 import org.eclipse.equinox.p2.metadata.*;
-import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
 import org.eclipse.equinox.p2.query.*;
 import org.eclipse.osgi.util.NLS;
-import org.sat4j.minisat.restarts.LubyRestarts;
+import org.sat4j.minisat.core.RestartStrategy;
+import org.sat4j.minisat.core.Solver;
+import org.sat4j.minisat.restarts.*;
 import org.sat4j.pb.*;
 import org.sat4j.pb.core.PBSolverResolution;
 import org.sat4j.pb.tools.*;
 import org.sat4j.specs.*;
+import org.sat4j.tools.SolverDecorator;
 
 /**
  * This class is the interface between SAT4J and the planner. It produces a
@@ -65,8 +67,11 @@ public class Projector {
 	private Map<String, Map<Version, IInstallableUnit>> slice; //The IUs that have been considered to be part of the problem
 
 	private IInstallableUnit selectionContext;
+	private FilterEvaluationCache filterCache; //Filters already evaluated against the selection context
 
-	DependencyHelper<Object, Explanation> dependencyHelper;
+	volatile DependencyHelper<Object, Explanation> dependencyHelper; //Read by stopSolver from other threads
+	private DenseDependencyHelper denseHelper; //The dependency helper when the dense encoding is used, null otherwise
+	private boolean denseEncoding = false;
 	private Collection<IInstallableUnit> solution;
 	private Collection<Object> assumptions;
 
@@ -87,8 +92,18 @@ public class Projector {
 	private boolean emptyBecauseFiltered;
 	private boolean userDefinedFunction;
 
+	private IncrementalPlanningCache incrementalCache; //Matches remembered from previous planning runs against the same IUs
+	private IncrementalPlanningCache.Scope pickerScope;
+
+	private int solverConfiguration; //0 for the default solver setup, see setSolverConfiguration
+	private RestartStrategy restartStrategy; //The restart strategy of the solver, null if it is not known
+	private volatile boolean solverStopped;
+
+
 	static class AbstractVariable {
 		//		private String name;
+		DenseDependencyHelper helper; //The dense encoding in which the variable was allocated, see DenseDependencyHelper
+		int literal; //The variable allocated by the helper
 
 		public AbstractVariable(String name) {
 			//						this.name = name;
@@ -169,6 +184,7 @@ public class Projector {
 		picker = q;
 		slice = new HashMap<>();
 		selectionContext = InstallableUnit.contextIU(context);
+		filterCache = new FilterEvaluationCache(selectionContext);
 		abstractVariables = new ArrayList<>();
 		allOptionalAbstractRequirements = new ArrayList<>();
 		result = new MultiStatus(DirectorActivator.PI_DIRECTOR, IStatus.OK, Messages.Planner_Problems_resolving_plan, null);
@@ -200,6 +216,7 @@ public class Projector {
 				} else {
 					solver = SolverFactory.newEclipseP2();
 				}
+				configureRestarts(solver);
 			}
 			int timeout = DEFAULT_SOLVER_TIMEOUT;
 			String timeoutString = null;
@@ -228,11 +245,15 @@ public class Projector {
 			} else {
 				if (userDefinedFunction)
 					dependencyHelper = new SteppedTimeoutLexicoHelper<>(solver);
+				else if (denseEncoding)
+					dependencyHelper = denseHelper = new DenseDependencyHelper(solver);
 				else
 					dependencyHelper = new DependencyHelper<>(solver);
 			}
 			List<IInstallableUnit> iusToOrder = new ArrayList<>(queryResult.toSet());
 			iusToOrder.sort(null);
+			if (incrementalCache != null)
+				pickerScope = incrementalCache.createScope(iusToOrder);
 			for (IInstallableUnit iu : iusToOrder) {
 				if (monitor.isCanceled()) {
 					result.merge(Status.CANCEL_STATUS);
@@ -252,6 +273,7 @@ public class Projector {
 			if (DEBUG) {
 				long stop = System.currentTimeMillis();
 				Tracing.debug("Projection complete: " + (stop - start)); //$NON-NLS-1$
+				Tracing.debug(filterCache.toString());
 			}
 			if (DEBUG_ENCODING) {
 				System.out.println(solver.toString());
@@ -332,13 +354,11 @@ public class Projector {
 
 	// Check whether the requirement is applicable
 	private boolean isApplicable(IRequirement req) {
-		IMatchExpression<IInstallableUnit> filter = req.getFilter();
-		return filter == null || filter.isMatch(selectionContext);
+		return filterCache.isMatch(req.getFilter());
 	}
 
 	private boolean isApplicable(IInstallableUnit iu) {
-		IMatchExpression<IInstallableUnit> filter = iu.getFilter();
-		return filter == null || filter.isMatch(selectionContext);
+		return filterCache.isMatch(iu.getFilter());
 	}
 
 	private void expandNegatedRequirement(IRequirement req, IInstallableUnit iu, List<AbstractVariable> optionalAbstractRequirements, boolean isRootIu) throws ContradictionException {
@@ -806,13 +826,15 @@ public class Projector {
 	 */
 	private List<IInstallableUnit> getApplicableMatches(IRequirement req) {
 		List<IInstallableUnit> target = new ArrayList<>();
-		IQueryResult<IInstallableUnit> matches = picker.query(QueryUtil.createMatchQuery(req.getMatches()), null);
+		Iterable<IInstallableUnit> matches = pickerScope != null ? pickerScope.getMatches(req) : picker.query(QueryUtil.createMatchQuery(req.getMatches()), null);
+		boolean hasMatches = false;
 		for (IInstallableUnit match : matches) {
+			hasMatches = true;
 			if (isApplicable(match)) {
 				target.add(match);
 			}
 		}
-		emptyBecauseFiltered = !matches.isEmpty() && target.isEmpty();
+		emptyBecauseFiltered = hasMatches && target.isEmpty();
 		return target;
 	}
 
@@ -862,6 +884,10 @@ public class Projector {
 		if (DEBUG) {
 			Tracing.debug(name + ": " + left + "->" + right); //$NON-NLS-1$ //$NON-NLS-2$
 		}
+		if (denseHelper != null) {
+			denseHelper.negatedImplication(left, right, name);
+			return;
+		}
 		for (Object r : right)
 			dependencyHelper.implication(new Object[] {left}).impliesNot(r).named(name);
 	}
@@ -870,6 +896,10 @@ public class Projector {
 		if (DEBUG) {
 			Tracing.debug(name + ": " + left + "->" + right); //$NON-NLS-1$ //$NON-NLS-2$
 		}
+		if (denseHelper != null) {
+			denseHelper.implication(left, right, name);
+			return;
+		}
 		dependencyHelper.implication(new Object[] {left}).implies(right.toArray()).named(name);
 	}
 
@@ -877,6 +907,10 @@ public class Projector {
 		if (DEBUG) {
 			Tracing.debug(name + ": " + Arrays.asList(left) + "->" + right); //$NON-NLS-1$ //$NON-NLS-2$
 		}
+		if (denseHelper != null) {
+			denseHelper.implication(left, right, name);
+			return;
+		}
 		dependencyHelper.implication(left).implies(right.toArray()).named(name);
 	}
 
@@ -932,6 +966,10 @@ public class Projector {
 			}
 			Tracing.debug("At most 1 of " + b); //$NON-NLS-1$
 		}
+		if (denseHelper != null) {
+			denseHelper.atMostOne(ius, new Explanation.Singleton(ius));
+			return;
+		}
 		dependencyHelper.atMost(1, (Object[]) ius).named(new Explanation.Singleton(ius));
 	}
 
@@ -956,6 +994,28 @@ public class Projector {
 		return v;
 	}
 
+	/**
+	 * Replaces the restart strategy of the given solver by an alternative one
+	 * unless the default configuration is selected, so that the solver explores
+	 * the problem in a different order than the default configuration does. The
+	 * solvers of SAT4J are reached through the decorators wrapping them.
+	 */
+	private void configureRestarts(IPBSolver solver) {
+		ISolver decorated = solver;
+		while (decorated instanceof SolverDecorator)
+			decorated = ((SolverDecorator<?>) decorated).decorated();
+		if (!(decorated instanceof Solver))
+			return;
+		Solver<?> minisat = (Solver<?>) decorated;
+		if (solverConfiguration != 0) {
+			List<RestartStrategy> alternatives = new ArrayList<>(Arrays.asList(new MiniSATRestarts(), new Glucose21Restarts(), new LubyRestarts(512), new ArminRestarts()));
+			Class<?> defaultStrategy = minisat.getRestartStrategy().getClass();
+			alternatives.removeIf(strategy -> strategy.getClass() == defaultStrategy);
+			minisat.setRestartStrategy(alternatives.get((solverConfiguration - 1) % alternatives.size()));
+		}
+		restartStrategy = minisat.getRestartStrategy();
+	}
+
 	public IStatus invokeSolver(IProgressMonitor monitor) {
 		if (result.getSeverity() == IStatus.ERROR)
 			return result;
@@ -964,7 +1024,7 @@ public class Projector {
 		if (DEBUG)
 			Tracing.debug("Invoking solver: " + start); //$NON-NLS-1$
 		try {
-			if (monitor.isCanceled())
+			if (monitor.isCanceled() || solverStopped)
 				return Status.CANCEL_STATUS;
 			if (dependencyHelper.hasASolution(assumptions)) {
 				if (DEBUG) {
@@ -984,6 +1044,8 @@ public class Projector {
 				result.merge(new Status(IStatus.ERROR, DirectorActivator.PI_DIRECTOR, SimplePlanner.UNSATISFIABLE, Messages.Planner_Unsatisfiable_problem, null));
 			}
 		} catch (TimeoutException e) {
+			if (solverStopped)
+				return Status.CANCEL_STATUS;
 			result.merge(new Status(IStatus.ERROR, DirectorActivator.PI_DIRECTOR, Messages.Planner_Timeout));
 		} catch (Exception e) {
 			result.merge(new Status(IStatus.ERROR, DirectorActivator.PI_DIRECTOR, Messages.Planner_Unexpected_problem, e));
@@ -1081,4 +1143,69 @@ public class Projector {
 	public void setUserDefined(boolean containsKey) {
 		userDefinedFunction = containsKey;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Lets the encoding look up requirement matches in the given cache rather than
+	 * querying the picker. The cache must have been created for a set of
+	 * installable units containing the ones this projector picks from.
+	 */
+	public void setIncrementalCache(IncrementalPlanningCache cache) {
+		incrementalCache = cache;
+	}
+
+	/**
+	 * Lets this projector reuse the filter evaluations of the given cache, usually
+	 * the one of the slicer of the same planning run. The cache must have been
+	 * created for the selection context this projector was given.
+	 */
+	public void setFilterCache(FilterEvaluationCache cache) {
+		filterCache = cache;
+	}
+
+	/**
+	 * Selects the solver setup used by {@link #encode}. Configuration <code>0</code>
+	 * is the default setup, any other value replaces the restart strategy of the
+	 * solver by an alternative one. All configurations solve the same problem with
+	 * the same optimization function.
+	 */
+	public void setSolverConfiguration(int configuration) {
+		solverConfiguration = configuration;
+	}
+
+	/**
+	 * Returns the restart strategy of the solver set up by {@link #encode}, or
+	 * <code>null</code> when the problem is not encoded yet or the strategy is not
+	 * known.
+	 */
+	public RestartStrategy getRestartStrategy() {
+		return restartStrategy;
+	}
+
+	/**
+	 * Returns whether {@link #stopSolver()} was called.
+	 */
+	public boolean isSolverStopped() {
+		return solverStopped;
+	}
+
+	/**
+	 * Stops the solver if it is running, in which case {@link #invokeSolver}
+	 * returns a cancel status. Can be called from any thread.
+	 */
+	public void stopSolver() {
+		solverStopped = true;
+		DependencyHelper<Object, Explanation> helper = dependencyHelper;
+		if (helper != null)
+			helper.stopSolver();
+	}
+
+	/**
+	 * Sets whether the constraints are added to the solver as arrays of literals
+	 * through a {@link DenseDependencyHelper}, or through the fluent API of the
+	 * regular dependency helper, which is the default. Both encodings give the
+	 * solver the same problem.
+	 */
+	public void setDenseEncoding(boolean denseEncoding) {
+		this.denseEncoding = denseEncoding;
+	}
+}
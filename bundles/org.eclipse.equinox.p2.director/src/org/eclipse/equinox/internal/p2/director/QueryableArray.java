@@ -28,6 +28,7 @@ public class QueryableArray extends IndexProvider<IInstallableUnit> {
 	private final List<IInstallableUnit> dataSet;
 	private IIndex<IInstallableUnit> capabilityIndex;
 	private IIndex<IInstallableUnit> idIndex;
+	private IIndex<IInstallableUnit> propertyIndex;
 	private TranslationSupport translationSupport;
 
 	public QueryableArray(IInstallableUnit[] ius) {
@@ -51,6 +52,11 @@ public class QueryableArray extends IndexProvider<IInstallableUnit> {
 				idIndex = new IdIndex(dataSet.iterator());
 			return idIndex;
 		}
+		if (InstallableUnit.MEMBER_PROPERTIES.equals(memberName)) {
+			if (propertyIndex == null)
+				propertyIndex = new PropertyIndex(dataSet.iterator());
+			return propertyIndex;
+		}
 		return null;
 	}
 
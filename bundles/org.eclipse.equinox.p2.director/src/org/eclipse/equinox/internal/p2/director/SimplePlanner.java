@@ -22,6 +22,7 @@ import static org.eclipse.equinox.internal.p2.director.DirectorActivator.PI_DIRE
 import static org.eclipse.equinox.internal.provisional.p2.director.RequestStatus.ADDED;
 import static org.eclipse.equinox.internal.provisional.p2.director.RequestStatus.REMOVED;
 
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.*;
@@ -32,6 +33,7 @@ import org.eclipse.equinox.internal.p2.core.helpers.Tracing;
 import org.eclipse.equinox.internal.p2.director.Explanation.MissingIU;
 import org.eclipse.equinox.internal.p2.director.Explanation.Singleton;
 import org.eclipse.equinox.internal.p2.metadata.IRequiredCapability;
+import org.eclipse.equinox.internal.p2.metadata.RequiredCapability;
 import org.eclipse.equinox.internal.p2.metadata.query.UpdateQuery;
 import org.eclipse.equinox.internal.p2.rollback.FormerState;
 import org.eclipse.equinox.internal.provisional.p2.director.PlannerStatus;
@@ -42,6 +44,7 @@ import org.eclipse.equinox.p2.engine.*;
 import org.eclipse.equinox.p2.engine.query.IUProfilePropertyQuery;
 import org.eclipse.equinox.p2.metadata.*;
 import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
 import org.eclipse.equinox.p2.planner.*;
 import org.eclipse.equinox.p2.query.*;
 import org.eclipse.osgi.util.NLS;
@@ -55,6 +58,39 @@ public class SimplePlanner implements IPlanner {
 	private static final String ID_IU_FOR_ACTIONS = "org.eclipse.equinox.p2.engine.actions.root"; //$NON-NLS-1$
 	private static final String EXPLANATION = "org.eclipse.equinox.p2.director.explain"; //$NON-NLS-1$
 	private static final String CONSIDER_METAREQUIREMENTS = "org.eclipse.equinox.p2.planner.resolveMetaRequirements"; //$NON-NLS-1$
+	/**
+	 * Provisioning context property enabling incremental planning. When set to
+	 * <code>true</code>, the requirement matches computed while slicing and encoding
+	 * are kept and reused by the next requests made against the same set of
+	 * available installable units. The solver is still built anew for each
+	 * request, see {@link IncrementalPlanningCache}.
+	 */
+	public static final String INCREMENTAL = "org.eclipse.equinox.p2.planner.incremental"; //$NON-NLS-1$
+
+	/**
+	 * Provisioning context property which, when set to <code>true</code>, makes
+	 * the planner expand the requirements of the slice concurrently. The slice
+	 * computed is the same as the one computed sequentially.
+	 */
+	public static final String PARALLEL_SLICING = "org.eclipse.equinox.p2.planner.parallelSlicing"; //$NON-NLS-1$
+
+	/**
+	 * Provisioning context property enabling the solver portfolio. When set to
+	 * <code>true</code>, or to the number of configurations to use, the planner
+	 * solves the problem with several solver configurations concurrently and keeps
+	 * the first answer. The solution found is optimal for the same optimization
+	 * function, but may differ from the default one when several solutions are
+	 * equally good.
+	 */
+	public static final String SOLVER_PORTFOLIO = "org.eclipse.equinox.p2.planner.solverPortfolio"; //$NON-NLS-1$
+
+	/**
+	 * Provisioning context property which, when set to <code>true</code>, makes
+	 * the planner add the constraints to the solver as arrays of literals, see
+	 * {@link DenseDependencyHelper}. The solver is given the same problem.
+	 */
+	public static final String DENSE_ENCODING = "org.eclipse.equinox.p2.planner.denseEncoding"; //$NON-NLS-1$
+	private static final int DEFAULT_PORTFOLIO_SIZE = 3;
 
 	static final int UNSATISFIABLE = 1; // status code indicating that the problem is not satisfiable
 
@@ -62,6 +98,9 @@ public class SimplePlanner implements IPlanner {
 	private final IProfileRegistry profileRegistry;
 	private final IEngine engine;
 
+	private SoftReference<IncrementalPlanningCache> incrementalCache; // guarded by this
+	private final ExplanationCache explanationCache = new ExplanationCache();
+
 	private IProvisioningPlan generateProvisioningPlan(Collection<IInstallableUnit> fromState,
 			Collection<IInstallableUnit> toState, ProfileChangeRequest changeRequest, IProvisioningPlan installerPlan,
 			ProvisioningContext context) {
@@ -336,6 +375,21 @@ public class SimplePlanner implements IPlanner {
 		return result;
 	}
 
+	private IInstallableUnit[] gatherAvailableInstallableUnits(ProfileChangeRequest profileChangeRequest,
+			ProvisioningContext context, IProgressMonitor monitor) {
+		List<IInstallableUnit> extraIUs = new ArrayList<>(profileChangeRequest.getAdditions());
+		extraIUs.addAll(profileChangeRequest.getRemovals());
+		if (context == null || context.getProperty(INCLUDE_PROFILE_IUS) == null
+				|| context.getProperty(INCLUDE_PROFILE_IUS).equalsIgnoreCase(Boolean.TRUE.toString())) {
+			Iterator<IInstallableUnit> itor = profileChangeRequest.getProfile()
+					.available(QueryUtil.createIUAnyQuery(), null).iterator();
+			while (itor.hasNext()) {
+				extraIUs.add(itor.next());
+			}
+		}
+		return gatherAvailableInstallableUnits(extraIUs.stream().toArray(IInstallableUnit[]::new), context, monitor);
+	}
+
 	private IInstallableUnit[] gatherAvailableInstallableUnits(IInstallableUnit[] additionalSource,
 			ProvisioningContext context, IProgressMonitor monitor) {
 		Map<String, IInstallableUnit> resultsMap = new HashMap<>();
@@ -411,6 +465,16 @@ public class SimplePlanner implements IPlanner {
 	 */
 	private Object getSolutionFor(ProfileChangeRequest profileChangeRequest, ProvisioningContext context,
 			IProgressMonitor monitor) {
+		return getSolutionFor(profileChangeRequest, context, null, monitor);
+	}
+
+	/**
+	 * @param requestKey The key of the request computed by
+	 *                   {@link #createRequestKey}, or <code>null</code> to compute
+	 *                   it only if needed
+	 */
+	private Object getSolutionFor(ProfileChangeRequest profileChangeRequest, ProvisioningContext context,
+			List<Object> requestKey, IProgressMonitor monitor) {
 		SubMonitor sub = SubMonitor.convert(monitor, ExpandWork);
 		sub.setTaskName(Messages.Director_Task_Resolving_Dependencies);
 		try {
@@ -421,20 +485,21 @@ public class SimplePlanner implements IPlanner {
 			Map<String, String> newSelectionContext = createSelectionContext(
 					profileChangeRequest.getProfileProperties());
 
-			List<IInstallableUnit> extraIUs = new ArrayList<>(profileChangeRequest.getAdditions());
-			extraIUs.addAll(profileChangeRequest.getRemovals());
-			if (context == null || context.getProperty(INCLUDE_PROFILE_IUS) == null
-					|| context.getProperty(INCLUDE_PROFILE_IUS).equalsIgnoreCase(Boolean.TRUE.toString())) {
-				Iterator<IInstallableUnit> itor = profile.available(QueryUtil.createIUAnyQuery(), null).iterator();
-				while (itor.hasNext()) {
-					extraIUs.add(itor.next());
-				}
+			boolean explain = isExplanationEnabled(context);
+			if (explain && requestKey == null && !explanationCache.isEmpty())
+				requestKey = createRequestKey(profileChangeRequest, context, null);
+			if (explain && requestKey != null) {
+				Set<Explanation> explanation = explanationCache.get(requestKey);
+				if (explanation != null)
+					return createUnsatisfiablePlan(profileChangeRequest, context, explanation);
 			}
-
-			IInstallableUnit[] availableIUs = gatherAvailableInstallableUnits(
-					extraIUs.stream().toArray(IInstallableUnit[]::new), context, sub.newChild(ExpandWork / 4));
-			Slicer slicer = new Slicer(new QueryableArray(availableIUs), newSelectionContext,
-					satisfyMetaRequirements(profileChangeRequest.getProfileProperties()));
+			IInstallableUnit[] availableIUs = gatherAvailableInstallableUnits(profileChangeRequest, context,
+					sub.newChild(ExpandWork / 4));
+			IncrementalPlanningCache cache = isIncremental(context) ? getIncrementalCache(availableIUs) : null;
+			Slicer slicer = new Slicer(cache != null ? cache.getInput() : new QueryableArray(availableIUs),
+					newSelectionContext, satisfyMetaRequirements(profileChangeRequest.getProfileProperties()));
+			slicer.setIncrementalCache(cache);
+			slicer.setParallel(context != null && Boolean.parseBoolean(context.getProperty(PARALLEL_SLICING)));
 			IQueryable<IInstallableUnit> slice = slicer
 					.slice(new IInstallableUnit[] { (IInstallableUnit) updatedPlan[0] }, sub.newChild(ExpandWork / 4));
 			if (slice == null) {
@@ -448,13 +513,30 @@ public class SimplePlanner implements IPlanner {
 					new QueryableArray(profileChangeRequest.getAdditions().stream().toArray(IInstallableUnit[]::new)) };
 			slice = new CompoundQueryable<>(queryables);
 
-			Projector projector = new Projector(slice, newSelectionContext, slicer.getNonGreedyIUs(),
-					satisfyMetaRequirements(profileChangeRequest.getProfileProperties()));
-			projector.setUserDefined(profileChangeRequest.getPropertiesToAdd().containsKey("_internal_user_defined_")); //$NON-NLS-1$
-			projector.encode((IInstallableUnit) updatedPlan[0], (IInstallableUnit[]) updatedPlan[1], profile,
-					profileChangeRequest.getAdditions(), sub.newChild(ExpandWork / 4));
-
-			IStatus s = projector.invokeSolver(sub.newChild(ExpandWork / 4));
+			int portfolioSize = getPortfolioSize(context);
+			Projector[] projectors = new Projector[Math.max(1, portfolioSize)];
+			for (int i = 0; i < projectors.length; i++) {
+				projectors[i] = new Projector(slice, newSelectionContext, slicer.getNonGreedyIUs(),
+						satisfyMetaRequirements(profileChangeRequest.getProfileProperties()));
+				projectors[i].setUserDefined(profileChangeRequest.getPropertiesToAdd().containsKey("_internal_user_defined_")); //$NON-NLS-1$
+				projectors[i].setIncrementalCache(cache);
+				projectors[i].setFilterCache(slicer.getFilterCache());
+				projectors[i].setSolverConfiguration(i);
+				projectors[i].setDenseEncoding(context != null && Boolean.parseBoolean(context.getProperty(DENSE_ENCODING)));
+			}
+			Projector projector;
+			IStatus s;
+			if (portfolioSize > 1) {
+				SolverPortfolio portfolio = new SolverPortfolio(projectors);
+				s = portfolio.solve((IInstallableUnit) updatedPlan[0], (IInstallableUnit[]) updatedPlan[1], profile,
+						profileChangeRequest.getAdditions(), sub.newChild(ExpandWork / 2));
+				projector = portfolio.getProjector();
+			} else {
+				projector = projectors[0];
+				projector.encode((IInstallableUnit) updatedPlan[0], (IInstallableUnit[]) updatedPlan[1], profile,
+						profileChangeRequest.getAdditions(), sub.newChild(ExpandWork / 4));
+				s = projector.invokeSolver(sub.newChild(ExpandWork / 4));
+			}
 			switch (s.getSeverity()) {
 			case CANCEL: {
 				IProvisioningPlan plan = engine.createPlan(profile, context);
@@ -465,8 +547,7 @@ public class SimplePlanner implements IPlanner {
 			// Convert the projector explanation chain into an IStatus
 			case ERROR: {
 				sub.setTaskName(Messages.Planner_NoSolution);
-				if (s.getCode() != UNSATISFIABLE || (context != null && !(context.getProperty(EXPLANATION) == null
-						|| Boolean.parseBoolean(context.getProperty(EXPLANATION))))) {
+				if (s.getCode() != UNSATISFIABLE || !explain) {
 					IProvisioningPlan plan = engine.createPlan(profile, context);
 					plan.setStatus(s);
 					return plan;
@@ -474,17 +555,13 @@ public class SimplePlanner implements IPlanner {
 
 				// Extract the explanation
 				Set<Explanation> explanation = projector.getExplanation(sub.newChild(ExpandWork / 4));
-				IStatus explanationStatus = convertExplanationToStatus(explanation);
-
-				Map<IInstallableUnit, RequestStatus>[] changes = buildDetailedErrors(profileChangeRequest);
-				Map<IInstallableUnit, RequestStatus> requestChanges = (changes == null) ? null : changes[0];
-				Map<IInstallableUnit, RequestStatus> requestSideEffects = (changes == null) ? null : changes[1];
-				PlannerStatus plannerStatus = new PlannerStatus(explanationStatus,
-						new RequestStatus(null, REMOVED, ERROR, explanation), requestChanges, requestSideEffects, null);
-
-				IProvisioningPlan plan = engine.createPlan(profile, context);
-				plan.setStatus(plannerStatus);
-				return plan;
+				if (!explanation.isEmpty()) {
+					if (requestKey == null)
+						requestKey = createRequestKey(profileChangeRequest, context, null);
+					if (requestKey != null)
+						explanationCache.put(requestKey, explanation);
+				}
+				return createUnsatisfiablePlan(profileChangeRequest, context, explanation);
 			}
 
 			// The resolution succeeded. We can forget about the warnings since there is a
@@ -506,6 +583,72 @@ public class SimplePlanner implements IPlanner {
 		}
 	}
 
+	private IProvisioningPlan createUnsatisfiablePlan(ProfileChangeRequest profileChangeRequest,
+			ProvisioningContext context, Set<Explanation> explanation) {
+		IStatus explanationStatus = convertExplanationToStatus(explanation);
+
+		Map<IInstallableUnit, RequestStatus>[] changes = buildDetailedErrors(profileChangeRequest);
+		Map<IInstallableUnit, RequestStatus> requestChanges = (changes == null) ? null : changes[0];
+		Map<IInstallableUnit, RequestStatus> requestSideEffects = (changes == null) ? null : changes[1];
+		PlannerStatus plannerStatus = new PlannerStatus(explanationStatus,
+				new RequestStatus(null, REMOVED, ERROR, explanation), requestChanges, requestSideEffects, null);
+
+		IProvisioningPlan plan = engine.createPlan(profileChangeRequest.getProfile(), context);
+		plan.setStatus(plannerStatus);
+		return plan;
+	}
+
+	private static boolean isExplanationEnabled(ProvisioningContext context) {
+		return context == null || context.getProperty(EXPLANATION) == null
+				|| Boolean.parseBoolean(context.getProperty(EXPLANATION));
+	}
+
+	private static boolean isIncremental(ProvisioningContext context) {
+		return context != null && Boolean.parseBoolean(context.getProperty(INCREMENTAL));
+	}
+
+	/**
+	 * Returns the number of solver configurations to run concurrently, or
+	 * <code>0</code> when the solver portfolio is not enabled.
+	 */
+	private static int getPortfolioSize(ProvisioningContext context) {
+		String value = context == null ? null : context.getProperty(SOLVER_PORTFOLIO);
+		if (value == null || Boolean.FALSE.toString().equalsIgnoreCase(value))
+			return 0;
+		if (Boolean.TRUE.toString().equalsIgnoreCase(value))
+			return DEFAULT_PORTFOLIO_SIZE;
+		try {
+			return Math.max(0, Integer.parseInt(value));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns the key identifying the given request for the explanation and plan
+	 * caches, see {@link ExplanationCache#createKey}.
+	 */
+	private List<Object> createRequestKey(ProfileChangeRequest request, ProvisioningContext context,
+			IProgressMonitor monitor) {
+		return ExplanationCache.createKey(request, context == null ? new ProvisioningContext(agent) : context, monitor);
+	}
+
+	/**
+	 * Returns the cache to use for planning against the given installable units.
+	 * Only the cache of the last set of units planned against is kept, so that a
+	 * change in the available units releases what was remembered for the previous
+	 * ones. It is softly referenced between requests so that the units it holds
+	 * can still be collected when memory runs low.
+	 */
+	private synchronized IncrementalPlanningCache getIncrementalCache(IInstallableUnit[] availableIUs) {
+		IncrementalPlanningCache cache = incrementalCache == null ? null : incrementalCache.get();
+		if (cache == null || !cache.isValidFor(availableIUs)) {
+			cache = new IncrementalPlanningCache(availableIUs);
+			incrementalCache = new SoftReference<>(cache);
+		}
+		return cache;
+	}
+
 	@Override
 	public IProvisioningPlan getProvisioningPlan(IProfileChangeRequest request, ProvisioningContext context,
 			IProgressMonitor monitor) {
@@ -513,8 +656,17 @@ public class SimplePlanner implements IPlanner {
 		SubMonitor sub = SubMonitor.convert(monitor, ExpandWork);
 		sub.setTaskName(Messages.Director_Task_Resolving_Dependencies);
 		try {
+			PlanCache planCache = (PlanCache) agent.getService(PlanCache.SERVICE_NAME);
+			List<Object> planKey = null;
+			if (planCache != null) {
+				planKey = createRequestKey(pcr, context, sub.newChild(1));
+				IProvisioningPlan cachedPlan = planKey == null ? null : planCache.get(planKey, pcr, context);
+				if (cachedPlan != null)
+					return cachedPlan;
+			}
+
 			// Get the solution for the initial request
-			Object resolutionResult = getSolutionFor(pcr, context, sub.newChild(ExpandWork / 2));
+			Object resolutionResult = getSolutionFor(pcr, context, planKey, sub.newChild(ExpandWork / 2 - 1));
 			// a return value of a plan indicates failure when resolving so return.
 			if (resolutionResult instanceof IProvisioningPlan) {
 				return (IProvisioningPlan) resolutionResult;
@@ -530,8 +682,11 @@ public class SimplePlanner implements IPlanner {
 
 			// Create a plan for installing necessary pieces to complete the installation
 			// (e.g touchpoint actions)
-			return createInstallerPlan(pcr.getProfile(), pcr, fullState, newState, temporaryPlan, context,
-					sub.newChild(ExpandWork / 2));
+			IProvisioningPlan plan = createInstallerPlan(pcr.getProfile(), pcr, fullState, newState, temporaryPlan,
+					context, sub.newChild(ExpandWork / 2));
+			if (planKey != null)
+				planCache.put(planKey, plan);
+			return plan;
 		} catch (OperationCanceledException e) {
 			IProvisioningPlan plan = engine.createPlan(pcr.getProfile(), context);
 			plan.setStatus(Status.CANCEL_STATUS);
@@ -994,18 +1149,97 @@ public class SimplePlanner implements IPlanner {
 	@Override
 	public IQueryResult<IInstallableUnit> updatesFor(IInstallableUnit toUpdate, ProvisioningContext context,
 			IProgressMonitor monitor) {
-		Map<String, IInstallableUnit> resultsMap = new HashMap<>();
-
 		SubMonitor sub = SubMonitor.convert(monitor, 1000);
 		IQueryable<IInstallableUnit> queryable = context.getMetadata(sub.newChild(500));
 		IQueryResult<IInstallableUnit> matches = queryable.query(new UpdateQuery(toUpdate), sub.newChild(500));
-		for (IInstallableUnit iu : matches) {
+		sub.done();
+		return selectUpdates(matches.iterator());
+	}
+
+	@Override
+	public Map<IInstallableUnit, IQueryResult<IInstallableUnit>> updatesFor(Collection<IInstallableUnit> toUpdate,
+			ProvisioningContext context, IProgressMonitor monitor) {
+		SubMonitor sub = SubMonitor.convert(monitor, 1000);
+		// Update descriptors and life cycles usually name a capability provided by the
+		// updated IU, its id for descriptors, so index the IUs to update by the
+		// namespaces and names of their capabilities
+		Map<String, Map<String, List<IInstallableUnit>>> byCapability = new HashMap<>();
+		for (IInstallableUnit iu : toUpdate) {
+			for (IProvidedCapability capability : iu.getProvidedCapabilities())
+				byCapability.computeIfAbsent(capability.getNamespace(), namespace -> new HashMap<>())
+						.computeIfAbsent(capability.getName(), name -> new ArrayList<>()).add(iu);
+		}
+
+		// Nothing indexes the update descriptors, so the candidate updates of every IU
+		// are gathered in a single pass over the metadata, read as it is matched
+		Map<IInstallableUnit, List<IInstallableUnit>> candidates = new HashMap<>();
+		IQueryable<IInstallableUnit> queryable = context.getMetadata(sub.newChild(500));
+		Iterator<IInstallableUnit> itor = queryable
+				.query(QueryUtil.createStreamingQuery(QueryUtil.createIUAnyQuery()), sub.newChild(250)).iterator();
+		while (itor.hasNext()) {
+			IInstallableUnit candidate = itor.next();
+			Set<IInstallableUnit> updated = new HashSet<>();
+			IUpdateDescriptor descriptor = candidate.getUpdateDescriptor();
+			if (descriptor != null) {
+				for (IMatchExpression<IInstallableUnit> expression : descriptor.getIUsBeingUpdated())
+					collectMatchingUnits(expression, byCapability, toUpdate, updated);
+			}
+			if (candidate instanceof IInstallableUnitPatch) {
+				IRequirement lifeCycle = ((IInstallableUnitPatch) candidate).getLifeCycle();
+				if (lifeCycle != null)
+					collectMatchingUnits(lifeCycle.getMatches(), byCapability, toUpdate, updated);
+			}
+			for (IInstallableUnit iu : updated)
+				candidates.computeIfAbsent(iu, k -> new ArrayList<>()).add(candidate);
+		}
+
+		// The candidates are a superset of the updates, the update query tells them apart
+		Map<IInstallableUnit, IQueryResult<IInstallableUnit>> result = new HashMap<>();
+		SubMonitor loopMonitor = sub.newChild(250).setWorkRemaining(toUpdate.size());
+		for (IInstallableUnit iu : toUpdate) {
+			List<IInstallableUnit> found = candidates.get(iu);
+			if (found == null)
+				result.put(iu, Collector.emptyCollector());
+			else
+				result.put(iu, selectUpdates(new UpdateQuery(iu).perform(found.iterator()).iterator()));
+			loopMonitor.worked(1);
+		}
+		sub.done();
+		return result;
+	}
+
+	/**
+	 * Adds the given IUs matching the given expression to the result. A version
+	 * range expression is looked up by the capability it names, any other one is
+	 * evaluated on each IU.
+	 */
+	private static void collectMatchingUnits(IMatchExpression<IInstallableUnit> expression,
+			Map<String, Map<String, List<IInstallableUnit>>> byCapability, Collection<IInstallableUnit> all,
+			Set<IInstallableUnit> result) {
+		if (RequiredCapability.isVersionRangeRequirement(expression)) {
+			Map<String, List<IInstallableUnit>> inNamespace = byCapability
+					.get(RequiredCapability.extractNamespace(expression));
+			List<IInstallableUnit> named = inNamespace == null ? null
+					: inNamespace.get(RequiredCapability.extractName(expression));
+			if (named != null)
+				result.addAll(named);
+		} else {
+			for (IInstallableUnit iu : all) {
+				if (expression.isMatch(iu))
+					result.add(iu);
+			}
+		}
+	}
+
+	private static IQueryResult<IInstallableUnit> selectUpdates(Iterator<IInstallableUnit> matches) {
+		Map<String, IInstallableUnit> resultsMap = new HashMap<>();
+		while (matches.hasNext()) {
+			IInstallableUnit iu = matches.next();
 			String key = iu.getId() + "_" + iu.getVersion().toString(); //$NON-NLS-1$
 			IInstallableUnit currentIU = resultsMap.get(key);
 			if (currentIU == null || hasHigherFidelity(iu, currentIU))
 				resultsMap.put(key, iu);
 		}
-		sub.done();
 		return new CollectionResult<>(resultsMap.values());
 	}
 
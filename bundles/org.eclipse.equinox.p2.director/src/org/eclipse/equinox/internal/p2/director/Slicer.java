@@ -15,13 +15,13 @@
 package org.eclipse.equinox.internal.p2.director;
 
 import java.util.*;
+import java.util.stream.Collectors;
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
 import org.eclipse.equinox.internal.p2.core.helpers.Tracing;
 import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
 import org.eclipse.equinox.internal.p2.metadata.InstallableUnitPatch;
 import org.eclipse.equinox.p2.metadata.*;
-import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
 import org.eclipse.equinox.p2.query.*;
 import org.eclipse.osgi.util.NLS;
 
@@ -36,6 +36,9 @@ public class Slicer {
 	private LinkedList<IInstallableUnit> toProcess;
 	private Set<IInstallableUnit> considered; //IUs to add to the slice
 	private Set<IInstallableUnit> nonGreedyIUs = new HashSet<>(); //IUs that are brought in by non greedy dependencies
+	private IncrementalPlanningCache incrementalCache; //Matches remembered from previous slices of the same input
+	private FilterEvaluationCache filterCache; //Filters already evaluated against the selection context
+	private boolean parallel;
 
 	public Slicer(IQueryable<IInstallableUnit> input, Map<String, String> context, boolean considerMetaRequirements) {
 		this(input, InstallableUnit.contextIU(context), considerMetaRequirements);
@@ -45,10 +48,38 @@ public class Slicer {
 		this.possibilites = possibilites;
 		this.selectionContext = selectionContext;
 		this.considerMetaRequirements = considerMetaRequirements;
+		filterCache = new FilterEvaluationCache(selectionContext);
 		slice = new HashMap<>();
 		result = new MultiStatus(DirectorActivator.PI_DIRECTOR, IStatus.OK, Messages.Planner_Problems_resolving_plan, null);
 	}
 
+	/**
+	 * Lets this slicer reuse the requirement matches remembered by the given cache
+	 * instead of querying its input. The cache must have been created for the
+	 * installable units this slicer was given as input.
+	 */
+	public void setIncrementalCache(IncrementalPlanningCache cache) {
+		this.incrementalCache = cache;
+	}
+
+	/**
+	 * Returns the cache of the filters this slicer evaluated against its selection
+	 * context, to be handed to the {@link Projector} of the same planning run.
+	 */
+	public FilterEvaluationCache getFilterCache() {
+		return filterCache;
+	}
+
+	/**
+	 * Sets whether the requirements of the IUs being sliced are expanded
+	 * concurrently on the common fork-join pool. The resulting slice, and the
+	 * problems reported, are exactly the ones of a sequential run. The input of
+	 * this slicer must support concurrent queries.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
 	public IQueryable<IInstallableUnit> slice(IInstallableUnit[] ius, IProgressMonitor monitor) {
 		try {
 			long start = 0;
@@ -60,12 +91,13 @@ public class Slicer {
 			validateInput(ius);
 			considered = new HashSet<>(Arrays.asList(ius));
 			toProcess = new LinkedList<>(considered);
-			while (!toProcess.isEmpty()) {
-				if (monitor.isCanceled()) {
-					result.merge(Status.CANCEL_STATUS);
-					throw new OperationCanceledException();
+			if (parallel) {
+				processInParallel(monitor);
+			} else {
+				while (!toProcess.isEmpty()) {
+					checkCanceled(monitor);
+					processIU(toProcess.removeFirst());
 				}
-				processIU(toProcess.removeFirst());
 			}
 			computeNonGreedyIUs();
 			if (DEBUG) {
@@ -82,7 +114,82 @@ public class Slicer {
 		return new QueryableArray(considered.toArray(new IInstallableUnit[considered.size()]));
 	}
 
+	private void checkCanceled(IProgressMonitor monitor) {
+		if (monitor.isCanceled()) {
+			result.merge(Status.CANCEL_STATUS);
+			throw new OperationCanceledException();
+		}
+	}
+
+	/*
+	 * Walks the closure one level at a time. The IUs of a level are expanded
+	 * concurrently, then the expansions are merged in the order the IUs were
+	 * queued. Since a sequential walk processes its queue level by level in that
+	 * same order, the IUs considered, the order in which they are considered and
+	 * the problems reported are the same.
+	 */
+	private void processInParallel(IProgressMonitor monitor) {
+		List<IInstallableUnit> level = new ArrayList<>(toProcess);
+		toProcess.clear();
+		while (!level.isEmpty()) {
+			checkCanceled(monitor);
+			List<Expansion> expansions = level.parallelStream().map(this::expand).collect(Collectors.toList());
+			for (Expansion expansion : expansions) {
+				addToSlice(expansion.iu);
+				for (IInstallableUnit match : expansion.matches) {
+					Map<Version, IInstallableUnit> iuSlice = slice.get(match.getId());
+					if (iuSlice == null || !iuSlice.containsKey(match.getVersion()))
+						consider(match);
+				}
+				for (IStatus problem : expansion.problems)
+					result.add(problem);
+			}
+			level = new ArrayList<>(toProcess);
+			toProcess.clear();
+		}
+	}
+
+	/*
+	 * The part of processIU that does not depend on the state of the slice.
+	 */
+	private Expansion expand(IInstallableUnit iu) {
+		Expansion expansion = new Expansion(iu.unresolved());
+		if (!isApplicable(expansion.iu))
+			return expansion;
+		for (IRequirement req : getRequirements(expansion.iu)) {
+			if (!isApplicable(req) || !isGreedy(req) || req.getMax() == 0)
+				continue;
+			int validMatches = 0;
+			for (IInstallableUnit match : getMatches(req)) {
+				if (!isApplicable(match))
+					continue;
+				validMatches++;
+				expansion.matches.add(match);
+			}
+			if (validMatches == 0) {
+				IStatus problem = getMissingMatchStatus(expansion.iu, req);
+				if (problem != null)
+					expansion.problems.add(problem);
+			}
+		}
+		return expansion;
+	}
+
+	private static class Expansion {
+		final IInstallableUnit iu;
+		final List<IInstallableUnit> matches = new ArrayList<>();
+		final List<IStatus> problems = new ArrayList<>(0);
+
+		Expansion(IInstallableUnit iu) {
+			this.iu = iu;
+		}
+	}
+
 	private void computeNonGreedyIUs() {
+		if (incrementalCache != null) {
+			computeNonGreedyIUs(incrementalCache.createScope(considered));
+			return;
+		}
 		IQueryable<IInstallableUnit> queryable = new QueryableArray(considered.toArray(new IInstallableUnit[considered.size()]));
 		Iterator<IInstallableUnit> it = queryable.query(QueryUtil.ALL_UNITS, new NullProgressMonitor()).iterator();
 		while (it.hasNext()) {
@@ -98,6 +205,20 @@ public class Slicer {
 		}
 	}
 
+	private void computeNonGreedyIUs(IncrementalPlanningCache.Scope scope) {
+		for (IInstallableUnit iu : considered) {
+			Collection<IRequirement> reqs = getRequirements(iu.unresolved());
+			for (IRequirement req : reqs) {
+				if (!isApplicable(req))
+					continue;
+
+				if (!isGreedy(req)) {
+					nonGreedyIUs.addAll(scope.getMatches(req));
+				}
+			}
+		}
+	}
+
 	public MultiStatus getStatus() {
 		return result;
 	}
@@ -113,25 +234,17 @@ public class Slicer {
 
 	// Check whether the requirement is applicable
 	protected boolean isApplicable(IRequirement req) {
-		IMatchExpression<IInstallableUnit> filter = req.getFilter();
-		return filter == null || filter.isMatch(selectionContext);
+		return filterCache.isMatch(req.getFilter());
 	}
 
 	protected boolean isApplicable(IInstallableUnit iu) {
-		IMatchExpression<IInstallableUnit> filter = iu.getFilter();
-		return filter == null || filter.isMatch(selectionContext);
+		return filterCache.isMatch(iu.getFilter());
 	}
 
 	protected void processIU(IInstallableUnit iu) {
 		iu = iu.unresolved();
 
-		Map<Version, IInstallableUnit> iuSlice = slice.get(iu.getId());
-		if (iuSlice == null) {
-
-			iuSlice = new HashMap<>();
-			slice.put(iu.getId(), iuSlice);
-		}
-		iuSlice.put(iu.getVersion(), iu);
+		addToSlice(iu);
 		if (!isApplicable(iu)) {
 			return;
 		}
@@ -151,6 +264,16 @@ public class Slicer {
 		}
 	}
 
+	private void addToSlice(IInstallableUnit iu) {
+		Map<Version, IInstallableUnit> iuSlice = slice.get(iu.getId());
+		if (iuSlice == null) {
+
+			iuSlice = new HashMap<>();
+			slice.put(iu.getId(), iuSlice);
+		}
+		iuSlice.put(iu.getVersion(), iu);
+	}
+
 	protected boolean isGreedy(IRequirement req) {
 		return req.isGreedy();
 	}
@@ -184,9 +307,8 @@ public class Slicer {
 	private void expandRequirement(IInstallableUnit iu, IRequirement req) {
 		if (req.getMax() == 0)
 			return;
-		IQueryResult<IInstallableUnit> matches = possibilites.query(QueryUtil.createMatchQuery(req.getMatches()), null);
 		int validMatches = 0;
-		for (IInstallableUnit match : matches) {
+		for (IInstallableUnit match : getMatches(req)) {
 			if (!isApplicable(match))
 				continue;
 			validMatches++;
@@ -196,13 +318,25 @@ public class Slicer {
 		}
 
 		if (validMatches == 0) {
-			if (req.getMin() == 0) {
-				if (DEBUG)
-					System.out.println("No IU found to satisfy optional dependency of " + iu + " on req " + req); //$NON-NLS-1$//$NON-NLS-2$
-			} else {
-				result.add(new Status(IStatus.WARNING, DirectorActivator.PI_DIRECTOR, NLS.bind(Messages.Planner_Unsatisfied_dependency, iu, req)));
-			}
+			IStatus problem = getMissingMatchStatus(iu, req);
+			if (problem != null)
+				result.add(problem);
+		}
+	}
+
+	private Iterable<IInstallableUnit> getMatches(IRequirement req) {
+		if (incrementalCache != null)
+			return incrementalCache.getMatches(req);
+		return possibilites.query(QueryUtil.createMatchQuery(req.getMatches()), null);
+	}
+
+	private IStatus getMissingMatchStatus(IInstallableUnit iu, IRequirement req) {
+		if (req.getMin() == 0) {
+			if (DEBUG)
+				System.out.println("No IU found to satisfy optional dependency of " + iu + " on req " + req); //$NON-NLS-1$//$NON-NLS-2$
+			return null;
 		}
+		return new Status(IStatus.WARNING, DirectorActivator.PI_DIRECTOR, NLS.bind(Messages.Planner_Unsatisfied_dependency, iu, req));
 	}
 
 	private void consider(IInstallableUnit match) {
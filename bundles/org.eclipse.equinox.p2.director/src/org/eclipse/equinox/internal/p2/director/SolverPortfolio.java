@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.director;
+
+import java.util.Collection;
+import java.util.concurrent.*;
+import org.eclipse.core.runtime.*;
+import org.eclipse.equinox.internal.p2.core.helpers.Tracing;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.query.IQueryable;
+
+/**
+ * Solves a planning problem with several solver configurations at once and
+ * keeps the answer of the first one to complete.
+ * <p>
+ * Every configuration has its own {@link Projector}, the encodings are therefore
+ * identical but solved independently. A configuration completes when it finds
+ * a solution or proves that there is none; a configuration giving up on the
+ * problem because of the solver timeout does not stop the others. Once a
+ * configuration completes, the others are stopped.
+ * </p>
+ */
+public class SolverPortfolio {
+	private static final long POLL_DELAY = 100;
+
+	private final Projector[] projectors;
+	private Projector winner;
+
+	/**
+	 * Creates a portfolio over the given projectors. The projectors must have been
+	 * created for the same problem, each with its own solver configuration.
+	 */
+	public SolverPortfolio(Projector[] projectors) {
+		this.projectors = projectors;
+	}
+
+	/**
+	 * Encodes the problem in every projector of the portfolio and solves it.
+	 * Returns the status of the first configuration to complete, the projector
+	 * holding its solution or its explanation being then given by
+	 * {@link #getProjector()}. When no configuration completes, the status of the
+	 * first projector is returned.
+	 */
+	public IStatus solve(IInstallableUnit entryPointIU, IInstallableUnit[] alreadyExistingRoots, IQueryable<IInstallableUnit> installedIUs, Collection<IInstallableUnit> newRoots, IProgressMonitor monitor) {
+		SubMonitor sub = SubMonitor.convert(monitor, 1);
+		IProgressMonitor[] monitors = new IProgressMonitor[projectors.length];
+		ExecutorService executor = Executors.newFixedThreadPool(projectors.length, r -> {
+			Thread thread = new Thread(r, "p2 solver portfolio"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		});
+		CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+		IStatus[] statuses = new IStatus[projectors.length];
+		long start = System.currentTimeMillis();
+		try {
+			for (int i = 0; i < projectors.length; i++) {
+				final int index = i;
+				monitors[i] = new NullProgressMonitor();
+				completion.submit(() -> {
+					try {
+						projectors[index].encode(entryPointIU, alreadyExistingRoots, installedIUs, newRoots, monitors[index]);
+						statuses[index] = projectors[index].invokeSolver(monitors[index]);
+					} catch (OperationCanceledException e) {
+						statuses[index] = Status.CANCEL_STATUS;
+					}
+					return index;
+				});
+			}
+			int pending = projectors.length;
+			while (pending > 0) {
+				if (sub.isCanceled()) {
+					stopAll(monitors);
+					return Status.CANCEL_STATUS;
+				}
+				Future<Integer> done = completion.poll(POLL_DELAY, TimeUnit.MILLISECONDS);
+				if (done == null)
+					continue;
+				pending--;
+				int index = done.get();
+				if (isDefinitive(statuses[index])) {
+					winner = projectors[index];
+					stopAll(monitors);
+					if (Projector.DEBUG)
+						Tracing.debug("Solver configuration " + index + " completed first in: " + (System.currentTimeMillis() - start) + " ms."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					return statuses[index];
+				}
+			}
+			winner = projectors[0];
+			return statuses[0];
+		} catch (InterruptedException e) {
+			stopAll(monitors);
+			Thread.currentThread().interrupt();
+			return Status.CANCEL_STATUS;
+		} catch (ExecutionException e) {
+			stopAll(monitors);
+			return new Status(IStatus.ERROR, DirectorActivator.PI_DIRECTOR, Messages.Planner_Unexpected_problem, e.getCause());
+		} finally {
+			executor.shutdown();
+			sub.done();
+		}
+	}
+
+	/**
+	 * Returns the projector of the configuration whose status was returned by
+	 * {@link #solve}, or <code>null</code> when the problem was not solved.
+	 */
+	public Projector getProjector() {
+		return winner;
+	}
+
+	private static boolean isDefinitive(IStatus status) {
+		if (status.getSeverity() == IStatus.CANCEL)
+			return false;
+		if (status.getSeverity() != IStatus.ERROR)
+			return true;
+		// only a proof of unsatisfiability is an answer, timeouts and unexpected problems are not
+		return status.getCode() == SimplePlanner.UNSATISFIABLE;
+	}
+
+	// Stops every configuration but the winning one, whose solver is still needed for explanations
+	private void stopAll(IProgressMonitor[] monitors) {
+		for (int i = 0; i < projectors.length; i++) {
+			if (projectors[i] == winner)
+				continue;
+			if (monitors[i] != null)
+				monitors[i].setCanceled(true);
+			projectors[i].stopSolver();
+		}
+	}
+}
@@ -14,7 +14,9 @@
  *******************************************************************************/
 package org.eclipse.equinox.p2.planner;
 
+import java.util.*;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.equinox.p2.engine.*;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.equinox.p2.query.IQueryResult;
@@ -56,4 +58,26 @@ public interface IPlanner {
 	 * You may want to consider using the org.eclipse.equinox.p2.operations.UpdateOperation class instead.
 	 */
 	public IQueryResult<IInstallableUnit> updatesFor(IInstallableUnit iu, ProvisioningContext context, IProgressMonitor monitor);
+
+	/**
+	 * Returns the updates of each of the given installable units, as
+	 * {@link #updatesFor(IInstallableUnit, ProvisioningContext, IProgressMonitor)}
+	 * would. Planners may look them all up in a single pass over the metadata of
+	 * the context.
+	 *
+	 * @param ius the installable units to find updates for
+	 * @param context the context providing the metadata to search
+	 * @param monitor a progress monitor, or <code>null</code>
+	 * @return the updates found, keyed by the installable unit they update
+	 * @noreference This method is not intended to be referenced by clients.
+	 * You may want to consider using the org.eclipse.equinox.p2.operations.UpdateOperation class instead.
+	 * @since 2.6
+	 */
+	public default Map<IInstallableUnit, IQueryResult<IInstallableUnit>> updatesFor(Collection<IInstallableUnit> ius, ProvisioningContext context, IProgressMonitor monitor) {
+		SubMonitor sub = SubMonitor.convert(monitor, ius.size());
+		Map<IInstallableUnit, IQueryResult<IInstallableUnit>> result = new HashMap<>();
+		for (IInstallableUnit iu : ius)
+			result.put(iu, updatesFor(iu, context, sub.newChild(1)));
+		return result;
+	}
 }
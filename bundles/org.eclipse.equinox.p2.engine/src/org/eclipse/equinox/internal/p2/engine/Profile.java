@@ -52,13 +52,14 @@ public class Profile extends IndexProvider<IInstallableUnit> implements IProfile
 
 	private Profile parentProfile;
 
-	private IIndex<IInstallableUnit> idIndex;
+	// The indexes are created on first use, queries only lock the profile to create them
+	private volatile IIndex<IInstallableUnit> idIndex;
 
-	private IIndex<IInstallableUnit> propertiesIndex;
+	private volatile IIndex<IInstallableUnit> propertiesIndex;
 
-	private IIndex<IInstallableUnit> capabilityIndex;
+	private volatile IIndex<IInstallableUnit> capabilityIndex;
 
-	private TranslationSupport translationSupport;
+	private volatile TranslationSupport translationSupport;
 
 	/**
 	 * 	A collection of child profiles.
@@ -172,23 +173,41 @@ public class Profile extends IndexProvider<IInstallableUnit> implements IProfile
 	}
 
 	@Override
-	public synchronized IIndex<IInstallableUnit> getIndex(String memberName) {
+	public IIndex<IInstallableUnit> getIndex(String memberName) {
 		if (InstallableUnit.MEMBER_ID.equals(memberName)) {
-			if (idIndex == null)
-				idIndex = new IdIndex(ius);
-			return idIndex;
+			IIndex<IInstallableUnit> index = idIndex;
+			if (index == null) {
+				synchronized (this) {
+					index = idIndex;
+					if (index == null)
+						idIndex = index = new IdIndex(ius);
+				}
+			}
+			return index;
 		}
 
 		if (InstallableUnit.MEMBER_PROVIDED_CAPABILITIES.equals(memberName)) {
-			if (capabilityIndex == null)
-				capabilityIndex = new CapabilityIndex(ius.iterator());
-			return capabilityIndex;
+			IIndex<IInstallableUnit> index = capabilityIndex;
+			if (index == null) {
+				synchronized (this) {
+					index = capabilityIndex;
+					if (index == null)
+						capabilityIndex = index = new CapabilityIndex(ius.iterator());
+				}
+			}
+			return index;
 		}
 
 		if (InstallableUnit.MEMBER_PROFILE_PROPERTIES.equals(memberName)) {
-			if (propertiesIndex == null)
-				propertiesIndex = new ProfilePropertyIndex();
-			return propertiesIndex;
+			IIndex<IInstallableUnit> index = propertiesIndex;
+			if (index == null) {
+				synchronized (this) {
+					index = propertiesIndex;
+					if (index == null)
+						propertiesIndex = index = new ProfilePropertyIndex();
+				}
+			}
+			return index;
 		}
 		return null;
 	}
@@ -206,11 +225,15 @@ public class Profile extends IndexProvider<IInstallableUnit> implements IProfile
 		if (InstallableUnit.MEMBER_PROFILE_PROPERTIES.equals(memberName) && key instanceof String)
 			return getInstallableUnitProperty(iu, (String) key);
 		if (InstallableUnit.MEMBER_TRANSLATED_PROPERTIES.equals(memberName)) {
-			synchronized (this) {
-				if (translationSupport == null)
-					translationSupport = new TranslationSupport(this);
-				return key instanceof KeyWithLocale ? translationSupport.getIUProperty(iu, (KeyWithLocale) key) : translationSupport.getIUProperty(iu, key.toString());
+			TranslationSupport translationSupport = this.translationSupport;
+			if (translationSupport == null) {
+				synchronized (this) {
+					translationSupport = this.translationSupport;
+					if (translationSupport == null)
+						this.translationSupport = translationSupport = new TranslationSupport(this);
+				}
 			}
+			return key instanceof KeyWithLocale ? translationSupport.getIUProperty(iu, (KeyWithLocale) key) : translationSupport.getIUProperty(iu, key.toString());
 		}
 		return null;
 	}
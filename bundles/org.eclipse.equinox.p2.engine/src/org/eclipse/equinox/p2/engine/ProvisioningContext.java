@@ -299,6 +299,24 @@ public class ProvisioningContext {
 		return QueryUtil.compoundQueryable(getLoadedMetadataRepositories(monitor));
 	}
 
+	/**
+	 * Returns a queryable that can be used to obtain the metadata repositories
+	 * consulted by {@link #getMetadata(IProgressMonitor)}, for instance to identify
+	 * the metadata available to a provisioning operation by the locations and
+	 * timestamps of its repositories.
+	 *
+	 * @param monitor a progress monitor to be used when creating the queryable
+	 * @return a queryable that can be used to query the metadata repositories.
+	 *
+	 * @see #setMetadataRepositories(URI[])
+	 * @see #FOLLOW_REPOSITORY_REFERENCES
+	 * @since 2.7
+	 */
+	public IQueryable<IMetadataRepository> getMetadataRepositories(IProgressMonitor monitor) {
+		Set<IMetadataRepository> repositories = getLoadedMetadataRepositories(monitor);
+		return (query, mon) -> query.perform(repositories.iterator());
+	}
+
 	/**
 	 * Returns the list of additional installable units that should be considered as
 	 * available for installation by the planner. Returns an empty list if
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.repository;
+
+import java.io.*;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.core.runtime.*;
+import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
+import org.eclipse.equinox.internal.p2.core.helpers.Tracing;
+import org.eclipse.equinox.internal.p2.repository.CacheManager;
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.repository.IRepositoryManager;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.repository.metadata.spi.MetadataRepositoryFactory;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * A factory for repositories stored in the binary format written by
+ * {@link MetadataRepositoryIO#writeBinary}. The binary file is written next to
+ * the XML, so a binary file that cannot be read is not fatal: the factory then
+ * answers <code>null</code> and the repository is loaded from its XML.
+ */
+public class BinaryMetadataRepositoryFactory extends MetadataRepositoryFactory {
+	static final String REPOSITORY_FILENAME = "content.p2bin"; //$NON-NLS-1$
+	private static final String PROTOCOL_FILE = "file"; //$NON-NLS-1$
+
+	@Override
+	public IMetadataRepository create(URI location, String name, String type, Map<String, String> properties) {
+		if (!location.getScheme().equals(PROTOCOL_FILE))
+			return new URLMetadataRepository(getAgent(), location, name, properties);
+		Map<String, String> binaryProperties = properties == null ? new HashMap<>() : new HashMap<>(properties);
+		binaryProperties.put(LocalMetadataRepository.PROP_BINARY, Boolean.TRUE.toString());
+		return new LocalMetadataRepository(getAgent(), location, name, binaryProperties);
+	}
+
+	/**
+	 * Returns a file in the local file system that contains the contents of the
+	 * metadata repository at the given location.
+	 */
+	private File getLocalFile(URI location, IProgressMonitor monitor) throws IOException, ProvisionException {
+		// If the repository is local, we can return the repository file directly
+		if (PROTOCOL_FILE.equals(location.getScheme())) {
+			if (LocalMetadataRepository.hasCurrentBinary(location))
+				return LocalMetadataRepository.getBinaryLocation(location);
+			String msg = NLS.bind(Messages.io_failedRead, location);
+			throw new ProvisionException(new Status(IStatus.ERROR, Constants.ID, ProvisionException.REPOSITORY_NOT_FOUND, msg, null));
+		}
+		// file is not local, create a cache of the repository metadata
+		CacheManager cache = getAgent().getService(CacheManager.class);
+		if (cache == null)
+			throw new IllegalArgumentException("Cache manager service not available"); //$NON-NLS-1$
+		File localFile = cache.createCacheFromFile(URIUtil.append(location, REPOSITORY_FILENAME), monitor);
+		if (localFile == null) {
+			// there is no remote file - this should not really happen as createCache should
+			// bail out with exception if something is wrong. This is an internal error.
+			throw new ProvisionException(new Status(IStatus.ERROR, Constants.ID, ProvisionException.REPOSITORY_NOT_FOUND, Messages.repoMan_internalError, null));
+		}
+		return localFile;
+	}
+
+	@Override
+	public IMetadataRepository load(URI location, int flags, IProgressMonitor monitor) throws ProvisionException {
+		long time = 0;
+		final String debugMsg = "Validating and loading binary metadata repository "; //$NON-NLS-1$
+		if (Tracing.DEBUG_METADATA_PARSING) {
+			Tracing.debug(debugMsg + location);
+			time = -System.currentTimeMillis();
+		}
+		SubMonitor sub = SubMonitor.convert(monitor, 400);
+		try {
+			File localFile = getLocalFile(location, sub.newChild(300));
+			sub.setWorkRemaining(100);
+			// Units are only decoded lazily from files that only change when the repository itself saves them
+			File lazyFile = PROTOCOL_FILE.equals(location.getScheme()) && LocalMetadataRepository.isLazyLoading() ? localFile : null;
+			IMetadataRepository result;
+			try {
+				result = new MetadataRepositoryIO(getAgent()).readBinary(localFile.toURL(), new FileInputStream(localFile), lazyFile, sub.newChild(100));
+			} catch (ProvisionException e) {
+				if (e.getStatus().getCode() != ProvisionException.REPOSITORY_FAILED_READ)
+					throw e;
+				// Let the repository be loaded from its XML
+				LogHelper.log(new Status(IStatus.WARNING, Constants.ID, e.getStatus().getCode(), e.getMessage(), e));
+				return null;
+			}
+			if ((flags & IRepositoryManager.REPOSITORY_HINT_MODIFIABLE) > 0 && !result.isModifiable())
+				return null;
+			if (result instanceof LocalMetadataRepository)
+				((LocalMetadataRepository) result).initializeAfterLoad(location);
+			if (result instanceof URLMetadataRepository)
+				((URLMetadataRepository) result).initializeAfterLoad(location);
+			if (Tracing.DEBUG_METADATA_PARSING) {
+				time += System.currentTimeMillis();
+				Tracing.debug(debugMsg + "time (ms): " + time); //$NON-NLS-1$
+			}
+			return result;
+		} catch (FileNotFoundException e) {
+			String msg = NLS.bind(Messages.io_failedRead, location);
+			throw new ProvisionException(new Status(IStatus.ERROR, Constants.ID, ProvisionException.REPOSITORY_NOT_FOUND, msg, e));
+		} catch (IOException e) {
+			String msg = NLS.bind(Messages.io_failedRead, location);
+			throw new ProvisionException(new Status(IStatus.ERROR, Constants.ID, ProvisionException.REPOSITORY_FAILED_READ, msg, e));
+		} finally {
+			if (monitor != null)
+				monitor.done();
+		}
+	}
+}
@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.repository;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import org.eclipse.equinox.internal.p2.metadata.index.CapabilityIndex;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IProvidedCapability;
+
+/**
+ * Reads and writes the capability index persisted next to the content of a
+ * {@link LocalMetadataRepository}.
+ * <p>
+ * The index maps the name and the namespace of every provided capability to the
+ * positions, in the order they are written in the repository content, of the
+ * IUs providing it. It is memory-mapped when read so that a repository loaded
+ * from disk can answer capability queries without first building a
+ * {@link CapabilityIndex} from all its IUs.
+ * </p>
+ * The file is laid out as follows, all numbers being big endian:
+ * <pre>
+ * header:  int magic, int format version, int unit count, long content length,
+ *          long content timestamp, int names section offset, int namespaces section offset
+ * section: int key count, then for each key in the order of its UTF-8 bytes:
+ *          int key offset, int key length, int positions offset, int positions count
+ * data:    UTF-8 encoded keys and int positions referenced by the sections
+ * </pre>
+ */
+public class CapabilityIndexFile {
+	private static final int MAGIC = 0x70326369; // "p2ci"
+	private static final int FORMAT_VERSION = 3;
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 4 + 4;
+	private static final int ENTRY_SIZE = 4 * 4;
+
+	private CapabilityIndexFile() {
+		// static helpers only
+	}
+
+	/**
+	 * A capability index which looks providers up in a mapped index file.
+	 */
+	static class MappedCapabilityIndex extends CapabilityIndex {
+		private final ByteBuffer buffer;
+		private final IInstallableUnit[] units;
+		private final int namesSection;
+		private final int namespacesSection;
+
+		MappedCapabilityIndex(ByteBuffer buffer, IInstallableUnit[] units) {
+			super(Collections.emptyIterator());
+			this.buffer = buffer;
+			this.units = units;
+			this.namesSection = buffer.getInt(HEADER_SIZE - 8);
+			this.namespacesSection = buffer.getInt(HEADER_SIZE - 4);
+		}
+
+		@Override
+		protected Object getProviders(Object key, boolean byNamespace) {
+			if (!(key instanceof String))
+				return null;
+			int entry = find(byNamespace ? namespacesSection : namesSection, ((String) key).getBytes(StandardCharsets.UTF_8));
+			if (entry < 0)
+				return null;
+			int offset = buffer.getInt(entry + 8);
+			int count = buffer.getInt(entry + 12);
+			if (count == 1)
+				return units[buffer.getInt(offset)];
+			List<IInstallableUnit> providers = new ArrayList<>(count);
+			for (int i = 0; i < count; i++)
+				providers.add(units[buffer.getInt(offset + i * 4)]);
+			return providers;
+		}
+
+		private int find(int section, byte[] key) {
+			int low = 0;
+			int high = buffer.getInt(section) - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int entry = section + 4 + mid * ENTRY_SIZE;
+				int cmp = compareKey(buffer.getInt(entry), buffer.getInt(entry + 4), key);
+				if (cmp < 0)
+					low = mid + 1;
+				else if (cmp > 0)
+					high = mid - 1;
+				else
+					return entry;
+			}
+			return -1;
+		}
+
+		// Compares the stored key with the given one as unsigned bytes, in place
+		private int compareKey(int offset, int length, byte[] key) {
+			int common = Math.min(length, key.length);
+			for (int i = 0; i < common; i++) {
+				int cmp = (buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+				if (cmp != 0)
+					return cmp;
+			}
+			return length - key.length;
+		}
+	}
+
+	/**
+	 * Orders strings by code point, which is the order of their UTF-8 bytes
+	 * compared as unsigned values.
+	 */
+	static int compareCodePoints(String a, String b) {
+		int i = 0;
+		int j = 0;
+		while (i < a.length() && j < b.length()) {
+			int ca = a.codePointAt(i);
+			int cb = b.codePointAt(j);
+			if (ca != cb)
+				return ca - cb;
+			i += Character.charCount(ca);
+			j += Character.charCount(cb);
+		}
+		return (a.length() - i) - (b.length() - j);
+	}
+
+	/**
+	 * Writes the capability index of the given units to the given file. The units
+	 * must be given in the order they are written in the given content file, which
+	 * must be completely written already: its length and its timestamp are
+	 * recorded to recognize the content the index belongs to. The file is replaced
+	 * atomically so that indexes still mapping the previous file remain usable.
+	 */
+	public static void write(File file, File content, IInstallableUnit[] units) throws IOException {
+		SortedMap<String, int[]> names = new TreeMap<>(CapabilityIndexFile::compareCodePoints);
+		SortedMap<String, int[]> namespaces = new TreeMap<>(CapabilityIndexFile::compareCodePoints);
+		Map<String, Integer> nameCounts = new HashMap<>();
+		Map<String, Integer> namespaceCounts = new HashMap<>();
+		// First pass counts the providers so that positions can be stored in plain arrays
+		for (int i = 0; i < units.length; i++) {
+			Set<String> seenNames = new HashSet<>();
+			Set<String> seenNamespaces = new HashSet<>();
+			for (IProvidedCapability pc : units[i].getProvidedCapabilities()) {
+				if (seenNames.add(pc.getName()))
+					nameCounts.merge(pc.getName(), 1, Integer::sum);
+				if (seenNamespaces.add(pc.getNamespace()))
+					namespaceCounts.merge(pc.getNamespace(), 1, Integer::sum);
+			}
+		}
+		for (Map.Entry<String, Integer> entry : nameCounts.entrySet())
+			names.put(entry.getKey(), new int[entry.getValue() + 1]);
+		for (Map.Entry<String, Integer> entry : namespaceCounts.entrySet())
+			namespaces.put(entry.getKey(), new int[entry.getValue() + 1]);
+		for (int i = 0; i < units.length; i++) {
+			for (IProvidedCapability pc : units[i].getProvidedCapabilities()) {
+				addPosition(names.get(pc.getName()), i);
+				addPosition(namespaces.get(pc.getNamespace()), i);
+			}
+		}
+
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp"); //$NON-NLS-1$
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			int namesSection = HEADER_SIZE;
+			int namespacesSection = namesSection + sectionSize(names);
+			int data = namespacesSection + sectionSize(namespaces);
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(units.length);
+			out.writeLong(content.length());
+			out.writeLong(content.lastModified());
+			out.writeInt(namesSection);
+			out.writeInt(namespacesSection);
+			List<byte[]> namesData = new ArrayList<>();
+			data = writeSection(out, names, data, namesData);
+			List<byte[]> namespacesData = new ArrayList<>();
+			writeSection(out, namespaces, data, namespacesData);
+			writeData(out, names, namesData);
+			writeData(out, namespaces, namespacesData);
+		}
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	// The first slot of a positions array holds the number of positions added so far
+	private static void addPosition(int[] positions, int position) {
+		int count = positions[0];
+		if (count > 0 && positions[count] == position)
+			return;
+		positions[++count] = position;
+		positions[0] = count;
+	}
+
+	private static int sectionSize(SortedMap<String, int[]> section) {
+		return 4 + section.size() * ENTRY_SIZE;
+	}
+
+	private static int writeSection(DataOutputStream out, SortedMap<String, int[]> section, int data, List<byte[]> keys) throws IOException {
+		out.writeInt(section.size());
+		for (Map.Entry<String, int[]> entry : section.entrySet()) {
+			byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			keys.add(key);
+			int count = entry.getValue()[0];
+			out.writeInt(data);
+			out.writeInt(key.length);
+			out.writeInt(data + key.length);
+			out.writeInt(count);
+			data += key.length + count * 4;
+		}
+		return data;
+	}
+
+	private static void writeData(DataOutputStream out, SortedMap<String, int[]> section, List<byte[]> keys) throws IOException {
+		Iterator<byte[]> keyIterator = keys.iterator();
+		for (int[] positions : section.values()) {
+			out.write(keyIterator.next());
+			for (int i = 1; i <= positions[0]; i++)
+				out.writeInt(positions[i]);
+		}
+	}
+
+	/**
+	 * Maps the given index file and returns a capability index over the given
+	 * units, or <code>null</code> when the file is missing, unreadable or was not
+	 * written for the given content file as it is now. The units must be given in
+	 * the order they appear in that content file.
+	 */
+	public static CapabilityIndex read(File file, File content, IInstallableUnit[] units) {
+		if (!file.isFile() || !content.isFile())
+			return null;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+				return null;
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION)
+				return null;
+			if (buffer.getInt(8) != units.length || buffer.getLong(12) != content.length() || buffer.getLong(20) != content.lastModified())
+				return null;
+			return new MappedCapabilityIndex(buffer, units);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
@@ -56,7 +56,8 @@ public class CompositeMetadataRepository extends AbstractMetadataRepository impl
 	// keep a list of the repositories that we have successfully loaded
 	private List<IMetadataRepository> loadedRepos = new ArrayList<>();
 	private IMetadataRepositoryManager manager;
-	private IPool<IInstallableUnit> iuPool = new WeakPool<>();
+	// children can be compressed concurrently, so the pool must be thread safe
+	private IPool<IInstallableUnit> iuPool = new ConcurrentWeakPool<>();
 
 	/**
 	 * Create a Composite repository in memory.
@@ -110,8 +111,9 @@ public class CompositeMetadataRepository extends AbstractMetadataRepository impl
 		List<URI> repositoriesToBeRemovedOnFailure = new ArrayList<>();
 		boolean failOnChildFailure = shouldFailOnChildFailure(state);
 		for (URI child : state.getChildren())
-			addChild(child, false, sub.newChild(100), failOnChildFailure, repositoriesToBeRemovedOnFailure);
-
+			addChild(child, false, false, sub.newChild(100), failOnChildFailure, repositoriesToBeRemovedOnFailure);
+		// Share IUs across this CompositeMetadataRepository, compressing the children in parallel
+		loadedRepos.parallelStream().forEach(child -> child.compress(iuPool));
 	}
 
 	CompositeMetadataRepository(IMetadataRepositoryManager manager, URI location, String name, Map<String, String> properties) {
@@ -144,8 +146,9 @@ public class CompositeMetadataRepository extends AbstractMetadataRepository impl
 		if (monitor == null)
 			monitor = new NullProgressMonitor();
 		try {
-			// Query all the all the repositories this composite repo contains
-			IQueryable<IInstallableUnit> queryable = QueryUtil.compoundQueryable(loadedRepos);
+			// Query all the all the repositories this composite repo contains, the
+			// children are independent so their indexes can be consulted in parallel
+			IQueryable<IInstallableUnit> queryable = QueryUtil.compoundQueryable(loadedRepos, true);
 			return queryable.query(query, monitor);
 		} finally {
 			if (monitor != null)
@@ -154,7 +157,7 @@ public class CompositeMetadataRepository extends AbstractMetadataRepository impl
 	}
 
 	//successfully loaded repo will be added to the list repositoriesToBeRemovedOnFailure if the list is not null and the repo wasn't previously loaded
-	private void addChild(URI childURI, boolean save, IProgressMonitor monitor, boolean propagateException, List<URI> repositoriesToBeRemovedOnFailure) throws ProvisionException {
+	private void addChild(URI childURI, boolean save, boolean compress, IProgressMonitor monitor, boolean propagateException, List<URI> repositoriesToBeRemovedOnFailure) throws ProvisionException {
 		SubMonitor sub = SubMonitor.convert(monitor);
 		URI absolute = URIUtil.makeAbsolute(childURI, getLocation());
 		if (childrenURIs.contains(childURI) || childrenURIs.contains(absolute)) {
@@ -177,7 +180,8 @@ public class CompositeMetadataRepository extends AbstractMetadataRepository impl
 				if (propagateException)
 					repositoriesToBeRemovedOnFailure.add(absolute);
 			}
-			currentRepo.compress(iuPool); // Share IUs across this CompositeMetadataRepository
+			if (compress)
+				currentRepo.compress(iuPool); // Share IUs across this CompositeMetadataRepository
 			// we successfully loaded the repo so remember it
 			loadedRepos.add(currentRepo);
 
@@ -195,7 +199,7 @@ public class CompositeMetadataRepository extends AbstractMetadataRepository impl
 	@Override
 	public void addChild(URI childURI) {
 		try {
-			addChild(childURI, true, null, false, null);
+			addChild(childURI, true, true, null, false, null);
 		} catch (ProvisionException e) {
 			//already logged
 		}
@@ -348,7 +352,7 @@ public class CompositeMetadataRepository extends AbstractMetadataRepository impl
 	@Override
 	@SuppressWarnings("unchecked")
 	public IIndex<IInstallableUnit> getIndex(String memberName) {
-		IQueryable<IInstallableUnit> queryable = QueryUtil.compoundQueryable(loadedRepos);
+		IQueryable<IInstallableUnit> queryable = QueryUtil.compoundQueryable(loadedRepos, true);
 		if (queryable instanceof IIndexProvider<?>) {
 			return ((IIndexProvider<IInstallableUnit>) queryable).getIndex(memberName);
 		}
@@ -17,6 +17,8 @@ package org.eclipse.equinox.internal.p2.metadata.repository;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
@@ -24,6 +26,8 @@ import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
 import org.eclipse.equinox.internal.p2.metadata.*;
 import org.eclipse.equinox.internal.p2.metadata.index.*;
+import org.eclipse.equinox.internal.p2.metadata.repository.io.LazyInstallableUnit;
+import org.eclipse.equinox.internal.p2.persistence.PipelinedOutputStream;
 import org.eclipse.equinox.internal.provisional.p2.core.eventbus.IProvisioningEventBus;
 import org.eclipse.equinox.internal.provisional.p2.repository.RepositoryEvent;
 import org.eclipse.equinox.p2.core.*;
@@ -33,9 +37,12 @@ import org.eclipse.equinox.p2.metadata.index.IIndex;
 import org.eclipse.equinox.p2.metadata.index.IIndexProvider;
 import org.eclipse.equinox.p2.query.IQuery;
 import org.eclipse.equinox.p2.query.IQueryResult;
+import org.eclipse.equinox.p2.query.QueryUtil;
 import org.eclipse.equinox.p2.repository.*;
 import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
 import org.eclipse.equinox.p2.repository.metadata.spi.AbstractMetadataRepository;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
 
 /**
  * A metadata repository that resides in the local file system.  If the repository
@@ -49,13 +56,105 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 	static final private Integer REPOSITORY_VERSION = 1;
 	static final private String JAR_EXTENSION = ".jar"; //$NON-NLS-1$
 	static final private String XML_EXTENSION = ".xml"; //$NON-NLS-1$
+	static final private String INDEX_EXTENSION = ".index"; //$NON-NLS-1$
+	static final private String BINARY_EXTENSION = ".p2bin"; //$NON-NLS-1$
+	/**
+	 * The repository property requesting that the repository is also saved in
+	 * the binary format of {@link MetadataRepositoryIO#writeBinary}, which is
+	 * preferred over the XML when loading the repository.
+	 */
+	static final public String PROP_BINARY = "p2.binary"; //$NON-NLS-1$
+	/**
+	 * The repository property requesting that the capability index of the
+	 * repository is persisted next to its content, see {@link CapabilityIndexFile},
+	 * so that it does not have to be computed when the repository is loaded.
+	 */
+	static final public String PROP_CAPABILITY_INDEX = "p2.capabilityIndex"; //$NON-NLS-1$
+	/**
+	 * The framework property enabling the compaction of the installable units of
+	 * the repositories when they are loaded, see {@link InstallableUnitCompactor}.
+	 */
+	static final public String PROP_COMPACT_LOADING = "eclipse.p2.metadata.compactLoading"; //$NON-NLS-1$
+	/**
+	 * The framework property enabling the lazy loading of the repositories loaded
+	 * from their binary file: only the id, version and capabilities of their units
+	 * are read, the rest of a unit is read when it is first needed, see
+	 * {@link LazyInstallableUnit}.
+	 */
+	static final public String PROP_LAZY_LOADING = "eclipse.p2.metadata.lazyLoading"; //$NON-NLS-1$
+
+	/**
+	 * The units of a repository along with the indexes computed on them. A
+	 * published snapshot is never modified: writers, which are synchronized on
+	 * the repository, publish a new one so that queries never wait for the
+	 * repository monitor.
+	 */
+	private final class Snapshot {
+		final IUMap units;
+		final IInstallableUnit[] indexedUnits; // The units, in the order of the persisted capability index
+		private volatile IIndex<IInstallableUnit> idIndex;
+		private volatile IIndex<IInstallableUnit> capabilityIndex;
+		private volatile IIndex<IInstallableUnit> propertyIndex;
+
+		Snapshot(IUMap units, IInstallableUnit[] indexedUnits) {
+			this.units = units;
+			this.indexedUnits = indexedUnits;
+		}
+
+		/**
+		 * Returns a snapshot of the same units persisted in the given order, keeping
+		 * the indexes that do not depend on the persisted index.
+		 */
+		Snapshot withIndexedUnits(IInstallableUnit[] persistedUnits) {
+			Snapshot snapshot = new Snapshot(units, persistedUnits);
+			snapshot.idIndex = idIndex;
+			snapshot.propertyIndex = propertyIndex;
+			return snapshot;
+		}
+
+		IIndex<IInstallableUnit> getIdIndex() {
+			IIndex<IInstallableUnit> index = idIndex;
+			if (index == null) {
+				synchronized (this) {
+					index = idIndex;
+					if (index == null)
+						idIndex = index = new IdIndex(units);
+				}
+			}
+			return index;
+		}
+
+		IIndex<IInstallableUnit> getCapabilityIndex() {
+			IIndex<IInstallableUnit> index = capabilityIndex;
+			if (index == null) {
+				synchronized (this) {
+					index = capabilityIndex;
+					if (index == null && indexedUnits != null)
+						index = CapabilityIndexFile.read(getIndexLocation(), getContentLocation(), indexedUnits);
+					if (index == null)
+						index = new CapabilityIndex(units.iterator());
+					capabilityIndex = index;
+				}
+			}
+			return index;
+		}
 
-	protected IUMap units = new IUMap();
+		IIndex<IInstallableUnit> getPropertyIndex() {
+			IIndex<IInstallableUnit> index = propertyIndex;
+			if (index == null) {
+				synchronized (this) {
+					index = propertyIndex;
+					if (index == null)
+						propertyIndex = index = new PropertyIndex(units.iterator());
+				}
+			}
+			return index;
+		}
+	}
+
+	private volatile Snapshot snapshot = new Snapshot(new IUMap(), null);
 	protected HashSet<IRepositoryReference> repositories = new HashSet<>();
-	private IIndex<IInstallableUnit> idIndex;
-	private IIndex<IInstallableUnit> capabilityIndex;
-	private TranslationSupport translationSupport;
-	private boolean snapshotNeeded = false;
+	private volatile TranslationSupport translationSupport;
 	private boolean disableSave = false;
 
 	private static File getActualLocation(URI location, String extension) {
@@ -77,6 +176,23 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 		return getActualLocation(location, XML_EXTENSION);
 	}
 
+	public static File getBinaryLocation(URI location) {
+		return new File(getActualLocation(location).getParentFile(), CONTENT_FILENAME + BINARY_EXTENSION);
+	}
+
+	/**
+	 * Returns whether the repository at the given location has a binary file that
+	 * is not older than its XML, that is a binary file that was not left behind
+	 * by a client writing only the XML.
+	 */
+	public static boolean hasCurrentBinary(URI location) {
+		File binaryFile = getBinaryLocation(location);
+		if (!binaryFile.exists())
+			return false;
+		long binaryModified = binaryFile.lastModified();
+		return getActualLocation(location).lastModified() <= binaryModified && getActualLocation(location, JAR_EXTENSION).lastModified() <= binaryModified;
+	}
+
 	/**
 	 * This no argument constructor is called when restoring an existing repository.
 	 */
@@ -101,13 +217,9 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 	public synchronized void addInstallableUnits(Collection<IInstallableUnit> installableUnits) {
 		if (installableUnits == null || installableUnits.isEmpty())
 			return;
-		if (snapshotNeeded) {
-			units = units.clone();
-			idIndex = null; // Backed by units
-			snapshotNeeded = false;
-		}
+		IUMap units = snapshot.units.clone();
 		units.addAll(installableUnits);
-		capabilityIndex = null; // Generated, not backed by units
+		snapshot = new Snapshot(units, null);
 		save();
 	}
 
@@ -125,31 +237,30 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 	}
 
 	@Override
-	public synchronized IIndex<IInstallableUnit> getIndex(String memberName) {
-		if (InstallableUnit.MEMBER_ID.equals(memberName)) {
-			snapshotNeeded = true;
-			if (idIndex == null)
-				idIndex = new IdIndex(units);
-			return idIndex;
-		}
-
-		if (InstallableUnit.MEMBER_PROVIDED_CAPABILITIES.equals(memberName)) {
-			snapshotNeeded = true;
-			if (capabilityIndex == null)
-				capabilityIndex = new CapabilityIndex(units.iterator());
-			return capabilityIndex;
-		}
+	public IIndex<IInstallableUnit> getIndex(String memberName) {
+		if (InstallableUnit.MEMBER_ID.equals(memberName))
+			return snapshot.getIdIndex();
+		if (InstallableUnit.MEMBER_PROVIDED_CAPABILITIES.equals(memberName))
+			return snapshot.getCapabilityIndex();
+		if (InstallableUnit.MEMBER_PROPERTIES.equals(memberName))
+			return snapshot.getPropertyIndex();
 		return null;
 	}
 
 	@Override
-	public synchronized Object getManagedProperty(Object client, String memberName, Object key) {
+	public Object getManagedProperty(Object client, String memberName, Object key) {
 		if (!(client instanceof IInstallableUnit))
 			return null;
 		IInstallableUnit iu = (IInstallableUnit) client;
 		if (InstallableUnit.MEMBER_TRANSLATED_PROPERTIES.equals(memberName)) {
-			if (translationSupport == null)
-				translationSupport = new TranslationSupport(this);
+			TranslationSupport translationSupport = this.translationSupport;
+			if (translationSupport == null) {
+				synchronized (this) {
+					translationSupport = this.translationSupport;
+					if (translationSupport == null)
+						this.translationSupport = translationSupport = new TranslationSupport(this);
+				}
+			}
 			return key instanceof KeyWithLocale ? translationSupport.getIUProperty(iu, (KeyWithLocale) key) : translationSupport.getIUProperty(iu, key.toString());
 		}
 		return null;
@@ -165,12 +276,30 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 			setDescription(state.Description);
 			setLocation(state.Location);
 			setProperties(state.Properties);
-			this.units.addAll(state.Units);
+			if (isCompactLoading())
+				InstallableUnitCompactor.getDefault().compact(state.Units);
+			IUMap units = snapshot.units.clone();
+			units.addAll(state.Units);
+			snapshot = new Snapshot(units, isCapabilityIndexed() ? state.Units : null);
 			this.repositories.addAll(Arrays.asList(state.Repositories));
 		}
 		publishRepositoryReferences();
 	}
 
+	private boolean isCapabilityIndexed() {
+		return "true".equalsIgnoreCase(getProperty(PROP_CAPABILITY_INDEX)); //$NON-NLS-1$
+	}
+
+	private static boolean isCompactLoading() {
+		BundleContext context = FrameworkUtil.getBundle(LocalMetadataRepository.class).getBundleContext();
+		return context != null && Boolean.parseBoolean(context.getProperty(PROP_COMPACT_LOADING));
+	}
+
+	static boolean isLazyLoading() {
+		BundleContext context = FrameworkUtil.getBundle(LocalMetadataRepository.class).getBundleContext();
+		return context != null && Boolean.parseBoolean(context.getProperty(PROP_LAZY_LOADING));
+	}
+
 	/**
 	 * Broadcast discovery events for all repositories referenced by this repository.
 	 */
@@ -208,20 +337,14 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 	}
 
 	@Override
-	public synchronized Iterator<IInstallableUnit> everything() {
-		snapshotNeeded = true;
-		return units.iterator();
+	public Iterator<IInstallableUnit> everything() {
+		return snapshot.units.iterator();
 	}
 
 	@Override
 	public synchronized void removeAll() {
-		if (snapshotNeeded) {
-			units = new IUMap();
-			idIndex = null; // Backed by units
-			snapshotNeeded = false;
-		} else
-			units.clear();
-		capabilityIndex = null; // Generated, not backed by units.
+		detachLazyUnits(snapshot.units.iterator());
+		snapshot = new Snapshot(new IUMap(), null);
 		save();
 	}
 
@@ -230,13 +353,16 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 		boolean changed = false;
 		if (installableUnits != null && !installableUnits.isEmpty()) {
 			changed = true;
-			if (snapshotNeeded) {
-				units = units.clone();
-				idIndex = null; // Backed by units
-				snapshotNeeded = false;
+			List<IInstallableUnit> removed = new ArrayList<>(installableUnits.size());
+			for (IInstallableUnit unit : installableUnits) {
+				IInstallableUnit existing = snapshot.units.get(unit.getId(), unit.getVersion());
+				if (existing != null)
+					removed.add(existing);
 			}
+			detachLazyUnits(removed.iterator());
+			IUMap units = snapshot.units.clone();
 			units.removeAll(installableUnits);
-			capabilityIndex = null; // Generated, not backed by units.
+			snapshot = new Snapshot(units, null);
 		}
 		if (changed)
 			save();
@@ -277,16 +403,103 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 					jarFile.createNewFile();
 				}
 				JarEntry jarEntry = new JarEntry(file.getName());
-				output = new JarOutputStream(new FileOutputStream(jarFile));
-				((JarOutputStream) output).putNextEntry(jarEntry);
+				JarOutputStream jarOutput = new JarOutputStream(new FileOutputStream(jarFile));
+				jarOutput.putNextEntry(jarEntry);
+				// Compress on a thread of its own while the units are serialized
+				output = new PipelinedOutputStream(jarOutput, "Compressing " + jarFile); //$NON-NLS-1$
 			}
 			super.setProperty(IRepository.PROP_TIMESTAMP, Long.toString(System.currentTimeMillis()), new NullProgressMonitor());
-			new MetadataRepositoryIO(getProvisioningAgent()).write(this, output);
+			IInstallableUnit[] toWrite = query(QueryUtil.createIUAnyQuery(), null).toArray(IInstallableUnit.class);
+			new MetadataRepositoryIO(getProvisioningAgent()).write(this, Arrays.asList(toWrite), output);
+			saveIndex(toWrite);
+			saveBinary(toWrite);
 		} catch (IOException e) {
 			LogHelper.log(new Status(IStatus.ERROR, Constants.ID, ProvisionException.REPOSITORY_FAILED_WRITE, "Error saving metadata repository: " + getLocation(), e)); //$NON-NLS-1$
 		}
 	}
 
+	/**
+	 * Writes the binary file of the given units if the repository asks for it,
+	 * or deletes a binary file that would otherwise be loaded instead of the XML
+	 * just written. The file is written next to the binary file and moved over it,
+	 * so that it is never seen half written. Failing to write it is not fatal since
+	 * the XML is then loaded.
+	 */
+	private void saveBinary(IInstallableUnit[] toWrite) {
+		File binaryFile = getBinaryLocation(getLocation());
+		if (!"true".equalsIgnoreCase(getProperty(PROP_BINARY))) { //$NON-NLS-1$
+			if (binaryFile.exists()) {
+				detachLazyUnits(Arrays.asList(toWrite).iterator());
+				binaryFile.delete();
+			}
+			return;
+		}
+		File tmp = new File(binaryFile.getParentFile(), binaryFile.getName() + ".tmp"); //$NON-NLS-1$
+		try {
+			new MetadataRepositoryIO(getProvisioningAgent()).writeBinary(this, Arrays.asList(toWrite), new FileOutputStream(tmp));
+			detachLazyUnits(Arrays.asList(toWrite).iterator());
+			Files.move(tmp.toPath(), binaryFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			detachLazyUnits(Arrays.asList(toWrite).iterator());
+			binaryFile.delete();
+			LogHelper.log(new Status(IStatus.WARNING, Constants.ID, ProvisionException.REPOSITORY_FAILED_WRITE, "Error saving binary metadata repository: " + getLocation(), e)); //$NON-NLS-1$
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Reads the given units that were loaded lazily from the binary file of the
+	 * repository, before that file is replaced or deleted.
+	 */
+	private void detachLazyUnits(Iterator<IInstallableUnit> units) {
+		File binaryFile = getBinaryLocation(getLocation());
+		if (!binaryFile.exists())
+			return;
+		while (units.hasNext()) {
+			IInstallableUnit unit = units.next();
+			if (unit instanceof LazyInstallableUnit)
+				((LazyInstallableUnit) unit).detachFrom(binaryFile);
+		}
+	}
+
+	private File getIndexLocation() {
+		return new File(getActualLocation(getLocation()).getParentFile(), CONTENT_FILENAME + INDEX_EXTENSION);
+	}
+
+	/**
+	 * Returns the file holding the content of the repository, the XML file or
+	 * the jar compressing it, whichever was saved last.
+	 */
+	private File getContentLocation() {
+		File file = getActualLocation(getLocation());
+		return file.exists() ? file : getActualLocation(getLocation(), JAR_EXTENSION);
+	}
+
+	/**
+	 * Persists the capability index of the given units if the repository asks for
+	 * it, or deletes an index file left by a previous save. The units must be given
+	 * in the order they were written. Failing to persist the index is not fatal
+	 * since the index is then computed in memory when needed.
+	 */
+	private void saveIndex(IInstallableUnit[] toWrite) {
+		// The new snapshot drops the index possibly mapped on the file about to be replaced
+		File indexFile = getIndexLocation();
+		if (!isCapabilityIndexed()) {
+			if (indexFile.exists())
+				indexFile.delete();
+			snapshot = snapshot.withIndexedUnits(null);
+			return;
+		}
+		try {
+			CapabilityIndexFile.write(indexFile, getContentLocation(), toWrite);
+			snapshot = snapshot.withIndexedUnits(toWrite);
+		} catch (IOException e) {
+			indexFile.delete();
+			snapshot = snapshot.withIndexedUnits(null);
+		}
+	}
+
 	@Override
 	public String setProperty(String key, String newValue, IProgressMonitor monitor) {
 		try {
@@ -341,7 +554,25 @@ public class LocalMetadataRepository extends AbstractMetadataRepository implemen
 	}
 
 	@Override
-	public void compress(IPool<IInstallableUnit> iuPool) {
+	public synchronized void compress(IPool<IInstallableUnit> iuPool) {
+		if (iuPool == null)
+			return;
+		// The published snapshot is left untouched for the queries running on it
+		IUMap units = snapshot.units.clone();
 		units.compress(iuPool);
+		// The persisted order must reference the compressed units, the indexes are computed again
+		IInstallableUnit[] indexedUnits = snapshot.indexedUnits;
+		if (indexedUnits != null) {
+			IInstallableUnit[] compressed = new IInstallableUnit[indexedUnits.length];
+			for (int i = 0; i < indexedUnits.length; i++) {
+				compressed[i] = units.get(indexedUnits[i].getId(), indexedUnits[i].getVersion());
+				if (compressed[i] == null) {
+					compressed = null;
+					break;
+				}
+			}
+			indexedUnits = compressed;
+		}
+		snapshot = new Snapshot(units, indexedUnits);
 	}
 }
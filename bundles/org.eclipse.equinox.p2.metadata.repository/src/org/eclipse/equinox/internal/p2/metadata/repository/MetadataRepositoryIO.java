@@ -16,16 +16,13 @@ package org.eclipse.equinox.internal.p2.metadata.repository;
 
 import java.io.*;
 import java.lang.reflect.Constructor;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.util.Iterator;
-import java.util.Set;
+import java.net.*;
+import java.util.*;
 import javax.xml.parsers.ParserConfigurationException;
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
 import org.eclipse.equinox.internal.p2.core.helpers.OrderedProperties;
-import org.eclipse.equinox.internal.p2.metadata.repository.io.MetadataParser;
-import org.eclipse.equinox.internal.p2.metadata.repository.io.MetadataWriter;
+import org.eclipse.equinox.internal.p2.metadata.repository.io.*;
 import org.eclipse.equinox.internal.p2.persistence.XMLWriter;
 import org.eclipse.equinox.p2.core.IProvisioningAgent;
 import org.eclipse.equinox.p2.core.ProvisionException;
@@ -35,6 +32,7 @@ import org.eclipse.equinox.p2.repository.IRepositoryReference;
 import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
 import org.eclipse.equinox.p2.repository.metadata.spi.AbstractMetadataRepository;
 import org.eclipse.equinox.p2.repository.metadata.spi.AbstractMetadataRepository.RepositoryState;
+import org.eclipse.equinox.p2.repository.spi.RepositoryReference;
 import org.eclipse.osgi.util.NLS;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
@@ -45,6 +43,25 @@ import org.xml.sax.*;
  */
 public class MetadataRepositoryIO {
 
+	/**
+	 * The framework property controlling whether the units of large repositories
+	 * are parsed on several threads, see {@link ParallelUnitsParser}. Parallel
+	 * parsing is enabled unless this property is <code>false</code>.
+	 */
+	public static final String PROP_PARALLEL_PARSING = "eclipse.p2.metadata.parallelParsing"; //$NON-NLS-1$
+
+	/**
+	 * The framework property controlling whether the units of large repositories
+	 * are serialized on several threads, see {@link MetadataWriter#setParallel(boolean)}.
+	 * Parallel writing is enabled unless this property is <code>false</code>.
+	 */
+	public static final String PROP_PARALLEL_WRITING = "eclipse.p2.metadata.parallelWriting"; //$NON-NLS-1$
+
+	// The start of a document searched for the number of units it contains
+	private static final int DOCUMENT_HEAD_SIZE = 64 * 1024;
+	// The most of a document held in memory to be parsed in parallel, larger documents are streamed
+	private static final int MAX_BUFFERED_DOCUMENT_SIZE = 256 * 1024 * 1024;
+
 	protected final IProvisioningAgent agent;
 
 	public MetadataRepositoryIO(IProvisioningAgent agent) {
@@ -62,10 +79,19 @@ public class MetadataRepositoryIO {
 			try {
 				bufferedInput = new BufferedInputStream(input);
 
-				Parser repositoryParser = new Parser(
-						FrameworkUtil.getBundle(MetadataRepositoryIO.class).getBundleContext(), Constants.ID);
+				BundleContext context = FrameworkUtil.getBundle(MetadataRepositoryIO.class).getBundleContext();
+				Parser repositoryParser = new Parser(context, Constants.ID);
 				repositoryParser.setErrorContext(location.toExternalForm());
-				repositoryParser.parse(input, monitor);
+				if (isParallelParsing(context) && announcesManyUnits(bufferedInput)) {
+					byte[] document = bufferedInput.readNBytes(MAX_BUFFERED_DOCUMENT_SIZE);
+					if (document.length < MAX_BUFFERED_DOCUMENT_SIZE)
+						repositoryParser.parse(document, monitor);
+					else
+						// Too large to be held in memory, the rest of the document is streamed
+						repositoryParser.parse(new SequenceInputStream(new ByteArrayInputStream(document), bufferedInput), monitor);
+				} else {
+					repositoryParser.parse(bufferedInput, monitor);
+				}
 				IStatus result = repositoryParser.getStatus();
 				switch (result.getSeverity()) {
 					case IStatus.CANCEL :
@@ -87,14 +113,157 @@ public class MetadataRepositoryIO {
 		}
 	}
 
+	/**
+	 * Returns whether the units element of the document read by the given stream
+	 * announces enough units to be parsed in parallel. The stream is left as it was.
+	 */
+	private static boolean announcesManyUnits(BufferedInputStream input) throws IOException {
+		input.mark(DOCUMENT_HEAD_SIZE);
+		byte[] head = input.readNBytes(DOCUMENT_HEAD_SIZE);
+		input.reset();
+		return ParallelUnitsParser.announcesManyUnits(head);
+	}
+
+	private static boolean isParallelParsing(BundleContext context) {
+		if (Runtime.getRuntime().availableProcessors() < 2)
+			return false;
+		return context == null || !Boolean.FALSE.toString().equalsIgnoreCase(context.getProperty(PROP_PARALLEL_PARSING));
+	}
+
+	private static boolean isParallelWriting(BundleContext context) {
+		if (Runtime.getRuntime().availableProcessors() < 2)
+			return false;
+		return context == null || !Boolean.FALSE.toString().equalsIgnoreCase(context.getProperty(PROP_PARALLEL_WRITING));
+	}
+
+	private Writer createWriter(OutputStream output, IMetadataRepository repository) {
+		Writer repositoryWriter = new Writer(output, repository.getClass());
+		repositoryWriter.setParallel(isParallelWriting(FrameworkUtil.getBundle(MetadataRepositoryIO.class).getBundleContext()));
+		return repositoryWriter;
+	}
+
 	/**
 	 *
 	 */
 	public void write(IMetadataRepository repository, OutputStream output) throws IOException {
 		try (OutputStream bufferedOutput = new BufferedOutputStream(output)) {
-			Writer repositoryWriter = new Writer(bufferedOutput, repository.getClass());
+			Writer repositoryWriter = createWriter(bufferedOutput, repository);
 			repositoryWriter.write(repository);
+			if (repositoryWriter.checkError())
+				throw new IOException("Error writing metadata repository " + repository.getLocation()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Writes the given repository with the given installable units, in the order
+	 * they are given.
+	 */
+	public void write(IMetadataRepository repository, Collection<IInstallableUnit> units, OutputStream output) throws IOException {
+		try (OutputStream bufferedOutput = new BufferedOutputStream(output)) {
+			Writer repositoryWriter = createWriter(bufferedOutput, repository);
+			repositoryWriter.write(repository, units);
+			if (repositoryWriter.checkError())
+				throw new IOException("Error writing metadata repository " + repository.getLocation()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Reads metadata written by {@link #writeBinary(IMetadataRepository, Collection, OutputStream)}
+	 * from the given stream, and returns the contained repository.
+	 * This method performs buffering, and closes the stream when finished.
+	 */
+	public IMetadataRepository readBinary(URL location, InputStream input, IProgressMonitor monitor) throws ProvisionException {
+		return readBinary(location, input, null, monitor);
+	}
+
+	/**
+	 * Reads metadata written by {@link #writeBinary(IMetadataRepository, Collection, OutputStream)}
+	 * from the given stream, and returns the contained repository. If a file is given,
+	 * the stream reads that file, and only the index of most units is read: the rest of
+	 * these units is read from the file when it is first needed.
+	 * This method performs buffering, and closes the stream when finished.
+	 */
+	public IMetadataRepository readBinary(URL location, InputStream input, File lazyFile, IProgressMonitor monitor) throws ProvisionException {
+		SubMonitor sub = SubMonitor.convert(monitor, Messages.repo_loading, IProgressMonitor.UNKNOWN);
+		try (InputStream bufferedInput = new BufferedInputStream(input)) {
+			BinaryMetadataReader reader = new BinaryMetadataReader(bufferedInput);
+			reader.readHeader();
+			RepositoryState state = new RepositoryState();
+			state.Name = reader.readString();
+			state.Type = reader.readString();
+			state.Version = Version.create(reader.readString());
+			state.Provider = reader.readString();
+			state.Description = reader.readString();
+			state.Properties = reader.readProperties();
+			IRepositoryReference[] references = new IRepositoryReference[reader.readInt()];
+			for (int i = 0; i < references.length; i++) {
+				URI referenceLocation = reader.readURI();
+				String nickname = reader.readString();
+				int type = reader.readInt();
+				references[i] = new RepositoryReference(referenceLocation, nickname, type, reader.readInt());
+			}
+			state.Repositories = references;
+			state.Units = lazyFile == null ? reader.readInstallableUnits(sub) : reader.readLazyInstallableUnits(lazyFile, sub);
+			AbstractMetadataRepository repository = createRepository(state);
+			if (repository == null)
+				throw new IOException("Unknown repository type: " + state.Type); //$NON-NLS-1$
+			return repository;
+		} catch (IOException | RuntimeException e) {
+			if (e instanceof OperationCanceledException)
+				throw (OperationCanceledException) e;
+			String msg = NLS.bind(Messages.io_failedRead, location);
+			throw new ProvisionException(new Status(IStatus.ERROR, Constants.ID, ProvisionException.REPOSITORY_FAILED_READ, msg, e));
+		} finally {
+			sub.done();
+		}
+	}
+
+	/**
+	 * Writes the given repository with the given installable units, in the order
+	 * they are given, in the binary encoding of {@link BinaryMetadataWriter}.
+	 */
+	public void writeBinary(IMetadataRepository repository, Collection<IInstallableUnit> units, OutputStream output) throws IOException {
+		try (OutputStream bufferedOutput = new BufferedOutputStream(output)) {
+			BinaryMetadataWriter writer = new BinaryMetadataWriter(bufferedOutput);
+			writer.writeHeader();
+			writer.writeString(repository.getName());
+			writer.writeString(repository.getType());
+			writer.writeString(repository.getVersion());
+			writer.writeString(repository.getProvider());
+			writer.writeString(repository.getDescription());
+			writer.writeProperties(repository.getProperties());
+			Collection<IRepositoryReference> references = repository instanceof LocalMetadataRepository ? ((LocalMetadataRepository) repository).repositories : Collections.emptySet();
+			writer.writeInt(references.size());
+			for (IRepositoryReference reference : references) {
+				writer.writeString(reference.getLocation().toString());
+				writer.writeString(reference.getNickname());
+				writer.writeInt(reference.getType());
+				writer.writeInt(reference.getOptions());
+			}
+			writer.writeInstallableUnits(units);
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Creates the repository of the type of the given state, initialized with
+	 * that state, or returns <code>null</code> if the type cannot be instantiated.
+	 */
+	AbstractMetadataRepository createRepository(RepositoryState state) {
+		Object repositoryObject = null;
+		try {
+			Class<?> clazz = Class.forName(state.Type);
+			Constructor<?> ctor = clazz.getConstructor(IProvisioningAgent.class);
+			repositoryObject = ctor.newInstance(agent);
+		} catch (Exception e) {
+			// TODO: Throw a SAXException
+			e.printStackTrace();
 		}
+		if (!(repositoryObject instanceof AbstractMetadataRepository))
+			return null;
+		AbstractMetadataRepository repository = (AbstractMetadataRepository) repositoryObject;
+		repository.initialize(state);
+		return repository;
 	}
 
 	private interface XMLConstants extends org.eclipse.equinox.internal.p2.metadata.repository.io.XMLConstants {
@@ -130,6 +299,14 @@ public class MetadataRepositoryIO {
 		 * Write the given metadata repository to the output stream.
 		 */
 		public void write(IMetadataRepository repository) {
+			// The size attribute is a problematic since it forces the use of a collection.
+			write(repository, repository.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet());
+		}
+
+		/**
+		 * Write the given metadata repository with the given units to the output stream.
+		 */
+		public void write(IMetadataRepository repository, Collection<IInstallableUnit> units) {
 			start(REPOSITORY_ELEMENT);
 			attribute(NAME_ATTRIBUTE, repository.getName());
 			attribute(TYPE_ATTRIBUTE, repository.getType());
@@ -142,8 +319,6 @@ public class MetadataRepositoryIO {
 				Set<IRepositoryReference> references = ((LocalMetadataRepository) repository).repositories;
 				writeRepositoryReferences(references.iterator(), references.size());
 			}
-			// The size attribute is a problematic since it forces the use of a collection.
-			Set<IInstallableUnit> units = repository.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet();
 			writeInstallableUnits(units.iterator(), units.size());
 
 			end(REPOSITORY_ELEMENT);
@@ -191,6 +366,9 @@ public class MetadataRepositoryIO {
 
 		private IMetadataRepository theRepository = null;
 
+		// The units parsed ahead of the rest of the document, if any
+		IInstallableUnit[] parsedUnits = null;
+
 		public Parser(BundleContext context, String bundleId) {
 			super(context, bundleId);
 		}
@@ -225,6 +403,26 @@ public class MetadataRepositoryIO {
 			}
 		}
 
+		/**
+		 * Parses the given document, parsing its units in parallel when the document
+		 * is large enough and can be split.
+		 */
+		public synchronized void parse(byte[] document, IProgressMonitor monitor) throws IOException {
+			parsedUnits = null;
+			ParallelUnitsParser unitsParser = ParallelUnitsParser.split(document);
+			if (unitsParser != null) {
+				setProgressMonitor(monitor);
+				parsedUnits = unitsParser.parse(context, bundleId, monitor);
+			}
+			if (parsedUnits == null) {
+				// Not worth splitting, or the units have problems the sequential parser reports
+				parse(new ByteArrayInputStream(document), monitor);
+				return;
+			}
+			int unitsEnd = unitsParser.getUnitsEnd();
+			parse(new SequenceInputStream(new ByteArrayInputStream(document, 0, unitsParser.getUnitsStart()), new ByteArrayInputStream(document, unitsEnd, document.length - unitsEnd)), monitor);
+		}
+
 		public IMetadataRepository getRepository() {
 			return theRepository;
 		}
@@ -295,7 +493,7 @@ public class MetadataRepositoryIO {
 						duplicateElement(this, name, attributes);
 					}
 				} else if (INSTALLABLE_UNITS_ELEMENT.equals(name)) {
-					if (unitsHandler == null) {
+					if (unitsHandler == null && parsedUnits == null) {
 						unitsHandler = new InstallableUnitsHandler(this, attributes);
 					} else {
 						duplicateElement(this, name, attributes);
@@ -316,25 +514,16 @@ public class MetadataRepositoryIO {
 				if (isValidXML()) {
 					state.Properties = (propertiesHandler == null ? new OrderedProperties(0) //
 							: propertiesHandler.getProperties());
-					state.Units = (unitsHandler == null ? new IInstallableUnit[0] //
-							: unitsHandler.getUnits());
+					if (parsedUnits != null)
+						state.Units = parsedUnits;
+					else
+						state.Units = (unitsHandler == null ? new IInstallableUnit[0] //
+								: unitsHandler.getUnits());
 					state.Repositories = repositoryReferencesHandler == null ? new IRepositoryReference[0] : repositoryReferencesHandler.getReferences();
-					Object repositoryObject = null;
 					//can't create repository if missing type - this is already logged when parsing attributes
 					if (state.Type == null)
 						return;
-					try {
-						Class<?> clazz = Class.forName(state.Type);
-						Constructor<?> ctor = clazz.getConstructor(IProvisioningAgent.class);
-						repositoryObject = ctor.newInstance(agent);
-					} catch (Exception e) {
-						// TODO: Throw a SAXException
-						e.printStackTrace();
-					}
-					if (repositoryObject instanceof AbstractMetadataRepository) {
-						repository = (AbstractMetadataRepository) repositoryObject;
-						repository.initialize(state);
-					}
+					repository = createRepository(state);
 				}
 			}
 		}
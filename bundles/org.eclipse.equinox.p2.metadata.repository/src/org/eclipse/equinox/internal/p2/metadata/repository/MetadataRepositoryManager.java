@@ -15,6 +15,7 @@
 package org.eclipse.equinox.internal.p2.metadata.repository;
 
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Map;
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.repository.helpers.AbstractRepositoryManager;
@@ -87,6 +88,36 @@ public class MetadataRepositoryManager extends AbstractRepositoryManager<IInstal
 		return properties.getMetadataFactorySearchOrder();
 	}
 
+	/**
+	 * Tries a binary file before anything else when a local repository has a
+	 * current one, since it is much faster to load than the XML. Remote
+	 * repositories are only asked for a binary file if their index lists it,
+	 * so that loading them does not cost an additional request.
+	 */
+	@Override
+	protected String[] sortSuffixes(String[] suffixes, URI location, String[] preferredOrder) {
+		String[] result = super.sortSuffixes(suffixes, location, preferredOrder);
+		String binarySuffix = BinaryMetadataRepositoryFactory.REPOSITORY_FILENAME;
+		int binaryIndex = Arrays.asList(result).indexOf(binarySuffix);
+		if (binaryIndex < 0)
+			return result;
+		if ("file".equals(location.getScheme())) { //$NON-NLS-1$
+			if (LocalMetadataRepository.hasCurrentBinary(location)) {
+				System.arraycopy(result, 0, result, 1, binaryIndex);
+				result[0] = binarySuffix;
+			}
+			return result;
+		}
+		if (preferredOrder != null)
+			for (String suffix : preferredOrder)
+				if (binarySuffix.equalsIgnoreCase(suffix.trim()))
+					return result;
+		String[] withoutBinary = new String[result.length - 1];
+		System.arraycopy(result, 0, withoutBinary, 0, binaryIndex);
+		System.arraycopy(result, binaryIndex + 1, withoutBinary, binaryIndex, withoutBinary.length - binaryIndex);
+		return withoutBinary;
+	}
+
 	/**
 	 * Restores metadata repositories specified as system properties.
 	 */
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.repository.io;
+
+/**
+ * Constants of the binary encoding of metadata written by
+ * {@link BinaryMetadataWriter} and read by {@link BinaryMetadataReader}.
+ * <p>
+ * Numbers are written as unsigned variable length integers, 7 bits per byte.
+ * Strings and OSGi versions are written once: the first occurrence is written
+ * in full and later occurrences refer to it by its position in the table of
+ * the strings, or versions, read so far.
+ * </p>
+ * <p>
+ * Each unit is written as its id, version and provided capabilities, followed
+ * by the length and the bytes of the rest of the unit. These bytes are written
+ * with tables of their own, so that they can be decoded on their own, long
+ * after the file was read, see {@link LazyInstallableUnit}.
+ * </p>
+ */
+interface BinaryConstants {
+	// "p2bn"
+	int MAGIC = 0x7032626E;
+	int FORMAT_VERSION = 3;
+
+	// The references to strings
+	int STRING_NULL = 0;
+	int STRING_NEW = 1;
+	int STRING_TABLE = 2;
+
+	// The references to versions
+	int VERSION_NULL = 0;
+	int VERSION_RAW = 1;
+	int VERSION_NEW_OSGI = 2;
+	int VERSION_TABLE = 3;
+
+	// The flags of version ranges
+	int RANGE_INCLUDE_MIN = 1;
+	int RANGE_INCLUDE_MAX = 2;
+	int RANGE_EMPTY = 4;
+
+	// The kinds of units
+	int UNIT_PLAIN = 0;
+	int UNIT_FRAGMENT = 1;
+	int UNIT_PATCH = 2;
+
+	// The kinds of requirements
+	int REQUIREMENT_RANGE = 0;
+	int REQUIREMENT_PROPERTIES = 1;
+	int REQUIREMENT_MATCH = 2;
+
+	// The types of capability properties
+	int TYPE_STRING = 0;
+	int TYPE_INTEGER = 1;
+	int TYPE_LONG = 2;
+	int TYPE_FLOAT = 3;
+	int TYPE_DOUBLE = 4;
+	int TYPE_BYTE = 5;
+	int TYPE_SHORT = 6;
+	int TYPE_CHARACTER = 7;
+	int TYPE_BOOLEAN = 8;
+	int TYPE_VERSION = 9;
+	int TYPE_LIST = 10;
+
+	// The strings every table starts with, since the units written on their own would otherwise all repeat them
+	String[] COMMON_STRINGS = {"org.eclipse.equinox.p2.iu", "osgi.bundle", "osgi.fragment", "java.package", "osgi.ee", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			"org.eclipse.equinox.p2.eclipse.type", "org.eclipse.equinox.p2.localization", "org.eclipse.update.feature", "bundle", "source", "feature", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+			"org.eclipse.equinox.p2.name", "org.eclipse.equinox.p2.description", "org.eclipse.equinox.p2.provider", "org.eclipse.equinox.p2.doc.url", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			"org.eclipse.equinox.p2.bundle.localization", "org.eclipse.equinox.p2.type.group", "org.eclipse.equinox.p2.type.category", "true", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			"org.eclipse.equinox.p2.osgi", "org.eclipse.equinox.p2.native", "manifest", "zipped", "install", "uninstall", "configure", "unconfigure"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+}
@@ -0,0 +1,409 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.repository.io;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.equinox.internal.p2.core.helpers.OrderedProperties;
+import org.eclipse.equinox.internal.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.*;
+import org.eclipse.equinox.p2.metadata.expression.ExpressionUtil;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
+
+/**
+ * Reads installable units written by {@link BinaryMetadataWriter}. Malformed
+ * input is reported as an {@link IOException}.
+ */
+public class BinaryMetadataReader implements BinaryConstants {
+	private final PositionInputStream position;
+	private final DataInputStream input;
+	private final List<String> strings = new ArrayList<>(Arrays.asList(COMMON_STRINGS));
+	private final List<Version> versions = new ArrayList<>();
+
+	/**
+	 * Counts the bytes read, which are the offsets in the file of the parts of the
+	 * units decoded lazily.
+	 */
+	private static class PositionInputStream extends FilterInputStream {
+		long position;
+
+		PositionInputStream(InputStream input) {
+			super(input);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int result = super.read();
+			if (result >= 0)
+				position++;
+			return result;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int result = super.read(b, off, len);
+			if (result > 0)
+				position += result;
+			return result;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long result = super.skip(n);
+			position += result;
+			return result;
+		}
+	}
+
+	public BinaryMetadataReader(InputStream input) {
+		this.position = new PositionInputStream(input);
+		this.input = new DataInputStream(position);
+	}
+
+	/**
+	 * Decodes the parts of a unit that are not in its index, as written by
+	 * {@link BinaryMetadataWriter}, and returns the unit.
+	 */
+	static IInstallableUnit readInstallableUnit(byte[] body, int kind, String id, Version version, IProvidedCapability[] capabilities) throws IOException {
+		return new BinaryMetadataReader(new ByteArrayInputStream(body)).readInstallableUnitBody(kind, id, version, capabilities);
+	}
+
+	public void readHeader() throws IOException {
+		if (input.readInt() != MAGIC)
+			throw new IOException("Not a binary metadata repository"); //$NON-NLS-1$
+		int formatVersion = input.readInt();
+		if (formatVersion != FORMAT_VERSION)
+			throw new IOException("Unsupported binary metadata format: " + formatVersion); //$NON-NLS-1$
+	}
+
+	public int readInt() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = input.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed number"); //$NON-NLS-1$
+	}
+
+	private boolean readBoolean() throws IOException {
+		return input.readByte() != 0;
+	}
+
+	public String readString() throws IOException {
+		int reference = readInt();
+		if (reference == STRING_NULL)
+			return null;
+		if (reference == STRING_NEW) {
+			byte[] bytes = new byte[readInt()];
+			input.readFully(bytes);
+			String value = new String(bytes, StandardCharsets.UTF_8);
+			strings.add(value);
+			return value;
+		}
+		int index = reference - STRING_TABLE;
+		if (index >= strings.size())
+			throw new IOException("Malformed string reference: " + reference); //$NON-NLS-1$
+		return strings.get(index);
+	}
+
+	public Version readVersion() throws IOException {
+		int reference = readInt();
+		switch (reference) {
+			case VERSION_NULL :
+				return null;
+			case VERSION_RAW :
+				return Version.create(readString());
+			case VERSION_NEW_OSGI :
+				Version version = Version.createOSGi(readInt(), readInt(), readInt(), readString());
+				versions.add(version);
+				return version;
+		}
+		int index = reference - VERSION_TABLE;
+		if (index >= versions.size())
+			throw new IOException("Malformed version reference: " + reference); //$NON-NLS-1$
+		return versions.get(index);
+	}
+
+	public VersionRange readVersionRange() throws IOException {
+		int flags = readInt();
+		if ((flags & RANGE_EMPTY) != 0)
+			return VersionRange.emptyRange;
+		Version minimum = readVersion();
+		Version maximum = readVersion();
+		return new VersionRange(minimum, (flags & RANGE_INCLUDE_MIN) != 0, maximum, (flags & RANGE_INCLUDE_MAX) != 0);
+	}
+
+	public OrderedProperties readProperties() throws IOException {
+		int size = readInt();
+		OrderedProperties properties = new OrderedProperties(size);
+		for (int i = 0; i < size; i++)
+			properties.put(readString(), readString());
+		return properties;
+	}
+
+	public URI readURI() throws IOException {
+		String uri = readString();
+		try {
+			return uri == null ? null : new URI(uri);
+		} catch (URISyntaxException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	public IInstallableUnit[] readInstallableUnits(IProgressMonitor monitor) throws IOException {
+		return readInstallableUnits(null, monitor);
+	}
+
+	/**
+	 * Reads the units of the given file, which is the file this reader reads.
+	 * Only the index of the plain units is read: the rest of these units is
+	 * decoded from the file when it is first needed, see {@link LazyInstallableUnit}.
+	 */
+	public IInstallableUnit[] readLazyInstallableUnits(File file, IProgressMonitor monitor) throws IOException {
+		return readInstallableUnits(new LazyInstallableUnit.Source(file), monitor);
+	}
+
+	private IInstallableUnit[] readInstallableUnits(LazyInstallableUnit.Source source, IProgressMonitor monitor) throws IOException {
+		IInstallableUnit[] units = new IInstallableUnit[readInt()];
+		for (int i = 0; i < units.length; i++) {
+			if (monitor != null && monitor.isCanceled())
+				throw new OperationCanceledException();
+			int kind = readInt();
+			String id = readString();
+			Version version = readVersion();
+			IProvidedCapability[] capabilities = readProvidedCapabilities();
+			int length = readInt();
+			// Fragments and patches are read right away since they are recognized by their type
+			if (source != null && kind == UNIT_PLAIN) {
+				units[i] = new LazyInstallableUnit(source, position.position, length, id, version, capabilities);
+				skip(length);
+			} else {
+				byte[] body = new byte[length];
+				input.readFully(body);
+				units[i] = readInstallableUnit(body, kind, id, version, capabilities);
+			}
+		}
+		return units;
+	}
+
+	private void skip(int length) throws IOException {
+		for (int skipped = 0; skipped < length;) {
+			int count = input.skipBytes(length - skipped);
+			if (count <= 0)
+				throw new EOFException();
+			skipped += count;
+		}
+	}
+
+	private IInstallableUnit readInstallableUnitBody(int kind, String id, Version version, IProvidedCapability[] capabilities) throws IOException {
+		InstallableUnitDescription description;
+		switch (kind) {
+			case UNIT_PATCH :
+				InstallableUnitPatchDescription patchDescription = new InstallableUnitPatchDescription();
+				IRequirement[][] scope = new IRequirement[readInt()][];
+				for (int i = 0; i < scope.length; i++)
+					scope[i] = readRequirements();
+				patchDescription.setApplicabilityScope(scope);
+				IRequirementChange[] changes = new IRequirementChange[readInt()];
+				for (int i = 0; i < changes.length; i++)
+					changes[i] = MetadataFactory.createRequirementChange(readOptionalRequirement(), readOptionalRequirement());
+				patchDescription.setRequirementChanges(changes);
+				patchDescription.setLifeCycle(readOptionalRequirement());
+				description = patchDescription;
+				break;
+			case UNIT_FRAGMENT :
+				InstallableUnitFragmentDescription fragmentDescription = new InstallableUnitFragmentDescription();
+				fragmentDescription.setHost(readRequirements());
+				description = fragmentDescription;
+				break;
+			case UNIT_PLAIN :
+				description = new InstallableUnitDescription();
+				break;
+			default :
+				throw new IOException("Malformed unit kind: " + kind); //$NON-NLS-1$
+		}
+
+		description.setId(id);
+		description.setVersion(version);
+		description.setCapabilities(capabilities);
+		description.setSingleton(readBoolean());
+		description.setUpdateDescriptor(readUpdateDescriptor());
+		int propertyCount = readInt();
+		for (int i = 0; i < propertyCount; i++)
+			description.setProperty(readString(), readString());
+		description.setMetaRequirements(readRequirements());
+		description.setRequirements(readRequirements());
+		description.setFilter(readString());
+		description.setArtifacts(readArtifactKeys());
+		description.setTouchpointType(MetadataFactory.createTouchpointType(readString(), readVersion()));
+		int touchpointDataCount = readInt();
+		for (int i = 0; i < touchpointDataCount; i++)
+			description.addTouchpointData(readTouchpointData());
+
+		ILicense[] licenses = new ILicense[readInt()];
+		for (int i = 0; i < licenses.length; i++)
+			licenses[i] = MetadataFactory.createLicense(readURI(), readString());
+		description.setLicenses(licenses);
+		if (readBoolean())
+			description.setCopyright(MetadataFactory.createCopyright(readURI(), readString()));
+		return MetadataFactory.createInstallableUnit(description);
+	}
+
+	private IUpdateDescriptor readUpdateDescriptor() throws IOException {
+		if (!readBoolean())
+			return null;
+		int size = readInt();
+		Collection<IMatchExpression<IInstallableUnit>> updated = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int kind = readInt();
+			if (kind == REQUIREMENT_RANGE) {
+				String namespace = readString();
+				String name = readString();
+				updated.add(RequiredCapability.createMatchExpressionFromRange(namespace, name, readVersionRange()));
+			} else if (kind == REQUIREMENT_MATCH)
+				updated.add(readMatchExpression());
+			else
+				throw new IOException("Malformed update descriptor: " + kind); //$NON-NLS-1$
+		}
+		int severity = readInt();
+		String description = readString();
+		return MetadataFactory.createUpdateDescriptor(updated, severity, description, readURI());
+	}
+
+	private IProvidedCapability[] readProvidedCapabilities() throws IOException {
+		IProvidedCapability[] capabilities = new IProvidedCapability[readInt()];
+		for (int i = 0; i < capabilities.length; i++) {
+			String namespace = readString();
+			String name = readString();
+			Version version = readVersion();
+			int size = readInt();
+			Map<String, Object> properties = new HashMap<>(size + 2);
+			for (int j = 0; j < size; j++)
+				properties.put(readString(), readTypedValue());
+			properties.put(namespace, name);
+			properties.put(IProvidedCapability.PROPERTY_VERSION, version);
+			capabilities[i] = MetadataFactory.createProvidedCapability(namespace, properties);
+		}
+		return capabilities;
+	}
+
+	private Object readTypedValue() throws IOException {
+		int type = readInt();
+		switch (type) {
+			case TYPE_STRING :
+				return readString();
+			case TYPE_INTEGER :
+				return input.readInt();
+			case TYPE_LONG :
+				return input.readLong();
+			case TYPE_FLOAT :
+				return input.readFloat();
+			case TYPE_DOUBLE :
+				return input.readDouble();
+			case TYPE_BYTE :
+				return input.readByte();
+			case TYPE_SHORT :
+				return input.readShort();
+			case TYPE_CHARACTER :
+				return input.readChar();
+			case TYPE_BOOLEAN :
+				return readBoolean();
+			case TYPE_VERSION :
+				return readVersion();
+			case TYPE_LIST :
+				int size = readInt();
+				List<Object> list = new ArrayList<>(size);
+				for (int i = 0; i < size; i++)
+					list.add(readTypedValue());
+				return list;
+		}
+		throw new IOException("Malformed property type: " + type); //$NON-NLS-1$
+	}
+
+	private IRequirement[] readRequirements() throws IOException {
+		IRequirement[] requirements = new IRequirement[readInt()];
+		for (int i = 0; i < requirements.length; i++)
+			requirements[i] = readRequirement();
+		return requirements;
+	}
+
+	private IRequirement readOptionalRequirement() throws IOException {
+		return readBoolean() ? readRequirement() : null;
+	}
+
+	private IRequirement readRequirement() throws IOException {
+		int kind = readInt();
+		switch (kind) {
+			case REQUIREMENT_RANGE : {
+				String namespace = readString();
+				String name = readString();
+				VersionRange range = readVersionRange();
+				int min = readInt();
+				int max = readInt();
+				boolean greedy = readBoolean();
+				IMatchExpression<IInstallableUnit> filter = InstallableUnit.parseFilter(readString());
+				return MetadataFactory.createRequirement(namespace, name, range, filter, min, max, greedy, readString());
+			}
+			case REQUIREMENT_PROPERTIES : {
+				String namespace = readString();
+				String match = readString();
+				int min = readInt();
+				int max = readInt();
+				boolean greedy = readBoolean();
+				IMatchExpression<IInstallableUnit> filter = InstallableUnit.parseFilter(readString());
+				return MetadataFactory.createRequirement(namespace, ExpressionUtil.parseLDAP(match), filter, min, max, greedy, readString());
+			}
+			case REQUIREMENT_MATCH : {
+				IMatchExpression<IInstallableUnit> match = readMatchExpression();
+				int min = readInt();
+				int max = readInt();
+				boolean greedy = readBoolean();
+				IMatchExpression<IInstallableUnit> filter = InstallableUnit.parseFilter(readString());
+				return MetadataFactory.createRequirement(match, filter, min, max, greedy, readString());
+			}
+		}
+		throw new IOException("Malformed requirement kind: " + kind); //$NON-NLS-1$
+	}
+
+	private IMatchExpression<IInstallableUnit> readMatchExpression() throws IOException {
+		String match = readString();
+		return MetadataParser.createMatchExpression(match, readString());
+	}
+
+	private IArtifactKey[] readArtifactKeys() throws IOException {
+		IArtifactKey[] artifactKeys = new IArtifactKey[readInt()];
+		for (int i = 0; i < artifactKeys.length; i++)
+			artifactKeys[i] = new ArtifactKey(readString(), readString(), readVersion());
+		return artifactKeys;
+	}
+
+	private ITouchpointData readTouchpointData() throws IOException {
+		int size = readInt();
+		Map<String, ITouchpointInstruction> instructions = new LinkedHashMap<>(size);
+		for (int i = 0; i < size; i++) {
+			String key = readString();
+			String importAttribute = readString();
+			instructions.put(key, MetadataFactory.createTouchpointInstruction(readString(), importAttribute));
+		}
+		return MetadataFactory.createTouchpointData(instructions);
+	}
+}
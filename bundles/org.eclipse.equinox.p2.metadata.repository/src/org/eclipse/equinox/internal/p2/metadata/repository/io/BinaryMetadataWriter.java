@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.repository.io;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.eclipse.equinox.internal.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.expression.*;
+
+/**
+ * Writes installable units in a compact binary encoding that is much cheaper
+ * to read than the XML written by {@link MetadataWriter}. Units are written as
+ * they are held in memory: requirements that the XML format expresses as match
+ * expressions are written as their namespace, name and version range whenever
+ * possible, so that reading them back does not need to parse expressions.
+ */
+public class BinaryMetadataWriter implements BinaryConstants {
+	private final DataOutputStream output;
+	private final Map<String, Integer> strings = new HashMap<>();
+	private final Map<Version, Integer> versions = new HashMap<>();
+	// The buffer and the writer of the parts of the units written on their own
+	private ByteArrayOutputStream bodyBuffer;
+
+	public BinaryMetadataWriter(OutputStream output) {
+		this.output = new DataOutputStream(output);
+		for (String common : COMMON_STRINGS)
+			strings.put(common, strings.size());
+	}
+
+	public void writeHeader() throws IOException {
+		output.writeInt(MAGIC);
+		output.writeInt(FORMAT_VERSION);
+	}
+
+	public void writeInt(int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	private void writeBoolean(boolean value) throws IOException {
+		output.writeByte(value ? 1 : 0);
+	}
+
+	public void writeString(String value) throws IOException {
+		if (value == null) {
+			writeInt(STRING_NULL);
+			return;
+		}
+		Integer index = strings.get(value);
+		if (index != null) {
+			writeInt(STRING_TABLE + index);
+			return;
+		}
+		strings.put(value, strings.size());
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeInt(STRING_NEW);
+		writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	public void writeVersion(Version version) throws IOException {
+		if (version == null) {
+			writeInt(VERSION_NULL);
+			return;
+		}
+		// Versions of other formats are rare and may be equal while being written differently
+		if (!(version instanceof OSGiVersion)) {
+			writeInt(VERSION_RAW);
+			writeString(version.toString());
+			return;
+		}
+		Integer index = versions.get(version);
+		if (index != null) {
+			writeInt(VERSION_TABLE + index);
+			return;
+		}
+		versions.put(version, versions.size());
+		OSGiVersion osgiVersion = (OSGiVersion) version;
+		writeInt(VERSION_NEW_OSGI);
+		writeInt(osgiVersion.getMajor());
+		writeInt(osgiVersion.getMinor());
+		writeInt(osgiVersion.getMicro());
+		writeString(osgiVersion.getQualifier());
+	}
+
+	public void writeVersionRange(VersionRange range) throws IOException {
+		if (VersionRange.emptyRange.equals(range)) {
+			writeInt(RANGE_EMPTY);
+			return;
+		}
+		writeInt((range.getIncludeMinimum() ? RANGE_INCLUDE_MIN : 0) | (range.getIncludeMaximum() ? RANGE_INCLUDE_MAX : 0));
+		writeVersion(range.getMinimum());
+		writeVersion(range.getMaximum());
+	}
+
+	public void writeProperties(Map<String, String> properties) throws IOException {
+		writeInt(properties.size());
+		for (Map.Entry<String, String> entry : properties.entrySet()) {
+			writeString(entry.getKey());
+			writeString(entry.getValue());
+		}
+	}
+
+	public void writeInstallableUnits(Collection<IInstallableUnit> units) throws IOException {
+		writeInt(units.size());
+		for (IInstallableUnit unit : units)
+			writeInstallableUnit(unit);
+	}
+
+	public void flush() throws IOException {
+		output.flush();
+	}
+
+	protected void writeInstallableUnit(IInstallableUnit resolvedIU) throws IOException {
+		IInstallableUnit iu = resolvedIU.unresolved();
+		int kind = iu instanceof IInstallableUnitPatch ? UNIT_PATCH : iu instanceof IInstallableUnitFragment ? UNIT_FRAGMENT : UNIT_PLAIN;
+		writeInt(kind);
+		writeString(iu.getId());
+		writeVersion(iu.getVersion());
+		writeProvidedCapabilities(iu.getProvidedCapabilities());
+
+		if (bodyBuffer == null)
+			bodyBuffer = new ByteArrayOutputStream();
+		bodyBuffer.reset();
+		BinaryMetadataWriter bodyWriter = new BinaryMetadataWriter(bodyBuffer);
+		bodyWriter.writeInstallableUnitBody(resolvedIU, iu);
+		bodyWriter.flush();
+		writeInt(bodyBuffer.size());
+		bodyBuffer.writeTo(output);
+	}
+
+	/**
+	 * Writes what is not in the index of the given unit.
+	 */
+	private void writeInstallableUnitBody(IInstallableUnit resolvedIU, IInstallableUnit iu) throws IOException {
+		if (iu instanceof IInstallableUnitPatch) {
+			IInstallableUnitPatch patch = (IInstallableUnitPatch) iu;
+			IRequirement[][] scope = patch.getApplicabilityScope();
+			writeInt(scope.length);
+			for (IRequirement[] requirements : scope)
+				writeRequirements(Arrays.asList(requirements));
+			List<IRequirementChange> changes = patch.getRequirementsChange();
+			writeInt(changes.size());
+			for (IRequirementChange change : changes) {
+				writeOptionalRequirement(change.applyOn());
+				writeOptionalRequirement(change.newValue());
+			}
+			writeOptionalRequirement(patch.getLifeCycle());
+		} else if (iu instanceof IInstallableUnitFragment) {
+			writeRequirements(((IInstallableUnitFragment) iu).getHost());
+		}
+
+		writeBoolean(iu.isSingleton());
+		writeUpdateDescriptor(resolvedIU.getUpdateDescriptor());
+		writeProperties(iu.getProperties());
+		writeRequirements(iu.getMetaRequirements());
+		writeRequirements(iu.getRequirements());
+		writeFilter(iu.getFilter());
+		writeArtifactKeys(iu.getArtifacts());
+		writeString(iu.getTouchpointType().getId());
+		writeVersion(iu.getTouchpointType().getVersion());
+		writeTouchpointData(iu.getTouchpointData());
+
+		Collection<ILicense> licenses = iu.getLicenses();
+		writeInt(licenses.size());
+		for (ILicense license : licenses) {
+			writeString(license.getLocation() == null ? null : license.getLocation().toString());
+			writeString(license.getBody());
+		}
+		ICopyright copyright = iu.getCopyright();
+		writeBoolean(copyright != null);
+		if (copyright != null) {
+			writeString(copyright.getLocation() == null ? null : copyright.getLocation().toString());
+			writeString(copyright.getBody());
+		}
+	}
+
+	private void writeUpdateDescriptor(IUpdateDescriptor descriptor) throws IOException {
+		writeBoolean(descriptor != null);
+		if (descriptor == null)
+			return;
+		Collection<IMatchExpression<IInstallableUnit>> updated = descriptor.getIUsBeingUpdated();
+		writeInt(updated.size());
+		for (IMatchExpression<IInstallableUnit> match : updated) {
+			if (RequiredCapability.isVersionRangeRequirement(match)) {
+				writeInt(REQUIREMENT_RANGE);
+				writeString(RequiredCapability.extractNamespace(match));
+				writeString(RequiredCapability.extractName(match));
+				writeVersionRange(RequiredCapability.extractRange(match));
+			} else {
+				writeInt(REQUIREMENT_MATCH);
+				writeMatchExpression(match);
+			}
+		}
+		writeInt(descriptor.getSeverity());
+		writeString(descriptor.getDescription());
+		writeString(descriptor.getLocation() == null ? null : descriptor.getLocation().toString());
+	}
+
+	private void writeProvidedCapabilities(Collection<IProvidedCapability> capabilities) throws IOException {
+		writeInt(capabilities.size());
+		for (IProvidedCapability capability : capabilities) {
+			writeString(capability.getNamespace());
+			writeString(capability.getName());
+			writeVersion(capability.getVersion());
+
+			Map<String, Object> properties = new HashMap<>(capability.getProperties());
+			properties.remove(capability.getNamespace());
+			properties.remove(IProvidedCapability.PROPERTY_VERSION);
+			writeInt(properties.size());
+			for (Map.Entry<String, Object> entry : properties.entrySet()) {
+				writeString(entry.getKey());
+				writeTypedValue(entry.getValue());
+			}
+		}
+	}
+
+	private void writeTypedValue(Object value) throws IOException {
+		if (value instanceof Collection<?>) {
+			Collection<?> collection = (Collection<?>) value;
+			writeInt(TYPE_LIST);
+			writeInt(collection.size());
+			for (Object element : collection)
+				writeTypedValue(element);
+		} else if (value instanceof Integer) {
+			writeInt(TYPE_INTEGER);
+			output.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			writeInt(TYPE_LONG);
+			output.writeLong((Long) value);
+		} else if (value instanceof Float) {
+			writeInt(TYPE_FLOAT);
+			output.writeFloat((Float) value);
+		} else if (value instanceof Double) {
+			writeInt(TYPE_DOUBLE);
+			output.writeDouble((Double) value);
+		} else if (value instanceof Byte) {
+			writeInt(TYPE_BYTE);
+			output.writeByte((Byte) value);
+		} else if (value instanceof Short) {
+			writeInt(TYPE_SHORT);
+			output.writeShort((Short) value);
+		} else if (value instanceof Character) {
+			writeInt(TYPE_CHARACTER);
+			output.writeChar((Character) value);
+		} else if (value instanceof Boolean) {
+			writeInt(TYPE_BOOLEAN);
+			writeBoolean((Boolean) value);
+		} else if (value instanceof Version) {
+			writeInt(TYPE_VERSION);
+			writeVersion((Version) value);
+		} else {
+			// Like in XML, anything else is read back as a string
+			writeInt(TYPE_STRING);
+			writeString(value == null ? null : value.toString());
+		}
+	}
+
+	private void writeRequirements(Collection<IRequirement> requirements) throws IOException {
+		writeInt(requirements.size());
+		for (IRequirement requirement : requirements)
+			writeRequirement(requirement);
+	}
+
+	private void writeOptionalRequirement(IRequirement requirement) throws IOException {
+		writeBoolean(requirement != null);
+		if (requirement != null)
+			writeRequirement(requirement);
+	}
+
+	private void writeRequirement(IRequirement requirement) throws IOException {
+		IMatchExpression<IInstallableUnit> match = requirement.getMatches();
+		// Same choice of representation as the XML format, so that both read back the same requirements
+		if (requirement.getMax() > 0 && RequiredCapability.isVersionRangeRequirement(match)) {
+			writeInt(REQUIREMENT_RANGE);
+			writeString(RequiredCapability.extractNamespace(match));
+			writeString(RequiredCapability.extractName(match));
+			writeVersionRange(RequiredCapability.extractRange(match));
+		} else if (RequiredPropertiesMatch.isPropertiesMatchRequirement(match)) {
+			writeInt(REQUIREMENT_PROPERTIES);
+			writeString(RequiredPropertiesMatch.extractNamespace(match));
+			writeString(RequiredPropertiesMatch.extractPropertiesMatch(match).toString());
+		} else {
+			writeInt(REQUIREMENT_MATCH);
+			writeMatchExpression(match);
+		}
+		writeInt(requirement.getMin());
+		writeInt(requirement.getMax());
+		writeBoolean(requirement.isGreedy());
+		writeFilter(requirement.getFilter());
+		writeString(requirement.getDescription());
+	}
+
+	private void writeMatchExpression(IMatchExpression<IInstallableUnit> match) throws IOException {
+		writeString(ExpressionUtil.getOperand(match).toString());
+		Object[] params = match.getParameters();
+		if (params.length > 0) {
+			IExpressionFactory factory = ExpressionUtil.getFactory();
+			IExpression[] constantArray = new IExpression[params.length];
+			for (int idx = 0; idx < params.length; ++idx)
+				constantArray[idx] = factory.constant(params[idx]);
+			writeString(factory.array(constantArray).toString());
+		} else
+			writeString(null);
+	}
+
+	private void writeFilter(IMatchExpression<IInstallableUnit> filter) throws IOException {
+		String trimmed = filter == null ? null : filter.getParameters()[0].toString().trim();
+		writeString(trimmed == null || trimmed.isEmpty() ? null : trimmed);
+	}
+
+	private void writeArtifactKeys(Collection<IArtifactKey> artifactKeys) throws IOException {
+		writeInt(artifactKeys.size());
+		for (IArtifactKey artifactKey : artifactKeys) {
+			writeString(artifactKey.getClassifier());
+			writeString(artifactKey.getId());
+			writeVersion(artifactKey.getVersion());
+		}
+	}
+
+	private void writeTouchpointData(Collection<ITouchpointData> touchpointData) throws IOException {
+		writeInt(touchpointData.size());
+		for (ITouchpointData data : touchpointData) {
+			Map<String, ITouchpointInstruction> instructions = data.getInstructions();
+			writeInt(instructions.size());
+			for (Map.Entry<String, ITouchpointInstruction> entry : instructions.entrySet()) {
+				writeString(entry.getKey());
+				writeString(entry.getValue().getImportAttribute());
+				writeString(entry.getValue().getBody());
+			}
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.repository.io;
+
+import java.io.*;
+import java.lang.ref.SoftReference;
+import java.util.*;
+import org.eclipse.equinox.internal.p2.core.helpers.CollectionUtils;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.internal.p2.metadata.TranslationSupport;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
+import org.eclipse.equinox.p2.metadata.expression.IMemberProvider;
+
+/**
+ * An installable unit of a binary metadata file of which only the id, the
+ * version and the provided capabilities are kept in memory, which is what the
+ * indexes of a repository need. The rest of the unit is decoded from the file
+ * when it is first needed, and kept as long as memory permits.
+ */
+public class LazyInstallableUnit implements IInstallableUnit, IMemberProvider {
+	/**
+	 * The binary file the units are decoded from. The file is expected to stay as
+	 * it was read, which is checked before decoding anything from it.
+	 */
+	static class Source {
+		final File file;
+		private final long length;
+		private final long lastModified;
+
+		Source(File file) {
+			this.file = file;
+			this.length = file.length();
+			this.lastModified = file.lastModified();
+		}
+
+		byte[] read(long offset, int count) throws IOException {
+			try (RandomAccessFile input = new RandomAccessFile(file, "r")) { //$NON-NLS-1$
+				if (input.length() != length || file.lastModified() != lastModified)
+					throw new IOException("The file was modified since it was loaded: " + file); //$NON-NLS-1$
+				byte[] result = new byte[count];
+				input.seek(offset);
+				input.readFully(result);
+				return result;
+			}
+		}
+	}
+
+	private final Source source;
+	private final long offset;
+	private final int length;
+	private final String id;
+	private final Version version;
+	private final IProvidedCapability[] providedCapabilities;
+
+	private volatile SoftReference<IInstallableUnit> decoded;
+	private volatile IInstallableUnit pinned;
+
+	LazyInstallableUnit(Source source, long offset, int length, String id, Version version, IProvidedCapability[] providedCapabilities) {
+		this.source = source;
+		this.offset = offset;
+		this.length = length;
+		this.id = id;
+		this.version = version;
+		this.providedCapabilities = providedCapabilities;
+	}
+
+	/**
+	 * Returns the complete unit, decoding it if it is not in memory.
+	 */
+	private IInstallableUnit unit() {
+		IInstallableUnit unit = pinned;
+		if (unit != null)
+			return unit;
+		SoftReference<IInstallableUnit> reference = decoded;
+		unit = reference == null ? null : reference.get();
+		if (unit == null) {
+			try {
+				unit = BinaryMetadataReader.readInstallableUnit(source.read(offset, length), BinaryConstants.UNIT_PLAIN, id, version, providedCapabilities);
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot read installable unit " + this + " from " + source.file, e); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			decoded = new SoftReference<>(unit);
+		}
+		return unit;
+	}
+
+	/**
+	 * Keeps the complete unit in memory if it is decoded from the given file,
+	 * which is about to be replaced or deleted.
+	 */
+	public void detachFrom(File file) {
+		if (pinned == null && source.file.equals(file))
+			pinned = unit();
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public Version getVersion() {
+		return version;
+	}
+
+	@Override
+	public Collection<IProvidedCapability> getProvidedCapabilities() {
+		return CollectionUtils.unmodifiableList(providedCapabilities);
+	}
+
+	@Override
+	public Collection<IArtifactKey> getArtifacts() {
+		return unit().getArtifacts();
+	}
+
+	@Override
+	public IMatchExpression<IInstallableUnit> getFilter() {
+		return unit().getFilter();
+	}
+
+	@Override
+	public Collection<IInstallableUnitFragment> getFragments() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Map<String, String> getProperties() {
+		return unit().getProperties();
+	}
+
+	@Override
+	public String getProperty(String key) {
+		return unit().getProperty(key);
+	}
+
+	@Override
+	public String getProperty(String key, String locale) {
+		return TranslationSupport.getInstance().getIUProperty(this, key, locale);
+	}
+
+	@Override
+	public Collection<IRequirement> getRequirements() {
+		return unit().getRequirements();
+	}
+
+	@Override
+	public Collection<IRequirement> getMetaRequirements() {
+		return unit().getMetaRequirements();
+	}
+
+	@Override
+	public Collection<ITouchpointData> getTouchpointData() {
+		return unit().getTouchpointData();
+	}
+
+	@Override
+	public ITouchpointType getTouchpointType() {
+		return unit().getTouchpointType();
+	}
+
+	@Override
+	public boolean isResolved() {
+		return false;
+	}
+
+	@Override
+	public boolean isSingleton() {
+		return unit().isSingleton();
+	}
+
+	@Override
+	public boolean satisfies(IRequirement candidate) {
+		return candidate.isMatch(this);
+	}
+
+	@Override
+	public IInstallableUnit unresolved() {
+		return this;
+	}
+
+	@Override
+	public IUpdateDescriptor getUpdateDescriptor() {
+		return unit().getUpdateDescriptor();
+	}
+
+	@Override
+	public Collection<ILicense> getLicenses() {
+		return unit().getLicenses();
+	}
+
+	@Override
+	public Collection<ILicense> getLicenses(String locale) {
+		return CollectionUtils.unmodifiableList(TranslationSupport.getInstance().getLicenses(this, locale));
+	}
+
+	@Override
+	public ICopyright getCopyright() {
+		return unit().getCopyright();
+	}
+
+	@Override
+	public ICopyright getCopyright(String locale) {
+		return TranslationSupport.getInstance().getCopyright(this, locale);
+	}
+
+	@Override
+	public Object getMember(String memberName) {
+		// Identity comparisons, as in InstallableUnit, since member names are interned
+		if (InstallableUnit.MEMBER_PROVIDED_CAPABILITIES == memberName)
+			return providedCapabilities;
+		if (InstallableUnit.MEMBER_ID == memberName)
+			return id;
+		if (InstallableUnit.MEMBER_VERSION == memberName)
+			return version;
+		return ((IMemberProvider) unit()).getMember(memberName);
+	}
+
+	@Override
+	public int compareTo(IInstallableUnit other) {
+		int cmp = id.compareTo(other.getId());
+		if (cmp == 0)
+			cmp = version.compareTo(other.getVersion());
+		return cmp;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof IInstallableUnit))
+			return false;
+		IInstallableUnit other = (IInstallableUnit) obj;
+		return id.equals(other.getId()) && version.equals(other.getVersion());
+	}
+
+	@Override
+	public int hashCode() {
+		// Same hash code as InstallableUnit, to which units are equal
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + id.hashCode();
+		result = prime * result + version.hashCode();
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return id + ' ' + version;
+	}
+}
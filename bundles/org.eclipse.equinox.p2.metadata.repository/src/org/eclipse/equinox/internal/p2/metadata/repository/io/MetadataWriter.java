@@ -14,9 +14,11 @@
  *******************************************************************************/
 package org.eclipse.equinox.internal.p2.metadata.repository.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.util.*;
+import java.util.concurrent.*;
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.core.helpers.LogHelper;
 import org.eclipse.equinox.internal.p2.metadata.RequiredCapability;
@@ -27,12 +29,43 @@ import org.eclipse.equinox.p2.metadata.*;
 import org.eclipse.equinox.p2.metadata.expression.*;
 
 public class MetadataWriter extends XMLWriter implements XMLConstants {
+	// Fewer units are written faster by a single writer
+	private static final int MIN_PARALLEL_UNITS = 1000;
+	private static final int CHUNK_UNITS = 250;
+
+	private boolean parallel = false;
 
 	public MetadataWriter(OutputStream output, ProcessingInstruction[] piElements) {
 		super(output, piElements);
 		// TODO: add a processing instruction for the metadata version
 	}
 
+	/**
+	 * Creates a writer for units written as content of the current element of the
+	 * given writer.
+	 */
+	protected MetadataWriter(MetadataWriter document, OutputStream output) {
+		super(document, output);
+	}
+
+	/**
+	 * Sets whether large lists of units are serialized on several threads, in
+	 * which case the units must be safe to read concurrently. The document is the
+	 * same either way.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Returns a writer of the units serialized on another thread, written in the
+	 * current element of this writer. Subclasses writing units differently must
+	 * return a writer of their own class.
+	 */
+	protected MetadataWriter createUnitWriter(OutputStream output) {
+		return new MetadataWriter(this, output);
+	}
+
 	/**
 	 * Writes a list of {@link IInstallableUnit}.
 	 * @param units An Iterator of {@link IInstallableUnit}.
@@ -45,11 +78,56 @@ public class MetadataWriter extends XMLWriter implements XMLConstants {
 
 		// The size is a bummer. Is it really needed? It forces the use of a collect
 		attribute(COLLECTION_SIZE_ATTRIBUTE, size);
-		while (units.hasNext())
-			writeInstallableUnit(units.next());
+		if (parallel && size >= MIN_PARALLEL_UNITS && ForkJoinPool.getCommonPoolParallelism() > 1)
+			writeInstallableUnitsInParallel(units);
+		else
+			while (units.hasNext())
+				writeInstallableUnit(units.next());
 		end(INSTALLABLE_UNITS_ELEMENT);
 	}
 
+	/**
+	 * Serializes chunks of units on the common pool, each in a buffer of its own,
+	 * and writes the buffers in order as they complete. Only a few chunks are
+	 * serialized ahead of the one written, which bounds the memory used.
+	 */
+	private void writeInstallableUnitsInParallel(Iterator<IInstallableUnit> units) {
+		int ahead = ForkJoinPool.getCommonPoolParallelism() * 2;
+		Deque<CompletableFuture<ByteArrayOutputStream>> chunks = new ArrayDeque<>(ahead);
+		while (units.hasNext()) {
+			List<IInstallableUnit> chunk = new ArrayList<>(CHUNK_UNITS);
+			while (units.hasNext() && chunk.size() < CHUNK_UNITS)
+				chunk.add(units.next());
+			chunks.add(CompletableFuture.supplyAsync(() -> writeChunk(chunk)));
+			if (chunks.size() > ahead)
+				writeFragment(join(chunks.remove()));
+		}
+		while (!chunks.isEmpty())
+			writeFragment(join(chunks.remove()));
+	}
+
+	private ByteArrayOutputStream writeChunk(List<IInstallableUnit> chunk) {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(chunk.size() * 2048);
+		MetadataWriter writer = createUnitWriter(buffer);
+		for (IInstallableUnit unit : chunk)
+			writer.writeInstallableUnit(unit);
+		writer.flush();
+		return buffer;
+	}
+
+	// fail as the sequential writer with a problem of a unit
+	private static ByteArrayOutputStream join(CompletableFuture<ByteArrayOutputStream> chunk) {
+		try {
+			return chunk.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw e;
+		}
+	}
+
 	protected void writeInstallableUnit(IInstallableUnit resolvedIU) {
 		IInstallableUnit iu = resolvedIU.unresolved();
 		start(INSTALLABLE_UNIT_ELEMENT);
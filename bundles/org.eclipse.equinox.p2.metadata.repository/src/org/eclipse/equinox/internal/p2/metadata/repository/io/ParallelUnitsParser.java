@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.repository.io;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import javax.xml.parsers.ParserConfigurationException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.MetadataFactory;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.osgi.framework.BundleContext;
+import org.xml.sax.*;
+
+/**
+ * Parses the units of a metadata document on several threads. A quick scan of
+ * the document finds where each unit element starts, the units are split in
+ * chunks that are parsed as documents of their own, and the results are merged
+ * in document order.
+ * <p>
+ * Only documents that can be split without changing their meaning are handled:
+ * UTF-8 documents without a DTD or namespace declarations. Chunks that do not
+ * parse cleanly make the whole parse fail, so that the caller can fall back to
+ * the sequential parser and report exactly the problems it reports.
+ * </p>
+ */
+public class ParallelUnitsParser {
+	// Smaller documents are parsed faster by a single parser
+	static final int MIN_UNITS = 1000;
+	private static final int MIN_CHUNK_UNITS = 250;
+
+	private static final byte[] CHUNK_START = "<?xml version='1.0' encoding='UTF-8'?><units>".getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$
+	private static final byte[] CHUNK_END = "</units>".getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$
+
+	private final byte[] document;
+	private final int unitsStart;
+	private final int unitsEnd;
+	// The offsets of the unit elements, followed by the offset of the end of the units element
+	private final int[] unitStarts;
+
+	private ParallelUnitsParser(byte[] document, int unitsStart, int unitsEnd, int[] unitStarts) {
+		this.document = document;
+		this.unitsStart = unitsStart;
+		this.unitsEnd = unitsEnd;
+		this.unitStarts = unitStarts;
+	}
+
+	/**
+	 * Returns a parser for the units element of the given document, or
+	 * <code>null</code> if the units of the document are better parsed
+	 * sequentially.
+	 */
+	public static ParallelUnitsParser split(byte[] document) {
+		int length = document.length;
+		if (length >= 2 && (document[0] == (byte) 0xFE || document[0] == (byte) 0xFF))
+			// UTF-16
+			return null;
+		int depth = 0;
+		int unitsStart = -1;
+		int[] unitStarts = new int[1024];
+		int unitCount = 0;
+		int pos = 0;
+		while (true) {
+			int lt = indexOf(document, "<", pos); //$NON-NLS-1$
+			if (lt < 0 || lt + 1 >= length)
+				return null;
+			if (startsWith(document, lt, "<!--")) { //$NON-NLS-1$
+				pos = skipPast(document, "-->", lt + 4); //$NON-NLS-1$
+			} else if (startsWith(document, lt, "<![CDATA[")) { //$NON-NLS-1$
+				pos = skipPast(document, "]]>", lt + 9); //$NON-NLS-1$
+			} else if (startsWith(document, lt, "<?")) { //$NON-NLS-1$
+				pos = skipPast(document, "?>", lt + 2); //$NON-NLS-1$
+				if (pos > 0 && startsWith(document, lt, "<?xml ") && !isUTF8Declaration(document, lt, pos)) //$NON-NLS-1$
+					return null;
+			} else if (startsWith(document, lt, "<!")) { //$NON-NLS-1$
+				// A DTD may declare entities that the chunks would not know
+				return null;
+			} else if (document[lt + 1] == '/') {
+				depth--;
+				pos = skipPast(document, ">", lt + 2); //$NON-NLS-1$
+				if (unitsStart >= 0 && depth == 1) {
+					if (pos < 0 || unitCount < MIN_UNITS)
+						return null;
+					int[] starts = Arrays.copyOf(unitStarts, unitCount + 1);
+					starts[unitCount] = lt;
+					return new ParallelUnitsParser(document, unitsStart, pos, starts);
+				}
+			} else {
+				int end = endOfTag(document, lt + 1);
+				if (end < 0)
+					return null;
+				boolean empty = document[end - 1] == '/';
+				// Namespaces declared by the root or the units element would not apply to the chunks
+				if (depth < 2 && indexOf(document, "xmlns", lt, end) >= 0) //$NON-NLS-1$
+					return null;
+				if (depth == 1 && unitsStart < 0 && isElement(document, lt, XMLConstants.INSTALLABLE_UNITS_ELEMENT)) {
+					if (empty)
+						return null;
+					unitsStart = lt;
+				} else if (depth == 2 && unitsStart >= 0 && isElement(document, lt, XMLConstants.INSTALLABLE_UNIT_ELEMENT)) {
+					if (unitCount + 1 == unitStarts.length)
+						unitStarts = Arrays.copyOf(unitStarts, unitStarts.length * 2);
+					unitStarts[unitCount++] = lt;
+				}
+				if (!empty)
+					depth++;
+				pos = end + 1;
+			}
+			if (pos < 0)
+				return null;
+		}
+	}
+
+	/**
+	 * Returns whether the units element starting in the given start of a document
+	 * announces enough units for the document to be worth splitting.
+	 */
+	public static boolean announcesManyUnits(byte[] head) {
+		return getAnnouncedUnitCount(head) >= MIN_UNITS;
+	}
+
+	/**
+	 * Returns the number of units given by the size attribute of the units
+	 * element in the given start of a document, or <code>-1</code> if the units
+	 * element does not start there or has no such attribute.
+	 */
+	private static int getAnnouncedUnitCount(byte[] head) {
+		for (int lt = indexOf(head, "<", 0); lt >= 0; lt = indexOf(head, "<", lt + 1)) { //$NON-NLS-1$ //$NON-NLS-2$
+			if (!isElement(head, lt, XMLConstants.INSTALLABLE_UNITS_ELEMENT))
+				continue;
+			int end = endOfTag(head, lt + 1);
+			if (end < 0)
+				return -1;
+			int size = indexOf(head, XMLConstants.COLLECTION_SIZE_ATTRIBUTE + '=', lt, end);
+			if (size < 0)
+				return -1;
+			int count = 0;
+			// The attribute value starts after the quote
+			for (int i = size + XMLConstants.COLLECTION_SIZE_ATTRIBUTE.length() + 2; i < end && head[i] >= '0' && head[i] <= '9'; i++) {
+				if (count >= Integer.MAX_VALUE / 10)
+					return Integer.MAX_VALUE;
+				count = count * 10 + head[i] - '0';
+			}
+			return count;
+		}
+		return -1;
+	}
+
+	private static boolean startsWith(byte[] document, int offset, String prefix) {
+		if (offset + prefix.length() > document.length)
+			return false;
+		for (int i = 0; i < prefix.length(); i++)
+			if (document[offset + i] != prefix.charAt(i))
+				return false;
+		return true;
+	}
+
+	private static int indexOf(byte[] document, String text, int from) {
+		return indexOf(document, text, from, document.length);
+	}
+
+	private static int indexOf(byte[] document, String text, int from, int to) {
+		byte first = (byte) text.charAt(0);
+		for (int i = from; i <= to - text.length(); i++)
+			if (document[i] == first && startsWith(document, i, text))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Returns the offset following the given text, or -1 if it is not found.
+	 */
+	private static int skipPast(byte[] document, String text, int from) {
+		int index = indexOf(document, text, from);
+		return index < 0 ? -1 : index + text.length();
+	}
+
+	/**
+	 * Returns the offset of the '>' ending the tag, skipping quoted attribute values.
+	 */
+	private static int endOfTag(byte[] document, int from) {
+		for (int i = from; i < document.length; i++) {
+			byte b = document[i];
+			if (b == '>')
+				return i;
+			if (b == '"' || b == '\'') {
+				while (++i < document.length && document[i] != b) {
+					// skip the attribute value
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isElement(byte[] document, int lt, String name) {
+		int next = lt + 1 + name.length();
+		if (!startsWith(document, lt + 1, name) || next >= document.length)
+			return false;
+		byte b = document[next];
+		return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	private static boolean isUTF8Declaration(byte[] document, int start, int end) {
+		String declaration = new String(document, start, end - start, StandardCharsets.US_ASCII);
+		int encoding = declaration.indexOf("encoding"); //$NON-NLS-1$
+		if (encoding < 0)
+			return true;
+		String rest = declaration.substring(encoding + 8).replace('"', '\'');
+		int quote = rest.indexOf('\'');
+		return quote >= 0 && rest.regionMatches(true, quote + 1, "UTF-8'", 0, 6); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the offset of the units element.
+	 */
+	public int getUnitsStart() {
+		return unitsStart;
+	}
+
+	/**
+	 * Returns the offset following the end of the units element.
+	 */
+	public int getUnitsEnd() {
+		return unitsEnd;
+	}
+
+	/**
+	 * Parses the units, in document order, or returns <code>null</code> if a chunk
+	 * could not be parsed without problems.
+	 */
+	public IInstallableUnit[] parse(BundleContext context, String bundleId, IProgressMonitor monitor) throws IOException {
+		int unitCount = unitStarts.length - 1;
+		int chunkCount = Math.max(1, Math.min(unitCount / MIN_CHUNK_UNITS, ForkJoinPool.getCommonPoolParallelism() * 4));
+		// The parsers are created upfront since the parser factory is shared
+		ChunkParser[] parsers = new ChunkParser[chunkCount];
+		try {
+			for (int i = 0; i < chunkCount; i++) {
+				parsers[i] = new ChunkParser(context, bundleId, monitor);
+				parsers[i].createReader();
+			}
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+
+		IInstallableUnit[][] chunks = new IInstallableUnit[chunkCount][];
+		IntStream.range(0, chunkCount).parallel().forEach(i -> {
+			int from = unitStarts[(int) ((long) unitCount * i / chunkCount)];
+			int to = unitStarts[(int) ((long) unitCount * (i + 1) / chunkCount)];
+			chunks[i] = parsers[i].parse(new SequenceInputStream(Collections.enumeration(Arrays.asList(//
+					new ByteArrayInputStream(CHUNK_START), //
+					new ByteArrayInputStream(document, from, to - from), //
+					new ByteArrayInputStream(CHUNK_END)))));
+		});
+
+		IInstallableUnit[] result = new IInstallableUnit[unitCount];
+		int size = 0;
+		for (IInstallableUnit[] chunk : chunks) {
+			if (chunk == null)
+				return null;
+			System.arraycopy(chunk, 0, result, size, chunk.length);
+			size += chunk.length;
+		}
+		return size == unitCount ? result : Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Parses a chunk of units wrapped in a units element.
+	 */
+	private static class ChunkParser extends MetadataParser {
+		private final List<InstallableUnitDescription> units = new ArrayList<>();
+
+		ChunkParser(BundleContext context, String bundleId, IProgressMonitor monitor) {
+			super(context, bundleId);
+			setProgressMonitor(monitor);
+		}
+
+		void createReader() throws ParserConfigurationException, SAXException {
+			getParser();
+		}
+
+		IInstallableUnit[] parse(InputStream stream) {
+			try {
+				xmlReader.setContentHandler(new DocHandler(INSTALLABLE_UNITS_ELEMENT, new ChunkHandler()));
+				xmlReader.parse(new InputSource(stream));
+			} catch (SAXException e) {
+				if (e.getException() instanceof OperationCanceledException)
+					throw (OperationCanceledException) e.getException();
+				return null;
+			} catch (IOException e) {
+				return null;
+			}
+			if (!getStatus().isOK())
+				return null;
+			IInstallableUnit[] result = new IInstallableUnit[units.size()];
+			int i = 0;
+			for (InstallableUnitDescription desc : units)
+				result[i++] = MetadataFactory.createInstallableUnit(desc);
+			return result;
+		}
+
+		private final class ChunkHandler extends RootHandler {
+			@Override
+			protected void handleRootAttributes(Attributes attributes) {
+				// Nothing to do
+			}
+
+			@Override
+			public void startElement(String name, Attributes attributes) {
+				if (name.equals(INSTALLABLE_UNIT_ELEMENT)) {
+					new InstallableUnitHandler(this, attributes, units);
+				} else {
+					invalidElement(name, attributes);
+				}
+			}
+		}
+
+		@Override
+		protected Object getRootObject() {
+			return null;
+		}
+
+		@Override
+		protected String getErrorMessage() {
+			return null;
+		}
+	}
+}
@@ -104,7 +104,7 @@ class EnumDefinition implements Comparable<EnumDefinition>, Serializable {
 	private static final long serialVersionUID = 7237775466362654473L;
 	private static final Map<EnumDefinition, EnumSegment[]> enumDefinitionCache = new HashMap<>();
 
-	private static EnumSegment[] getEnumSegments(EnumDefinition ed) {
+	private static synchronized EnumSegment[] getEnumSegments(EnumDefinition ed) {
 		EnumSegment[] values = enumDefinitionCache.get(ed);
 		if (values == null) {
 			int ordinal = ed.identifiers.length;
@@ -116,7 +116,7 @@ class EnumDefinition implements Comparable<EnumDefinition>, Serializable {
 		return values;
 	}
 
-	static EnumDefinition getEnumDefinition(List<List<String>> identifiers) {
+	static synchronized EnumDefinition getEnumDefinition(List<List<String>> identifiers) {
 		nextEd: for (EnumDefinition ed : enumDefinitionCache.keySet()) {
 			String[][] defs = ed.identifiers;
 			int ordinal = defs.length;
@@ -247,6 +247,13 @@ public class IUMap implements Cloneable {
 	 * Replace all instances of the IInstallableUnits in the receiver
 	 * with the shared IInstallableUnits from the provided iuPool.
 	 * This operation is a no-op if iuPool is null.
+	 * <p>
+	 * Maps can be compressed by concurrent threads when they share a thread safe
+	 * pool, such as a {@link org.eclipse.equinox.p2.core.ConcurrentWeakPool}.
+	 * The arrays of units, which are shared with the clones of the map, are
+	 * replaced rather than modified, so compressing a clone does not change the
+	 * map it was cloned from.
+	 * </p>
 	 * 
 	 * @param iuPool an IPool containing the shared IInstallableUnits
 	 */
@@ -261,9 +268,11 @@ public class IUMap implements Cloneable {
 			Object value = entry.getValue();
 			if (value.getClass().isArray()) {
 				IInstallableUnit[] array = (IInstallableUnit[]) value;
+				IInstallableUnit[] compressed = new IInstallableUnit[array.length];
 				for (int i = 0; i < array.length; i++) {
-					array[i] = iuPool.add(array[i]);
+					compressed[i] = iuPool.add(array[i]);
 				}
+				entry.setValue(compressed);
 			} else {
 				entry.setValue(iuPool.add((IInstallableUnit) value));
 			}
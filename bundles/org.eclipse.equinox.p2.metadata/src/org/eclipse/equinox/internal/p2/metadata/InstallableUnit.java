@@ -16,11 +16,11 @@ package org.eclipse.equinox.internal.p2.metadata;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.eclipse.equinox.internal.p2.core.helpers.CollectionUtils;
 import org.eclipse.equinox.internal.p2.core.helpers.OrderedProperties;
+import org.eclipse.equinox.internal.p2.metadata.expression.BoundedCache;
 import org.eclipse.equinox.p2.metadata.IArtifactKey;
 import org.eclipse.equinox.p2.metadata.ICopyright;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
@@ -40,13 +40,7 @@ import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
 import org.eclipse.equinox.p2.metadata.expression.IMemberProvider;
 
 public class InstallableUnit implements IInstallableUnit, IMemberProvider {
-	@SuppressWarnings("serial")
-	private static final Map<IFilterExpression, IMatchExpression<IInstallableUnit>> filterCache = new LinkedHashMap<>() {
-		@Override
-		public boolean removeEldestEntry(Map.Entry<IFilterExpression, IMatchExpression<IInstallableUnit>> expr) {
-			return size() > 64;
-		}
-	};
+	private static final BoundedCache<IFilterExpression, IMatchExpression<IInstallableUnit>> filterCache = new BoundedCache<>(4096);
 
 	private static final OrderedProperties NO_PROPERTIES = new OrderedProperties();
 	private static final IProvidedCapability[] NO_PROVIDES = new IProvidedCapability[0];
@@ -279,15 +273,17 @@ public class InstallableUnit implements IInstallableUnit, IMemberProvider {
 		if (filter == null)
 			return null;
 
-		synchronized (filterCache) {
-			IMatchExpression<IInstallableUnit> matchExpr = filterCache.get(filter);
-			if (matchExpr != null)
-				return matchExpr;
-
-			matchExpr = ExpressionUtil.getFactory().matchExpression(filterWrap, filter);
-			filterCache.put(filter, matchExpr);
+		IMatchExpression<IInstallableUnit> matchExpr = filterCache.get(filter);
+		if (matchExpr != null)
 			return matchExpr;
-		}
+		return filterCache.put(filter, ExpressionUtil.getFactory().matchExpression(filterWrap, filter));
+	}
+
+	/**
+	 * Returns the cache of the match expressions of parsed filters.
+	 */
+	public static BoundedCache<IFilterExpression, IMatchExpression<IInstallableUnit>> getFilterCache() {
+		return filterCache;
 	}
 
 	/*
@@ -394,6 +390,30 @@ public class InstallableUnit implements IInstallableUnit, IMemberProvider {
 		}
 	}
 
+	/**
+	 * Replaces the parts of this unit by the equal parts shared through the given
+	 * compactor.
+	 */
+	void compact(InstallableUnitCompactor compactor) {
+		id = compactor.share(id);
+		if (properties != null) {
+			for (Map.Entry<String, String> entry : properties.entrySet())
+				entry.setValue(compactor.share(entry.getValue()));
+		}
+		for (int i = 0; i < providedCapabilities.length; i++)
+			providedCapabilities[i] = compactor.share(providedCapabilities[i]);
+		for (int i = 0; i < requires.length; i++)
+			requires[i] = compactor.share(requires[i]);
+		for (int i = 0; i < metaRequires.length; i++)
+			metaRequires[i] = compactor.share(metaRequires[i]);
+		for (int i = 0; i < touchpointData.length; i++)
+			touchpointData[i] = compactor.share(touchpointData[i]);
+		for (int i = 0; i < licenses.length; i++)
+			licenses[i] = compactor.share(licenses[i]);
+		if (copyright != null)
+			copyright = compactor.share(copyright);
+	}
+
 	@Override
 	public Object getMember(String memberName) {
 		// It is OK to use identity comparisons here since
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata;
+
+import java.util.Objects;
+import org.eclipse.equinox.p2.core.IPool;
+import org.eclipse.equinox.p2.core.WeakPool;
+import org.eclipse.equinox.p2.metadata.*;
+
+/**
+ * Makes installable units share the equal parts they are made of, such as the
+ * requirements and capabilities most units of a repository have in common,
+ * their licenses and touchpoint data, and the strings of their properties.
+ * <p>
+ * The shared parts are kept in weak pools, so units compacted by the same
+ * compactor share them across repositories as long as any of the units is
+ * alive. Units are compacted in place and should be compacted before they are
+ * made available to other threads, usually right after they have been read.
+ * </p>
+ * Instances are safe for use by concurrent threads.
+ */
+public class InstallableUnitCompactor {
+	private static final InstallableUnitCompactor DEFAULT = new InstallableUnitCompactor();
+
+	private final IPool<String> strings = new WeakPool<>();
+	private final IPool<IProvidedCapability> capabilities = new WeakPool<>();
+	private final IPool<IRequirement> requirements = new WeakPool<>();
+	private final IPool<ITouchpointData> touchpointData = new WeakPool<>();
+	private final IPool<ILicense> licenses = new WeakPool<>();
+	private long sharedCount;
+
+	/**
+	 * Returns the compactor shared by all the repositories.
+	 */
+	public static InstallableUnitCompactor getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Compacts the given installable units. Units of other implementations are
+	 * left as they are.
+	 */
+	public synchronized void compact(IInstallableUnit[] units) {
+		for (IInstallableUnit unit : units) {
+			if (unit instanceof InstallableUnit)
+				((InstallableUnit) unit).compact(this);
+		}
+	}
+
+	/**
+	 * Returns the number of parts replaced by an equal shared part so far.
+	 */
+	public synchronized long getSharedCount() {
+		return sharedCount;
+	}
+
+	String share(String string) {
+		return shared(string, strings.add(string));
+	}
+
+	IProvidedCapability share(IProvidedCapability capability) {
+		return shared(capability, capabilities.add(capability));
+	}
+
+	IRequirement share(IRequirement requirement) {
+		// requirements are equal regardless of their description
+		if (requirement.getDescription() != null)
+			return requirement;
+		IRequirement pooled = requirements.add(requirement);
+		return pooled.getClass() == requirement.getClass() ? shared(requirement, pooled) : requirement;
+	}
+
+	ITouchpointData share(ITouchpointData data) {
+		return shared(data, touchpointData.add(data));
+	}
+
+	ILicense share(ILicense license) {
+		// licenses are equal when their bodies are, whatever their location
+		ILicense pooled = licenses.add(license);
+		return Objects.equals(pooled.getLocation(), license.getLocation()) ? shared(license, pooled) : license;
+	}
+
+	ICopyright share(ICopyright copyright) {
+		String body = copyright.getBody();
+		String pooled = share(body);
+		return pooled == body ? copyright : new Copyright(copyright.getLocation(), pooled);
+	}
+
+	private <T> T shared(T original, T pooled) {
+		if (pooled != original)
+			sharedCount++;
+		return pooled;
+	}
+}
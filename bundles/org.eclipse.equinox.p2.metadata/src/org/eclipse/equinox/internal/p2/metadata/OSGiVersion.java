@@ -99,6 +99,13 @@ public class OSGiVersion extends BasicVersion {
 
 	@Override
 	public int compareTo(Version v) {
+		if (v == this)
+			return 0;
+		// the bounds of open ranges, compared without building vectors
+		if (v == Version.MAX_VERSION)
+			return -1;
+		if (v == Version.emptyVersion)
+			return 1;
 		int result;
 		if (!(v instanceof OSGiVersion)) {
 			BasicVersion ov = (BasicVersion) v;
@@ -274,6 +274,13 @@ public class OmniVersion extends BasicVersion {
 
 	@Override
 	public int compareTo(Version v) {
+		if (v instanceof OSGiVersion) {
+			// the bounds of open ranges, compared without building vectors
+			if (this == maximumVersion)
+				return 1;
+			if (this == minimumVersion)
+				return -1;
+		}
 		BasicVersion ov = (BasicVersion) v;
 		return VersionVector.compare(vector, padValue, ov.getVector(), ov.getPad());
 	}
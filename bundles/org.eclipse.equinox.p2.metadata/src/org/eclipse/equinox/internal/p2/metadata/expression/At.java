@@ -45,14 +45,20 @@ class At extends Binary {
 				}
 				if (InstallableUnit.MEMBER_PROPERTIES == name) {
 					// Avoid full copy of the properties map just to get one member
-					return ((IInstallableUnit) instance).getProperty((String) rhs.evaluate(context));
+					Object key = rhs.evaluate(context);
+					if (key instanceof String)
+						return ((IInstallableUnit) instance).getProperty((String) key);
+					return evaluate(lm.invoke(instance), key);
 				}
 			}
 			lval = lm.invoke(instance);
 		} else
 			lval = lhs.evaluate(context);
 
-		Object rval = rhs.evaluate(context);
+		return evaluate(lval, rhs.evaluate(context));
+	}
+
+	static Object evaluate(Object lval, Object rval) {
 		if (lval == null)
 			throw new IllegalArgumentException("Unable to use [] on null"); //$NON-NLS-1$
 
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.expression;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of parsed expressions that can be used by concurrent threads without
+ * locking, holding at most about a given number of entries.
+ * <p>
+ * Lookups never block. When an addition makes the cache exceed its size, one
+ * of the adding threads sweeps it and forgets the entries that were not used
+ * since the previous sweep, as a clock algorithm does, until a quarter of the
+ * entries are gone. Other threads keep using the cache meanwhile.
+ * </p>
+ * @param <K> the type of the keys, usually the text of the expression
+ * @param <V> the type of the cached expressions
+ */
+public final class BoundedCache<K, V> {
+	private static final class Entry<V> {
+		final V value;
+		volatile boolean used;
+
+		Entry(V value) {
+			this.value = value;
+		}
+	}
+
+	private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+	private final int maxSize;
+	private final AtomicBoolean sweeping = new AtomicBoolean();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public BoundedCache(int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("Cache size must be positive"); //$NON-NLS-1$
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the value cached for the given key, or <code>null</code> if there
+	 * is none.
+	 */
+	public V get(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		if (!entry.used)
+			entry.used = true;
+		return entry.value;
+	}
+
+	/**
+	 * Caches the given value for the given key unless another value was cached
+	 * for it meanwhile, and returns the value that is cached.
+	 */
+	public V put(K key, V value) {
+		Entry<V> existing = entries.putIfAbsent(key, new Entry<>(value));
+		if (existing != null)
+			return existing.value;
+		if (entries.size() > maxSize)
+			sweep();
+		return value;
+	}
+
+	private void sweep() {
+		if (!sweeping.compareAndSet(false, true))
+			return;
+		try {
+			int target = maxSize - maxSize / 4;
+			// entries used since the last sweep get a second chance, unless
+			// they keep being used while we go round twice
+			for (int round = 0; entries.size() > target; ++round) {
+				for (Iterator<Entry<V>> itor = entries.values().iterator(); itor.hasNext() && entries.size() > target;) {
+					Entry<V> entry = itor.next();
+					if (entry.used && round < 2)
+						entry.used = false;
+					else {
+						itor.remove();
+						evictions.increment();
+					}
+				}
+			}
+		} finally {
+			sweeping.set(false);
+		}
+	}
+
+	/**
+	 * Forgets all the cached values, keeping the statistics.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Returns the number of lookups that found a cached value.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that found no cached value.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of values forgotten to keep the cache within its size.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "BoundedCache [size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]"; //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$//$NON-NLS-4$//$NON-NLS-5$
+	}
+}
@@ -14,6 +14,7 @@
 package org.eclipse.equinox.internal.p2.metadata.expression;
 
 import java.util.Collection;
+import org.eclipse.equinox.p2.metadata.Version;
 import org.eclipse.equinox.p2.metadata.expression.IEvaluationContext;
 
 /**
@@ -36,29 +37,31 @@ final class Compare extends Binary {
 
 	@Override
 	public Object evaluate(IEvaluationContext context) {
-		Object lhsVal = lhs.evaluate(context);
-		Object rhsVal = rhs.evaluate(context);
+		return evaluate(lhs.evaluate(context), rhs.evaluate(context), compareLess, equalOK);
+	}
 
+	static Boolean evaluate(Object lhsVal, Object rhsVal, boolean compareLess, boolean equalOK) {
+		// Versions of the same kind are the common case, and a failing instanceof on an interface is not cheap
+		if (lhsVal instanceof Version && rhsVal != null && lhsVal.getClass() == rhsVal.getClass()) {
+			int cmpResult = ((Version) lhsVal).compareTo((Version) rhsVal);
+			return Boolean.valueOf(cmpResult == 0 ? equalOK : (cmpResult < 0 ? compareLess : !compareLess));
+		}
 		// Handle collections as per the OSGi LDAP spec
 		if (lhsVal instanceof Collection<?>) {
 			for (Object lhsItem : (Collection<?>) lhsVal) {
 				int cmpResult = CoercingComparator.coerceAndCompare(lhsItem, rhsVal);
-
 				if (cmpResult == 0) {
 					return equalOK;
 				}
-
 				if (cmpResult < 0 && compareLess) {
 					return true;
 				}
-
 				if (!compareLess) {
 					return true;
 				}
 			}
 			return false;
 		}
-
 		int cmpResult = CoercingComparator.coerceAndCompare(lhsVal, rhsVal);
 		return Boolean.valueOf(cmpResult == 0 ? equalOK : (cmpResult < 0 ? compareLess : !compareLess));
 	}
@@ -29,21 +29,23 @@ final class Equals extends Binary {
 
 	@Override
 	public Object evaluate(IEvaluationContext context) {
-		Object lhsVal = lhs.evaluate(context);
-		Object rhsVal = rhs.evaluate(context);
+		return evaluate(lhs.evaluate(context), rhs.evaluate(context), negate);
+	}
 
+	static Boolean evaluate(Object lhsVal, Object rhsVal, boolean negate) {
+		// Strings are the common case, and a failing instanceof on an interface is not cheap
+		if (lhsVal instanceof String && rhsVal instanceof String)
+			return Boolean.valueOf(lhsVal.equals(rhsVal) != negate);
 		// Handle collections as per the OSGi LDAP spec
 		if (lhsVal instanceof Collection<?>) {
 			for (Object lhsItem : (Collection<?>) lhsVal) {
 				boolean eq = CoercingComparator.coerceAndEquals(lhsItem, rhsVal);
-
 				if (eq && !negate) {
 					return true;
 				}
 			}
 			return negate;
 		}
-
 		boolean eq = CoercingComparator.coerceAndEquals(lhsVal, rhsVal);
 		return negate ? !eq : eq;
 	}
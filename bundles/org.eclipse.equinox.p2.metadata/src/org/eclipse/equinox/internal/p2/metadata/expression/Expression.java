@@ -34,6 +34,10 @@ public abstract class Expression implements IExpression, Comparable<Expression>,
 
 	static final Expression[] emptyArray = new Expression[0];
 
+	private static final Object NOT_COMPILED = new Object();
+
+	private transient volatile Object compiled;
+
 	public static void appendOperand(StringBuffer bld, Variable rootVariable, Expression operand, int priority) {
 		if (priority < operand.getPriority()) {
 			bld.append('(');
@@ -513,4 +517,21 @@ public abstract class Expression implements IExpression, Comparable<Expression>,
 	int countAccessToEverything() {
 		return 0;
 	}
+
+	/**
+	 * Returns the compiled form of this boolean expression, compiling it on
+	 * first use, or <code>null</code> if it cannot be compiled. The compiled
+	 * form is kept with the expression, so match expressions sharing a
+	 * predicate with different parameters also share its compiled form.
+	 */
+	ExpressionCompiler.CompiledExpression getCompiled() {
+		Object c = compiled;
+		if (c == null) {
+			c = ExpressionCompiler.compile(this);
+			if (c == null)
+				c = NOT_COMPILED;
+			compiled = c;
+		}
+		return c == NOT_COMPILED ? null : (ExpressionCompiler.CompiledExpression) c;
+	}
 }
@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.expression;
+
+import java.util.*;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.internal.p2.metadata.expression.Member.DynamicMember;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.expression.IMemberProvider;
+
+/**
+ * Compiles boolean expressions into trees of lambdas that are evaluated without
+ * an {@link org.eclipse.equinox.p2.metadata.expression.IEvaluationContext}.
+ * <p>
+ * Variables are resolved once, at compile time, to slots of an array holding
+ * their values, parameters are read straight from the parameter array, and
+ * arrays such as the provided capabilities of units are walked without
+ * iterators. Each compiled node yields exactly what the node it was compiled
+ * from yields.
+ * </p><p>
+ * Only the expressions used in match expressions and LDAP filters are
+ * compiled. An expression using anything else, such as functions, indexes or
+ * managed properties, is not compiled and must be interpreted.
+ * </p>
+ */
+public final class ExpressionCompiler {
+	/**
+	 * A compiled expression.
+	 */
+	public static final class CompiledExpression {
+		private final Evaluator evaluator;
+		private final int variableCount;
+
+		CompiledExpression(Evaluator evaluator, int variableCount) {
+			this.evaluator = evaluator;
+			this.variableCount = variableCount;
+		}
+
+		/**
+		 * Returns <code>true</code> if the expression yields {@link Boolean#TRUE}
+		 * when <code>this</code> is the given value.
+		 */
+		public boolean isMatch(Object value, Object[] parameters) {
+			Object[] variables = new Object[variableCount];
+			variables[0] = value;
+			return Boolean.TRUE == evaluator.evaluate(variables, parameters);
+		}
+	}
+
+	@FunctionalInterface
+	interface Evaluator {
+		Object evaluate(Object[] variables, Object[] parameters);
+	}
+
+	/**
+	 * Returns the compiled form of the given expression, or <code>null</code>
+	 * if it uses something that cannot be compiled.
+	 */
+	public static CompiledExpression compile(Expression expression) {
+		ExpressionCompiler compiler = new ExpressionCompiler();
+		compiler.slots.put(ExpressionFactory.THIS, Integer.valueOf(compiler.variableCount++));
+		Evaluator evaluator = compiler.compileExpression(expression);
+		return evaluator == null ? null : new CompiledExpression(evaluator, compiler.variableCount);
+	}
+
+	private final Map<Variable, Integer> slots = new IdentityHashMap<>();
+	private int variableCount;
+
+	private ExpressionCompiler() {
+		// use compile
+	}
+
+	private Evaluator compileExpression(Expression expression) {
+		Class<?> c = expression.getClass();
+		if (c == Literal.class) {
+			Object value = ((Literal) expression).value;
+			return (variables, parameters) -> value;
+		}
+		if (c == Parameter.class) {
+			int position = ((Parameter) expression).position;
+			return (variables, parameters) -> parameters[position];
+		}
+		if (c == Variable.class) {
+			Integer slot = slots.get(expression);
+			if (slot == null)
+				return null;
+			int idx = slot.intValue();
+			return (variables, parameters) -> variables[idx];
+		}
+		if (c == DynamicMember.class)
+			return compileMember((DynamicMember) expression);
+		if (c == And.class || c == Or.class)
+			return compileNAry((NAry) expression);
+		if (c == Not.class) {
+			Evaluator operand = compileExpression(((Not) expression).operand);
+			if (operand == null)
+				return null;
+			return (variables, parameters) -> Boolean.valueOf(operand.evaluate(variables, parameters) != Boolean.TRUE);
+		}
+		if (c == Equals.class || c == Compare.class || c == Matches.class || c == At.class)
+			return compileBinary((Binary) expression);
+		if (c == Exists.class || c == All.class)
+			return compileCollectionFilter((CollectionFilter) expression);
+		return null;
+	}
+
+	private Evaluator compileMember(DynamicMember member) {
+		String name = member.getName();
+		if (member.operand.getClass() == Variable.class && slots.containsKey(member.operand)) {
+			// members of variables are the common case, read the slot directly
+			int idx = slots.get(member.operand).intValue();
+			return (variables, parameters) -> getMember(variables[idx], name, member);
+		}
+		Evaluator operand = compileExpression(member.operand);
+		if (operand == null)
+			return null;
+		return (variables, parameters) -> getMember(operand.evaluate(variables, parameters), name, member);
+	}
+
+	private static Object getMember(Object self, String name, DynamicMember member) {
+		return self instanceof IMemberProvider ? ((IMemberProvider) self).getMember(name) : member.invoke(self);
+	}
+
+	private Evaluator compileNAry(NAry expression) {
+		Evaluator[] operands = new Evaluator[expression.operands.length];
+		for (int idx = 0; idx < operands.length; ++idx) {
+			operands[idx] = compileExpression(expression.operands[idx]);
+			if (operands[idx] == null)
+				return null;
+		}
+		if (expression instanceof And) {
+			if (operands.length == 2) {
+				Evaluator first = operands[0];
+				Evaluator second = operands[1];
+				return (variables, parameters) -> Boolean.valueOf(first.evaluate(variables, parameters) == Boolean.TRUE && second.evaluate(variables, parameters) == Boolean.TRUE);
+			}
+			return (variables, parameters) -> {
+				for (Evaluator operand : operands)
+					if (operand.evaluate(variables, parameters) != Boolean.TRUE)
+						return Boolean.FALSE;
+				return Boolean.TRUE;
+			};
+		}
+		return (variables, parameters) -> {
+			for (Evaluator operand : operands)
+				if (operand.evaluate(variables, parameters) == Boolean.TRUE)
+					return Boolean.TRUE;
+			return Boolean.FALSE;
+		};
+	}
+
+	private Evaluator compileBinary(Binary expression) {
+		if (expression instanceof At && expression.lhs instanceof DynamicMember)
+			return compileMemberAt((At) expression);
+		Evaluator lhs = compileExpression(expression.lhs);
+		Evaluator rhs = compileExpression(expression.rhs);
+		if (lhs == null || rhs == null)
+			return null;
+		if (expression instanceof Equals) {
+			boolean negate = ((Equals) expression).negate;
+			return (variables, parameters) -> Equals.evaluate(lhs.evaluate(variables, parameters), rhs.evaluate(variables, parameters), negate);
+		}
+		if (expression instanceof Compare) {
+			boolean compareLess = ((Compare) expression).compareLess;
+			boolean equalOK = ((Compare) expression).equalOK;
+			return (variables, parameters) -> Compare.evaluate(lhs.evaluate(variables, parameters), rhs.evaluate(variables, parameters), compareLess, equalOK);
+		}
+		if (expression instanceof Matches) {
+			Matches matches = (Matches) expression;
+			return (variables, parameters) -> Boolean.valueOf(matches.match(lhs.evaluate(variables, parameters), rhs.evaluate(variables, parameters)));
+		}
+		return (variables, parameters) -> At.evaluate(lhs.evaluate(variables, parameters), rhs.evaluate(variables, parameters));
+	}
+
+	private Evaluator compileMemberAt(At expression) {
+		DynamicMember member = (DynamicMember) expression.lhs;
+		String name = member.getName();
+		// managed properties are obtained from the index provider of the context
+		if (InstallableUnit.MEMBER_TRANSLATED_PROPERTIES == name || InstallableUnit.MEMBER_PROFILE_PROPERTIES == name)
+			return null;
+		Evaluator instance = compileExpression(member.operand);
+		Evaluator rhs = compileExpression(expression.rhs);
+		if (instance == null || rhs == null)
+			return null;
+		boolean properties = InstallableUnit.MEMBER_PROPERTIES == name;
+		return (variables, parameters) -> {
+			Object self = instance.evaluate(variables, parameters);
+			Object key = rhs.evaluate(variables, parameters);
+			if (properties && self instanceof IInstallableUnit && key instanceof String)
+				return ((IInstallableUnit) self).getProperty((String) key);
+			return At.evaluate(member.invoke(self), key);
+		};
+	}
+
+	private Evaluator compileCollectionFilter(CollectionFilter expression) {
+		LambdaExpression lambda = expression.lambda;
+		if (lambda.getClass() != LambdaExpression.class)
+			return null;
+		Evaluator collection = compileExpression(expression.operand);
+		if (collection == null)
+			return null;
+		Variable each = lambda.getItemVariable();
+		Integer shadowed = slots.put(each, Integer.valueOf(variableCount));
+		int slot = variableCount++;
+		Evaluator body = compileExpression(lambda.operand);
+		if (shadowed == null)
+			slots.remove(each);
+		else
+			slots.put(each, shadowed);
+		if (body == null)
+			return null;
+		boolean exists = expression instanceof Exists;
+		return (variables, parameters) -> {
+			Object value = collection.evaluate(variables, parameters);
+			if (value instanceof Object[]) {
+				// arrays, such as the provided capabilities of units, are walked without an iterator
+				for (Object item : (Object[]) value) {
+					variables[slot] = item;
+					if ((body.evaluate(variables, parameters) == Boolean.TRUE) == exists)
+						return Boolean.valueOf(exists);
+				}
+				return Boolean.valueOf(!exists);
+			}
+			Iterator<?> itor = iterator(value);
+			while (itor.hasNext()) {
+				variables[slot] = itor.next();
+				if ((body.evaluate(variables, parameters) == Boolean.TRUE) == exists)
+					return Boolean.valueOf(exists);
+			}
+			return Boolean.valueOf(!exists);
+		};
+	}
+
+	private static Iterator<?> iterator(Object collection) {
+		if (collection instanceof Collection<?>)
+			return ((Collection<?>) collection).iterator();
+		if (collection instanceof IRepeatableIterator<?>)
+			return ((IRepeatableIterator<?>) collection).getCopy();
+		return RepeatableIterator.create(collection);
+	}
+}
@@ -21,6 +21,7 @@ import org.osgi.framework.Filter;
 import org.osgi.framework.ServiceReference;
 
 public class LDAPFilter extends Unary implements IFilterExpression {
+	private static final Object[] noParams = new Object[0];
 
 	LDAPFilter(Expression expression) {
 		super(expression);
@@ -63,6 +64,9 @@ public class LDAPFilter extends Unary implements IFilterExpression {
 	}
 
 	public boolean isMatch(Object candidate) {
+		ExpressionCompiler.CompiledExpression compiled = operand.getCompiled();
+		if (compiled != null)
+			return compiled.isMatch(candidate, noParams);
 		Variable self = ExpressionFactory.THIS;
 		IEvaluationContext ctx = EvaluationContext.create(self);
 		self.setValue(ctx, candidate);
@@ -61,6 +61,14 @@ public class MatchExpression<T> extends Unary implements IMatchExpression<T> {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Returns the compiled form of the predicate, or <code>null</code> if it
+	 * cannot be compiled.
+	 */
+	public ExpressionCompiler.CompiledExpression getCompiled() {
+		return operand.getCompiled();
+	}
+
 	@Override
 	public Object[] getParameters() {
 		return parameters;
@@ -92,6 +100,9 @@ public class MatchExpression<T> extends Unary implements IMatchExpression<T> {
 
 	@Override
 	public boolean isMatch(T value) {
+		ExpressionCompiler.CompiledExpression compiled = operand.getCompiled();
+		if (compiled != null)
+			return compiled.isMatch(value, parameters);
 		return isMatch(createContext(), value);
 	}
 
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.expression;
+
+import java.util.Iterator;
+import org.eclipse.equinox.p2.metadata.expression.IContextExpression;
+import org.eclipse.equinox.p2.metadata.index.IIndexProvider;
+import org.eclipse.equinox.p2.metadata.index.IQueryWithIndex;
+import org.eclipse.equinox.p2.query.ExpressionQuery;
+import org.eclipse.equinox.p2.query.IQuery;
+
+/**
+ * A query performing another query as a {@link StreamingQueryResult}, so
+ * that its candidates are only matched as the result is read. The query is
+ * turned into a context expression, which lets a limit stop the evaluation,
+ * and the candidates still come from the indexes of the queried provider.
+ */
+public class StreamingQuery<T> implements IQueryWithIndex<T> {
+	private final IContextExpression<T> expression;
+	private final Class<? extends T> elementClass;
+
+	public StreamingQuery(IQuery<T> query) {
+		this.expression = ExpressionQuery.createExpression(query);
+		this.elementClass = ExpressionQuery.getElementClass(query);
+	}
+
+	@Override
+	public StreamingQueryResult<T> perform(IIndexProvider<T> indexProvider) {
+		return new StreamingQueryResult<>(expression.iterator(expression.createContext(elementClass, indexProvider)));
+	}
+
+	@Override
+	public StreamingQueryResult<T> perform(Iterator<T> iterator) {
+		return new StreamingQueryResult<>(expression.iterator(expression.createContext(elementClass, iterator)));
+	}
+
+	@Override
+	public IContextExpression<T> getExpression() {
+		return expression;
+	}
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.expression;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.equinox.p2.query.IQuery;
+import org.eclipse.equinox.p2.query.IQueryResult;
+
+/**
+ * A result that evaluates its query as it is iterated, so that a caller
+ * reading only the first results does not pay for the others.
+ * <p>
+ * The results read so far are remembered so that the result can be iterated
+ * again. Like other results, it holds no duplicates.
+ * </p>
+ */
+public class StreamingQueryResult<T> implements IQueryResult<T> {
+	private final Iterator<T> source;
+	private final List<T> read = new ArrayList<>();
+	private final Set<T> seen = new HashSet<>();
+
+	public StreamingQueryResult(Iterator<T> source) {
+		this.source = source;
+	}
+
+	/**
+	 * Reads the result at the given index, unless the source is exhausted
+	 * before it.
+	 */
+	private boolean fetch(int index) {
+		while (read.size() <= index) {
+			if (!source.hasNext())
+				return false;
+			T value = source.next();
+			if (seen.add(value))
+				read.add(value);
+		}
+		return true;
+	}
+
+	private void fetchAll() {
+		while (source.hasNext()) {
+			T value = source.next();
+			if (seen.add(value))
+				read.add(value);
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return !fetch(0);
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return fetch(index);
+			}
+
+			@Override
+			public T next() {
+				if (!fetch(index))
+					throw new NoSuchElementException();
+				return read.get(index++);
+			}
+		};
+	}
+
+	/**
+	 * Returns a sequential stream of the results, evaluated as the stream is
+	 * consumed.
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.DISTINCT | Spliterator.ORDERED), false);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T[] toArray(Class<T> clazz) {
+		fetchAll();
+		return read.toArray((T[]) Array.newInstance(clazz, read.size()));
+	}
+
+	@Override
+	public Set<T> toSet() {
+		fetchAll();
+		return new HashSet<>(seen);
+	}
+
+	@Override
+	public Set<T> toUnmodifiableSet() {
+		fetchAll();
+		return Collections.unmodifiableSet(seen);
+	}
+
+	@Override
+	public IQueryResult<T> query(IQuery<T> query, IProgressMonitor monitor) {
+		return query.perform(iterator());
+	}
+}
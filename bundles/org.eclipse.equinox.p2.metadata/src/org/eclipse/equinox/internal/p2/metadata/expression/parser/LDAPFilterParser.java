@@ -14,10 +14,8 @@
 package org.eclipse.equinox.internal.p2.metadata.expression.parser;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import org.eclipse.equinox.internal.p2.metadata.Messages;
+import org.eclipse.equinox.internal.p2.metadata.expression.BoundedCache;
 import org.eclipse.equinox.internal.p2.metadata.expression.IExpressionConstants;
 import org.eclipse.equinox.internal.p2.metadata.expression.LDAPApproximation;
 import org.eclipse.equinox.p2.metadata.expression.ExpressionParseException;
@@ -32,13 +30,7 @@ import org.eclipse.osgi.util.NLS;
  * objects rooted at the parent.
  */
 public class LDAPFilterParser {
-	@SuppressWarnings("serial")
-	private static final Map<String, IFilterExpression> filterCache = Collections.synchronizedMap(new LinkedHashMap<String, IFilterExpression>() {
-		@Override
-		public boolean removeEldestEntry(Map.Entry<String, IFilterExpression> expr) {
-			return size() > 64;
-		}
-	});
+	private static final BoundedCache<String, IFilterExpression> filterCache = new BoundedCache<>(4096);
 
 	private final IExpressionFactory factory;
 
@@ -68,15 +60,20 @@ public class LDAPFilterParser {
 				IExpression expr = parseFilter();
 				if (position != filterString.length())
 					throw syntaxException(Messages.filter_trailing_characters);
-				filter = factory.filterExpression(expr);
-				filterCache.put(filterStr, filter);
-				return filter;
+				return filterCache.put(filterStr, factory.filterExpression(expr));
 			} catch (StringIndexOutOfBoundsException e) {
 				throw syntaxException(Messages.filter_premature_end);
 			}
 		}
 	}
 
+	/**
+	 * Returns the cache of the parsed filters, shared by all parsers.
+	 */
+	public static BoundedCache<String, IFilterExpression> getFilterCache() {
+		return filterCache;
+	}
+
 	private IExpression parseAnd() {
 		skipWhiteSpace();
 		char c = filterString.charAt(position);
@@ -13,14 +13,18 @@
  *******************************************************************************/
 package org.eclipse.equinox.internal.p2.metadata.index;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.equinox.internal.p2.metadata.IRequiredCapability;
 import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
 import org.eclipse.equinox.internal.p2.metadata.ProvidedCapability;
@@ -36,6 +40,8 @@ import org.eclipse.equinox.internal.p2.metadata.expression.Unary;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.equinox.p2.metadata.IProvidedCapability;
 import org.eclipse.equinox.p2.metadata.IRequirement;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
 import org.eclipse.equinox.p2.metadata.expression.ExpressionUtil;
 import org.eclipse.equinox.p2.metadata.expression.IEvaluationContext;
 import org.eclipse.equinox.p2.metadata.expression.IExpression;
@@ -49,6 +55,59 @@ public class CapabilityIndex extends Index<IInstallableUnit> {
 
 	private final Map<String, Set<IInstallableUnit>> namespaceMap;
 	private final Map<String, Object> nameMap;
+	// Providers of a namespace and name sorted by version, computed on first use
+	private final Map<String, Map<String, VersionedProviders>> versionedMap = new ConcurrentHashMap<>();
+
+	/**
+	 * The IUs providing a capability with a given namespace and name, sorted by
+	 * the version of the capability.
+	 */
+	private static class VersionedProviders {
+		final Version[] versions;
+		final IInstallableUnit[] providers;
+
+		VersionedProviders(List<Map.Entry<Version, IInstallableUnit>> entries) {
+			entries.sort(Map.Entry.comparingByKey());
+			versions = new Version[entries.size()];
+			providers = new IInstallableUnit[entries.size()];
+			for (int i = 0; i < versions.length; i++) {
+				versions[i] = entries.get(i).getKey();
+				providers[i] = entries.get(i).getValue();
+			}
+		}
+
+		/**
+		 * Returns the providers whose capability version lies in the given range.
+		 */
+		Collection<IInstallableUnit> getProviders(VersionRange range) {
+			int from = lowerBound(range.getMinimum(), range.getIncludeMinimum());
+			int to = lowerBound(range.getMaximum(), !range.getIncludeMaximum());
+			if (from >= to)
+				return Collections.emptySet();
+			if (to - from == 1)
+				return Collections.singleton(providers[from]);
+			// An IU providing the capability in several versions shows up once
+			Collection<IInstallableUnit> result = new LinkedHashSet<>();
+			for (int i = from; i < to; i++)
+				result.add(providers[i]);
+			return result;
+		}
+
+		// Index of the first version greater than, or equal to when inclusive, the given one
+		private int lowerBound(Version version, boolean inclusive) {
+			int low = 0;
+			int high = versions.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				int cmp = versions[mid].compareTo(version);
+				if (cmp < 0 || (cmp == 0 && !inclusive))
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return low;
+		}
+	}
 
 	public CapabilityIndex(Iterator<IInstallableUnit> itor) {
 		nameMap = new HashMap<>(300);
@@ -142,8 +201,15 @@ public class CapabilityIndex extends Index<IInstallableUnit> {
 
 	@Override
 	public Iterator<IInstallableUnit> getCandidates(IEvaluationContext ctx, IExpression variable, IExpression booleanExpr) {
+		if (booleanExpr instanceof IMatchExpression<?>) {
+			// A requirement on a namespace, name and version range, use the versioned lookup
+			IMatchExpression<IInstallableUnit> rm = (IMatchExpression<IInstallableUnit>) booleanExpr;
+			if (RequiredCapability.isVersionRangeRequirement(rm) && isIndexedMember(((CollectionFilter) ((Unary) rm).operand).getOperand(), variable, InstallableUnit.MEMBER_PROVIDED_CAPABILITIES))
+				return getVersionedProviders(rm).iterator();
+		}
+
 		Object queriedKeys = null;
-		Map<String, ?> indexMapToUse = nameMap;
+		boolean byNamespace = false;
 
 		// booleanExpression must be a collection filter on providedCapabilities
 		// or an IInstallableUnit used in a match expression.
@@ -176,7 +242,7 @@ public class CapabilityIndex extends Index<IInstallableUnit> {
 						// in a performant way as this reduces the result set significantly
 						queriedKeys = getQueriedIDs(ctx, lambda.getItemVariable(), ProvidedCapability.MEMBER_NAMESPACE, lambda.getOperand(), queriedKeys);
 						if (queriedKeys != null) {
-							indexMapToUse = namespaceMap;
+							byNamespace = true;
 							break;
 						}
 					}
@@ -227,7 +293,9 @@ public class CapabilityIndex extends Index<IInstallableUnit> {
 				// index usage query
 				//
 				IMatchExpression<IInstallableUnit> rm = ((IRequirement) rhsObj).getMatches();
-				queriedKeys = RequiredCapability.isVersionRangeRequirement(rm) ? concatenateUnique(queriedKeys, rm.getParameters()[0]) : getRequirementIDs(rm.createContext(), ((Unary) rm).operand, queriedKeys);
+				if (RequiredCapability.isVersionRangeRequirement(rm))
+					return getVersionedProviders(rm).iterator();
+				queriedKeys = getRequirementIDs(rm.createContext(), ((Unary) rm).operand, queriedKeys);
 				break;
 
 			default :
@@ -246,9 +314,9 @@ public class CapabilityIndex extends Index<IInstallableUnit> {
 		} else if (queriedKeys instanceof Collection<?>) {
 			matchingIUs = new HashSet<>();
 			for (Object key : (Collection<Object>) queriedKeys)
-				collectMatchingIUs(indexMapToUse, (String) key, matchingIUs);
+				collectMatchingIUs(getProviders(key, byNamespace), matchingIUs);
 		} else {
-			Object v = indexMapToUse.get(queriedKeys);
+			Object v = getProviders(queriedKeys, byNamespace);
 			if (v == null)
 				matchingIUs = Collections.emptySet();
 			else if (v instanceof IInstallableUnit)
@@ -259,8 +327,41 @@ public class CapabilityIndex extends Index<IInstallableUnit> {
 		return matchingIUs.iterator();
 	}
 
-	private static void collectMatchingIUs(Map<String, ?> indexToUse, String name, Collection<IInstallableUnit> collector) {
-		Object v = indexToUse.get(name);
+	/**
+	 * Returns the IUs providing a capability with the given name, or in the given
+	 * namespace when <code>byNamespace</code> is set. The result is either
+	 * <code>null</code>, a single IU or a collection of IUs.
+	 */
+	protected Object getProviders(Object key, boolean byNamespace) {
+		return byNamespace ? namespaceMap.get(key) : nameMap.get(key);
+	}
+
+	/**
+	 * Returns the IUs that may satisfy the given version range requirement: those
+	 * providing a capability with the required namespace and name, and a version
+	 * in the required range.
+	 */
+	private Collection<IInstallableUnit> getVersionedProviders(IMatchExpression<IInstallableUnit> rm) {
+		String namespace = RequiredCapability.extractNamespace(rm);
+		String name = RequiredCapability.extractName(rm);
+		VersionedProviders providers = versionedMap.computeIfAbsent(namespace, ns -> new ConcurrentHashMap<>()).computeIfAbsent(name, n -> createVersionedProviders(namespace, n));
+		return providers.getProviders(RequiredCapability.extractRange(rm));
+	}
+
+	private VersionedProviders createVersionedProviders(String namespace, String name) {
+		List<Map.Entry<Version, IInstallableUnit>> entries = new ArrayList<>();
+		Collection<IInstallableUnit> candidates = new ArrayList<>();
+		collectMatchingIUs(getProviders(name, false), candidates);
+		for (IInstallableUnit iu : candidates) {
+			for (IProvidedCapability pc : iu.getProvidedCapabilities()) {
+				if (name.equals(pc.getName()) && namespace.equals(pc.getNamespace()))
+					entries.add(new AbstractMap.SimpleImmutableEntry<>(pc.getVersion(), iu));
+			}
+		}
+		return new VersionedProviders(entries);
+	}
+
+	private static void collectMatchingIUs(Object v, Collection<IInstallableUnit> collector) {
 		if (v == null)
 			return;
 		if (v instanceof IInstallableUnit)
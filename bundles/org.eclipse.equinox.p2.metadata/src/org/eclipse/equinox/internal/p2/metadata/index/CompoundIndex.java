@@ -14,35 +14,53 @@
 package org.eclipse.equinox.internal.p2.metadata.index;
 
 import java.util.*;
+import org.eclipse.equinox.internal.p2.metadata.expression.CompoundIterator;
+import org.eclipse.equinox.internal.p2.metadata.expression.MatchIteratorFilter;
 import org.eclipse.equinox.p2.metadata.expression.IEvaluationContext;
 import org.eclipse.equinox.p2.metadata.expression.IExpression;
 import org.eclipse.equinox.p2.metadata.index.IIndex;
 
+/**
+ * The union of the candidates of several indexes. When one of the indexes
+ * cannot narrow down the candidates of an expression, neither can the union
+ * and the caller scans everything instead.
+ * <p>
+ * The candidates are read lazily and each is returned once.
+ * </p>
+ */
 public class CompoundIndex<T> implements IIndex<T> {
 
-	private final Collection<IIndex<T>> indexes;
+	private final Collection<? extends IIndex<T>> indexes;
 
-	public CompoundIndex(Collection<IIndex<T>> indexes) {
+	public CompoundIndex(Collection<? extends IIndex<T>> indexes) {
 		this.indexes = indexes;
 	}
 
 	@Override
 	public Iterator<T> getCandidates(IEvaluationContext ctx, IExpression variable, IExpression booleanExpr) {
-		Set<T> result = null;
+		List<Iterator<T>> results = new ArrayList<>(indexes.size());
 		for (IIndex<T> index : indexes) {
 			Iterator<T> indexResult = index.getCandidates(ctx, variable, booleanExpr);
 			if (indexResult == null)
 				return null;
-			if (indexResult.hasNext()) {
-				if (result == null)
-					result = new HashSet<>();
-				do {
-					result.add(indexResult.next());
-				} while (indexResult.hasNext());
-			}
+			results.add(indexResult);
 		}
-		if (result == null)
-			result = Collections.emptySet();
-		return result.iterator();
+		if (results.size() == 1)
+			return results.get(0);
+		return union(results.iterator());
+	}
+
+	/**
+	 * Returns the elements of the given iterators, each once. An iterator is only
+	 * read once the ones before it are exhausted.
+	 */
+	public static <T> Iterator<T> union(Iterator<? extends Iterator<T>> iterators) {
+		Set<T> seen = new HashSet<>();
+		return new MatchIteratorFilter<T>(new CompoundIterator<>(iterators)) {
+			@Override
+			protected boolean isMatch(T val) {
+				return seen.add(val);
+			}
+		};
 	}
 }
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.metadata.index;
+
+import java.util.*;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.internal.p2.metadata.expression.*;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.expression.*;
+
+/**
+ * An index on the properties of installable units, keyed by property key and
+ * value. It narrows down queries such as <code>properties[$0] == $1</code>,
+ * <code>properties[$0] == true</code> or <code>properties[$0] != null</code>,
+ * which is how group, category, patch and product units are queried.
+ * <p>
+ * The map of a key is only built the first time that key is queried, since
+ * most keys (names, descriptions, ...) are never used in a query.
+ * </p>
+ */
+public class PropertyIndex extends Index<IInstallableUnit> {
+	private final IInstallableUnit[] units;
+	private final Map<String, Map<String, List<IInstallableUnit>>> keyIndexes = new HashMap<>();
+
+	public PropertyIndex(Iterator<IInstallableUnit> ius) {
+		ArrayList<IInstallableUnit> collector = new ArrayList<>();
+		while (ius.hasNext())
+			collector.add(ius.next());
+		units = collector.toArray(new IInstallableUnit[collector.size()]);
+	}
+
+	private synchronized Map<String, List<IInstallableUnit>> getKeyIndex(String key) {
+		Map<String, List<IInstallableUnit>> keyIndex = keyIndexes.get(key);
+		if (keyIndex == null) {
+			keyIndex = new HashMap<>();
+			for (IInstallableUnit unit : units) {
+				String value = unit.getProperty(key);
+				if (value != null)
+					keyIndex.computeIfAbsent(value, v -> new ArrayList<>(1)).add(unit);
+			}
+			keyIndexes.put(key, keyIndex);
+		}
+		return keyIndex;
+	}
+
+	@Override
+	public Iterator<IInstallableUnit> getCandidates(IEvaluationContext ctx, IExpression variable, IExpression booleanExpr) {
+		Collection<IInstallableUnit> candidates = getCandidateUnits(ctx, variable, booleanExpr);
+		return candidates == null ? null : candidates.iterator();
+	}
+
+	/**
+	 * Returns the units that may match the given expression, or <code>null</code>
+	 * if the expression does not require a property that this index can look up.
+	 */
+	private Collection<IInstallableUnit> getCandidateUnits(IEvaluationContext ctx, IExpression variable, IExpression booleanExpr) {
+		IExpression targetExpr = booleanExpr;
+		if (booleanExpr instanceof IMatchExpression<?>) {
+			targetExpr = ((Unary) targetExpr).operand;
+			ctx = ((IMatchExpression<?>) booleanExpr).createContext();
+		}
+		switch (targetExpr.getExpressionType()) {
+			case IExpression.TYPE_EQUALS :
+			case IExpression.TYPE_NOT_EQUALS :
+				Binary eqExpr = (Binary) targetExpr;
+				IExpression propertyExpr;
+				IExpression valueExpr;
+				if (isIndexedProperty(eqExpr.lhs, variable)) {
+					propertyExpr = eqExpr.lhs;
+					valueExpr = eqExpr.rhs;
+				} else if (isIndexedProperty(eqExpr.rhs, variable)) {
+					propertyExpr = eqExpr.rhs;
+					valueExpr = eqExpr.lhs;
+				} else
+					// Not applicable for indexing
+					return null;
+
+				Object key;
+				Object value;
+				try {
+					key = ((Binary) propertyExpr).rhs.evaluate(ctx);
+					value = valueExpr.evaluate(ctx);
+				} catch (IllegalArgumentException e) {
+					return null;
+				}
+				if (!(key instanceof String))
+					return null;
+				if (targetExpr.getExpressionType() == IExpression.TYPE_NOT_EQUALS)
+					// Only 'properties[key] != null' requires the property
+					return value == null ? getUnitsWithKey((String) key) : null;
+				return value == null ? null : getUnits((String) key, value);
+
+			case IExpression.TYPE_AND :
+				// AND is OK if at least one of the branches require a property
+				for (IExpression expr : ExpressionUtil.getOperands(targetExpr)) {
+					Collection<IInstallableUnit> test = getCandidateUnits(ctx, variable, expr);
+					if (test != null)
+						return test;
+				}
+				return null;
+
+			case IExpression.TYPE_OR :
+				// OR is OK if all the branches require a property
+				Set<IInstallableUnit> collector = new LinkedHashSet<>();
+				for (IExpression expr : ExpressionUtil.getOperands(targetExpr)) {
+					Collection<IInstallableUnit> test = getCandidateUnits(ctx, variable, expr);
+					if (test == null)
+						return null;
+					collector.addAll(test);
+				}
+				return collector;
+		}
+		return null;
+	}
+
+	private static boolean isIndexedProperty(IExpression expr, IExpression variable) {
+		return expr.getExpressionType() == IExpression.TYPE_AT && isIndexedMember(((Binary) expr).lhs, variable, InstallableUnit.MEMBER_PROPERTIES);
+	}
+
+	private Collection<IInstallableUnit> getUnitsWithKey(String key) {
+		Collection<List<IInstallableUnit>> values = getKeyIndex(key).values();
+		if (values.size() == 1)
+			return values.iterator().next();
+		Set<IInstallableUnit> collector = new LinkedHashSet<>();
+		for (List<IInstallableUnit> units : values)
+			collector.addAll(units);
+		return collector;
+	}
+
+	private Collection<IInstallableUnit> getUnits(String key, Object value) {
+		Map<String, List<IInstallableUnit>> keyIndex = getKeyIndex(key);
+		if (value instanceof String) {
+			List<IInstallableUnit> found = keyIndex.get(value);
+			return found == null ? Collections.emptyList() : found;
+		}
+		if (value instanceof Boolean) {
+			// A property matches a boolean the way the expression coerces it
+			String expected = value.toString();
+			List<IInstallableUnit> collector = new ArrayList<>();
+			for (Map.Entry<String, List<IInstallableUnit>> entry : keyIndex.entrySet())
+				if (entry.getKey().trim().equalsIgnoreCase(expected))
+					collector.addAll(entry.getValue());
+			return collector;
+		}
+		// Leave other coercions to the query, any unit with the property may match
+		return getUnitsWithKey(key);
+	}
+}
@@ -333,7 +333,7 @@ public final class MetadataFactory {
 		 * @param newVersion version to be set on the installable unit.
 		 */
 		public void setVersion(Version newVersion) {
-			unit().setVersion(newVersion);
+			unit().setVersion(Version.intern(newVersion));
 		}
 
 		InstallableUnit unit() {
@@ -482,7 +482,7 @@ public final class MetadataFactory {
 	 * @param version   The capability version
 	 */
 	public static IProvidedCapability createProvidedCapability(String namespace, String name, Version version) {
-		return new ProvidedCapability(namespace, name, version);
+		return new ProvidedCapability(namespace, name, Version.intern(version));
 	}
 
 	/**
@@ -520,7 +520,7 @@ public final class MetadataFactory {
 	 */
 	public static IRequirement createRequirement(String namespace, String name, VersionRange range, String filter,
 			boolean optional, boolean multiple, boolean greedy) {
-		return new RequiredCapability(namespace, name, range, InstallableUnit.parseFilter(filter), optional ? 0 : 1,
+		return new RequiredCapability(namespace, name, VersionRange.intern(range), InstallableUnit.parseFilter(filter), optional ? 0 : 1,
 				multiple ? Integer.MAX_VALUE : 1, greedy, null);
 	}
 
@@ -543,7 +543,7 @@ public final class MetadataFactory {
 	 */
 	public static IRequirement createRequirement(String namespace, String name, VersionRange range,
 			IMatchExpression<IInstallableUnit> filter, boolean optional, boolean multiple) {
-		return new RequiredCapability(namespace, name, range, filter, optional ? 0 : 1,
+		return new RequiredCapability(namespace, name, VersionRange.intern(range), filter, optional ? 0 : 1,
 				multiple ? Integer.MAX_VALUE : 1, true, null);
 	}
 
@@ -568,7 +568,7 @@ public final class MetadataFactory {
 	 */
 	public static IRequirement createRequirement(String namespace, String name, VersionRange range,
 			IMatchExpression<IInstallableUnit> filter, int minCard, int maxCard, boolean greedy) {
-		return new RequiredCapability(namespace, name, range, filter, minCard, maxCard, greedy, null);
+		return new RequiredCapability(namespace, name, VersionRange.intern(range), filter, minCard, maxCard, greedy, null);
 	}
 
 	/**
@@ -596,7 +596,7 @@ public final class MetadataFactory {
 	 */
 	public static IRequirement createRequirement(String namespace, String name, VersionRange range,
 			IMatchExpression<IInstallableUnit> filter, int minCard, int maxCard, boolean greedy, String description) {
-		return new RequiredCapability(namespace, name, range, filter, minCard, maxCard, greedy, description);
+		return new RequiredCapability(namespace, name, VersionRange.intern(range), filter, minCard, maxCard, greedy, description);
 	}
 
 	/**
@@ -931,7 +931,7 @@ public final class MetadataFactory {
 			String namespace = RequiredCapability.extractNamespace(requirement);
 			String name = RequiredCapability.extractName(requirement);
 			VersionRange range = RequiredCapability.extractRange(requirement);
-			return new RequiredCapability(namespace, name, range, envFilter, minCard, maxCard, greedy, description);
+			return new RequiredCapability(namespace, name, VersionRange.intern(range), envFilter, minCard, maxCard, greedy, description);
 		}
 
 		if (RequiredPropertiesMatch.isPropertiesMatchRequirement(requirement)) {
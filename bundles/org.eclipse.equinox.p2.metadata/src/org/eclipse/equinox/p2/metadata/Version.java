@@ -15,9 +15,9 @@
 package org.eclipse.equinox.p2.metadata;
 
 import java.io.Serializable;
-import java.lang.ref.SoftReference;
-import java.util.WeakHashMap;
 import org.eclipse.equinox.internal.p2.metadata.*;
+import org.eclipse.equinox.internal.p2.metadata.expression.BoundedCache;
+import org.eclipse.equinox.p2.core.ConcurrentWeakPool;
 
 /**
  * A class that represents a Version in the Omni Version format. A Version can be thought of as an
@@ -45,7 +45,8 @@ import org.eclipse.equinox.internal.p2.metadata.*;
  */
 public abstract class Version implements Comparable<Version>, Serializable {
 	public static final String RAW_PREFIX = "raw:"; //$NON-NLS-1$
-	private static WeakHashMap<String, SoftReference<Version>> POOL = new WeakHashMap<>();
+	private static final BoundedCache<String, Version> PARSED = new BoundedCache<>(4096);
+	private static final ConcurrentWeakPool<Version> POOL = new ConcurrentWeakPool<>();
 
 	/**
 	 * The version that is semantically greater then all other versions.
@@ -73,11 +74,10 @@ public abstract class Version implements Comparable<Version>, Serializable {
 	/**
 	 * Parses a version identifier from the specified string.
 	 * <p>
-	 * Note that this method performs a non thread-safe object pooling. Instances are
-	 * stored in a weak cache, i.e. for multiple calls with the same input it is likely
-	 * but not guaranteed that the same instance is retrieved. Same holds for concurrent
-	 * access on this method. Clients must not assume to get the same instance for 
-	 * subsequent calls.
+	 * Note that this method performs object pooling. Equal versions in use are
+	 * shared through a weak pool, i.e. for multiple calls with the same input it is
+	 * likely but not guaranteed that the same instance is retrieved. Clients must not
+	 * assume to get the same instance for subsequent calls.
 	 * 
 	 * @param version String representation of the version identifier. Leading
 	 *        and trailing whitespace will be ignored.
@@ -90,18 +90,28 @@ public abstract class Version implements Comparable<Version>, Serializable {
 	public static Version create(String version) {
 		Version v = null;
 		if (version != null && version.length() > 0) {
-			SoftReference<Version> vRef = POOL.get(version);
-			v = vRef != null ? vRef.get() : null;
+			v = PARSED.get(version);
 			if (v == null) {
 				v = VersionParser.parse(version, 0, version.length());
-				synchronized (POOL) {
-					POOL.put(version, new SoftReference<>(v));
-				}
+				if (v != null)
+					v = PARSED.put(version, intern(v));
 			}
 		}
 		return v;
 	}
 
+	/**
+	 * Returns the version equal to the given one that is shared through the pool
+	 * of versions, adding the given one to the pool if there is none. Only OSGi
+	 * versions are pooled since versions of other formats may be equal while
+	 * having different string representations.
+	 */
+	static Version intern(Version version) {
+		if (!(version instanceof OSGiVersion))
+			return version;
+		return POOL.add(version);
+	}
+
 	/**
 	 * Creates an OSGi version identifier from the specified numerical components.
 	 * 
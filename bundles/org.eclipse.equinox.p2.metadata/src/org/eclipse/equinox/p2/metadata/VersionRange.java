@@ -15,9 +15,9 @@
 package org.eclipse.equinox.p2.metadata;
 
 import java.io.Serializable;
-import java.lang.ref.SoftReference;
-import java.util.WeakHashMap;
 import org.eclipse.equinox.internal.p2.metadata.*;
+import org.eclipse.equinox.internal.p2.metadata.expression.BoundedCache;
+import org.eclipse.equinox.p2.core.ConcurrentWeakPool;
 import org.eclipse.osgi.util.NLS;
 
 /**
@@ -39,7 +39,8 @@ public class VersionRange implements Serializable {
 	 * An empty OSGi Version range.
 	 */
 	public static final VersionRange emptyRange = new VersionRange(Version.emptyVersion, true, Version.MAX_VERSION, true);
-	private static WeakHashMap<String, SoftReference<VersionRange>> POOL = new WeakHashMap<>();
+	private static final BoundedCache<String, VersionRange> PARSED = new BoundedCache<>(4096);
+	private static final ConcurrentWeakPool<VersionRange> POOL = new ConcurrentWeakPool<>();
 
 	private final Version minVersion;
 	private final boolean includeMin;
@@ -261,11 +262,10 @@ public class VersionRange implements Serializable {
 	/**
 	 * Parses a version range from the specified string.
 	 * <p>
-	 * Note that this method performs a non thread-safe object pooling. Instances are
-	 * stored in a weak cache, i.e. for multiple calls with the same input it is likely
-	 * but not guaranteed that the same instance is retrieved. Same holds for concurrent
-	 * access on this method. Clients must not assume to get the same instance for 
-	 * subsequent calls.
+	 * Note that this method performs object pooling. Equal ranges in use, and their
+	 * bounds, are shared through weak pools, i.e. for multiple calls with the same
+	 * input it is likely but not guaranteed that the same instance is retrieved.
+	 * Clients must not assume to get the same instance for subsequent calls.
 	 * 
 	 * @param versionRange String representation of the version range. Leading
 	 *        and trailing whitespace will be ignored.
@@ -279,18 +279,35 @@ public class VersionRange implements Serializable {
 	public static VersionRange create(String versionRange) {
 		VersionRange v = null;
 		if (versionRange != null && versionRange.length() > 0) {
-			SoftReference<VersionRange> vRef = POOL.get(versionRange);
-			v = vRef != null ? vRef.get() : null;
-			if (v == null) {
-				v = new VersionRange(versionRange);
-				synchronized (POOL) {
-					POOL.put(versionRange, new SoftReference<>(v));
-				}
-			}
+			v = PARSED.get(versionRange);
+			if (v == null)
+				v = PARSED.put(versionRange, intern(new VersionRange(versionRange)));
 		}
 		return v;
 	}
 
+	/**
+	 * Returns the range equal to the given one that is shared through the pool of
+	 * ranges, adding the given one, with pooled bounds, to the pool if there is none.
+	 * Like versions, only OSGi ranges are pooled.
+	 */
+	static VersionRange intern(VersionRange range) {
+		if (range == null || range == emptyRange || !isPoolable(range.minVersion) || !isPoolable(range.maxVersion))
+			return range;
+		VersionRange pooled = POOL.find(range);
+		if (pooled != null)
+			return pooled;
+		Version min = Version.intern(range.minVersion);
+		Version max = range.maxVersion == range.minVersion ? min : Version.intern(range.maxVersion);
+		if (min != range.minVersion || max != range.maxVersion)
+			range = new VersionRange(min, range.includeMin, max, range.includeMax);
+		return POOL.add(range);
+	}
+
+	private static boolean isPoolable(Version version) {
+		return version instanceof OSGiVersion || version == Version.emptyVersion || version == Version.MAX_VERSION;
+	}
+
 	private static IVersionFormat parseFormat(String versionRange, int[] position) {
 		int pos = VersionParser.skipWhite(versionRange, position[0]);
 		if (!versionRange.startsWith("format(", pos)) //$NON-NLS-1$
@@ -15,9 +15,13 @@
 package org.eclipse.equinox.p2.query;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
 import org.eclipse.equinox.internal.p2.metadata.expression.CompoundIterator;
@@ -37,23 +41,88 @@ import org.eclipse.equinox.p2.metadata.index.IIndexProvider;
  */
 public final class CompoundQueryable<T> extends IndexProvider<T> {
 
+	/**
+	 * The index of one of the queryables. The queryable is scanned when it has no
+	 * index for the member, or when its index cannot narrow down the candidates
+	 * of an expression, so that the other queryables can still use theirs.
+	 */
 	static class PassThroughIndex<T> implements IIndex<T> {
-		private final Iterator<T> iterator;
+		private final IQueryable<T> queryable;
+		private final IIndex<T> index;
+
+		public PassThroughIndex(IQueryable<T> queryable, IIndex<T> index) {
+			this.queryable = queryable;
+			this.index = index;
+		}
+
+		@Override
+		public Iterator<T> getCandidates(IEvaluationContext ctx, IExpression variable, IExpression booleanExpr) {
+			Iterator<T> candidates = lookUp(ctx, variable, booleanExpr);
+			return candidates != null ? candidates : getIteratorFromQueryable(queryable);
+		}
+
+		boolean hasIndex() {
+			return index != null;
+		}
+
+		Iterator<T> lookUp(IEvaluationContext ctx, IExpression variable, IExpression booleanExpr) {
+			return index == null ? null : index.getCandidates(ctx, variable, booleanExpr);
+		}
+
+		Iterator<T> scan() {
+			return getIteratorFromQueryable(queryable);
+		}
+	}
+
+	/**
+	 * The indexes of independent queryables, looked up in parallel. Only the
+	 * lookups of the queryables having an index run in parallel, the others are
+	 * scanned lazily on the querying thread once the candidates before them are
+	 * read.
+	 */
+	static class ParallelIndex<T> implements IIndex<T> {
+		private final List<PassThroughIndex<T>> children;
 
-		public PassThroughIndex(Iterator<T> iterator) {
-			this.iterator = iterator;
+		public ParallelIndex(List<PassThroughIndex<T>> children) {
+			this.children = children;
 		}
 
 		@Override
 		public Iterator<T> getCandidates(IEvaluationContext ctx, IExpression variable, IExpression booleanExpr) {
-			return iterator;
+			Map<PassThroughIndex<T>, List<T>> found = new ConcurrentHashMap<>();
+			children.parallelStream().filter(PassThroughIndex::hasIndex).forEach(child -> {
+				Iterator<T> candidates = child.lookUp(ctx, variable, booleanExpr);
+				if (candidates != null) {
+					List<T> list = new ArrayList<>();
+					candidates.forEachRemaining(list::add);
+					found.put(child, list);
+				}
+			});
+			return CompoundIndex.union(children.stream().map(child -> {
+				List<T> candidates = found.get(child);
+				return candidates != null ? candidates.iterator() : child.scan();
+			}).iterator());
 		}
 	}
 
 	private IQueryable<T>[] queryables;
+	private final boolean parallel;
 
 	public CompoundQueryable(IQueryable<T>[] queryables) {
+		this(queryables, false);
+	}
+
+	/**
+	 * Creates a queryable that combines the given input queryables. When
+	 * <code>parallel</code> is <code>true</code>, the queryables are expected to be
+	 * independent of each other and their indexes are consulted in parallel.
+	 *
+	 * @param queryables The queryables to be combined
+	 * @param parallel Whether the indexes of the queryables can be consulted in parallel
+	 */
+	CompoundQueryable(IQueryable<T>[] queryables, boolean parallel) {
 		this.queryables = queryables;
+		this.parallel = parallel;
 	}
 
 	/**
@@ -80,39 +149,31 @@ public final class CompoundQueryable<T> extends IndexProvider<T> {
 
 	@Override
 	public IIndex<T> getIndex(String memberName) {
-		// Check that at least one of the queryable can present an index
-		// for the given member.
-		boolean found = false;
+		// Push the lookup down into each queryable that has an index for the
+		// given member, the others are scanned
+		int found = 0;
+		ArrayList<PassThroughIndex<T>> indexes = new ArrayList<>(queryables.length);
 		for (IQueryable<T> queryable : queryables) {
+			IIndex<T> index = null;
 			if (queryable instanceof IIndexProvider<?>) {
 				@SuppressWarnings("unchecked")
 				IIndexProvider<T> ip = (IIndexProvider<T>) queryable;
-				if (ip.getIndex(memberName) != null) {
-					found = true;
-					break;
-				}
+				index = ip.getIndex(memberName);
+				if (index != null)
+					found++;
 			}
+			indexes.add(new PassThroughIndex<>(queryable, index));
 		}
 
-		if (!found)
+		if (found == 0)
 			// Nobody had an index for this member
 			return null;
 
-		ArrayList<IIndex<T>> indexes = new ArrayList<>(queryables.length);
-		for (IQueryable<T> queryable : queryables) {
-			if (queryable instanceof IIndexProvider<?>) {
-				@SuppressWarnings("unchecked")
-				IIndexProvider<T> ip = (IIndexProvider<T>) queryable;
-				IIndex<T> index = ip.getIndex(memberName);
-				if (index != null)
-					indexes.add(index);
-				else
-					indexes.add(new PassThroughIndex<>(ip.everything()));
-			} else {
-				indexes.add(new PassThroughIndex<>(getIteratorFromQueryable(queryable)));
-			}
-		}
-		return indexes.size() == 1 ? indexes.get(0) : new CompoundIndex<>(indexes);
+		if (indexes.size() == 1)
+			return indexes.get(0);
+		if (parallel && found > 1)
+			return new ParallelIndex<>(indexes);
+		return new CompoundIndex<>(indexes);
 	}
 
 	@Override
@@ -123,10 +184,8 @@ public final class CompoundQueryable<T> extends IndexProvider<T> {
 		if (queryables.length == 1)
 			return getIteratorFromQueryable(queryables[0]);
 
-		ArrayList<Iterator<T>> iterators = new ArrayList<>(queryables.length);
-		for (IQueryable<T> queryable : queryables)
-			iterators.add(getIteratorFromQueryable(queryable));
-		return new CompoundIterator<>(iterators.iterator());
+		// only iterate a queryable once the previous ones are exhausted
+		return new CompoundIterator<>(Arrays.stream(queryables).map(CompoundQueryable::getIteratorFromQueryable).iterator());
 	}
 
 	@Override
@@ -17,6 +17,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import org.eclipse.equinox.internal.p2.metadata.expression.Expression;
+import org.eclipse.equinox.internal.p2.metadata.expression.ExpressionCompiler;
 import org.eclipse.equinox.internal.p2.metadata.expression.ExpressionFactory;
 import org.eclipse.equinox.internal.p2.metadata.expression.MatchExpression;
 import org.eclipse.equinox.internal.p2.metadata.expression.QueryResult;
@@ -99,6 +100,9 @@ public class ExpressionMatchQuery<T> implements IMatchQuery<T>, IQueryWithIndex<
 	public boolean isMatch(T candidate) {
 		if (!matchingClass.isInstance(candidate))
 			return false;
+		ExpressionCompiler.CompiledExpression compiled = ((MatchExpression<T>) expression).getCompiled();
+		if (compiled != null)
+			return compiled.isMatch(candidate, expression.getParameters());
 		ExpressionFactory.THIS.setValue(context, candidate);
 		return Boolean.TRUE == expression.evaluate(context);
 	}
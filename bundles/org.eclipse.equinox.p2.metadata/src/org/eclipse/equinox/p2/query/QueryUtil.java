@@ -20,6 +20,7 @@ import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
 import org.eclipse.equinox.internal.p2.metadata.expression.ContextExpression;
 import org.eclipse.equinox.internal.p2.metadata.expression.Expression.VariableFinder;
 import org.eclipse.equinox.internal.p2.metadata.expression.ExpressionFactory;
+import org.eclipse.equinox.internal.p2.metadata.expression.StreamingQuery;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.equinox.p2.metadata.IInstallableUnitFragment;
 import org.eclipse.equinox.p2.metadata.IVersionedId;
@@ -72,6 +73,20 @@ public class QueryUtil {
 		return new CompoundQueryable<>(queryables.toArray(new IQueryable[queryables.size()]));
 	}
 
+	/**
+	 * Creates a queryable that combines the given collection of independent input
+	 * queryables, such as the children of a composite repository. When
+	 * <code>parallel</code> is <code>true</code>, the indexes of the queryables
+	 * are consulted in parallel.
+	 * 
+	 * @param queryables The collection of queryables to be combined
+	 * @param parallel Whether the indexes of the queryables can be consulted in parallel
+	 * @since 2.6
+	 */
+	public static <T> IQueryable<T> compoundQueryable(Collection<? extends IQueryable<T>> queryables, boolean parallel) {
+		return new CompoundQueryable<>(queryables.toArray(new IQueryable[queryables.size()]), parallel);
+	}
+
 	/**
 	 * Creates a queryable that combines the two provided input queryables
 	 * 
@@ -488,6 +503,20 @@ public class QueryUtil {
 		return new ExpressionQuery<>(matchingClass, expression, parameters);
 	}
 
+	/**
+	 * Creates a query that performs the given query lazily. Its result matches the
+	 * candidates as it is iterated, so that reading the first results, or limiting
+	 * the query with {@link #createLimitQuery(IQuery, int)}, does not evaluate the
+	 * query on all the candidates. When querying a compound queryable, the queryables
+	 * that are not needed to produce the results read are not iterated.
+	 * @param query The query to perform lazily
+	 * @return The created query
+	 * @since 2.6
+	 */
+	public static <T> IQuery<T> createStreamingQuery(IQuery<T> query) {
+		return new StreamingQuery<>(query);
+	}
+
 	/**
 	 * Test if the {@link IInstallableUnit} is a category. 
 	 * @param iu the element being tested.
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.operations;
+
+import java.util.Collection;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.equinox.internal.p2.director.QueryableArray;
+import org.eclipse.equinox.p2.core.IProvisioningAgent;
+import org.eclipse.equinox.p2.engine.ProvisioningContext;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.expression.ExpressionUtil;
+import org.eclipse.equinox.p2.query.ExpressionMatchQuery;
+import org.eclipse.equinox.p2.query.IQueryable;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+
+/**
+ * A provisioning context answering metadata queries from a snapshot of the
+ * metadata of another context, taken once and shared between snapshots.
+ * <p>
+ * A {@link ProvisioningContext} loads its repositories lazily and is not meant
+ * to be used by several planning runs at once. Each concurrent run is instead
+ * given its own snapshot context, with its own copy of the properties, all of
+ * them reading the same immutable metadata and reporting the same repositories.
+ * </p>
+ */
+public class SnapshotProvisioningContext extends ProvisioningContext {
+	private final IProvisioningAgent agent;
+	private final IQueryable<IInstallableUnit> metadata;
+	private final Collection<IMetadataRepository> repositories;
+
+	/**
+	 * Returns a context reading a snapshot of the metadata of the given context,
+	 * and of the repositories holding it, in a form that can be queried
+	 * concurrently. The context has a copy of the properties of the given context.
+	 */
+	public static SnapshotProvisioningContext takeSnapshot(IProvisioningAgent agent, ProvisioningContext context, IProgressMonitor monitor) {
+		SubMonitor sub = SubMonitor.convert(monitor, 3);
+		IQueryable<IInstallableUnit> queryable = context.getMetadata(sub.newChild(1));
+		IQueryable<IInstallableUnit> metadata = new QueryableArray(queryable.query(QueryUtil.createIUAnyQuery(), sub.newChild(1)).toArray(IInstallableUnit.class));
+		// The repositories already loaded for the metadata, only used to identify it
+		Collection<IMetadataRepository> repositories = context.getMetadataRepositories(sub.newChild(1)).query(new ExpressionMatchQuery<>(IMetadataRepository.class, ExpressionUtil.TRUE_EXPRESSION), null).toUnmodifiableSet();
+		return new SnapshotProvisioningContext(agent, context, metadata, repositories);
+	}
+
+	private SnapshotProvisioningContext(IProvisioningAgent agent, ProvisioningContext original, IQueryable<IInstallableUnit> metadata, Collection<IMetadataRepository> repositories) {
+		super(agent);
+		this.agent = agent;
+		this.metadata = metadata;
+		this.repositories = repositories;
+		getProperties().putAll(original.getProperties());
+		setExtraInstallableUnits(original.getExtraInstallableUnits());
+	}
+
+	/**
+	 * Returns a context reading the same snapshot as this one, with its own copy
+	 * of the properties of this context.
+	 */
+	public SnapshotProvisioningContext copy() {
+		return new SnapshotProvisioningContext(agent, this, metadata, repositories);
+	}
+
+	@Override
+	public IQueryable<IInstallableUnit> getMetadata(IProgressMonitor monitor) {
+		return metadata;
+	}
+
+	@Override
+	public IQueryable<IMetadataRepository> getMetadataRepositories(IProgressMonitor monitor) {
+		return (query, mon) -> query.perform(repositories.iterator());
+	}
+}
@@ -15,10 +15,13 @@ package org.eclipse.equinox.p2.operations;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 import org.eclipse.core.runtime.*;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.equinox.internal.p2.director.ProfileChangeRequest;
 import org.eclipse.equinox.internal.p2.operations.*;
+import org.eclipse.equinox.p2.engine.ProvisioningContext;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.equinox.p2.metadata.Version;
 import org.eclipse.equinox.p2.planner.IPlanner;
@@ -45,6 +48,9 @@ public class RemediationOperation extends ProfileChangeOperation {
 	private Remedy bestSolutionChangingWhatIsInstalled;
 	private Remedy currentRemedy;
 	private RemedyConfig[] remedyConfigs;
+	private boolean parallel;
+	private boolean stopAtBestRemedy;
+	private Consumer<Remedy> remedyListener;
 
 	public RemedyConfig[] getRemedyConfigs() {
 		return remedyConfigs;
@@ -85,6 +91,43 @@ public class RemediationOperation extends ProfileChangeOperation {
 		return remedies;
 	}
 
+	/**
+	 * Sets whether the remedy configurations are evaluated concurrently. The
+	 * remedies found are the same, and are listed in the same order, as when
+	 * they are evaluated one after the other.
+	 *
+	 * @param parallel <code>true</code> to evaluate the configurations concurrently
+	 * @since 2.6
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Sets whether to stop evaluating the remaining remedy configurations once a
+	 * remedy that can not be improved upon is found, that is a remedy only
+	 * changing the version of what is being installed, or only updating what is
+	 * already installed.
+	 *
+	 * @param stop <code>true</code> to stop at the first such remedy
+	 * @since 2.6
+	 */
+	public void setStopAtBestRemedy(boolean stop) {
+		this.stopAtBestRemedy = stop;
+	}
+
+	/**
+	 * Sets a listener notified of every remedy as soon as it is found, while the
+	 * other configurations are still being evaluated. The listener is called
+	 * from the thread resolving the operation, one remedy at a time.
+	 *
+	 * @param listener the listener to notify, or <code>null</code>
+	 * @since 2.6
+	 */
+	public void setRemedyListener(Consumer<Remedy> listener) {
+		this.remedyListener = listener;
+	}
+
 	@Override
 	protected void computeProfileChangeRequest(MultiStatus status, IProgressMonitor monitor) {
 		SubMonitor sub = SubMonitor.convert(monitor, 1);
@@ -102,17 +145,30 @@ public class RemediationOperation extends ProfileChangeOperation {
 	}
 
 	private IStatus computeAllRemediations(IProgressMonitor monitor) {
-		SubMonitor sub = SubMonitor.convert(monitor, remedyConfigs.length);
+		SubMonitor sub = SubMonitor.convert(monitor, remedyConfigs.length + 1);
 		sub.setTaskName(Messages.RemediationOperation_ProfileChangeRequestProgress);
 		List<Remedy> tmpRemedies = new ArrayList<>(remedyConfigs.length);
 		try {
-			for (int i = 0; i < remedyConfigs.length; i++) {
-				sub.subTask((i + 1) + " / " + remedyConfigs.length); //$NON-NLS-1$
-				if (sub.isCanceled())
+			if (parallel && remedyConfigs.length > 1) {
+				Remedy[] found = computeRemediesInParallel(sub);
+				if (found == null)
 					return Status.CANCEL_STATUS;
-				Remedy remedy = computeRemedy(remedyConfigs[i], sub.newChild(1, SubMonitor.SUPPRESS_ALL_LABELS));
-				if (remedy != null) {
-					tmpRemedies.add(remedy);
+				for (Remedy remedy : found) {
+					if (remedy != null)
+						tmpRemedies.add(remedy);
+				}
+			} else {
+				sub.worked(1);
+				for (int i = 0; i < remedyConfigs.length; i++) {
+					sub.subTask((i + 1) + " / " + remedyConfigs.length); //$NON-NLS-1$
+					if (sub.isCanceled())
+						return Status.CANCEL_STATUS;
+					Remedy remedy = computeRemedy(remedyConfigs[i], getProvisioningContext(), sub.newChild(1, SubMonitor.SUPPRESS_ALL_LABELS));
+					if (remedy != null) {
+						tmpRemedies.add(remedy);
+						if (remedyFound(remedy))
+							break;
+					}
 				}
 			}
 		} finally {
@@ -122,6 +178,89 @@ public class RemediationOperation extends ProfileChangeOperation {
 		return getResolutionResult();
 	}
 
+	/**
+	 * Evaluates the remedy configurations concurrently, each against its own
+	 * context reading a snapshot of the metadata taken once for all of them.
+	 * Returns the remedies indexed like the configurations, or <code>null</code>
+	 * if canceled.
+	 */
+	private Remedy[] computeRemediesInParallel(SubMonitor sub) {
+		SnapshotProvisioningContext snapshot = SnapshotProvisioningContext.takeSnapshot(session.getProvisioningAgent(), getProvisioningContext(), sub.newChild(1));
+		Remedy[] found = new Remedy[remedyConfigs.length];
+		IProgressMonitor[] monitors = new IProgressMonitor[remedyConfigs.length];
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(remedyConfigs.length, Runtime.getRuntime().availableProcessors()), r -> {
+			Thread thread = new Thread(r, "p2 remediation"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		});
+		CompletionService<Remedy> completion = new ExecutorCompletionService<>(executor);
+		try {
+			for (int i = 0; i < remedyConfigs.length; i++) {
+				final int index = i;
+				monitors[i] = new NullProgressMonitor();
+				ProvisioningContext context = snapshot.copy();
+				completion.submit(() -> {
+					try {
+						return computeRemedy(remedyConfigs[index], context, monitors[index]);
+					} catch (OperationCanceledException e) {
+						return null;
+					}
+				});
+			}
+			for (int i = 0; i < remedyConfigs.length; i++) {
+				Future<Remedy> done;
+				while ((done = completion.poll(100, TimeUnit.MILLISECONDS)) == null) {
+					if (sub.isCanceled()) {
+						cancelAll(monitors);
+						return null;
+					}
+				}
+				sub.subTask((i + 1) + " / " + remedyConfigs.length); //$NON-NLS-1$
+				sub.worked(1);
+				Remedy remedy = done.get();
+				if (remedy == null)
+					continue;
+				for (int j = 0; j < remedyConfigs.length; j++) {
+					if (remedyConfigs[j] == remedy.getConfig())
+						found[j] = remedy;
+				}
+				if (remedyFound(remedy)) {
+					cancelAll(monitors);
+					break;
+				}
+			}
+			return found;
+		} catch (InterruptedException e) {
+			cancelAll(monitors);
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			cancelAll(monitors);
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void cancelAll(IProgressMonitor[] monitors) {
+		for (IProgressMonitor monitor : monitors) {
+			if (monitor != null)
+				monitor.setCanceled(true);
+		}
+	}
+
+	/**
+	 * Notifies the listener of the given remedy and returns whether to stop
+	 * looking for other remedies.
+	 */
+	private boolean remedyFound(Remedy remedy) {
+		if (remedyListener != null)
+			remedyListener.accept(remedy);
+		if (!stopAtBestRemedy || remedy.getRequest() == null)
+			return false;
+		return (remedy.getBeingInstalledRelaxedWeight() == HIGH_WEIGHT && remedy.getInstallationRelaxedWeight() == ZERO_WEIGHT) || (remedy.getInstallationRelaxedWeight() == HIGH_WEIGHT && remedy.getBeingInstalledRelaxedWeight() == ZERO_WEIGHT);
+	}
+
 	private void determineBestSolutions() {
 		int beingInstalledWeight = 0;
 		int installationWeight = 0;
@@ -141,7 +280,7 @@ public class RemediationOperation extends ProfileChangeOperation {
 		}
 	}
 
-	private Remedy computeRemedy(RemedyConfig configuration, IProgressMonitor monitor) {
+	private Remedy computeRemedy(RemedyConfig configuration, ProvisioningContext context, IProgressMonitor monitor) {
 		Remedy remedy = new Remedy(originalRequest);
 		remedy.setConfig(configuration);
 		IPlanner planner = session.getPlanner();
@@ -150,7 +289,7 @@ public class RemediationOperation extends ProfileChangeOperation {
 		av.setAllowInstalledElementChange(configuration.allowInstalledUpdate);
 		av.setAllowInstalledElementRemoval(configuration.allowInstalledRemoval);
 		av.setAllowPartialInstall(configuration.allowPartialInstall);
-		av.setProvisioningContext(getProvisioningContext());
+		av.setProvisioningContext(context);
 		remedy.setRequest((ProfileChangeRequest) av.getChangeRequest(originalRequest, ((ProfileChangeRequest) originalRequest).getProfile(), monitor));
 		if (remedy.getRequest() == null)
 			return null;
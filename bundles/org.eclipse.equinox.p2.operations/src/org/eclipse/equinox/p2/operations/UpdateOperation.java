@@ -142,25 +142,47 @@ public class UpdateOperation extends ProfileChangeOperation {
 		} else {
 			// We must consult the planner
 			IQueryResult<IInstallableUnit> replacements = session.getPlanner().updatesFor(iu, context, monitor);
-			updates = new ArrayList<>();
-			for (IInstallableUnit replacementIU : replacements) {
-				// see https://bugs.eclipse.org/bugs/show_bug.cgi?id=273967
-				// In the case of patches, it's possible that a patch is returned as an
-				// available update
-				// even though it is already installed, because we are querying each IU for
-				// updates individually.
-				// For now, we ignore any proposed update that is already installed.
-				IQueryResult<IInstallableUnit> alreadyInstalled = profile.query(QueryUtil.createIUQuery(replacementIU), null);
-				if (alreadyInstalled.isEmpty()) {
-					Update update = new Update(iu, replacementIU);
-					updates.add(update);
-				}
-			}
+			updates = toUpdates(iu, replacements, profile);
 			possibleUpdatesByIU.put(iu, updates);
 		}
 		return updates.toArray(new Update[updates.size()]);
 	}
 
+	// Looks up the updates of all the IUs not already in the cache at once
+	private void lookUpUpdates(IProfile profile, IProgressMonitor monitor) {
+		List<IInstallableUnit> toLookUp = new ArrayList<>();
+		for (IInstallableUnit iu : iusToUpdate) {
+			if (!possibleUpdatesByIU.containsKey(iu))
+				toLookUp.add(iu);
+		}
+		if (toLookUp.isEmpty())
+			return;
+		Map<IInstallableUnit, IQueryResult<IInstallableUnit>> replacements = session.getPlanner().updatesFor(toLookUp, context, monitor);
+		for (IInstallableUnit iu : toLookUp) {
+			IQueryResult<IInstallableUnit> iuReplacements = replacements.get(iu);
+			if (iuReplacements != null)
+				possibleUpdatesByIU.put(iu, toUpdates(iu, iuReplacements, profile));
+		}
+	}
+
+	private List<Update> toUpdates(IInstallableUnit iu, IQueryResult<IInstallableUnit> replacements, IProfile profile) {
+		List<Update> updates = new ArrayList<>();
+		for (IInstallableUnit replacementIU : replacements) {
+			// see https://bugs.eclipse.org/bugs/show_bug.cgi?id=273967
+			// In the case of patches, it's possible that a patch is returned as an
+			// available update
+			// even though it is already installed, because we are querying each IU for
+			// updates individually.
+			// For now, we ignore any proposed update that is already installed.
+			IQueryResult<IInstallableUnit> alreadyInstalled = profile.query(QueryUtil.createIUQuery(replacementIU), null);
+			if (alreadyInstalled.isEmpty()) {
+				Update update = new Update(iu, replacementIU);
+				updates.add(update);
+			}
+		}
+		return updates;
+	}
+
 	@Override
 	protected void computeProfileChangeRequest(MultiStatus status, IProgressMonitor monitor) {
 		// Here we create a profile change request by finding the latest version available for any replacement, unless
@@ -174,7 +196,8 @@ public class UpdateOperation extends ProfileChangeOperation {
 		if (profile == null)
 			return;
 
-		SubMonitor sub = SubMonitor.convert(monitor, Messages.UpdateOperation_ProfileChangeRequestProgress, 100 * iusToUpdate.size());
+		SubMonitor sub = SubMonitor.convert(monitor, Messages.UpdateOperation_ProfileChangeRequestProgress, 200 * iusToUpdate.size());
+		lookUpUpdates(profile, sub.newChild(100 * iusToUpdate.size()));
 		for (IInstallableUnit iuToUpdate : iusToUpdate) {
 			SubMonitor iuMon = sub.newChild(100);
 			Update[] updates = updatesFor(iuToUpdate, profile, iuMon);
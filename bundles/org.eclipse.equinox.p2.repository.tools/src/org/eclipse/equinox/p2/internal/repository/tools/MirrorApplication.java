@@ -378,6 +378,7 @@ public class MirrorApplication extends AbstractApplication implements IApplicati
 				slicingOptions.includeOptionalDependencies(), slicingOptions.isEverythingGreedy(),
 				slicingOptions.forceFilterTo(), slicingOptions.considerStrictDependencyOnly(),
 				slicingOptions.followOnlyFilteredRequirements());
+		slicer.setParallel(slicingOptions.isParallelSlicing());
 		IQueryable<IInstallableUnit> slice = slicer.slice(sourceIUs.toArray(new IInstallableUnit[sourceIUs.size()]),
 				monitor);
 
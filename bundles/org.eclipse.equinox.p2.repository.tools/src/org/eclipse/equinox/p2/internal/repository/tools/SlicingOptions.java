@@ -24,6 +24,7 @@ public class SlicingOptions {
 	private boolean followOnlyFilteredRequirements = false;
 	private boolean latestVersion = false;
 	private boolean resolve = false;
+	private boolean parallel = false;
 
 	private Map<String, String> filter = null;
 
@@ -92,4 +93,12 @@ public class SlicingOptions {
 	public boolean getInstallTimeLikeResolution() {
 		return resolve;
 	}
+
+	public void parallelSlicing(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public boolean isParallelSlicing() {
+		return parallel;
+	}
 }
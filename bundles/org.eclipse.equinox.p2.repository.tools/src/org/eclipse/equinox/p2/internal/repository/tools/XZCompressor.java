@@ -18,6 +18,7 @@ import java.util.*;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import org.eclipse.equinox.internal.p2.metadata.repository.Messages;
+import org.eclipse.equinox.internal.p2.persistence.PipelinedOutputStream;
 import org.eclipse.osgi.util.NLS;
 import org.tukaani.xz.*;
 
@@ -60,40 +61,32 @@ public class XZCompressor {
 		this.preserveOriginalFile = preserveOriginalFile;
 	}
 
-	private File uncompressJar(File jarFile, String fileToExtract) throws IOException {
-		try (JarInputStream jarStream = new JarInputStream(new FileInputStream(jarFile))) {
-			JarEntry jarEntry = jarStream.getNextJarEntry();
-			while (jarEntry != null && (!fileToExtract.equals(jarEntry.getName()))) {
-				jarEntry = jarStream.getNextJarEntry();
-			}
-			// if there is a jar but the entry is missing or invalid, treat this as an
-			// invalid repository
-			if (jarEntry == null) {
-				jarStream.close();
-				throw new IOException(NLS.bind(Messages.repoMan_invalidLocation, jarFile.getAbsolutePath()));
-			}
-
-			File extractedFile = new File(jarFile.getAbsoluteFile().getParent(), fileToExtract);
-			try (BufferedInputStream input = new BufferedInputStream(jarStream);
-					OutputStream output = new BufferedOutputStream(new FileOutputStream(extractedFile))) {
-
-				byte[] buffer = new byte[8192];
-				int bytesRead = 0;
-				while ((bytesRead = input.read(buffer)) != -1)
-					output.write(buffer, 0, bytesRead);
-			}
-			filesToDelete.add(extractedFile);
-			return extractedFile;
+	private InputStream openJarEntry(File jarFile, String entryName) throws IOException {
+		JarInputStream jarStream = new JarInputStream(new FileInputStream(jarFile));
+		JarEntry jarEntry = jarStream.getNextJarEntry();
+		while (jarEntry != null && (!entryName.equals(jarEntry.getName()))) {
+			jarEntry = jarStream.getNextJarEntry();
+		}
+		// if there is a jar but the entry is missing or invalid, treat this as an
+		// invalid repository
+		if (jarEntry == null) {
+			jarStream.close();
+			throw new IOException(NLS.bind(Messages.repoMan_invalidLocation, jarFile.getAbsolutePath()));
 		}
+		return jarStream;
 	}
 
-	private File getMetadataFile(String prefix) throws IOException {
+	/**
+	 * Opens the XML file of the given prefix, read from its jar if there is no
+	 * XML file, or returns <code>null</code> if there is neither.
+	 */
+	private InputStream openMetadataFile(String prefix) throws IOException {
 		File candidate = new File(repoFolder, prefix + XML);
 		if (candidate.exists()) {
 			if (!preserveOriginalFile) {
 				filesToDelete.add(candidate);
 			}
-			return candidate;
+			return new FileInputStream(candidate);
 		}
 
 		candidate = new File(repoFolder, prefix + JAR);
@@ -101,17 +94,17 @@ public class XZCompressor {
 			if (!preserveOriginalFile) {
 				filesToDelete.add(candidate);
 			}
-			return uncompressJar(candidate, prefix + XML);
+			return openJarEntry(candidate, prefix + XML);
 		}
 		return null;
 	}
 
 	public void compressRepo() throws IOException {
-		File metadata = getMetadataFile(CONTENT);
+		InputStream metadata = openMetadataFile(CONTENT);
 		if (metadata != null)
 			compressFile(metadata, new File(repoFolder, CONTENT_XML_XZ));
 
-		File artifacts = getMetadataFile(ARTIFACTS2);
+		InputStream artifacts = openMetadataFile(ARTIFACTS2);
 		if (artifacts != null)
 			compressFile(artifacts, new File(repoFolder, ARTIFACTS_XML_XZ));
 
@@ -125,7 +118,12 @@ public class XZCompressor {
 		}
 	}
 
-	private void compressFile(File input, File output) throws IOException {
+	/**
+	 * Compresses the given stream into the given file, and closes the stream. The
+	 * stream is read, and a jar inflated, while the previous bytes are compressed
+	 * on another thread.
+	 */
+	private void compressFile(InputStream input, File output) throws IOException {
 		LZMA2Options options = new LZMA2Options();
 		try {
 			options.setDictSize(LZMA2Options.DICT_SIZE_DEFAULT);
@@ -138,8 +136,8 @@ public class XZCompressor {
 		} catch (UnsupportedOptionsException e) {
 			// Can't happen
 		}
-		try (XZOutputStream out = new XZOutputStream(new FileOutputStream(output), options);
-				FileInputStream is = new FileInputStream(input)) {
+		try (InputStream is = new BufferedInputStream(input);
+				OutputStream out = new PipelinedOutputStream(new XZOutputStream(new FileOutputStream(output), options), "Compressing " + output)) { //$NON-NLS-1$
 
 			byte[] buf = new byte[8192];
 			int size;
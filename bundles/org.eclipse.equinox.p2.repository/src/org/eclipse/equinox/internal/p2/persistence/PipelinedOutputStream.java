@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.persistence;
+
+import java.io.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An output stream handing what is written over to a thread of its own, which
+ * writes it to the target stream. Writing to a compressing stream through this
+ * stream lets the compression run next to the code producing the content.
+ * <p>
+ * The written bytes are collected in buffers, and a bounded number of buffers
+ * is waiting for the target stream at any time. Failures of the target stream
+ * are reported by the next write, or at the latest by {@link #close()}, which
+ * waits until everything is written. The thread closes the target stream when
+ * it ends. After a failure, the thread keeps taking the buffers handed over and
+ * drops them, so that writing never waits for a thread that stopped. The stream
+ * must be closed, even when the content cannot be completed, so that the thread
+ * ends.
+ * </p>
+ */
+public class PipelinedOutputStream extends OutputStream {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int PENDING_BUFFERS = 4;
+	// How long to wait for room in the pending buffers before checking the thread is still running
+	private static final long WAIT_MILLIS = 100;
+
+	/**
+	 * Bytes handed over to the writing thread.
+	 */
+	private static class Chunk {
+		final byte[] bytes;
+		final int length;
+		final boolean flush;
+
+		Chunk(byte[] bytes, int length, boolean flush) {
+			this.bytes = bytes;
+			this.length = length;
+			this.flush = flush;
+		}
+	}
+
+	// Marks the end of the content
+	private static final Chunk END = new Chunk(new byte[0], 0, false);
+
+	private final OutputStream target;
+	private final BlockingQueue<Chunk> pending = new ArrayBlockingQueue<>(PENDING_BUFFERS);
+	// The buffers written by the thread, which are reused
+	private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(PENDING_BUFFERS + 1);
+	private final Thread thread;
+	private volatile IOException failure;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int count;
+	private boolean closed;
+
+	/**
+	 * Creates a stream writing to the given stream on a thread of the given name.
+	 */
+	public PipelinedOutputStream(OutputStream target, String threadName) {
+		this.target = target;
+		this.thread = new Thread(this::drain, threadName);
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	private void drain() {
+		try {
+			for (;;) {
+				Chunk chunk;
+				try {
+					chunk = pending.take();
+				} catch (InterruptedException e) {
+					// The rest of the content is dropped, until the end is handed over
+					if (failure == null)
+						failure = new InterruptedIOException();
+					continue;
+				}
+				if (chunk == END)
+					break;
+				if (failure == null) {
+					try {
+						target.write(chunk.bytes, 0, chunk.length);
+						if (chunk.flush)
+							target.flush();
+					} catch (IOException e) {
+						// The rest of the content is dropped
+						failure = e;
+					} catch (RuntimeException e) {
+						failure = new IOException(e.getMessage(), e);
+					}
+				}
+				free.offer(chunk.bytes);
+			}
+		} finally {
+			try {
+				target.close();
+			} catch (IOException e) {
+				if (failure == null)
+					failure = e;
+			} catch (RuntimeException e) {
+				if (failure == null)
+					failure = new IOException(e.getMessage(), e);
+			}
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		IOException e = failure;
+		if (e != null)
+			throw new IOException(e.getMessage(), e);
+	}
+
+	/**
+	 * Hands the given chunk over to the thread. Returns false if the thread ended
+	 * without taking it.
+	 */
+	private boolean queue(Chunk chunk) throws InterruptedException {
+		while (!pending.offer(chunk, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+			if (!thread.isAlive())
+				return false;
+		}
+		return true;
+	}
+
+	private void handOver(boolean flush) throws IOException {
+		ensureOpen();
+		checkFailure();
+		if (count == 0 && !flush)
+			return;
+		try {
+			if (!queue(new Chunk(buffer, count, flush))) {
+				checkFailure();
+				throw new IOException("The thread writing the stream ended: " + thread.getName()); //$NON-NLS-1$
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		byte[] next = free.poll();
+		buffer = next != null ? next : new byte[BUFFER_SIZE];
+		count = 0;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed)
+			throw new IOException("Stream closed"); //$NON-NLS-1$
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (count == buffer.length)
+			handOver(false);
+		buffer[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		while (len > 0) {
+			if (count == buffer.length)
+				handOver(false);
+			int n = Math.min(len, buffer.length - count);
+			System.arraycopy(b, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Hands the bytes written so far over, to be flushed to the target stream.
+	 * This does not wait for the target stream.
+	 */
+	@Override
+	public void flush() throws IOException {
+		handOver(true);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		try {
+			if (failure == null)
+				handOver(false);
+		} finally {
+			closed = true;
+			finish();
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Hands the end of the content over and waits until the thread has written
+	 * everything and closed the target stream. When interrupted, the thread is
+	 * interrupted too, and it drops the rest of the content and closes the target
+	 * stream on its own.
+	 */
+	private void finish() throws IOException {
+		boolean interrupted = false;
+		// The thread takes everything until the end, so this does not wait for long
+		for (;;) {
+			try {
+				queue(END);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (!interrupted) {
+			try {
+				thread.join();
+				return;
+			} catch (InterruptedException e) {
+				// fall through
+			}
+		}
+		Thread.currentThread().interrupt();
+		thread.interrupt();
+		throw new InterruptedIOException();
+	}
+}
@@ -0,0 +1,872 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.internal.p2.persistence;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.*;
+import java.util.Arrays;
+import org.xml.sax.*;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A SAX reader for the documents written by p2, which allocates much less than
+ * a general purpose parser. Names and attribute values are shared through a
+ * table local to the reader instead of being created for each element, the
+ * attributes of all elements are kept in a single object, and character data
+ * is reported from the buffer of the reader.
+ * <p>
+ * The reader is not validating and does not read DTDs: a document type
+ * declaration is skipped, and references to entities other than the predefined
+ * ones are errors. Namespace declarations are not reported, and elements and
+ * attributes have no namespace URI, since p2 documents do not use namespaces.
+ * </p>
+ */
+public class StreamingXMLReader implements XMLReader, Locator {
+	private static final String FEATURE_NAMESPACES = "http://xml.org/sax/features/namespaces"; //$NON-NLS-1$
+	private static final String FEATURE_NAMESPACE_PREFIXES = "http://xml.org/sax/features/namespace-prefixes"; //$NON-NLS-1$
+	private static final String FEATURE_VALIDATION = "http://xml.org/sax/features/validation"; //$NON-NLS-1$
+
+	// The number of bytes searched for the encoding of the document
+	private static final int DECLARATION_LIMIT = 1024;
+	private static final ContentHandler NO_CONTENT_HANDLER = new DefaultHandler();
+
+	private final StringTable strings = new StringTable();
+	private final AttributeList attributes = new AttributeList();
+
+	private ContentHandler contentHandler;
+	private ErrorHandler errorHandler;
+	private DTDHandler dtdHandler;
+	private EntityResolver entityResolver;
+
+	private Reader input;
+	private final char[] buffer = new char[8192];
+	private int position;
+	private int limit;
+	// The number of characters read before the buffer
+	private long consumed;
+
+	// Character data, names and attribute values being read
+	private char[] chars = new char[256];
+	private int length;
+
+	// The names of the open elements
+	private String[] elements = new String[16];
+	private int depth;
+
+	private String publicId;
+	private String systemId;
+	private int line;
+	private long lineStart;
+
+	@Override
+	public boolean getFeature(String name) throws SAXNotRecognizedException {
+		if (FEATURE_NAMESPACES.equals(name))
+			return true;
+		if (FEATURE_NAMESPACE_PREFIXES.equals(name) || FEATURE_VALIDATION.equals(name))
+			return false;
+		throw new SAXNotRecognizedException(name);
+	}
+
+	@Override
+	public void setFeature(String name, boolean value) throws SAXNotRecognizedException, SAXNotSupportedException {
+		if (getFeature(name) != value)
+			throw new SAXNotSupportedException(name);
+	}
+
+	@Override
+	public Object getProperty(String name) throws SAXNotRecognizedException {
+		throw new SAXNotRecognizedException(name);
+	}
+
+	@Override
+	public void setProperty(String name, Object value) throws SAXNotRecognizedException {
+		throw new SAXNotRecognizedException(name);
+	}
+
+	@Override
+	public void setEntityResolver(EntityResolver resolver) {
+		this.entityResolver = resolver;
+	}
+
+	@Override
+	public EntityResolver getEntityResolver() {
+		return entityResolver;
+	}
+
+	@Override
+	public void setDTDHandler(DTDHandler handler) {
+		this.dtdHandler = handler;
+	}
+
+	@Override
+	public DTDHandler getDTDHandler() {
+		return dtdHandler;
+	}
+
+	@Override
+	public void setContentHandler(ContentHandler handler) {
+		this.contentHandler = handler;
+	}
+
+	@Override
+	public ContentHandler getContentHandler() {
+		return contentHandler;
+	}
+
+	@Override
+	public void setErrorHandler(ErrorHandler handler) {
+		this.errorHandler = handler;
+	}
+
+	@Override
+	public ErrorHandler getErrorHandler() {
+		return errorHandler;
+	}
+
+	@Override
+	public String getPublicId() {
+		return publicId;
+	}
+
+	@Override
+	public String getSystemId() {
+		return systemId;
+	}
+
+	@Override
+	public int getLineNumber() {
+		return line;
+	}
+
+	@Override
+	public int getColumnNumber() {
+		return (int) (consumed + position - lineStart) + 1;
+	}
+
+	@Override
+	public void parse(String id) throws IOException, SAXException {
+		parse(new InputSource(id));
+	}
+
+	@Override
+	public void parse(InputSource source) throws IOException, SAXException {
+		publicId = source.getPublicId();
+		systemId = source.getSystemId();
+		InputStream opened = null;
+		if (source.getCharacterStream() != null) {
+			input = source.getCharacterStream();
+		} else if (source.getByteStream() != null) {
+			input = openReader(source.getByteStream(), source.getEncoding());
+		} else {
+			opened = new URL(systemId).openStream();
+			input = openReader(opened, source.getEncoding());
+		}
+		position = limit = length = depth = 0;
+		consumed = lineStart = 0;
+		line = 1;
+		try {
+			handler().setDocumentLocator(this);
+			handler().startDocument();
+			parseDocument();
+			handler().endDocument();
+		} finally {
+			input = null;
+			strings.clear();
+			if (opened != null)
+				opened.close();
+		}
+	}
+
+	private ContentHandler handler() {
+		return contentHandler != null ? contentHandler : NO_CONTENT_HANDLER;
+	}
+
+	/**
+	 * Returns a reader decoding the given stream in the encoding of the document.
+	 */
+	private static Reader openReader(InputStream stream, String encoding) throws IOException {
+		if (!stream.markSupported())
+			stream = new BufferedInputStream(stream);
+		Charset charset;
+		if (encoding != null) {
+			charset = toCharset(encoding);
+		} else {
+			stream.mark(DECLARATION_LIMIT);
+			byte[] start = new byte[DECLARATION_LIMIT];
+			int count = 0;
+			for (int read; count < start.length && (read = stream.read(start, count, start.length - count)) > 0;)
+				count += read;
+			stream.reset();
+			charset = detectCharset(start, count);
+		}
+		// The decoder reports malformed input instead of replacing it
+		return new InputStreamReader(stream, charset.newDecoder());
+	}
+
+	private static Charset detectCharset(byte[] start, int count) throws IOException {
+		if (count >= 2) {
+			int first = start[0] & 0xFF;
+			int second = start[1] & 0xFF;
+			if ((first == 0xFE && second == 0xFF) || (first == 0xFF && second == 0xFE))
+				return StandardCharsets.UTF_16;
+			if (first == 0 && second == '<')
+				return StandardCharsets.UTF_16BE;
+			if (first == '<' && second == 0)
+				return StandardCharsets.UTF_16LE;
+		}
+		// A UTF-8 byte order mark
+		int offset = count >= 3 && (start[0] & 0xFF) == 0xEF && (start[1] & 0xFF) == 0xBB && (start[2] & 0xFF) == 0xBF ? 3 : 0;
+		String declaration = new String(start, offset, count - offset, StandardCharsets.ISO_8859_1);
+		int end = declaration.indexOf("?>"); //$NON-NLS-1$
+		if (!declaration.startsWith("<?xml") || end < 0) //$NON-NLS-1$
+			return StandardCharsets.UTF_8;
+		declaration = declaration.substring(0, end);
+		int encoding = declaration.indexOf("encoding"); //$NON-NLS-1$
+		if (encoding < 0)
+			return StandardCharsets.UTF_8;
+		String rest = declaration.substring(encoding + 8).replace('"', '\'');
+		int open = rest.indexOf('\'');
+		int close = rest.indexOf('\'', open + 1);
+		if (open < 0 || close < 0)
+			return StandardCharsets.UTF_8;
+		return toCharset(rest.substring(open + 1, close));
+	}
+
+	private static Charset toCharset(String encoding) throws IOException {
+		try {
+			return Charset.forName(encoding);
+		} catch (IllegalArgumentException e) {
+			throw new UnsupportedEncodingException(encoding);
+		}
+	}
+
+	private void parseDocument() throws IOException, SAXException {
+		if (peek() == '\uFEFF')
+			next();
+		if (startsWithDeclaration())
+			skipDeclaration();
+		boolean root = false;
+		skipWhitespace();
+		int c;
+		while ((c = next()) == '<') {
+			c = next();
+			if (c == '?') {
+				parseProcessingInstruction();
+			} else if (c == '!' && peek() == '-') {
+				expect("--"); //$NON-NLS-1$
+				skipComment();
+			} else if (c == '!' && !root) {
+				expect("DOCTYPE"); //$NON-NLS-1$
+				skipDoctype();
+			} else if (c != '!' && c != '/' && !root) {
+				parseRootElement(c);
+				root = true;
+			} else {
+				throw error("The markup in the document following the root element must be well-formed."); //$NON-NLS-1$
+			}
+			skipWhitespace();
+		}
+		if (c != -1 || !root)
+			throw error(root ? "Content is not allowed in trailing section." : "Content is not allowed in prolog."); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private boolean startsWithDeclaration() throws IOException {
+		if (position == limit)
+			fill();
+		if (limit - position < 6)
+			return false;
+		return buffer[position] == '<' && buffer[position + 1] == '?' && buffer[position + 2] == 'x' && buffer[position + 3] == 'm' && buffer[position + 4] == 'l' && isWhitespace(buffer[position + 5]);
+	}
+
+	private void skipDeclaration() throws IOException, SAXException {
+		for (int c = next(), previous = 0; c != '>' || previous != '?'; previous = c, c = next()) {
+			if (c == -1)
+				throw error("The XML declaration must end with \"?>\"."); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Parses the root element and its content, given the first character of its name.
+	 */
+	private void parseRootElement(int c) throws IOException, SAXException {
+		parseStartTag(c);
+		while (depth > 0) {
+			c = parseText();
+			if (c == '/') {
+				parseEndTag();
+			} else if (c == '!') {
+				c = next();
+				if (c == '-') {
+					expect("-"); //$NON-NLS-1$
+					skipComment();
+				} else if (c == '[') {
+					expect("CDATA["); //$NON-NLS-1$
+					parseCData();
+				} else {
+					throw error("The content of elements must consist of well-formed character data or markup."); //$NON-NLS-1$
+				}
+			} else if (c == '?') {
+				flushText();
+				parseProcessingInstruction();
+			} else {
+				parseStartTag(c);
+			}
+		}
+	}
+
+	/**
+	 * Reads character data up to the next markup, and returns the character
+	 * following its '&lt;'.
+	 */
+	private int parseText() throws IOException, SAXException {
+		while (true) {
+			// Copy the plain characters in the buffer at once
+			int end = position;
+			for (char c; end < limit && (c = buffer[end]) != '<' && c != '&' && c != '\r'; end++) {
+				if (c == '\n') {
+					line++;
+					lineStart = consumed + end + 1;
+				}
+			}
+			append(buffer, position, end);
+			position = end;
+			int c = next();
+			if (c == '<')
+				return next();
+			if (c == '&')
+				parseReference();
+			else if (c == -1)
+				throw error("XML document structures must start and end within the same entity."); //$NON-NLS-1$
+			else
+				append((char) c);
+		}
+	}
+
+	private void flushText() throws SAXException {
+		if (length > 0) {
+			handler().characters(chars, 0, length);
+			length = 0;
+		}
+	}
+
+	private void parseStartTag(int c) throws IOException, SAXException {
+		flushText();
+		String qName = parseName(c);
+		attributes.clear();
+		boolean empty;
+		while (true) {
+			boolean separated = skipWhitespace();
+			c = next();
+			if (c == '>') {
+				empty = false;
+				break;
+			}
+			if (c == '/') {
+				expect(">"); //$NON-NLS-1$
+				empty = true;
+				break;
+			}
+			if (!separated)
+				throw error("Element type \"" + qName + "\" must be followed by either attribute specifications, \">\" or \"/>\"."); //$NON-NLS-1$ //$NON-NLS-2$
+			String name = parseName(c);
+			skipWhitespace();
+			if (next() != '=')
+				throw error("Attribute name \"" + name + "\" associated with an element type \"" + qName + "\" must be followed by the ' = ' character."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			skipWhitespace();
+			int quote = next();
+			if (quote != '"' && quote != '\'')
+				throw error("Open quote is expected for attribute \"" + name + "\" associated with an element type \"" + qName + "\"."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			String value = parseAttributeValue(quote, name);
+			// Namespace declarations are not attributes for a namespace aware reader
+			if (name.startsWith("xmlns") && (name.length() == 5 || name.charAt(5) == ':')) //$NON-NLS-1$
+				continue;
+			if (attributes.getIndex(name) >= 0)
+				throw error("Attribute \"" + name + "\" was already specified for element \"" + qName + "\"."); //$NON-NLS-1$ //$NON-NLS-2$
+			attributes.add(name, localName(name), value);
+		}
+		String localName = localName(qName);
+		handler().startElement("", localName, qName, attributes); //$NON-NLS-1$
+		if (empty) {
+			handler().endElement("", localName, qName); //$NON-NLS-1$
+		} else {
+			if (depth == elements.length)
+				elements = Arrays.copyOf(elements, depth * 2);
+			elements[depth++] = qName;
+		}
+	}
+
+	private void parseEndTag() throws IOException, SAXException {
+		flushText();
+		String qName = parseName(next());
+		skipWhitespace();
+		expect(">"); //$NON-NLS-1$
+		String open = elements[--depth];
+		if (!qName.equals(open))
+			throw error("The element type \"" + open + "\" must be terminated by the matching end-tag \"</" + open + ">\"."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		elements[depth] = null;
+		handler().endElement("", localName(qName), qName); //$NON-NLS-1$
+	}
+
+	private String localName(String qName) {
+		int colon = qName.indexOf(':');
+		return colon < 0 ? qName : strings.get(qName.substring(colon + 1));
+	}
+
+	private String parseName(int c) throws IOException, SAXException {
+		if (!isNameStart(c))
+			throw error("The markup in the document must be well-formed."); //$NON-NLS-1$
+		// The first character was just read from the buffer
+		int end = position;
+		int hash = c;
+		while (end < limit && isNameChar(buffer[end]))
+			hash = 31 * hash + buffer[end++];
+		if (end < limit) {
+			String name = strings.get(buffer, position - 1, end - position + 1, hash);
+			position = end;
+			return name;
+		}
+		int start = length;
+		append(buffer, position - 1, end);
+		position = end;
+		while (isNameChar(peek()))
+			append((char) next());
+		String name = strings.get(chars, start, length - start);
+		length = start;
+		return name;
+	}
+
+	private String parseAttributeValue(int quote, String name) throws IOException, SAXException {
+		int start = length;
+		while (true) {
+			int end = position;
+			int hash = 0;
+			for (char c; end < limit && (c = buffer[end]) != quote && c != '&' && c != '<' && c >= ' '; end++)
+				hash = 31 * hash + c;
+			if (length == start && end < limit && buffer[end] == quote) {
+				// Most values are in the buffer, without references or line ends
+				String value = strings.get(buffer, position, end - position, hash);
+				position = end + 1;
+				return value;
+			}
+			append(buffer, position, end);
+			position = end;
+			int c = next();
+			if (c == quote)
+				break;
+			if (c == '&')
+				parseReference();
+			else if (c == '\n' || c == '\t')
+				// Line ends are already normalized
+				append(' ');
+			else if (c == '<' || c == -1)
+				throw error("The value of attribute \"" + name + "\" must not contain the '<' character."); //$NON-NLS-1$ //$NON-NLS-2$
+			else
+				append((char) c);
+		}
+		String value = strings.get(chars, start, length - start);
+		length = start;
+		return value;
+	}
+
+	/**
+	 * Appends the character of a reference, following its '&amp;'.
+	 */
+	private void parseReference() throws IOException, SAXException {
+		int c = next();
+		if (c == '#') {
+			int radix = 10;
+			c = next();
+			if (c == 'x') {
+				radix = 16;
+				c = next();
+			}
+			int codePoint = 0;
+			boolean digits = false;
+			for (; c != ';'; c = next()) {
+				int digit = c == -1 ? -1 : Character.digit(c, radix);
+				if (digit < 0 || codePoint > Character.MAX_CODE_POINT)
+					throw error("A character reference must end with the ';' delimiter."); //$NON-NLS-1$
+				codePoint = codePoint * radix + digit;
+				digits = true;
+			}
+			if (!digits || !isCharacter(codePoint))
+				throw error("Character reference \"&#" + codePoint + "\" is an invalid XML character."); //$NON-NLS-1$ //$NON-NLS-2$
+			if (Character.isBmpCodePoint(codePoint)) {
+				append((char) codePoint);
+			} else {
+				append(Character.highSurrogate(codePoint));
+				append(Character.lowSurrogate(codePoint));
+			}
+			return;
+		}
+		String name = parseName(c);
+		if (next() != ';')
+			throw error("The reference to entity \"" + name + "\" must end with the ';' delimiter."); //$NON-NLS-1$ //$NON-NLS-2$
+		switch (name) {
+			case "lt" : //$NON-NLS-1$
+				append('<');
+				break;
+			case "gt" : //$NON-NLS-1$
+				append('>');
+				break;
+			case "amp" : //$NON-NLS-1$
+				append('&');
+				break;
+			case "quot" : //$NON-NLS-1$
+				append('"');
+				break;
+			case "apos" : //$NON-NLS-1$
+				append('\'');
+				break;
+			default :
+				throw error("The entity \"" + name + "\" was referenced, but not declared."); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private void parseCData() throws IOException, SAXException {
+		for (int c = next(), brackets = 0; c != '>' || brackets < 2; c = next()) {
+			if (c == -1)
+				throw error("The CDATA section must end with \"]]>\"."); //$NON-NLS-1$
+			brackets = c == ']' ? brackets + 1 : 0;
+			append((char) c);
+		}
+		// Drop the brackets of the end of the section
+		length -= 2;
+	}
+
+	private void parseProcessingInstruction() throws IOException, SAXException {
+		String target = parseName(next());
+		if (target.equalsIgnoreCase("xml")) //$NON-NLS-1$
+			throw error("The processing instruction target matching \"[xX][mM][lL]\" is not allowed."); //$NON-NLS-1$
+		skipWhitespace();
+		int start = length;
+		for (int c = next(); c != '>' || length == start || chars[length - 1] != '?'; c = next()) {
+			if (c == -1)
+				throw error("The processing instruction must end with \"?>\"."); //$NON-NLS-1$
+			append((char) c);
+		}
+		String data = new String(chars, start, length - start - 1);
+		length = start;
+		handler().processingInstruction(target, data);
+	}
+
+	private void skipComment() throws IOException, SAXException {
+		for (int c = next(), dashes = 0; c != '>' || dashes < 2; c = next()) {
+			if (c == -1)
+				throw error("The comment must end with \"-->\"."); //$NON-NLS-1$
+			dashes = c == '-' ? dashes + 1 : 0;
+		}
+	}
+
+	private void skipDoctype() throws IOException, SAXException {
+		int quote = 0;
+		boolean subset = false;
+		for (int c = next(); quote != 0 || subset || c != '>'; c = next()) {
+			if (c == -1)
+				throw error("The document type declaration must end with '>'."); //$NON-NLS-1$
+			if (quote != 0) {
+				if (c == quote)
+					quote = 0;
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '[') {
+				subset = true;
+			} else if (c == ']') {
+				subset = false;
+			}
+		}
+	}
+
+	private void expect(String text) throws IOException, SAXException {
+		for (int i = 0; i < text.length(); i++)
+			if (next() != text.charAt(i))
+				throw error("The markup in the document must be well-formed; \"" + text + "\" is expected."); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private boolean skipWhitespace() throws IOException {
+		boolean skipped = false;
+		while (isWhitespace(peek())) {
+			next();
+			skipped = true;
+		}
+		return skipped;
+	}
+
+	private void append(char[] source, int start, int end) {
+		int count = end - start;
+		if (length + count > chars.length)
+			chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + count));
+		System.arraycopy(source, start, chars, length, count);
+		length += count;
+	}
+
+	private void append(char c) {
+		if (length == chars.length)
+			chars = Arrays.copyOf(chars, length * 2);
+		chars[length++] = c;
+	}
+
+	/**
+	 * Returns the next character without consuming it, or -1 at the end of the
+	 * document.
+	 */
+	private int peek() throws IOException {
+		if (position == limit && !fill())
+			return -1;
+		return buffer[position];
+	}
+
+	/**
+	 * Consumes and returns the next character, or -1 at the end of the document.
+	 * Line ends are normalized to a single '\n'.
+	 */
+	private int next() throws IOException {
+		if (position == limit && !fill())
+			return -1;
+		char c = buffer[position++];
+		if (c == '\r') {
+			if ((position < limit || fill()) && buffer[position] == '\n')
+				position++;
+			c = '\n';
+		}
+		if (c == '\n') {
+			line++;
+			lineStart = consumed + position;
+		}
+		return c;
+	}
+
+	private boolean fill() throws IOException {
+		consumed += limit;
+		int read = input.read(buffer, 0, buffer.length);
+		position = 0;
+		limit = Math.max(read, 0);
+		return read > 0;
+	}
+
+	private SAXParseException error(String message) throws SAXException {
+		SAXParseException exception = new SAXParseException(message, this);
+		if (errorHandler != null)
+			errorHandler.fatalError(exception);
+		return exception;
+	}
+
+	private static boolean isCharacter(int codePoint) {
+		if (codePoint < 0x20)
+			return codePoint == '\t' || codePoint == '\n' || codePoint == '\r';
+		return codePoint <= 0xD7FF || (codePoint >= 0xE000 && codePoint <= 0xFFFD) || (codePoint >= 0x10000 && codePoint <= Character.MAX_CODE_POINT);
+	}
+
+	private static boolean isWhitespace(int c) {
+		return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+	}
+
+	private static boolean isNameStart(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':' || c >= 0x80;
+	}
+
+	private static boolean isNameChar(int c) {
+		return isNameStart(c) || (c >= '0' && c <= '9') || c == '-' || c == '.';
+	}
+
+	/**
+	 * The strings read from a document, looked up by their characters so that
+	 * the strings that repeat are only created once.
+	 */
+	private static final class StringTable {
+		private String[] strings = new String[1024];
+		private int[] hashes = new int[1024];
+		private int size;
+
+		/**
+		 * Returns the hash code of the string of the given characters, which is
+		 * the hash code of {@link String}.
+		 */
+		static int hash(char[] source, int offset, int count) {
+			int hash = 0;
+			for (int i = offset; i < offset + count; i++)
+				hash = 31 * hash + source[i];
+			return hash;
+		}
+
+		private static boolean matches(String string, char[] source, int offset, int count) {
+			if (string.length() != count)
+				return false;
+			for (int i = 0; i < count; i++) {
+				if (string.charAt(i) != source[offset + i])
+					return false;
+			}
+			return true;
+		}
+
+		String get(String string) {
+			int hash = string.hashCode();
+			int mask = strings.length - 1;
+			int index = mix(hash) & mask;
+			for (; strings[index] != null; index = (index + 1) & mask) {
+				if (hashes[index] == hash && strings[index].equals(string))
+					return strings[index];
+			}
+			add(index, string, hash);
+			return string;
+		}
+
+		String get(char[] source, int offset, int count) {
+			return get(source, offset, count, hash(source, offset, count));
+		}
+
+		String get(char[] source, int offset, int count, int hash) {
+			int mask = strings.length - 1;
+			int index = mix(hash) & mask;
+			for (; strings[index] != null; index = (index + 1) & mask) {
+				if (hashes[index] == hash && matches(strings[index], source, offset, count))
+					return strings[index];
+			}
+			String result = new String(source, offset, count);
+			add(index, result, hash);
+			return result;
+		}
+
+		private void add(int index, String string, int hash) {
+			strings[index] = string;
+			hashes[index] = hash;
+			if (++size * 2 > strings.length)
+				grow();
+		}
+
+		void clear() {
+			if (size > 0) {
+				Arrays.fill(strings, null);
+				size = 0;
+			}
+		}
+
+		private void grow() {
+			String[] oldStrings = strings;
+			int[] oldHashes = hashes;
+			strings = new String[oldStrings.length * 2];
+			hashes = new int[strings.length];
+			int mask = strings.length - 1;
+			for (int i = 0; i < oldStrings.length; i++) {
+				if (oldStrings[i] != null) {
+					int index = mix(oldHashes[i]) & mask;
+					while (strings[index] != null)
+						index = (index + 1) & mask;
+					strings[index] = oldStrings[i];
+					hashes[index] = oldHashes[i];
+				}
+			}
+		}
+
+		private static int mix(int hash) {
+			return hash ^ (hash >>> 16);
+		}
+	}
+
+	/**
+	 * The attributes of the element being read, reused for all the elements.
+	 */
+	private static final class AttributeList implements Attributes {
+		private String[] qNames = new String[8];
+		private String[] localNames = new String[8];
+		private String[] values = new String[8];
+		private int count;
+
+		void clear() {
+			Arrays.fill(values, 0, count, null);
+			count = 0;
+		}
+
+		void add(String qName, String localName, String value) {
+			if (count == qNames.length) {
+				qNames = Arrays.copyOf(qNames, count * 2);
+				localNames = Arrays.copyOf(localNames, count * 2);
+				values = Arrays.copyOf(values, count * 2);
+			}
+			qNames[count] = qName;
+			localNames[count] = localName;
+			values[count] = value;
+			count++;
+		}
+
+		@Override
+		public int getLength() {
+			return count;
+		}
+
+		@Override
+		public String getURI(int index) {
+			return index >= 0 && index < count ? "" : null; //$NON-NLS-1$
+		}
+
+		@Override
+		public String getLocalName(int index) {
+			return index >= 0 && index < count ? localNames[index] : null;
+		}
+
+		@Override
+		public String getQName(int index) {
+			return index >= 0 && index < count ? qNames[index] : null;
+		}
+
+		@Override
+		public String getType(int index) {
+			return index >= 0 && index < count ? "CDATA" : null; //$NON-NLS-1$
+		}
+
+		@Override
+		public String getValue(int index) {
+			return index >= 0 && index < count ? values[index] : null;
+		}
+
+		@Override
+		public int getIndex(String uri, String localName) {
+			if (uri == null || uri.length() > 0)
+				return -1;
+			for (int i = 0; i < count; i++)
+				if (localNames[i].equals(localName))
+					return i;
+			return -1;
+		}
+
+		@Override
+		public int getIndex(String qName) {
+			for (int i = 0; i < count; i++)
+				if (qNames[i].equals(qName))
+					return i;
+			return -1;
+		}
+
+		@Override
+		public String getType(String uri, String localName) {
+			return getType(getIndex(uri, localName));
+		}
+
+		@Override
+		public String getType(String qName) {
+			return getType(getIndex(qName));
+		}
+
+		@Override
+		public String getValue(String uri, String localName) {
+			return getValue(getIndex(uri, localName));
+		}
+
+		@Override
+		public String getValue(String qName) {
+			return getValue(getIndex(qName));
+		}
+	}
+}
@@ -19,6 +19,7 @@ import javax.xml.parsers.*;
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.internal.p2.core.Activator;
 import org.eclipse.equinox.internal.p2.core.helpers.*;
+import org.eclipse.equinox.p2.core.StrongPool;
 import org.eclipse.equinox.p2.metadata.Version;
 import org.eclipse.equinox.p2.metadata.VersionRange;
 import org.eclipse.osgi.util.NLS;
@@ -30,6 +31,12 @@ import org.xml.sax.helpers.DefaultHandler;
 
 public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 
+	/**
+	 * Framework property which, when <code>true</code>, makes the parsers read
+	 * documents with a {@link StreamingXMLReader} instead of a SAX parser.
+	 */
+	public static final String PROP_STREAMING_READER = "eclipse.p2.persistence.streamingReader"; //$NON-NLS-1$
+
 	// Get the root object that is being parsed.
 	protected abstract Object getRootObject();
 
@@ -50,6 +57,9 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 	// Store a cache of previously seen URIs to avoid GC presure
 	final Map<String, URI> uris = new HashMap<>();
 
+	// The strings of attributes and character data, shared within the document
+	final StrongPool<String> strings = new StrongPool<>();
+
 	private static ServiceTracker<SAXParserFactory, SAXParserFactory> xmlTracker = null;
 
 	public XMLParser(BundleContext context, String pluginId) {
@@ -91,7 +101,16 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 		}
 	}
 
+	/**
+	 * Creates the reader of the parser, which is a {@link StreamingXMLReader} if
+	 * the {@link #PROP_STREAMING_READER} property is set, in which case no SAX
+	 * parser is returned.
+	 */
 	protected SAXParser getParser() throws ParserConfigurationException, SAXException {
+		if (context != null && Boolean.parseBoolean(context.getProperty(PROP_STREAMING_READER))) {
+			xmlReader = new StreamingXMLReader();
+			return null;
+		}
 		SAXParserFactory factory = acquireXMLParsing(this.context);
 		if (factory == null) {
 			throw new SAXException(Messages.XMLParser_No_SAX_Parser);
@@ -211,6 +230,10 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 		 */
 		@Override
 		public void characters(char[] chars, int start, int length) {
+			// Leading white space is trimmed anyway, and is mostly the indentation of sub-elements
+			if ((this.characters == null || this.characters.length() == 0) && isIndentation(chars, start, length)) {
+				return;
+			}
 			if (this.characters == null) {
 				this.characters = new StringBuffer();
 			}
@@ -252,6 +275,16 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 			}
 		}
 
+		private boolean isIndentation(char[] chars, int start, int length) {
+			for (int i = start; i < start + length; i += 1) {
+				char c = chars[i];
+				if (c != ' ' && c != '\n' && c != '\t' && c != '\r') {
+					return false;
+				}
+			}
+			return true;
+		}
+
 		private boolean allWhiteSpace(StringBuffer sb) {
 			int length = sb.length();
 			for (int i = 0; i < length; i += 1) {
@@ -338,7 +371,7 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 			String[] result = new String[required.length + optional.length];
 			for (int i = 0; i < attributes.getLength(); i += 1) {
 				String name = attributes.getLocalName(i);
-				String value = attributes.getValue(i).trim().intern();
+				String value = strings.add(attributes.getValue(i).trim());
 				int j;
 				if ((j = indexOf(required, name)) >= 0) {
 					result[j] = value;
@@ -491,7 +524,7 @@ public abstract class XMLParser extends DefaultHandler implements XMLConstants {
 
 		@Override
 		protected void processCharacters(String data) {
-			this.text = data == null ? null : data.intern();
+			this.text = strings.add(data);
 		}
 
 	}
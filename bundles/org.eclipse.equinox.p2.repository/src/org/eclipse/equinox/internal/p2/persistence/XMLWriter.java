@@ -64,10 +64,18 @@ public class XMLWriter implements XMLConstants {
 	private boolean open; // Can attributes be added to the current element?
 	private String indent; // used for each level of indentation
 
-	private PrintWriter pw;
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final OutputStream output;
+	private final Writer writer;
+	// The characters not yet handed over to the writer, which encodes them in one go
+	private final char[] buffer = new char[8192];
+	private int count;
+	private boolean error; // Did writing to the output fail?
 
 	public XMLWriter(OutputStream output, ProcessingInstruction[] piElements) {
-		this.pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)), false);
+		this.output = output;
+		this.writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
 		println(ProcessingInstruction.XML_UTF8);
 		this.elements = new Stack<>();
 		this.open = false;
@@ -79,6 +87,21 @@ public class XMLWriter implements XMLConstants {
 		}
 	}
 
+	/**
+	 * Creates a writer for a fragment of the document of the given writer: the
+	 * fragment is written as content of the current element of that writer, with
+	 * the same indentation, and is added to the document with
+	 * {@link #writeFragment(ByteArrayOutputStream)}.
+	 */
+	protected XMLWriter(XMLWriter document, OutputStream output) {
+		this.output = output;
+		this.writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+		this.elements = new Stack<>();
+		this.elements.addAll(document.elements);
+		this.open = false;
+		this.indent = document.indent;
+	}
+
 	// start a new element
 	public void start(String name) {
 		if (this.open) {
@@ -121,58 +144,66 @@ public class XMLWriter implements XMLConstants {
 		this.open = false;
 	}
 
+	// The replacement of each ASCII character, or null if the character is written as is
+	private static final String[] ASCII_REPLACEMENTS = new String[128];
+	static {
+		for (char c = 0; c < '\u0020'; c++)
+			ASCII_REPLACEMENTS[c] = Character.isWhitespace(c) ? " " : ""; //$NON-NLS-1$ //$NON-NLS-2$
+		ASCII_REPLACEMENTS['<'] = "&lt;"; //$NON-NLS-1$
+		ASCII_REPLACEMENTS['>'] = "&gt;"; //$NON-NLS-1$
+		ASCII_REPLACEMENTS['"'] = "&quot;"; //$NON-NLS-1$
+		ASCII_REPLACEMENTS['\''] = "&apos;"; //$NON-NLS-1$
+		ASCII_REPLACEMENTS['&'] = "&amp;"; //$NON-NLS-1$
+		ASCII_REPLACEMENTS['\t'] = "&#x9;"; //$NON-NLS-1$
+		ASCII_REPLACEMENTS['\n'] = "&#xA;"; //$NON-NLS-1$
+		ASCII_REPLACEMENTS['\r'] = "&#xD;"; //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the text written for the given character, or <code>null</code> if
+	 * the character is written as is.
+	 */
+	private static String replacement(char c) {
+		if (c < ASCII_REPLACEMENTS.length)
+			return ASCII_REPLACEMENTS[c];
+		// this is the set of legal xml characters in unicode excluding high surrogates since they cannot be represented with a char
+		// see http://www.w3.org/TR/REC-xml/#charsets
+		if (c <= '\uD7FF' || (c >= '\uE000' && c <= '\uFFFD'))
+			return null;
+		return Character.isWhitespace(c) ? " " : ""; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
 	public static String escape(String txt) {
-		StringBuffer buffer = null;
+		StringBuilder buffer = null;
+		int start = 0;
 		for (int i = 0; i < txt.length(); ++i) {
-			String replace;
-			char c = txt.charAt(i);
-			switch (c) {
-				case '<' :
-					replace = "&lt;"; //$NON-NLS-1$
-					break;
-				case '>' :
-					replace = "&gt;"; //$NON-NLS-1$
-					break;
-				case '"' :
-					replace = "&quot;"; //$NON-NLS-1$
-					break;
-				case '\'' :
-					replace = "&apos;"; //$NON-NLS-1$
-					break;
-				case '&' :
-					replace = "&amp;"; //$NON-NLS-1$
-					break;
-				case '\t' :
-					replace = "&#x9;"; //$NON-NLS-1$
-					break;
-				case '\n' :
-					replace = "&#xA;"; //$NON-NLS-1$
-					break;
-				case '\r' :
-					replace = "&#xD;"; //$NON-NLS-1$
-					break;
-				default :
-					// this is the set of legal xml scharacters in unicode excluding high surrogates since they cannot be represented with a char
-					// see http://www.w3.org/TR/REC-xml/#charsets
-					if ((c >= '\u0020' && c <= '\uD7FF') || (c >= '\uE000' && c <= '\uFFFD')) {
-						if (buffer != null)
-							buffer.append(c);
-						continue;
-					}
-					replace = Character.isWhitespace(c) ? " " : null; //$NON-NLS-1$
-			}
-			if (buffer == null) {
-				buffer = new StringBuffer(txt.length() + 16);
-				buffer.append(txt.substring(0, i));
-			}
-			if (replace != null)
-				buffer.append(replace);
+			String replace = replacement(txt.charAt(i));
+			if (replace == null)
+				continue;
+			if (buffer == null)
+				buffer = new StringBuilder(txt.length() + 16);
+			buffer.append(txt, start, i).append(replace);
+			start = i + 1;
 		}
 
 		if (buffer == null)
 			return txt;
 
-		return buffer.toString();
+		return buffer.append(txt, start, txt.length()).toString();
+	}
+
+	// print the escaped text, the runs of characters written as is in one go
+	private void printEscaped(String txt) {
+		int start = 0;
+		for (int i = 0; i < txt.length(); ++i) {
+			String replace = replacement(txt.charAt(i));
+			if (replace == null)
+				continue;
+			write(txt, start, i);
+			write(replace, 0, replace.length());
+			start = i + 1;
+		}
+		write(txt, start, txt.length());
 	}
 
 	// write a boolean attribute if it doesn't have the default value
@@ -206,7 +237,7 @@ public class XMLWriter implements XMLConstants {
 		print(' ');
 		print(name);
 		print("='"); //$NON-NLS-1$
-		print(escape(value.toString()));
+		printEscaped(value.toString());
 		print('\'');
 	}
 
@@ -225,7 +256,37 @@ public class XMLWriter implements XMLConstants {
 	}
 
 	public void flush() {
-		this.pw.flush();
+		flushBuffer();
+		try {
+			this.writer.flush();
+		} catch (IOException e) {
+			this.error = true;
+		}
+	}
+
+	/**
+	 * Writes the content of a fragment written by a writer created for this one,
+	 * in the current element.
+	 */
+	protected void writeFragment(ByteArrayOutputStream fragment) {
+		if (this.open) {
+			println('>');
+			this.open = false;
+		}
+		flush();
+		try {
+			fragment.writeTo(this.output);
+		} catch (IOException e) {
+			this.error = true;
+		}
+	}
+
+	/**
+	 * Flushes the writer and returns whether writing to the output failed.
+	 */
+	public boolean checkError() {
+		flush();
+		return this.error;
 	}
 
 	public void writeProperties(Map<String, ?> properties) {
@@ -312,33 +373,60 @@ public class XMLWriter implements XMLConstants {
 	}
 
 	private void println(char c) {
-		if (ignoreWhitespace) {
-			this.pw.print(c);
-		} else {
-			this.pw.println(c);
-		}
+		print(c);
+		println();
 	}
 
 	private void println(String s) {
-		if (ignoreWhitespace) {
-			this.pw.print(s);
-		} else {
-			this.pw.println(s);
-		}
+		print(s);
+		println();
 	}
 
 	private void println() {
 		if (!ignoreWhitespace) {
-			this.pw.println();
+			print(LINE_SEPARATOR);
 		}
 	}
 
 	private void print(char c) {
-		this.pw.print(c);
+		if (this.count == this.buffer.length) {
+			flushBuffer();
+		}
+		this.buffer[this.count++] = c;
 	}
 
 	private void print(String s) {
-		this.pw.print(s);
+		String text = String.valueOf(s);
+		write(text, 0, text.length());
+	}
+
+	// buffer the characters of the given range of the text
+	private void write(String s, int start, int end) {
+		int length = end - start;
+		if (length > this.buffer.length - this.count) {
+			flushBuffer();
+			if (length > this.buffer.length) {
+				try {
+					this.writer.write(s, start, length);
+				} catch (IOException e) {
+					this.error = true;
+				}
+				return;
+			}
+		}
+		s.getChars(start, end, this.buffer, this.count);
+		this.count += length;
+	}
+
+	private void flushBuffer() {
+		if (this.count > 0) {
+			try {
+				this.writer.write(this.buffer, 0, this.count);
+			} catch (IOException e) {
+				this.error = true;
+			}
+			this.count = 0;
+		}
 	}
 
 	private void printlnIndented(String s, boolean escape) {
@@ -348,7 +436,12 @@ public class XMLWriter implements XMLConstants {
 			if (!ignoreWhitespace) {
 				indent();
 			}
-			println(escape ? escape(s) : s);
+			if (escape) {
+				printEscaped(s);
+				println();
+			} else {
+				println(s);
+			}
 		}
 	}
 
@@ -21,8 +21,8 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ AggregateQueryTest.class, BackupTest.class, CollectorTest.class,
-		CompoundQueryableTest.class,
-		FileUtilsTest.class, OrderedPropertiesTest.class, ProvisioningAgentTest.class, QueryTest.class,
+		CompoundIndexTest.class, CompoundQueryableTest.class, ConcurrentWeakPoolTest.class,
+		FileUtilsTest.class, OrderedPropertiesTest.class, PropertyIndexTest.class, ProvisioningAgentTest.class, QueryTest.class, StreamingQueryTest.class,
 		URLUtilTest.class })
 public class AllTests {
 // test suite
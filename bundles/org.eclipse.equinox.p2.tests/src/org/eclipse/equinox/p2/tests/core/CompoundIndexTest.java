@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.core;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.internal.p2.metadata.index.IdIndex;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.index.IIndex;
+import org.eclipse.equinox.p2.query.*;
+import org.eclipse.equinox.p2.tests.core.StreamingQueryTest.CountingQueryable;
+import org.junit.Test;
+
+/**
+ * Tests for the indexes of compound queryables.
+ */
+public class CompoundIndexTest {
+	/**
+	 * A queryable with an index on the ids of its units.
+	 */
+	static class IndexedQueryable extends CountingQueryable {
+		private final IdIndex idIndex = new IdIndex(units.iterator());
+
+		IndexedQueryable(int first, int count) {
+			super(first, count);
+		}
+
+		@Override
+		public IIndex<IInstallableUnit> getIndex(String memberName) {
+			return InstallableUnit.MEMBER_ID.equals(memberName) ? idIndex : null;
+		}
+	}
+
+	private static Set<String> ids(IQueryResult<IInstallableUnit> result) {
+		Set<String> ids = new HashSet<>();
+		for (IInstallableUnit unit : result)
+			ids.add(unit.getId());
+		return ids;
+	}
+
+	@Test
+	public void testIndexPushedToIndexedChildren() {
+		IndexedQueryable first = new IndexedQueryable(0, 1000);
+		IndexedQueryable second = new IndexedQueryable(500, 1000);
+		CountingQueryable unindexed = new CountingQueryable(900, 200);
+		IQueryable<IInstallableUnit> compound = QueryUtil.compoundQueryable(Arrays.asList(first, second, unindexed));
+
+		assertEquals(Set.of("iu950"), ids(compound.query(QueryUtil.createIUQuery("iu950"), null)));
+		// the indexed children are not scanned, the other one is
+		assertEquals(0, first.read);
+		assertEquals(0, second.read);
+		assertEquals(200, unindexed.read);
+	}
+
+	@Test
+	public void testChildWithoutUsableIndex() {
+		IndexedQueryable indexed = new IndexedQueryable(0, 100);
+		CountingQueryable unindexed = new CountingQueryable(50, 100);
+		IQueryable<IInstallableUnit> compound = QueryUtil.compoundQueryable(indexed, unindexed);
+
+		// the id index cannot narrow down a pattern, so both children are scanned
+		assertEquals(Set.of("iu5", "iu50", "iu51", "iu52", "iu53", "iu54", "iu55", "iu56", "iu57", "iu58", "iu59"), ids(compound.query(QueryUtil.createMatchQuery("id ~= /iu5*/"), null)));
+		assertEquals(100, indexed.read);
+		assertEquals(100, unindexed.read);
+	}
+
+	@Test
+	public void testRepeatedQueries() {
+		IndexedQueryable indexed = new IndexedQueryable(0, 100);
+		CountingQueryable unindexed = new CountingQueryable(50, 100);
+		IQueryable<IInstallableUnit> compound = QueryUtil.compoundQueryable(Arrays.asList(indexed, unindexed));
+		IQuery<IInstallableUnit> query = QueryUtil.createQuery("select(x | x.id == $0)", "iu120");
+
+		assertEquals(Set.of("iu120"), ids(compound.query(query, null)));
+		// the index found for the first query is used again, the unindexed
+		// child must be scanned again rather than through a used up iterator
+		assertEquals(Set.of("iu120"), ids(compound.query(query, null)));
+	}
+
+	@Test
+	public void testParallel() {
+		IQueryable<IInstallableUnit> sequential = QueryUtil.compoundQueryable(Arrays.asList(new IndexedQueryable(0, 1000), new IndexedQueryable(500, 1000), new CountingQueryable(900, 200)));
+		IQueryable<IInstallableUnit> parallel = QueryUtil.compoundQueryable(Arrays.asList(new IndexedQueryable(0, 1000), new IndexedQueryable(500, 1000), new CountingQueryable(900, 200)), true);
+		for (String id : new String[] {"iu1", "iu600", "iu1000", "iu1499", "missing"}) {
+			IQuery<IInstallableUnit> query = QueryUtil.createIUQuery(id);
+			assertEquals(id, ids(sequential.query(query, null)), ids(parallel.query(query, null)));
+		}
+		IQuery<IInstallableUnit> query = QueryUtil.createMatchQuery("id == $0 || id == $1", "iu2", "iu1400");
+		assertEquals(Set.of("iu2", "iu1400"), ids(parallel.query(query, null)));
+	}
+
+	@Test
+	public void testParallelScansOnQueryingThread() {
+		Set<Thread> scanners = ConcurrentHashMap.newKeySet();
+		CountingQueryable unindexed = new CountingQueryable(900, 200) {
+			@Override
+			public Iterator<IInstallableUnit> everything() {
+				scanners.add(Thread.currentThread());
+				return super.everything();
+			}
+		};
+		IQueryable<IInstallableUnit> parallel = QueryUtil.compoundQueryable(Arrays.asList(new IndexedQueryable(0, 1000), new IndexedQueryable(500, 1000), unindexed), true);
+
+		assertEquals(Set.of("iu950"), ids(parallel.query(QueryUtil.createIUQuery("iu950"), null)));
+		// only the index lookups run in parallel, the unindexed child is scanned by the caller
+		assertEquals(Set.of(Thread.currentThread()), scanners);
+		assertEquals(200, unindexed.read);
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.core;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.eclipse.equinox.p2.core.ConcurrentWeakPool;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConcurrentWeakPool}.
+ */
+public class ConcurrentWeakPoolTest {
+	@Test
+	public void testAdd() {
+		ConcurrentWeakPool<String> pool = new ConcurrentWeakPool<>();
+		String first = new String("value");
+		assertNull(pool.add(null));
+		assertSame(first, pool.add(first));
+		assertSame(first, pool.add(new String("value")));
+		String other = new String("other");
+		assertSame(other, pool.add(other));
+		assertEquals(2, pool.size());
+	}
+
+	@Test
+	public void testFind() {
+		ConcurrentWeakPool<String> pool = new ConcurrentWeakPool<>();
+		String first = new String("value");
+		assertNull(pool.find(first));
+		assertEquals(0, pool.size());
+		pool.add(first);
+		assertSame(first, pool.find(new String("value")));
+		assertNull(pool.find(null));
+	}
+
+	@Test
+	public void testCollected() throws InterruptedException {
+		ConcurrentWeakPool<String> pool = new ConcurrentWeakPool<>(1);
+		for (int i = 0; i < 1000; i++)
+			pool.add(new String("value" + i));
+		List<String> kept = new ArrayList<>();
+		for (int i = 0; i < 100 && pool.size() > kept.size(); i++) {
+			System.gc();
+			Thread.sleep(10);
+			// adding cleans up the entries of collected objects
+			kept.add(pool.add(new String("kept" + i)));
+		}
+		assertEquals(kept.size(), pool.size());
+		for (String value : kept)
+			assertSame(value, pool.add(new String(value)));
+	}
+
+	@Test
+	public void testConcurrentAdd() throws Exception {
+		ConcurrentWeakPool<String> pool = new ConcurrentWeakPool<>(4);
+		int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<String[]>> results = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				results.add(executor.submit(() -> {
+					String[] pooled = new String[10000];
+					for (int i = 0; i < pooled.length; i++)
+						pooled[i] = pool.add(new String("value" + i));
+					return pooled;
+				}));
+			}
+			String[] first = results.get(0).get();
+			for (Future<String[]> result : results) {
+				String[] pooled = result.get();
+				for (int i = 0; i < pooled.length; i++)
+					assertSame(first[i], pooled[i]);
+			}
+			assertEquals(first.length, pool.size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
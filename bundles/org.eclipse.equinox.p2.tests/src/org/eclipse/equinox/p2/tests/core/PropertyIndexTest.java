@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.core;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.internal.p2.metadata.index.PropertyIndex;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.index.IIndex;
+import org.eclipse.equinox.p2.query.*;
+import org.eclipse.equinox.p2.tests.core.StreamingQueryTest.CountingQueryable;
+import org.junit.Test;
+
+/**
+ * Tests for the index on the properties of installable units.
+ */
+public class PropertyIndexTest {
+	/**
+	 * A queryable of units where every tenth unit is a group, every hundredth
+	 * a category, with a property index.
+	 */
+	static class PropertyQueryable extends CountingQueryable {
+		private final boolean indexed;
+		private final PropertyIndex propertyIndex;
+
+		PropertyQueryable(int count, boolean indexed) {
+			super(0, 0);
+			this.indexed = indexed;
+			for (int i = 0; i < count; i++) {
+				MetadataFactory.InstallableUnitDescription desc = new MetadataFactory.InstallableUnitDescription();
+				desc.setId("iu" + i);
+				desc.setVersion(Version.createOSGi(1, 0, i));
+				desc.setProperty(IInstallableUnit.PROP_NAME, "Unit " + i % 7);
+				if (i % 10 == 0)
+					desc.setProperty(QueryUtil.PROP_TYPE_GROUP, Boolean.TRUE.toString());
+				if (i % 100 == 0)
+					desc.setProperty(QueryUtil.PROP_TYPE_CATEGORY, i % 200 == 0 ? "true" : " TRUE");
+				units.add(MetadataFactory.createInstallableUnit(desc));
+			}
+			propertyIndex = new PropertyIndex(units.iterator());
+		}
+
+		@Override
+		public IIndex<IInstallableUnit> getIndex(String memberName) {
+			return indexed && InstallableUnit.MEMBER_PROPERTIES.equals(memberName) ? propertyIndex : null;
+		}
+	}
+
+	private static void assertSameResults(IQuery<IInstallableUnit> query, int expectedCount) {
+		PropertyQueryable indexed = new PropertyQueryable(1000, true);
+		PropertyQueryable scanned = new PropertyQueryable(1000, false);
+		Set<IInstallableUnit> result = indexed.query(query, null).toUnmodifiableSet();
+		assertEquals(scanned.query(query, null).toUnmodifiableSet(), result);
+		assertEquals(expectedCount, result.size());
+		assertEquals(0, indexed.read);
+		assertEquals(1000, scanned.read);
+	}
+
+	@Test
+	public void testBooleanProperties() {
+		assertSameResults(QueryUtil.createIUGroupQuery(), 100);
+		assertSameResults(QueryUtil.createIUCategoryQuery(), 10);
+		assertSameResults(QueryUtil.createIUPatchQuery(), 0);
+	}
+
+	@Test
+	public void testPropertyValues() {
+		assertSameResults(QueryUtil.createIUPropertyQuery(IInstallableUnit.PROP_NAME, "Unit 3"), 143);
+		assertSameResults(QueryUtil.createIUPropertyQuery(IInstallableUnit.PROP_NAME, "missing"), 0);
+		assertSameResults(QueryUtil.createIUPropertyQuery(QueryUtil.PROP_TYPE_CATEGORY, "true"), 10);
+		assertSameResults(QueryUtil.createMatchQuery("properties[$0] != null", QueryUtil.PROP_TYPE_CATEGORY), 10);
+	}
+
+	@Test
+	public void testCombinedExpressions() {
+		assertSameResults(QueryUtil.createMatchQuery("properties[$0] == true && id ~= /iu1*/", QueryUtil.PROP_TYPE_GROUP), 11);
+		assertSameResults(QueryUtil.createMatchQuery("properties[$0] == true || properties[$1] == $2", QueryUtil.PROP_TYPE_GROUP, IInstallableUnit.PROP_NAME, "Unit 0"), 228);
+	}
+
+	@Test
+	public void testNotIndexed() {
+		PropertyQueryable queryable = new PropertyQueryable(100, true);
+		IQuery<IInstallableUnit> query = QueryUtil.createMatchQuery("properties[$0] == null || id == $1", QueryUtil.PROP_TYPE_GROUP, "iu10");
+		assertEquals(91, queryable.query(query, null).toUnmodifiableSet().size());
+		assertEquals(100, queryable.read);
+	}
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.core;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import org.eclipse.equinox.internal.p2.metadata.expression.StreamingQueryResult;
+import org.eclipse.equinox.internal.p2.metadata.index.IndexProvider;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.index.IIndex;
+import org.eclipse.equinox.p2.query.*;
+import org.junit.Test;
+
+/**
+ * Tests for the results of {@link QueryUtil#createStreamingQuery(IQuery)}.
+ */
+public class StreamingQueryTest {
+	/**
+	 * A queryable without indexes that counts the units read from it.
+	 */
+	static class CountingQueryable extends IndexProvider<IInstallableUnit> {
+		final List<IInstallableUnit> units = new ArrayList<>();
+		int read;
+
+		CountingQueryable(int first, int count) {
+			for (int i = first; i < first + count; i++) {
+				MetadataFactory.InstallableUnitDescription desc = new MetadataFactory.InstallableUnitDescription();
+				desc.setId("iu" + i);
+				desc.setVersion(Version.createOSGi(1, 0, i));
+				units.add(MetadataFactory.createInstallableUnit(desc));
+			}
+		}
+
+		@Override
+		public IIndex<IInstallableUnit> getIndex(String memberName) {
+			return null;
+		}
+
+		@Override
+		public Iterator<IInstallableUnit> everything() {
+			Iterator<IInstallableUnit> iterator = units.iterator();
+			return new Iterator<IInstallableUnit>() {
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public IInstallableUnit next() {
+					read++;
+					return iterator.next();
+				}
+			};
+		}
+
+		@Override
+		public Object getManagedProperty(Object client, String memberName, Object key) {
+			return null;
+		}
+	}
+
+	@Test
+	public void testSameResults() {
+		CountingQueryable queryable = new CountingQueryable(0, 100);
+		IQuery<IInstallableUnit> query = QueryUtil.createMatchQuery("version.minor == 0 && id ~= /iu1*/");
+		IQueryResult<IInstallableUnit> expected = queryable.query(query, null);
+		IQueryResult<IInstallableUnit> result = queryable.query(QueryUtil.createStreamingQuery(query), null);
+		assertFalse(result.isEmpty());
+		assertEquals(expected.toUnmodifiableSet(), result.toUnmodifiableSet());
+		assertEquals(expected.toUnmodifiableSet(), result.toSet());
+		assertEquals(expected.toUnmodifiableSet().size(), result.toArray(IInstallableUnit.class).length);
+		assertTrue(queryable.query(QueryUtil.createStreamingQuery(QueryUtil.createIUQuery("missing")), null).isEmpty());
+	}
+
+	@Test
+	public void testLazyEvaluation() {
+		CountingQueryable queryable = new CountingQueryable(0, 1000);
+		IQueryResult<IInstallableUnit> result = queryable.query(QueryUtil.createStreamingQuery(QueryUtil.ALL_UNITS), null);
+		assertEquals(0, queryable.read);
+		Iterator<IInstallableUnit> iterator = result.iterator();
+		for (int i = 0; i < 5; i++)
+			iterator.next();
+		assertEquals(5, queryable.read);
+
+		// a result can be read again, only reading what was not read yet
+		assertEquals(10, ((StreamingQueryResult<IInstallableUnit>) result).stream().limit(10).collect(Collectors.toList()).size());
+		assertEquals(10, queryable.read);
+		assertEquals(1000, result.toSet().size());
+		assertEquals(1000, queryable.read);
+	}
+
+	@Test
+	public void testLimitOnCompoundQueryable() {
+		CountingQueryable first = new CountingQueryable(0, 100);
+		CountingQueryable second = new CountingQueryable(100, 100);
+		IQueryable<IInstallableUnit> compound = QueryUtil.compoundQueryable(first, second);
+		IQuery<IInstallableUnit> query = QueryUtil.createLimitQuery(QueryUtil.createMatchQuery("id ~= /iu1*/"), 3);
+
+		IQueryResult<IInstallableUnit> result = compound.query(QueryUtil.createStreamingQuery(query), null);
+		Set<String> ids = new HashSet<>();
+		for (IInstallableUnit unit : result)
+			ids.add(unit.getId());
+		assertEquals(new HashSet<>(Arrays.asList("iu1", "iu10", "iu11")), ids);
+		assertTrue(first.read < 100);
+		assertEquals(0, second.read);
+	}
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.metadata;
+
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+import java.util.Collections;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnitCompactor;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.junit.Test;
+
+/**
+ * Tests for {@link InstallableUnitCompactor}.
+ */
+public class InstallableUnitCompactorTest {
+	private static IInstallableUnit createIU(String id, String requirementDescription) {
+		InstallableUnitDescription description = new InstallableUnitDescription();
+		description.setId(id);
+		description.setVersion(Version.create("1.0.0"));
+		// build equal parts from distinct strings, as a parser would
+		description.setProperty("org.eclipse.equinox.p2.name", new String("Some name"));
+		description.addProvidedCapabilities(Collections.singletonList(MetadataFactory.createProvidedCapability(new String("java.package"), new String("org.example"), Version.create("1.0.0"))));
+		IRequirement requirement = MetadataFactory.createRequirement(new String("java.package"), new String("org.other"), VersionRange.create("[1.0.0,2.0.0)"), null, false, false, true);
+		IRequirement described = MetadataFactory.createRequirement(new String("java.package"), new String("org.described"), VersionRange.create("[1.0.0,2.0.0)"), null, 1, 1, true, requirementDescription);
+		description.setRequirements(new IRequirement[] {requirement, described});
+		description.setLicenses(new ILicense[] {MetadataFactory.createLicense(null, new String("Some license"))});
+		description.setCopyright(MetadataFactory.createCopyright(null, new String("Some copyright")));
+		return MetadataFactory.createInstallableUnit(description);
+	}
+
+	private static IRequirement getRequirement(IInstallableUnit unit, int index) {
+		Collection<IRequirement> requirements = unit.getRequirements();
+		return requirements.toArray(new IRequirement[requirements.size()])[index];
+	}
+
+	@Test
+	public void testEqualPartsAreShared() {
+		IInstallableUnit one = createIU("one", "needed");
+		IInstallableUnit two = createIU("two", "needed");
+		InstallableUnitCompactor compactor = new InstallableUnitCompactor();
+		compactor.compact(new IInstallableUnit[] {one, two});
+
+		assertTrue(compactor.getSharedCount() > 0);
+		assertSame(one.getProperty("org.eclipse.equinox.p2.name"), two.getProperty("org.eclipse.equinox.p2.name"));
+		assertSame(one.getProvidedCapabilities().iterator().next(), two.getProvidedCapabilities().iterator().next());
+		assertSame(getRequirement(one, 0), getRequirement(two, 0));
+		assertSame(one.getLicenses().iterator().next(), two.getLicenses().iterator().next());
+		assertSame(one.getCopyright().getBody(), two.getCopyright().getBody());
+	}
+
+	@Test
+	public void testUnitsAreUnchanged() {
+		IInstallableUnit unit = createIU("one", "needed");
+		IInstallableUnit expected = createIU("one", "needed");
+		new InstallableUnitCompactor().compact(new IInstallableUnit[] {createIU("two", "other"), unit});
+
+		assertEquals(expected, unit);
+		assertEquals(expected.getProperties(), unit.getProperties());
+		assertEquals(expected.getProvidedCapabilities(), unit.getProvidedCapabilities());
+		assertEquals(expected.getRequirements(), unit.getRequirements());
+		assertEquals(expected.getLicenses(), unit.getLicenses());
+		assertEquals(expected.getCopyright().getBody(), unit.getCopyright().getBody());
+	}
+
+	@Test
+	public void testDescribedRequirementsAreKept() {
+		IInstallableUnit one = createIU("one", "needed");
+		IInstallableUnit two = createIU("two", "needed for another reason");
+		new InstallableUnitCompactor().compact(new IInstallableUnit[] {one, two});
+
+		assertNotSame(getRequirement(one, 1), getRequirement(two, 1));
+		assertEquals("needed", getRequirement(one, 1).getDescription());
+		assertEquals("needed for another reason", getRequirement(two, 1).getDescription());
+	}
+}
@@ -22,10 +22,10 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
-		BatchExecuteMetadataRepositoryTest.class, CompositeMetadataRepositoryTest.class,
+		BatchExecuteMetadataRepositoryTest.class, BinaryMetadataRepositoryTest.class, CompositeMetadataRepositoryTest.class,
 		JarURLMetadataRepositoryTest.class, LocalMetadataRepositoryTest.class, SPIMetadataRepositoryTest.class,
-		StandaloneSerializationTest.class, MetadataRepositoryManagerTest.class, NoFailOver.class,
-		SiteIndexFileTest.class, XZedRepositoryTest.class
+		StandaloneSerializationTest.class, MetadataRepositoryManagerTest.class, NoFailOver.class, ParallelMetadataParsingTest.class,
+		ParallelMetadataWritingTest.class, SiteIndexFileTest.class, XZedRepositoryTest.class
 })
 public class AllTests {
 	// ResumeDownloadTest.class,
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.metadata.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.equinox.internal.p2.metadata.ArtifactKey;
+import org.eclipse.equinox.internal.p2.metadata.RequiredCapability;
+import org.eclipse.equinox.internal.p2.metadata.repository.LocalMetadataRepository;
+import org.eclipse.equinox.internal.p2.metadata.repository.MetadataRepositoryIO;
+import org.eclipse.equinox.internal.p2.metadata.repository.io.LazyInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IArtifactKey;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.ILicense;
+import org.eclipse.equinox.p2.metadata.IProvidedCapability;
+import org.eclipse.equinox.p2.metadata.IRequirement;
+import org.eclipse.equinox.p2.metadata.IRequirementChange;
+import org.eclipse.equinox.p2.metadata.IUpdateDescriptor;
+import org.eclipse.equinox.p2.metadata.MetadataFactory;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitFragmentDescription;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitPatchDescription;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.metadata.expression.ExpressionUtil;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
+import org.eclipse.equinox.p2.metadata.io.IUSerializer;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+/**
+ * Tests for the binary format of local metadata repositories.
+ */
+public class BinaryMetadataRepositoryTest extends AbstractProvisioningTest {
+	private File repoLocation;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		repoLocation = new File(System.getProperty("java.io.tmpdir"), "BinaryMetadataRepositoryTest");
+		delete(repoLocation);
+		repoLocation.mkdir();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		getMetadataRepositoryManager().removeRepository(repoLocation.toURI());
+		delete(repoLocation);
+		super.tearDown();
+	}
+
+	private IMetadataRepository createBinaryRepository() throws Exception {
+		Map<String, String> properties = new HashMap<>();
+		properties.put(LocalMetadataRepository.PROP_BINARY, "true");
+		IMetadataRepository repo = getMetadataRepositoryManager().createRepository(repoLocation.toURI(), "BinaryRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, properties);
+		repo.addInstallableUnits(createUnits());
+		return repo;
+	}
+
+	private static List<IInstallableUnit> createUnits() {
+		List<IInstallableUnit> units = new ArrayList<>();
+		IRequirement rangeRequirement = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "host", new VersionRange("[1.0.0,2.0.0)"), "(osgi.os=linux)", false, false, true);
+		IRequirement propertiesRequirement = MetadataFactory.createRequirement("osgi.ee", "(&(osgi.ee=JavaSE)(version>=1.8))", null, 1, 1, true);
+		IRequirement matchRequirement = MetadataFactory.createRequirement(ExpressionUtil.getFactory().matchExpression(ExpressionUtil.parse("providedCapabilities.exists(x | x.name == $0)"), "other"), null, 0, 1, false, "described");
+
+		InstallableUnitDescription plain = new InstallableUnitDescription();
+		plain.setId("plain");
+		plain.setVersion(Version.create("1.2.3.qualifier"));
+		plain.setSingleton(true);
+		plain.setProperty(IInstallableUnit.PROP_NAME, "A plain unit");
+		plain.setProperty(QueryUtil.PROP_TYPE_GROUP, "true");
+		Map<String, Object> capabilityProperties = new HashMap<>();
+		capabilityProperties.put("osgi.ee", "JavaSE");
+		capabilityProperties.put("version", Version.create("1.8"));
+		capabilityProperties.put("count", Long.valueOf(42));
+		capabilityProperties.put("tags", Arrays.asList("a", "b"));
+		plain.setCapabilities(new IProvidedCapability[] {MetadataFactory.createProvidedCapability(IInstallableUnit.NAMESPACE_IU_ID, "plain", Version.create("1.2.3.qualifier")), MetadataFactory.createProvidedCapability("osgi.ee", capabilityProperties)});
+		plain.setRequirements(new IRequirement[] {rangeRequirement, propertiesRequirement, matchRequirement});
+		plain.setFilter("(osgi.arch=x86_64)");
+		plain.setArtifacts(new IArtifactKey[] {new ArtifactKey("osgi.bundle", "plain", Version.create("1.2.3.qualifier"))});
+		plain.setTouchpointType(MetadataFactory.createTouchpointType("org.eclipse.equinox.p2.osgi", Version.create("1.0.0")));
+		Map<String, Object> instructions = new HashMap<>();
+		instructions.put("manifest", "Bundle-SymbolicName: plain");
+		plain.addTouchpointData(MetadataFactory.createTouchpointData(instructions));
+		plain.setUpdateDescriptor(MetadataFactory.createUpdateDescriptor("plain", new VersionRange("[0.0.0,1.2.3)"), IUpdateDescriptor.HIGH, "update", URI.create("http://example.com/update")));
+		plain.setLicenses(new ILicense[] {MetadataFactory.createLicense(URI.create("http://example.com/license"), "License text")});
+		plain.setCopyright(MetadataFactory.createCopyright(null, "Copyright text"));
+		units.add(MetadataFactory.createInstallableUnit(plain));
+
+		InstallableUnitFragmentDescription fragment = new InstallableUnitFragmentDescription();
+		fragment.setId("fragment");
+		fragment.setVersion(Version.create("1.0.0"));
+		fragment.setHost(new IRequirement[] {MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "plain", VersionRange.emptyRange, null, false, false)});
+		units.add(MetadataFactory.createInstallableUnit(fragment));
+
+		InstallableUnitPatchDescription patch = new InstallableUnitPatchDescription();
+		patch.setId("patch");
+		patch.setVersion(Version.create("1.0.0"));
+		IRequirement from = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "host", VersionRange.emptyRange, null, false, false);
+		IRequirement to = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "host", new VersionRange("[1.1.0,1.1.0]"), null, false, false);
+		patch.setApplicabilityScope(new IRequirement[][] {{MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "plain", VersionRange.emptyRange, null, false, false)}});
+		patch.setRequirementChanges(new IRequirementChange[] {MetadataFactory.createRequirementChange(from, to), MetadataFactory.createRequirementChange(null, to)});
+		patch.setLifeCycle(MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "plain", VersionRange.emptyRange, null, false, false));
+		units.add(MetadataFactory.createInstallableUnit(patch));
+		return units;
+	}
+
+	/**
+	 * Returns the units of the given repository, sorted, as XML.
+	 */
+	private static String toXML(IMetadataRepository repo) throws IOException {
+		List<IInstallableUnit> units = new ArrayList<>(repo.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet());
+		units.sort(Comparator.naturalOrder());
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new IUSerializer(output).write(units);
+		return output.toString("UTF-8");
+	}
+
+	public void testUpdateDescriptorNamespace() throws Exception {
+		IMetadataRepository repo = createBinaryRepository();
+		InstallableUnitDescription desc = new InstallableUnitDescription();
+		desc.setId("updating");
+		desc.setVersion(Version.create("2.0.0"));
+		IMatchExpression<IInstallableUnit> updated = RequiredCapability.createMatchExpressionFromRange("osgi.bundle", "updated", new VersionRange("[1.0.0,2.0.0)"));
+		desc.setUpdateDescriptor(MetadataFactory.createUpdateDescriptor(Arrays.asList(updated), IUpdateDescriptor.NORMAL, null, null));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		MetadataRepositoryIO io = new MetadataRepositoryIO(getAgent());
+		io.writeBinary(repo, Arrays.asList(MetadataFactory.createInstallableUnit(desc)), output);
+
+		URL location = LocalMetadataRepository.getBinaryLocation(repoLocation.toURI()).toURI().toURL();
+		IMetadataRepository read = io.readBinary(location, new ByteArrayInputStream(output.toByteArray()), getMonitor());
+		IInstallableUnit unit = read.query(QueryUtil.createIUQuery("updating"), null).iterator().next();
+		IMatchExpression<IInstallableUnit> match = unit.getUpdateDescriptor().getIUsBeingUpdated().iterator().next();
+		assertEquals("osgi.bundle", RequiredCapability.extractNamespace(match));
+		assertEquals("updated", RequiredCapability.extractName(match));
+		assertEquals(new VersionRange("[1.0.0,2.0.0)"), RequiredCapability.extractRange(match));
+	}
+
+	public void testBinaryFileWritten() throws Exception {
+		createBinaryRepository();
+		File binaryFile = LocalMetadataRepository.getBinaryLocation(repoLocation.toURI());
+		assertTrue(binaryFile.exists());
+		assertFalse(new File(binaryFile.getParentFile(), binaryFile.getName() + ".tmp").exists());
+		assertTrue(LocalMetadataRepository.getActualLocation(repoLocation.toURI()).exists());
+	}
+
+	public void testNoBinaryFileByDefault() throws Exception {
+		IMetadataRepository repo = getMetadataRepositoryManager().createRepository(repoLocation.toURI(), "XMLRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, null);
+		repo.addInstallableUnits(createUnits());
+		assertFalse(LocalMetadataRepository.getBinaryLocation(repoLocation.toURI()).exists());
+	}
+
+	public void testSameUnitsAsXML() throws Exception {
+		IMetadataRepository repo = createBinaryRepository();
+		MetadataRepositoryIO io = new MetadataRepositoryIO(getAgent());
+		File xmlFile = LocalMetadataRepository.getActualLocation(repoLocation.toURI());
+		File binaryFile = LocalMetadataRepository.getBinaryLocation(repoLocation.toURI());
+		IMetadataRepository fromXML = io.read(xmlFile.toURI().toURL(), new FileInputStream(xmlFile), getMonitor());
+		IMetadataRepository fromBinary = io.readBinary(binaryFile.toURI().toURL(), new FileInputStream(binaryFile), getMonitor());
+
+		assertEquals(toXML(repo), toXML(fromXML));
+		assertEquals(toXML(fromXML), toXML(fromBinary));
+		assertEquals(fromXML.getName(), fromBinary.getName());
+		assertEquals(fromXML.getProperties(), fromBinary.getProperties());
+	}
+
+	public void testLoadFromBinary() throws Exception {
+		String expected = toXML(createBinaryRepository());
+		getMetadataRepositoryManager().removeRepository(repoLocation.toURI());
+		// Only the binary file can be loaded
+		assertTrue(LocalMetadataRepository.getActualLocation(repoLocation.toURI()).delete());
+
+		IMetadataRepository repo = getMetadataRepositoryManager().loadRepository(repoLocation.toURI(), getMonitor());
+		assertEquals(expected, toXML(repo));
+		assertEquals("true", repo.getProperties().get(LocalMetadataRepository.PROP_BINARY));
+	}
+
+	public void testCorruptBinaryFallsBackToXML() throws Exception {
+		String expected = toXML(createBinaryRepository());
+		getMetadataRepositoryManager().removeRepository(repoLocation.toURI());
+		File binaryFile = LocalMetadataRepository.getBinaryLocation(repoLocation.toURI());
+		try (OutputStream output = new FileOutputStream(binaryFile)) {
+			output.write(new byte[] {'p', '2', 'b', 'n', 0, 0, 0, 1, 9, 9, 9});
+		}
+
+		IMetadataRepository repo = getMetadataRepositoryManager().loadRepository(repoLocation.toURI(), getMonitor());
+		assertEquals(expected, toXML(repo));
+	}
+
+	public void testStaleBinaryIgnored() throws Exception {
+		createBinaryRepository();
+		getMetadataRepositoryManager().removeRepository(repoLocation.toURI());
+		File binaryFile = LocalMetadataRepository.getBinaryLocation(repoLocation.toURI());
+		File xmlFile = LocalMetadataRepository.getActualLocation(repoLocation.toURI());
+		assertTrue(binaryFile.setLastModified(xmlFile.lastModified() - 10000));
+		assertFalse(LocalMetadataRepository.hasCurrentBinary(repoLocation.toURI()));
+
+		Collection<IInstallableUnit> units = getMetadataRepositoryManager().loadRepository(repoLocation.toURI(), getMonitor()).query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet();
+		assertEquals(3, units.size());
+	}
+
+	private IMetadataRepository loadLazily() throws Exception {
+		String originalProperty = System.getProperty(LocalMetadataRepository.PROP_LAZY_LOADING);
+		System.setProperty(LocalMetadataRepository.PROP_LAZY_LOADING, "true");
+		try {
+			return getMetadataRepositoryManager().loadRepository(repoLocation.toURI(), getMonitor());
+		} finally {
+			if (originalProperty == null)
+				System.clearProperty(LocalMetadataRepository.PROP_LAZY_LOADING);
+			else
+				System.setProperty(LocalMetadataRepository.PROP_LAZY_LOADING, originalProperty);
+		}
+	}
+
+	public void testLazyLoading() throws Exception {
+		String expected = toXML(createBinaryRepository());
+		getMetadataRepositoryManager().removeRepository(repoLocation.toURI());
+
+		IMetadataRepository repo = loadLazily();
+		IInstallableUnit plain = repo.query(QueryUtil.createIUQuery("plain"), null).iterator().next();
+		assertTrue(plain instanceof LazyInstallableUnit);
+		assertEquals(expected, toXML(repo));
+		assertEquals("A plain unit", plain.getProperty(IInstallableUnit.PROP_NAME));
+	}
+
+	public void testLazyUnitsReadBeforeSave() throws Exception {
+		String expected = toXML(createBinaryRepository());
+		getMetadataRepositoryManager().removeRepository(repoLocation.toURI());
+
+		IMetadataRepository repo = loadLazily();
+		IInstallableUnit plain = repo.query(QueryUtil.createIUQuery("plain"), null).iterator().next();
+		// Replaces the binary file the unit was loaded from
+		repo.removeInstallableUnits(Arrays.asList(plain));
+		repo.addInstallableUnits(Arrays.asList(plain));
+		assertEquals(expected, toXML(repo));
+		assertEquals("A plain unit", plain.getProperty(IInstallableUnit.PROP_NAME));
+	}
+}
@@ -16,22 +16,33 @@ package org.eclipse.equinox.p2.tests.metadata.repository;
 
 import java.io.File;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.equinox.internal.p2.metadata.repository.LocalMetadataRepository;
 import org.eclipse.equinox.internal.provisional.p2.core.eventbus.IProvisioningEventBus;
 import org.eclipse.equinox.internal.provisional.p2.core.eventbus.SynchronousProvisioningListener;
 import org.eclipse.equinox.internal.provisional.p2.repository.RepositoryEvent;
+import org.eclipse.equinox.p2.core.IPool;
 import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.core.StrongPool;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.equinox.p2.metadata.ILicense;
+import org.eclipse.equinox.p2.metadata.IProvidedCapability;
+import org.eclipse.equinox.p2.metadata.IRequirement;
 import org.eclipse.equinox.p2.metadata.MetadataFactory;
 import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
 import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.metadata.index.IIndexProvider;
 import org.eclipse.equinox.p2.query.IQueryResult;
 import org.eclipse.equinox.p2.query.QueryUtil;
 import org.eclipse.equinox.p2.repository.IRepository;
@@ -286,4 +297,146 @@ public class LocalMetadataRepositoryTest extends AbstractProvisioningTest {
 			}
 		}
 	}
+
+	private IQueryResult<IInstallableUnit> queryProviders(IMetadataRepository repo, String name) {
+		IRequirement req = MetadataFactory.createRequirement("test.namespace", name, VersionRange.emptyRange, null, false, false);
+		return repo.query(QueryUtil.createMatchQuery(req.getMatches()), getMonitor());
+	}
+
+	private IMetadataRepository createIndexedRepository() throws ProvisionException {
+		Map<String, String> properties = new HashMap<>();
+		properties.put(LocalMetadataRepository.PROP_CAPABILITY_INDEX, "true");
+		return getMetadataRepositoryManager().createRepository(repoLocation.toURI(), "TestRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, properties);
+	}
+
+	public void testCapabilityIndexOptIn() throws ProvisionException {
+		IMetadataRepository repo = getMetadataRepositoryManager().createRepository(repoLocation.toURI(), "TestRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, null);
+		repo.addInstallableUnits(Arrays.asList(createIU("foo")));
+		assertFalse("1.0", new File(repoLocation, "content.index").exists());
+
+		repo.setProperty(LocalMetadataRepository.PROP_CAPABILITY_INDEX, "true");
+		assertTrue("1.1", new File(repoLocation, "content.index").isFile());
+		repo.setProperty(LocalMetadataRepository.PROP_CAPABILITY_INDEX, null);
+		assertFalse("1.2", new File(repoLocation, "content.index").exists());
+	}
+
+	public void testPersistedCapabilityIndex() throws ProvisionException {
+		IMetadataRepositoryManager manager = getMetadataRepositoryManager();
+		IMetadataRepository repo = createIndexedRepository();
+		IInstallableUnit foo = createIU("foo", new IProvidedCapability[] {MetadataFactory.createProvidedCapability("test.namespace", "shared", Version.create("1.0.0")), MetadataFactory.createProvidedCapability("test.namespace", "fooOnly", Version.create("1.0.0"))});
+		IInstallableUnit bar = createIU("bar", new IProvidedCapability[] {MetadataFactory.createProvidedCapability("test.namespace", "shared", Version.create("2.0.0"))});
+		IInstallableUnit baz = createIU("baz");
+		repo.addInstallableUnits(Arrays.asList(foo, bar, baz));
+		assertTrue("1.0", new File(repoLocation, "content.index").isFile());
+
+		manager.removeRepository(repoLocation.toURI());
+		repo = manager.loadRepository(repoLocation.toURI(), null);
+		assertEquals("1.1", 2, queryResultSize(queryProviders(repo, "shared")));
+		assertContains("1.2", queryProviders(repo, "fooOnly"), foo);
+		assertTrue("1.3", queryProviders(repo, "unknown").isEmpty());
+		assertEquals("1.4", 1, queryResultSize(repo.query(QueryUtil.createIUQuery("baz"), getMonitor())));
+
+		// the persisted index must follow changes made after loading
+		repo.removeInstallableUnits(Arrays.asList(foo));
+		assertTrue("2.0", queryProviders(repo, "fooOnly").isEmpty());
+		assertEquals("2.1", 1, queryResultSize(queryProviders(repo, "shared")));
+		manager.removeRepository(repoLocation.toURI());
+		repo = manager.loadRepository(repoLocation.toURI(), null);
+		assertTrue("2.2", queryProviders(repo, "fooOnly").isEmpty());
+		assertEquals("2.3", 1, queryResultSize(queryProviders(repo, "shared")));
+	}
+
+	public void testStaleCapabilityIndex() throws Exception {
+		IMetadataRepositoryManager manager = getMetadataRepositoryManager();
+		IMetadataRepository repo = createIndexedRepository();
+		repo.addInstallableUnits(Arrays.asList(createIU("foo", new IProvidedCapability[] {MetadataFactory.createProvidedCapability("test.namespace", "shared", Version.create("1.0.0"))})));
+		File index = new File(repoLocation, "content.index");
+		File saved = new File(repoLocation, "saved.index");
+		copy("1.0", index, saved);
+		repo.addInstallableUnits(Arrays.asList(createIU("bar", new IProvidedCapability[] {MetadataFactory.createProvidedCapability("test.namespace", "shared", Version.create("2.0.0"))})));
+
+		// an index written for other content must be ignored
+		manager.removeRepository(repoLocation.toURI());
+		copy("1.1", saved, index);
+		repo = manager.loadRepository(repoLocation.toURI(), null);
+		assertEquals("1.2", 2, queryResultSize(queryProviders(repo, "shared")));
+
+		// so must a corrupted one
+		manager.removeRepository(repoLocation.toURI());
+		writeBuffer(index, new StringBuffer("not an index"));
+		repo = manager.loadRepository(repoLocation.toURI(), null);
+		assertEquals("1.3", 2, queryResultSize(queryProviders(repo, "shared")));
+
+		// so must one written for the same units providing other capabilities
+		repo.setProperty(TEST_KEY, TEST_VALUE);
+		copy("2.0", index, saved);
+		IInstallableUnit changed = createIU("foo", new IProvidedCapability[] {MetadataFactory.createProvidedCapability("test.namespace", "other", Version.create("1.0.0"))});
+		repo.removeInstallableUnits(Arrays.asList(changed));
+		repo.addInstallableUnits(Arrays.asList(changed));
+		manager.removeRepository(repoLocation.toURI());
+		copy("2.1", saved, index);
+		repo = manager.loadRepository(repoLocation.toURI(), null);
+		assertEquals("2.2", 1, queryResultSize(queryProviders(repo, "shared")));
+		assertContains("2.3", queryProviders(repo, "other"), changed);
+	}
+
+	public void testCompressPublishesCopy() throws ProvisionException {
+		IMetadataRepository repo = getMetadataRepositoryManager().createRepository(repoLocation.toURI(), "TestRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, null);
+		List<IInstallableUnit> units = Arrays.asList(createIU("foo", Version.create("1.0.0")), createIU("foo", Version.create("2.0.0")), createIU("bar"));
+		repo.addInstallableUnits(units);
+		IPool<IInstallableUnit> pool = new StrongPool<>();
+		List<IInstallableUnit> pooled = new ArrayList<>();
+		for (IInstallableUnit unit : units)
+			pooled.add(pool.add(createIU(unit.getId(), unit.getVersion())));
+
+		// an iteration started before compressing keeps seeing the units it started with
+		Iterator<IInstallableUnit> before = ((IIndexProvider<IInstallableUnit>) repo).everything();
+		repo.compress(pool);
+		List<IInstallableUnit> seen = new ArrayList<>();
+		before.forEachRemaining(seen::add);
+		assertEquals("1.0", units.size(), seen.size());
+		for (IInstallableUnit unit : seen)
+			assertSame("1.1", units.get(units.indexOf(unit)), unit);
+		for (IInstallableUnit unit : repo.query(QueryUtil.createIUAnyQuery(), getMonitor()))
+			assertSame("1.2", pooled.get(pooled.indexOf(unit)), unit);
+	}
+
+	public void testQueriesDuringChanges() throws Exception {
+		IMetadataRepositoryManager manager = getMetadataRepositoryManager();
+		IMetadataRepository repo = manager.createRepository(repoLocation.toURI(), "TestRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, null);
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> readers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Thread reader = new Thread(() -> {
+				try {
+					while (!done.get()) {
+						// units are added ten at a time, a query sees all of them or none
+						int size = queryResultSize(repo.query(QueryUtil.createIUAnyQuery(), getMonitor()));
+						if (size % 10 != 0)
+							throw new AssertionError("Partial change seen: " + size);
+						repo.query(QueryUtil.createIUQuery("foo" + size / 2), getMonitor()).isEmpty();
+						repo.query(QueryUtil.createIUGroupQuery(), getMonitor()).isEmpty();
+					}
+				} catch (Throwable t) {
+					failure.compareAndSet(null, t);
+				}
+			});
+			readers.add(reader);
+			reader.start();
+		}
+		for (int i = 0; i < 20; i++) {
+			List<IInstallableUnit> batch = new ArrayList<>();
+			for (int j = 0; j < 10; j++)
+				batch.add(createIU("foo" + (i * 10 + j)));
+			repo.addInstallableUnits(batch);
+		}
+		done.set(true);
+		for (Thread reader : readers)
+			reader.join();
+		if (failure.get() != null)
+			throw new AssertionError("1.0", failure.get());
+		assertEquals("1.1", 200, queryResultSize(repo.query(QueryUtil.createIUAnyQuery(), getMonitor())));
+		assertEquals("1.2", 1, queryResultSize(repo.query(QueryUtil.createIUQuery("foo150"), getMonitor())));
+	}
 }
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.metadata.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import org.eclipse.equinox.internal.p2.metadata.repository.MetadataRepositoryIO;
+import org.eclipse.equinox.internal.p2.metadata.repository.io.ParallelUnitsParser;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IProvidedCapability;
+import org.eclipse.equinox.p2.metadata.IRequirement;
+import org.eclipse.equinox.p2.metadata.MetadataFactory;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.metadata.io.IUSerializer;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+import org.eclipse.equinox.p2.tests.TestActivator;
+
+/**
+ * Tests that the units of large metadata documents parsed in parallel are the
+ * units parsed by a single parser.
+ */
+public class ParallelMetadataParsingTest extends AbstractProvisioningTest {
+	private static final String BUNDLE_ID = "org.eclipse.equinox.p2.metadata.repository";
+	private static final int UNIT_COUNT = 2500;
+
+	private File repoLocation;
+	private IMetadataRepository repository;
+	private List<IInstallableUnit> units;
+	private String originalProperty;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		originalProperty = System.getProperty(MetadataRepositoryIO.PROP_PARALLEL_PARSING);
+		repoLocation = new File(System.getProperty("java.io.tmpdir"), "ParallelMetadataParsingTest");
+		delete(repoLocation);
+		repoLocation.mkdir();
+		repository = getMetadataRepositoryManager().createRepository(repoLocation.toURI(), "ParallelRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, null);
+		repository.setProperty("some.property", "some value");
+		units = createUnits(UNIT_COUNT);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (originalProperty == null)
+			System.clearProperty(MetadataRepositoryIO.PROP_PARALLEL_PARSING);
+		else
+			System.setProperty(MetadataRepositoryIO.PROP_PARALLEL_PARSING, originalProperty);
+		getMetadataRepositoryManager().removeRepository(repoLocation.toURI());
+		delete(repoLocation);
+		super.tearDown();
+	}
+
+	private static List<IInstallableUnit> createUnits(int count) {
+		List<IInstallableUnit> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			InstallableUnitDescription desc = new InstallableUnitDescription();
+			desc.setId("org.example.unit" + i);
+			desc.setVersion(Version.createOSGi(1, i % 7, i, "v2021-" + i));
+			desc.setProperty(IInstallableUnit.PROP_NAME, "Unit \"" + i + "\" with 'quotes' and </unit>");
+			desc.setCapabilities(new IProvidedCapability[] {MetadataFactory.createProvidedCapability(IInstallableUnit.NAMESPACE_IU_ID, desc.getId(), desc.getVersion())});
+			if (i > 0)
+				desc.setRequirements(new IRequirement[] {MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "org.example.unit" + (i - 1), VersionRange.emptyRange, "(osgi.os=linux)", i % 2 == 0, false, true)});
+			result.add(MetadataFactory.createInstallableUnit(desc));
+		}
+		return result;
+	}
+
+	private byte[] write(Collection<IInstallableUnit> toWrite) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new MetadataRepositoryIO(getAgent()).write(repository, toWrite, output);
+		return output.toByteArray();
+	}
+
+	private IMetadataRepository read(byte[] document, boolean parallel) throws Exception {
+		System.setProperty(MetadataRepositoryIO.PROP_PARALLEL_PARSING, Boolean.toString(parallel));
+		URL location = new File(repoLocation, "content.xml").toURI().toURL();
+		return new MetadataRepositoryIO(getAgent()).read(location, new ByteArrayInputStream(document), getMonitor());
+	}
+
+	private static String toXML(Collection<IInstallableUnit> toWrite) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new IUSerializer(output).write(toWrite);
+		return output.toString("UTF-8");
+	}
+
+	private static String toXML(IMetadataRepository repo) throws IOException {
+		List<IInstallableUnit> result = new ArrayList<>(repo.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet());
+		result.sort(Comparator.naturalOrder());
+		return toXML(result);
+	}
+
+	public void testSplit() throws Exception {
+		byte[] document = write(units);
+		ParallelUnitsParser parser = ParallelUnitsParser.split(document);
+		assertNotNull(parser);
+		String text = new String(document, StandardCharsets.UTF_8);
+		assertEquals(text.indexOf("<units"), parser.getUnitsStart());
+		assertEquals(text.indexOf("</units>") + "</units>".length(), parser.getUnitsEnd());
+
+		assertNull("Small documents are parsed sequentially", ParallelUnitsParser.split(write(units.subList(0, 10))));
+		String withNamespace = text.replaceFirst("<repository ", "<repository xmlns:p2='http://www.eclipse.org/p2' ");
+		assertNull(ParallelUnitsParser.split(withNamespace.getBytes(StandardCharsets.UTF_8)));
+		String withDoctype = text.replaceFirst("<repository ", "<!DOCTYPE repository><repository ");
+		assertNull(ParallelUnitsParser.split(withDoctype.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	public void testAnnouncedUnits() throws Exception {
+		assertTrue(ParallelUnitsParser.announcesManyUnits(write(units)));
+		assertFalse("Small documents are not read into memory", ParallelUnitsParser.announcesManyUnits(write(units.subList(0, 10))));
+		String text = new String(write(units), StandardCharsets.UTF_8);
+		String withoutSize = text.replaceFirst("<units size='[0-9]*'", "<units");
+		assertFalse(ParallelUnitsParser.announcesManyUnits(withoutSize.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	public void testUnitsInDocumentOrder() throws Exception {
+		IInstallableUnit[] parsed = ParallelUnitsParser.split(write(units)).parse(TestActivator.getContext(), BUNDLE_ID, getMonitor());
+		assertNotNull(parsed);
+		assertEquals(toXML(units), toXML(Arrays.asList(parsed)));
+	}
+
+	public void testSameRepositoryAsSequential() throws Exception {
+		byte[] document = write(units);
+		IMetadataRepository sequential = read(document, false);
+		IMetadataRepository parallel = read(document, true);
+		assertEquals(toXML(sequential), toXML(parallel));
+		assertEquals(UNIT_COUNT, parallel.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet().size());
+		assertEquals(sequential.getName(), parallel.getName());
+		assertEquals(sequential.getProperties(), parallel.getProperties());
+	}
+
+	public void testProblemsLeftToSequentialParser() throws Exception {
+		String text = new String(write(units), StandardCharsets.UTF_8);
+		int index = text.indexOf("<unit ", text.length() / 2);
+		byte[] document = (text.substring(0, index) + "<unit id='invalid' version='not a version'></unit>" + text.substring(index)).getBytes(StandardCharsets.UTF_8);
+		assertNull(ParallelUnitsParser.split(document).parse(TestActivator.getContext(), BUNDLE_ID, getMonitor()));
+		assertEquals(toXML(read(document, false)), toXML(read(document, true)));
+	}
+}
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.metadata.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.equinox.internal.p2.metadata.repository.MetadataRepositoryIO;
+import org.eclipse.equinox.internal.p2.metadata.repository.io.MetadataWriter;
+import org.eclipse.equinox.internal.p2.persistence.PipelinedOutputStream;
+import org.eclipse.equinox.internal.p2.persistence.XMLWriter;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IProvidedCapability;
+import org.eclipse.equinox.p2.metadata.IRequirement;
+import org.eclipse.equinox.p2.metadata.MetadataFactory;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.metadata.io.IUSerializer;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.IRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+/**
+ * Tests that the documents of large metadata repositories written in parallel
+ * are the documents written by a single writer.
+ */
+public class ParallelMetadataWritingTest extends AbstractProvisioningTest {
+	private static final int UNIT_COUNT = 2500;
+
+	private File repoLocation;
+	private IMetadataRepository repository;
+	private List<IInstallableUnit> units;
+	private String originalProperty;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		originalProperty = System.getProperty(MetadataRepositoryIO.PROP_PARALLEL_WRITING);
+		repoLocation = new File(System.getProperty("java.io.tmpdir"), "ParallelMetadataWritingTest");
+		delete(repoLocation);
+		repoLocation.mkdir();
+		repository = getMetadataRepositoryManager().createRepository(repoLocation.toURI(), "ParallelRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, null);
+		repository.setProperty("some.property", "some value");
+		units = createUnits(UNIT_COUNT);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (originalProperty == null)
+			System.clearProperty(MetadataRepositoryIO.PROP_PARALLEL_WRITING);
+		else
+			System.setProperty(MetadataRepositoryIO.PROP_PARALLEL_WRITING, originalProperty);
+		getMetadataRepositoryManager().removeRepository(repoLocation.toURI());
+		delete(repoLocation);
+		super.tearDown();
+	}
+
+	private static List<IInstallableUnit> createUnits(int count) {
+		List<IInstallableUnit> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			InstallableUnitDescription desc = new InstallableUnitDescription();
+			desc.setId("org.example.unit" + i);
+			desc.setVersion(Version.createOSGi(1, i % 7, i, "v2021-" + i));
+			desc.setProperty(IInstallableUnit.PROP_NAME, "Unit \"" + i + "\" with 'quotes',\ttabs and </unit>");
+			desc.setCapabilities(new IProvidedCapability[] {MetadataFactory.createProvidedCapability(IInstallableUnit.NAMESPACE_IU_ID, desc.getId(), desc.getVersion())});
+			if (i > 0)
+				desc.setRequirements(new IRequirement[] {MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "org.example.unit" + (i - 1), VersionRange.emptyRange, "(osgi.os=linux)", i % 2 == 0, false, true)});
+			result.add(MetadataFactory.createInstallableUnit(desc));
+		}
+		return result;
+	}
+
+	private byte[] write(Collection<IInstallableUnit> toWrite, boolean parallel) throws IOException {
+		System.setProperty(MetadataRepositoryIO.PROP_PARALLEL_WRITING, Boolean.toString(parallel));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new MetadataRepositoryIO(getAgent()).write(repository, toWrite, output);
+		return output.toByteArray();
+	}
+
+	private static byte[] writeUnits(Collection<IInstallableUnit> toWrite, boolean parallel) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		MetadataWriter writer = new MetadataWriter(output, null);
+		writer.setParallel(parallel);
+		writer.start("repository");
+		writer.writeInstallableUnits(toWrite.iterator(), toWrite.size());
+		writer.end("repository");
+		writer.flush();
+		return output.toByteArray();
+	}
+
+	private static String toXML(Collection<IInstallableUnit> toWrite) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new IUSerializer(output).write(toWrite);
+		return output.toString("UTF-8");
+	}
+
+	private static String toXML(IMetadataRepository repo) throws IOException {
+		List<IInstallableUnit> result = new ArrayList<>(repo.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet());
+		result.sort(Comparator.naturalOrder());
+		return toXML(result);
+	}
+
+	public void testSameDocumentAsSequential() throws Exception {
+		byte[] sequential = write(units, false);
+		assertTrue(new String(sequential, "UTF-8").contains("&quot;0&quot; with &apos;quotes&apos;,&#x9;tabs and &lt;/unit&gt;"));
+		assertEquals(new String(sequential, "UTF-8"), new String(write(units, true), "UTF-8"));
+
+		URL location = new File(repoLocation, "content.xml").toURI().toURL();
+		IMetadataRepository read = new MetadataRepositoryIO(getAgent()).read(location, new ByteArrayInputStream(write(units, true)), getMonitor());
+		List<IInstallableUnit> sorted = new ArrayList<>(units);
+		sorted.sort(Comparator.naturalOrder());
+		assertEquals(toXML(sorted), toXML(read));
+	}
+
+	public void testUnitsInOrder() throws Exception {
+		assertEquals(new String(writeUnits(units, false), "UTF-8"), new String(writeUnits(units, true), "UTF-8"));
+		List<IInstallableUnit> few = units.subList(0, 10);
+		assertEquals(new String(writeUnits(few, false), "UTF-8"), new String(writeUnits(few, true), "UTF-8"));
+	}
+
+	public void testEscape() {
+		assertEquals("&lt;a&gt; &amp; &quot;b&quot; &apos;c&apos;&#x9;&#xA;&#xD; d", XMLWriter.escape("<a> & \"b\" 'c'\t\n\r\u0001\u000B\ud800d"));
+		String text = "no markup \u00e9\u4e2d";
+		assertSame(text, XMLWriter.escape(text));
+	}
+
+	public void testSaveCompressedRepository() throws Exception {
+		Map<String, String> properties = new HashMap<>();
+		properties.put(IRepository.PROP_COMPRESSED, "true");
+		File compressedLocation = new File(repoLocation, "compressed");
+		IMetadataRepositoryManager manager = getMetadataRepositoryManager();
+		IMetadataRepository compressed = manager.createRepository(compressedLocation.toURI(), "CompressedRepo", IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, properties);
+		try {
+			compressed.addInstallableUnits(units);
+			assertTrue(new File(compressedLocation, "content.jar").exists());
+			manager.removeRepository(compressedLocation.toURI());
+			assertEquals(toXML(compressed), toXML(manager.loadRepository(compressedLocation.toURI(), getMonitor())));
+		} finally {
+			manager.removeRepository(compressedLocation.toURI());
+		}
+	}
+
+	public void testPipelineFailure() throws Exception {
+		OutputStream failing = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("disk full");
+			}
+		};
+		OutputStream output = new PipelinedOutputStream(failing, "ParallelMetadataWritingTest");
+		try {
+			for (int i = 0; i < 100; i++)
+				output.write(new byte[10000]);
+		} catch (IOException e) {
+			// the failure may be reported by a later write
+		}
+		try {
+			output.close();
+			fail("The failure of the target stream should be reported");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testPipelineInterrupted() throws Exception {
+		boolean[] closed = new boolean[1];
+		OutputStream interrupting = new OutputStream() {
+			@Override
+			public void write(int b) {
+				// Interrupts the thread of the pipeline
+				Thread.currentThread().interrupt();
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				Thread.currentThread().interrupt();
+			}
+
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		};
+		OutputStream output = new PipelinedOutputStream(interrupting, "ParallelMetadataWritingTest");
+		try {
+			for (int i = 0; i < 100; i++)
+				output.write(new byte[10000]);
+		} catch (IOException e) {
+			// the failure may be reported by a later write
+		}
+		try {
+			output.close();
+			fail("The interruption of the pipeline should be reported");
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(closed[0]);
+	}
+}
@@ -16,6 +16,8 @@
 package org.eclipse.equinox.p2.tests.omniVersion;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
@@ -28,6 +30,22 @@ import org.junit.Test;
  *
  */
 public class OSGiRangeTest extends VersionTesting {
+	@Test
+	public void testSharedInstances() {
+		VersionRange range = VersionRange.create(new String("[1.0.0,2.0.0)"));
+		assertSame(range, VersionRange.create(new String("[1.0.0,2.0.0)")));
+		assertSame(range.getMinimum(), Version.create(new String("1.0.0")));
+		assertSame(range.getMaximum(), Version.create(new String("2.0.0")));
+		range = VersionRange.create(new String("1.0.0"));
+		assertSame(Version.MAX_VERSION, range.getMaximum());
+		assertTrue(range.isIncluded(Version.create("3.0.0")));
+		assertFalse(range.isIncluded(Version.create("0.9.0")));
+		// raw versions equal to OSGi ones are not shared, their strings differ
+		VersionRange raw = VersionRange.create("raw:[1.0.0.'',2.0.0.'')");
+		assertEquals(range.getMinimum(), raw.getMinimum());
+		assertEquals("raw:[1.0.0.'',2.0.0.'')", raw.toString());
+	}
+
 	@Test
 	public void testSingleVersionRange() {
 		VersionRange range;
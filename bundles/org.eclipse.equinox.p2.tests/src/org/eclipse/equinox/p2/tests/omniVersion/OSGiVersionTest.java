@@ -17,6 +17,7 @@ package org.eclipse.equinox.p2.tests.omniVersion;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
@@ -80,6 +81,19 @@ public class OSGiVersionTest extends VersionTesting {
 		assertSerialized(v);
 	}
 
+	@Test
+	public void testSharedInstances() {
+		Version v = Version.create(new String("1.2.3.qualifier"));
+		assertSame(v, Version.create(new String("1.2.3.qualifier")));
+		assertSame(v, Version.parseVersion(new String("1.2.3.qualifier")));
+		assertEquals(Version.createOSGi(1, 2, 3, "qualifier"), v);
+		assertEquals(-1, v.compareTo(Version.MAX_VERSION));
+		assertEquals(1, Version.MAX_VERSION.compareTo(v));
+		assertEquals(1, v.compareTo(Version.emptyVersion));
+		assertEquals(-1, Version.emptyVersion.compareTo(v));
+		assertEquals(0, v.compareTo(v));
+	}
+
 	@Test
 	public void testNegativeFirstValue() {
 		assertThrows(IllegalArgumentException.class, () -> Version.parseVersion("-1"));
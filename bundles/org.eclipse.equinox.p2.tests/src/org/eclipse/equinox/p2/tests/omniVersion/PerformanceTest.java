@@ -14,7 +14,10 @@
 
 package org.eclipse.equinox.p2.tests.omniVersion;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
 import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
 import org.junit.Test;
 
 /**
@@ -109,6 +112,47 @@ public class PerformanceTest {
 		//System.out.printf("Equals (%d comparisons): osgi=%d, omni=%d, factor=%d\n", units, osgiTime, omniTime, omniTime / osgiTime);
 	}
 
+	@Test
+	public void testRangeInclusionPerformance() {
+		Version[] omniVersions = createOmniVersions();
+		org.osgi.framework.Version osgiVersions[] = createOsgiVersions();
+		// open ranges, the most common ones, have the maximum version as upper bound
+		VersionRange[] omniRanges = new VersionRange[MUL * MUL];
+		for (int i = 0; i < omniRanges.length; i++)
+			omniRanges[i] = new VersionRange(omniVersions[i * MUL], true, null, false);
+
+		long start = System.currentTimeMillis();
+		osgiVersionIncluded(osgiVersions);
+		long osgiTime = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		omniVersionIncluded(omniRanges, omniVersions);
+		long omniTime = System.currentTimeMillis() - start;
+		long units = MUL * MUL * MUL * MUL * MUL;
+		outputResult("Range inclusion", units, osgiTime, omniTime);
+	}
+
+	@Test
+	public void testSharedStringCreationPerformance() {
+		String[] strings = createStrings();
+		Map<Version, Boolean> instances = new IdentityHashMap<>();
+
+		long start = System.currentTimeMillis();
+		for (int idx = 0; idx < 10; ++idx)
+			osgiVersionCreateFromString(copyStrings(strings));
+		long osgiTime = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		for (int idx = 0; idx < 10; ++idx) {
+			// fresh strings, as read from a repository
+			for (String string : copyStrings(strings))
+				instances.put(Version.create(string), Boolean.TRUE);
+		}
+		long omniTime = System.currentTimeMillis() - start;
+		outputResult("Shared string creation", 10 * MUL * MUL * MUL, osgiTime, omniTime);
+		System.out.printf("Shared string creation: %d distinct versions, %d instances\n", strings.length, instances.size());
+	}
+
 	@Test
 	public void testToStringPerformance() {
 		Version[] omniVersions = createOmniVersions();
@@ -166,6 +210,20 @@ public class PerformanceTest {
 					Version.create(strings[x++]);
 	}
 
+	public static void omniVersionIncluded(VersionRange ranges[], Version versions[]) {
+		// check every version against every range
+		for (int i = 0; i < MUL * MUL; i++)
+			for (int j = 0; j < MUL * MUL * MUL; j++)
+				ranges[i].isIncluded(versions[j]);
+	}
+
+	public static void osgiVersionIncluded(org.osgi.framework.Version versions[]) {
+		// the same checks, without a range class to compare with
+		for (int i = 0; i < MUL * MUL; i++)
+			for (int j = 0; j < MUL * MUL * MUL; j++)
+				versions[i * MUL].compareTo(versions[j]);
+	}
+
 	public static void osgiVersionCompare(org.osgi.framework.Version versions[]) {
 		// compare every version against all other versions
 		for (int i = 0; i < MUL * MUL * MUL; i++)
@@ -247,6 +305,13 @@ public class PerformanceTest {
 		return strings;
 	}
 
+	private static String[] copyStrings(String[] strings) {
+		String[] copies = new String[strings.length];
+		for (int i = 0; i < strings.length; i++)
+			copies[i] = new String(strings[i]);
+		return copies;
+	}
+
 	private static double factor(long osgiTime, long omniTime) {
 		double osgi = osgiTime;
 		double omni = omniTime;
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.perf;
+
+import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.equinox.internal.p2.director.QueryableArray;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.query.QueryUtil;
+
+/**
+ * Performance tests for capability lookups on repositories holding many
+ * versions of the same units, as done by the projector when it looks up the
+ * applicable matches of a requirement.
+ */
+public class CapabilityIndexPerformanceTest extends ProvisioningPerformanceTest {
+	private static final int ID_COUNT = 50;
+	private static final int VERSION_COUNT = 500;
+	private static final int REPEATS = 5;
+
+	public void testVersionRangeLookup() {
+		IInstallableUnit[] ius = new IInstallableUnit[ID_COUNT * VERSION_COUNT];
+		IRequirement[] requirements = new IRequirement[ID_COUNT * 10];
+		for (int i = 0; i < ID_COUNT; i++) {
+			for (int j = 0; j < VERSION_COUNT; j++) {
+				MetadataFactory.InstallableUnitDescription desc = new MetadataFactory.InstallableUnitDescription();
+				desc.setId("org.eclipse.someiu" + i);
+				desc.setVersion(Version.createOSGi(1 + j / 100, j % 100, 0, "v" + j));
+				ius[i * VERSION_COUNT + j] = MetadataFactory.createInstallableUnit(desc);
+			}
+			for (int k = 0; k < 10; k++) {
+				VersionRange range = new VersionRange(Version.createOSGi(1 + k % 5, k, 0), true, Version.createOSGi(1 + k % 5, k + 5, 0), false);
+				requirements[i * 10 + k] = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "org.eclipse.someiu" + i, range, null, false, false);
+			}
+		}
+		final QueryableArray picker = new QueryableArray(ius);
+		new PerformanceTestRunner() {
+			@Override
+			protected void test() {
+				for (IRequirement req : requirements)
+					picker.query(QueryUtil.createMatchQuery(req.getMatches()), null);
+			}
+		}.run(this, "Version range lookup of " + requirements.length + " requirements in " + ius.length + " ius", REPEATS, 10);
+	}
+}
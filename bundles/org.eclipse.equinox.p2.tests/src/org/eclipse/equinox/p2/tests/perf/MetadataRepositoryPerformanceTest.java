@@ -13,10 +13,16 @@
  *******************************************************************************/
 package org.eclipse.equinox.p2.tests.perf;
 
-import java.io.File;
+import java.io.*;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.*;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.equinox.internal.p2.metadata.repository.LocalMetadataRepository;
+import org.eclipse.equinox.internal.p2.metadata.repository.MetadataRepositoryIO;
+import org.eclipse.equinox.p2.core.ProvisionException;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.equinox.p2.query.IQuery;
 import org.eclipse.equinox.p2.query.QueryUtil;
@@ -74,4 +80,155 @@ public class MetadataRepositoryPerformanceTest extends ProvisioningPerformanceTe
 			}
 		}.run(this, "Test query local metadata repo for " + IU_COUNT + " ius", REPEATS, 10);
 	}
+
+	public void testConcurrentQueryLocalRepository() {
+		final int IU_COUNT = 3000;
+		final int THREAD_COUNT = Math.max(4, Runtime.getRuntime().availableProcessors());
+		new PerformanceTestRunner() {
+			@SuppressWarnings("unchecked")
+			IQuery<IInstallableUnit>[] queries = new IQuery[IU_COUNT];
+			ExecutorService executor;
+
+			@Override
+			protected void setUp() {
+				List<IInstallableUnit> ius = new ArrayList<>(IU_COUNT);
+				for (int i = 0; i < IU_COUNT; i++) {
+					IInstallableUnit iu = generateIU(i);
+					queries[i] = QueryUtil.createIUQuery(iu.getId(), iu.getVersion());
+					ius.add(iu);
+				}
+				repository.addInstallableUnits(ius);
+				executor = Executors.newFixedThreadPool(THREAD_COUNT);
+			}
+
+			@Override
+			protected void tearDown() {
+				executor.shutdownNow();
+			}
+
+			@Override
+			protected void test() {
+				// every thread runs all the queries, the throughput is the number of
+				// queries divided by the elapsed time
+				List<Future<?>> results = new ArrayList<>();
+				for (int i = 0; i < THREAD_COUNT; i++) {
+					results.add(executor.submit(() -> {
+						for (IQuery<IInstallableUnit> query : queries)
+							repository.query(query, null);
+					}));
+				}
+				try {
+					for (Future<?> result : results)
+						result.get();
+				} catch (InterruptedException | ExecutionException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}.run(this, "Test " + THREAD_COUNT + " threads concurrently querying local metadata repo for " + IU_COUNT + " ius", REPEATS, 10);
+	}
+
+	public void testLoadLocalRepository() {
+		runLoadTest(false);
+	}
+
+	public void testLoadBinaryLocalRepository() {
+		runLoadTest(true);
+	}
+
+	/**
+	 * Measures loading a local repository from its XML, or from its binary file.
+	 */
+	private void runLoadTest(boolean binary) {
+		final int IU_COUNT = 3000;
+		new PerformanceTestRunner() {
+			@Override
+			protected void setUp() {
+				List<IInstallableUnit> ius = new ArrayList<>(IU_COUNT);
+				for (int i = 0; i < IU_COUNT; i++)
+					ius.add(generateIU(i));
+				repository.addInstallableUnits(ius);
+				repository.setProperty(LocalMetadataRepository.PROP_BINARY, Boolean.toString(binary));
+			}
+
+			@Override
+			protected void test() {
+				IMetadataRepositoryManager manager = getMetadataRepositoryManager();
+				manager.removeRepository(repoLocation.toURI());
+				try {
+					manager.loadRepository(repoLocation.toURI(), null);
+				} catch (ProvisionException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}.run(this, "Test load local metadata repo " + (binary ? "from binary" : "from XML") + " for " + IU_COUNT + " ius", REPEATS, 10);
+	}
+
+	public void testParse10000UnitsSequentially() {
+		runParseTest(10000, false);
+	}
+
+	public void testParse10000UnitsInParallel() {
+		runParseTest(10000, true);
+	}
+
+	public void testParse100000UnitsSequentially() {
+		runParseTest(100000, false);
+	}
+
+	public void testParse100000UnitsInParallel() {
+		runParseTest(100000, true);
+	}
+
+	public void testParse300000UnitsSequentially() {
+		runParseTest(300000, false);
+	}
+
+	public void testParse300000UnitsInParallel() {
+		runParseTest(300000, true);
+	}
+
+	/**
+	 * Measures parsing a repository document, on a single thread or with its units
+	 * parsed in parallel.
+	 */
+	private void runParseTest(int unitCount, boolean parallel) {
+		String originalProperty = System.getProperty(MetadataRepositoryIO.PROP_PARALLEL_PARSING);
+		new PerformanceTestRunner() {
+			byte[] document;
+			URL location;
+
+			@Override
+			protected void setUp() {
+				List<IInstallableUnit> ius = new ArrayList<>(unitCount);
+				for (int i = 0; i < unitCount; i++)
+					ius.add(generateIU(i));
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				try {
+					new MetadataRepositoryIO(getAgent()).write(repository, ius, output);
+					location = new File(repoLocation, "content.xml").toURI().toURL();
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+				document = output.toByteArray();
+				System.setProperty(MetadataRepositoryIO.PROP_PARALLEL_PARSING, Boolean.toString(parallel));
+			}
+
+			@Override
+			protected void tearDown() {
+				if (originalProperty == null)
+					System.clearProperty(MetadataRepositoryIO.PROP_PARALLEL_PARSING);
+				else
+					System.setProperty(MetadataRepositoryIO.PROP_PARALLEL_PARSING, originalProperty);
+			}
+
+			@Override
+			protected void test() {
+				try {
+					new MetadataRepositoryIO(getAgent()).read(location, new ByteArrayInputStream(document), new NullProgressMonitor());
+				} catch (ProvisionException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}.run(this, "Test parse metadata repo " + (parallel ? "in parallel" : "sequentially") + " for " + unitCount + " ius", REPEATS, 1);
+	}
 }
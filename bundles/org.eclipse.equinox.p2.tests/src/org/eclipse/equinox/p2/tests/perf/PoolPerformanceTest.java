@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.perf;
+
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.equinox.internal.p2.metadata.IUMap;
+import org.eclipse.equinox.p2.core.*;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+
+/**
+ * Performance tests for the pools sharing the installable units of the
+ * children of a composite repository, most of the children holding the same
+ * units.
+ */
+public class PoolPerformanceTest extends ProvisioningPerformanceTest {
+	private static final int IU_COUNT = 20000;
+	private static final int CHILD_COUNT = 8;
+	private static final int REPEATS = 5;
+
+	private IUMap[] children;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		children = new IUMap[CHILD_COUNT];
+		for (int i = 0; i < CHILD_COUNT; i++) {
+			children[i] = new IUMap();
+			// each child shares most of its units with the others
+			for (int j = i * IU_COUNT / 10; j < IU_COUNT + i * IU_COUNT / 10; j++)
+				children[i].add(generateIU(j));
+		}
+	}
+
+	private void runCompress(final Supplier<IPool<IInstallableUnit>> pools, final boolean parallel, String name) {
+		new PerformanceTestRunner() {
+			@Override
+			protected void test() {
+				IPool<IInstallableUnit> pool = pools.get();
+				IntStream indexes = IntStream.range(0, CHILD_COUNT);
+				if (parallel)
+					indexes = indexes.parallel();
+				indexes.forEach(i -> children[i].compress(pool));
+			}
+		}.run(this, name + " compression of " + CHILD_COUNT + " children of " + IU_COUNT + " ius", REPEATS, 1);
+	}
+
+	public void testStrongPool() {
+		runCompress(StrongPool::new, false, "StrongPool");
+	}
+
+	public void testWeakPool() {
+		runCompress(WeakPool::new, false, "WeakPool");
+	}
+
+	public void testConcurrentWeakPool() {
+		runCompress(ConcurrentWeakPool::new, false, "ConcurrentWeakPool");
+	}
+
+	public void testParallelConcurrentWeakPool() {
+		runCompress(ConcurrentWeakPool::new, true, "Parallel ConcurrentWeakPool");
+	}
+}
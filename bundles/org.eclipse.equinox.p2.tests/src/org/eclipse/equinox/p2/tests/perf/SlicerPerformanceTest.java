@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.perf;
+
+import java.util.Collections;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.equinox.internal.p2.director.QueryableArray;
+import org.eclipse.equinox.internal.p2.director.Slicer;
+import org.eclipse.equinox.p2.metadata.*;
+
+/**
+ * Performance tests for the slicer, sequential and parallel, on a synthetic
+ * repository
+ */
+public class SlicerPerformanceTest extends ProvisioningPerformanceTest {
+	private static final int IU_COUNT = 100000;
+	private static final int REQUIREMENTS_PER_IU = 4;
+	private static final int REPEATS = 5;
+
+	private IInstallableUnit[] ius;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		ius = new IInstallableUnit[IU_COUNT];
+		for (int i = 0; i < IU_COUNT; i++) {
+			MetadataFactory.InstallableUnitDescription desc = new MetadataFactory.InstallableUnitDescription();
+			desc.setId("org.eclipse.someiu" + i);
+			desc.setVersion(Version.createOSGi(1, 1, i));
+			desc.addProvidedCapabilities(Collections.singletonList(MetadataFactory.createProvidedCapability(IInstallableUnit.NAMESPACE_IU_ID, desc.getId(), desc.getVersion())));
+			IRequirement[] reqs = new IRequirement[REQUIREMENTS_PER_IU];
+			for (int j = 0; j < REQUIREMENTS_PER_IU; j++) {
+				// point mostly forward so that the closure spans most of the repository
+				int target = (int) ((i * 31L + j * 7919L + 1) % IU_COUNT);
+				reqs[j] = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "org.eclipse.someiu" + target, VersionRange.emptyRange, null, false, false);
+			}
+			desc.setRequirements(reqs);
+			ius[i] = MetadataFactory.createInstallableUnit(desc);
+		}
+	}
+
+	private void runSlicer(final boolean parallel, String name) {
+		final QueryableArray input = new QueryableArray(ius);
+		final IInstallableUnit[] roots = new IInstallableUnit[] {ius[0]};
+		new PerformanceTestRunner() {
+			@Override
+			protected void test() {
+				Slicer slicer = new Slicer(input, Collections.emptyMap(), false);
+				slicer.setParallel(parallel);
+				assertNotNull(slicer.slice(roots, new NullProgressMonitor()));
+			}
+		}.run(this, name + " slicing of " + IU_COUNT + " ius", REPEATS, 1);
+	}
+
+	public void testSequentialSlicer() {
+		runSlicer(false, "Sequential");
+	}
+
+	public void testParallelSlicer() {
+		runSlicer(true, "Parallel");
+	}
+}
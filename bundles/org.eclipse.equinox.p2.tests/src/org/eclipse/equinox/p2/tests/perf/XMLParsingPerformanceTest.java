@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.perf;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.equinox.internal.p2.artifact.repository.CompositeArtifactRepository;
+import org.eclipse.equinox.internal.p2.artifact.repository.simple.SimpleArtifactRepositoryIO;
+import org.eclipse.equinox.internal.p2.engine.SimpleProfileRegistry;
+import org.eclipse.equinox.internal.p2.metadata.repository.MetadataRepositoryIO;
+import org.eclipse.equinox.internal.p2.persistence.*;
+
+/**
+ * Performance tests for reading the XML documents of p2 with a SAX parser or
+ * with the streaming reader. Next to the time, the number of bytes allocated
+ * for each document is printed.
+ */
+public class XMLParsingPerformanceTest extends ProvisioningPerformanceTest {
+	private static final int REPEATS = 5;
+	private static final int COMPOSITE_CHILDREN = 10000;
+
+	public void testParseMetadataRepository() throws Exception {
+		byte[] document = Files.readAllBytes(getTestData("metadata repository", "testData/orbitRepo/content.xml").toPath());
+		URL location = new File(getTempFolder(), "content.xml").toURI().toURL();
+		String originalProperty = System.getProperty(MetadataRepositoryIO.PROP_PARALLEL_PARSING);
+		// Only the allocations of the current thread are measured
+		System.setProperty(MetadataRepositoryIO.PROP_PARALLEL_PARSING, Boolean.FALSE.toString());
+		try {
+			runParseTest("metadata repository", () -> new MetadataRepositoryIO(getAgent()).read(location, new ByteArrayInputStream(document), new NullProgressMonitor()));
+		} finally {
+			if (originalProperty == null)
+				System.clearProperty(MetadataRepositoryIO.PROP_PARALLEL_PARSING);
+			else
+				System.setProperty(MetadataRepositoryIO.PROP_PARALLEL_PARSING, originalProperty);
+		}
+	}
+
+	public void testParseArtifactRepository() throws Exception {
+		byte[] document = Files.readAllBytes(getTestData("artifact repository", "testData/bug362692/shared/artifacts.xml").toPath());
+		URI location = new File(getTempFolder(), "artifacts.xml").toURI();
+		runParseTest("artifact repository", () -> new SimpleArtifactRepositoryIO(getAgent()).read(location, new ByteArrayInputStream(document), new NullProgressMonitor(), false));
+	}
+
+	public void testParseCompositeRepository() throws Exception {
+		CompositeRepositoryState state = new CompositeRepositoryState();
+		state.setName("Composite");
+		state.setType(CompositeArtifactRepository.REPOSITORY_TYPE);
+		state.setVersion("1.0.0");
+		URI[] children = new URI[COMPOSITE_CHILDREN];
+		for (int i = 0; i < children.length; i++)
+			children[i] = new URI("https://download.example.org/releases/child" + i + "/");
+		state.setChildren(children);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new CompositeRepositoryIO().write(state, output, CompositeArtifactRepository.PI_REPOSITORY_TYPE);
+		byte[] document = output.toByteArray();
+		URL location = new File(getTempFolder(), "compositeArtifacts.xml").toURI().toURL();
+		runParseTest("composite repository", () -> new CompositeRepositoryIO().read(location, new ByteArrayInputStream(document), CompositeArtifactRepository.PI_REPOSITORY_TYPE, new NullProgressMonitor()));
+	}
+
+	public void testParseProfile() throws Exception {
+		File registryFolder = getTempFolder();
+		copy("profile registry", getTestData("profile registry", "testData/bug302580/p2/org.eclipse.equinox.p2.engine/profileRegistry"), registryFolder);
+		runParseTest("profile", () -> new SimpleProfileRegistry(getAgent(), registryFolder, null, false).getProfile("bootProfile"));
+	}
+
+	private static long getAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+
+	/**
+	 * Measures reading a document with a SAX parser, and then with the streaming
+	 * reader.
+	 */
+	private void runParseTest(String documentType, Callable<?> parse) {
+		runParseTest(documentType, parse, false);
+		runParseTest(documentType, parse, true);
+	}
+
+	private void runParseTest(String documentType, Callable<?> parse, boolean streaming) {
+		String originalProperty = System.getProperty(XMLParser.PROP_STREAMING_READER);
+		String name = "Test parse " + documentType + (streaming ? " with the streaming reader" : " with a SAX parser");
+		// The bytes allocated, and the number of documents read
+		long[] allocation = new long[2];
+		new PerformanceTestRunner() {
+			@Override
+			protected void setUp() {
+				System.setProperty(XMLParser.PROP_STREAMING_READER, Boolean.toString(streaming));
+			}
+
+			@Override
+			protected void tearDown() {
+				if (originalProperty == null)
+					System.clearProperty(XMLParser.PROP_STREAMING_READER);
+				else
+					System.setProperty(XMLParser.PROP_STREAMING_READER, originalProperty);
+			}
+
+			@Override
+			protected void test() {
+				long start = getAllocatedBytes();
+				try {
+					assertNotNull(parse.call());
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+				allocation[0] += getAllocatedBytes() - start;
+				allocation[1]++;
+			}
+		}.run(this, name, REPEATS, 10);
+		System.out.println(name + ": " + allocation[0] / allocation[1] + " bytes allocated per document");
+	}
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.perf;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.equinox.internal.p2.metadata.repository.MetadataRepositoryIO;
+import org.eclipse.equinox.internal.p2.persistence.PipelinedOutputStream;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+
+/**
+ * Performance tests for writing a metadata repository with a single writer, or
+ * with the units serialized in parallel, uncompressed and compressed.
+ */
+public class XMLWritingPerformanceTest extends ProvisioningPerformanceTest {
+	private static final int REPEATS = 5;
+
+	public void testWriteMetadataRepository() throws Exception {
+		IMetadataRepository repository = getMetadataRepositoryManager().loadRepository(getTestData("metadata repository", "testData/orbitRepo").toURI(), null);
+		List<IInstallableUnit> units = new ArrayList<>(repository.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet());
+		File file = new File(getTempFolder(), "content.jar");
+		for (boolean compressed : new boolean[] {false, true}) {
+			for (boolean parallel : new boolean[] {false, true}) {
+				runWriteTest(compressed, parallel, () -> {
+					OutputStream output;
+					if (compressed) {
+						JarOutputStream jarOutput = new JarOutputStream(new FileOutputStream(file));
+						jarOutput.putNextEntry(new JarEntry("content.xml"));
+						output = new PipelinedOutputStream(jarOutput, "Compressing " + file);
+					} else {
+						output = new FileOutputStream(file);
+					}
+					new MetadataRepositoryIO(getAgent()).write(repository, units, output);
+				});
+			}
+		}
+	}
+
+	private interface Write {
+		void run() throws IOException;
+	}
+
+	private void runWriteTest(boolean compressed, boolean parallel, Write write) {
+		String originalProperty = System.getProperty(MetadataRepositoryIO.PROP_PARALLEL_WRITING);
+		String name = "Test write metadata repository" + (compressed ? " compressed" : "") + (parallel ? " in parallel" : " sequentially");
+		new PerformanceTestRunner() {
+			@Override
+			protected void setUp() {
+				System.setProperty(MetadataRepositoryIO.PROP_PARALLEL_WRITING, Boolean.toString(parallel));
+			}
+
+			@Override
+			protected void tearDown() {
+				if (originalProperty == null)
+					System.clearProperty(MetadataRepositoryIO.PROP_PARALLEL_WRITING);
+				else
+					System.setProperty(MetadataRepositoryIO.PROP_PARALLEL_WRITING, originalProperty);
+			}
+
+			@Override
+			protected void test() {
+				try {
+					write.run();
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}.run(this, name, REPEATS, 10);
+	}
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.planner;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.equinox.internal.p2.director.ProfileChangeRequest;
+import org.eclipse.equinox.p2.engine.IProfile;
+import org.eclipse.equinox.p2.engine.IProvisioningPlan;
+import org.eclipse.equinox.p2.engine.ProvisioningContext;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IRequirement;
+import org.eclipse.equinox.p2.metadata.MetadataFactory;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.planner.IPlanner;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+/**
+ * A small planning problem, for the planner options of the provisioning context
+ * that must not change the plans.
+ */
+public abstract class AbstractPlannerOptionTest extends AbstractProvisioningTest {
+	IInstallableUnit a1;
+	IInstallableUnit b1;
+	IInstallableUnit b2;
+	IInstallableUnit b3;
+	IInstallableUnit c1;
+	IInstallableUnit d1;
+	IInstallableUnit x1;
+	IInstallableUnit y1;
+
+	IProfile profile;
+	IPlanner planner;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		a1 = createIU("A", Version.create("1.0.0"), createRequiredCapabilities(IInstallableUnit.NAMESPACE_IU_ID, "B", new VersionRange("[1.0.0, 4.0.0)")));
+		b1 = createIU("B", Version.create("1.0.0"), true);
+		b2 = createIU("B", Version.create("2.0.0"), true);
+		b3 = createIU("B", Version.create("3.0.0"), true);
+		c1 = createIU("C", Version.create("1.0.0"), new IRequirement[] {MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "D", new VersionRange("[1.0.0, 2.0.0)"), null, true, false)});
+		d1 = createIU("D", Version.create("1.0.0"), true);
+		x1 = createIU("X", Version.create("1.0.0"), createRequiredCapabilities(IInstallableUnit.NAMESPACE_IU_ID, "B", new VersionRange("[2.0.0, 2.0.0]")));
+		y1 = createIU("Y", Version.create("1.0.0"), createRequiredCapabilities(IInstallableUnit.NAMESPACE_IU_ID, "Z", new VersionRange("[1.0.0, 2.0.0)")));
+
+		createTestMetdataRepository(new IInstallableUnit[] {a1, b1, b2, b3, c1, d1, x1, y1});
+
+		profile = createProfile("TestProfile." + getName());
+		planner = createPlanner();
+	}
+
+	/**
+	 * Plans the installation of the given units with the given value of the given
+	 * option.
+	 */
+	protected IProvisioningPlan plan(String option, String value, IInstallableUnit... toInstall) {
+		ProfileChangeRequest req = new ProfileChangeRequest(profile);
+		req.addInstallableUnits(toInstall);
+		ProvisioningContext ctx = new ProvisioningContext(getAgent());
+		ctx.setProperty(option, value);
+		return planner.getProvisioningPlan(req, ctx, null);
+	}
+
+	/**
+	 * Checks that the installation of the given units is planned the same with the
+	 * given value of the given option as with the option turned off.
+	 */
+	protected void assertSamePlan(String option, String value, IInstallableUnit... toInstall) {
+		IProvisioningPlan expected = plan(option, Boolean.FALSE.toString(), toInstall);
+		IProvisioningPlan actual = plan(option, value, toInstall);
+		assertEquals(expected.getStatus().getSeverity(), actual.getStatus().getSeverity());
+		if (expected.getStatus().getSeverity() != IStatus.ERROR)
+			assertEquals(expected.getFutureState().query(QueryUtil.ALL_UNITS, null).toUnmodifiableSet(), actual.getFutureState().query(QueryUtil.ALL_UNITS, null).toUnmodifiableSet());
+	}
+}
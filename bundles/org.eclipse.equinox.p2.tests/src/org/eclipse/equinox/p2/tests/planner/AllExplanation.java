@@ -18,7 +18,7 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
-		ExplanationDeepConflict.class, ExplanationForOptionalDependencies.class,
+		ExplanationCacheTest.class, ExplanationDeepConflict.class, ExplanationForOptionalDependencies.class,
 		ExplanationForPartialInstallation.class, ExplanationLargeConflict.class,
 		ExplanationSeveralConflictingRoots.class, MissingDependency.class, MissingNonGreedyRequirement.class,
 		MissingNonGreedyRequirement2.class, MultipleSingleton.class, PatchTest10.class, PatchTest12.class
@@ -29,29 +29,33 @@ import org.junit.runners.Suite;
 		Bug278668.class, Bug300572.class, Bug300572Small2.class, Bug300572Small3.class, Bug300572Small4.class,
 		Bug300572Small5.class, Bug300572Small6.class, Bug302582.class, Bug302582b.class, Bug302582c.class,
 		Bug306424.class, Bug306279c.class, Bug306279d.class, Bug311330.class, Bug329279.class, DependencyOnSelf.class,
-		DisabledExplanation.class, DropinsScenario.class, EPPPackageInstallStability_bug323322.class,
-		ExplanationDeepConflict.class, ExplanationForOptionalDependencies.class,
+		DenseEncodingTest.class, DisabledExplanation.class, DropinsScenario.class, EPPPackageInstallStability_bug323322.class,
+		ExplanationCacheTest.class, ExplanationDeepConflict.class, ExplanationForOptionalDependencies.class,
 		ExplanationForPartialInstallation.class, ExplanationLargeConflict.class,
-		ExplanationSeveralConflictingRoots.class, FindRootsAfterUpdate.class, FromStrictToOptional.class,
-		GreedyRequirement.class, InclusionRuleTest.class, InclusionRuleTest2.class, IUProperties.class,
-		IUPropertyRemoval.class, IUWithFilter.class, IUWithFilter2.class, MinimalInstall.class, MinimalInstall2.class,
-		MissingDependency.class, MissingDependency2.class, MissingDependency3.class, MissingNonGreedyRequirement.class,
+		ExplanationSeveralConflictingRoots.class, FilterEvaluationCacheTest.class, FindRootsAfterUpdate.class, FromStrictToOptional.class,
+		GreedyRequirement.class, IncrementalPlanningTest.class, InclusionRuleTest.class, InclusionRuleTest2.class,
+		IUProperties.class, IUPropertyRemoval.class, IUWithFilter.class, IUWithFilter2.class, MinimalInstall.class,
+		MinimalInstall2.class, MissingDependency.class, MissingDependency2.class, MissingDependency3.class,
+		MissingNonGreedyRequirement.class,
 		MissingNonGreedyRequirement2.class, MissingOptional.class, MissingOptionalNonGreedyRequirement.class,
 		MissingOptionalWithDependencies.class, MissingOptionalWithDependencies2.class, NonMinimalState.class,
 		NonMinimalState2.class, NoUnecessaryIUProperty.class, MultipleProvider.class, MultipleSingleton.class,
-		NoRequirements.class, ORTesting.class, PatchTest1.class, PatchTest10.class, PatchTest11.class,
+		NoRequirements.class, ORTesting.class, ParallelSlicerTest.class,
+		PatchTest1.class, PatchTest10.class, PatchTest11.class,
 		PatchTest12.class, PatchTest13.class, PatchTest1b.class, PatchTest1c.class, PatchTest2.class, PatchTest3.class,
 		PatchTest4.class, PatchTest5.class, PatchTest6.class, PatchTest7.class, PatchTest7b.class, PatchTest8.class,
 		PatchTest9.class, PatchTest10.class, PatchTest12.class, PatchTestMultiplePatch.class,
 		PatchTestMultiplePatch2.class, PatchTestMultiplePatch3.class, PatchTestOptional.class, PatchTestOptional2.class,
 		PatchTestOptional3.class, PatchTestUninstall.class, PatchTestUpdate.class, PatchTestUpdate2.class,
 		PatchTestUpdate3.class, PatchTestUpdate4.class, PatchTestUpdate5.class, PatchTestUsingNegativeRequirement.class,
-		PermissiveSlicerTest.class, PP2ShouldFailToInstall.class, ResolvedIUInPCR.class, SDKPatchingTest1.class,
+		PermissiveSlicerTest.class, PlanCacheTest.class, PP2ShouldFailToInstall.class, RemediationOperationTest.class,
+		ResolvedIUInPCR.class,
+		SDKPatchingTest1.class,
 		SDKPatchingTest2.class, SeveralOptionalDependencies.class, SeveralOptionalDependencies2.class,
 		SeveralOptionalDependencies3.class, SeveralOptionalDependencies4.class, SeveralOptionalDependencies5.class,
 		SimpleOptionalTest.class, SimpleOptionalTest2.class, SimpleOptionalTest3.class, SimpleOptionalTest4.class,
 		SimpleOptionalTest5.class, SimpleSingleton.class, SimulatedSharedInstallTest.class,
-		SingletonOptionallyInstalled.class, SingletonOptionallyInstalled2.class, SWTFragment.class,
+		SingletonOptionallyInstalled.class, SingletonOptionallyInstalled2.class, SolverPortfolioTest.class, SWTFragment.class,
 		SynchronizeOperationTest.class, TestNoopChangeRequest.class, TestFilteringOnAbsentProperty.class,
 		TopLevelFilterTest.class, TwoVersionsOfWSDL.class, TychoUsage.class, UninstallEverything.class,
 		UpdateForTwoIUs.class, UpdateQueryTest.class, })
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.planner;
+
+import java.util.*;
+import org.eclipse.core.runtime.*;
+import org.eclipse.equinox.internal.p2.director.*;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.query.IQueryable;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+/**
+ * Checks that the dense encoding of the projector gives exactly the results of
+ * the regular encoding.
+ */
+public class DenseEncodingTest extends AbstractProvisioningTest {
+	private static final int ID_COUNT = 150;
+
+	private List<IInstallableUnit> createProblem(long seed) {
+		Random random = new Random(seed);
+		List<IInstallableUnit> ius = new ArrayList<>();
+		for (int i = 0; i < ID_COUNT; i++) {
+			for (int v = 1; v <= 3; v++) {
+				List<IRequirement> reqs = new ArrayList<>();
+				for (int j = 0; j < 4; j++) {
+					int target = random.nextInt(ID_COUNT);
+					if (target == i)
+						continue;
+					VersionRange range = new VersionRange(Version.createOSGi(1 + random.nextInt(2), 0, 0), true, Version.createOSGi(3 + random.nextInt(2), 0, 0), false);
+					reqs.add(MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "iu" + target, range, null, j == 3, false, j != 2 || random.nextBoolean()));
+				}
+				if (random.nextInt(20) == 0)
+					reqs.add(MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "iu" + random.nextInt(ID_COUNT), VersionRange.emptyRange, null, 0, 0, false));
+				if (random.nextInt(40) == 0)
+					reqs.add(MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "missing" + i, VersionRange.emptyRange, null, false, false));
+				ius.add(createIU("iu" + i, Version.createOSGi(v, 0, 0), reqs.toArray(new IRequirement[reqs.size()]), NO_PROPERTIES, i % 5 != 0));
+			}
+		}
+		return ius;
+	}
+
+	private String solve(List<IInstallableUnit> ius, IInstallableUnit root, boolean dense) {
+		IQueryable<IInstallableUnit> repo = new QueryableArray(ius.toArray(new IInstallableUnit[ius.size()]));
+		Slicer slicer = new Slicer(repo, Collections.emptyMap(), false);
+		IQueryable<IInstallableUnit> slice = slicer.slice(new IInstallableUnit[] {root}, new NullProgressMonitor());
+		if (slice == null)
+			return slicer.getStatus().toString();
+		Set<IInstallableUnit> nonGreedyIUs = new HashSet<>();
+		for (IInstallableUnit iu : slice.query(QueryUtil.ALL_UNITS, null)) {
+			for (IRequirement req : iu.getRequirements()) {
+				if (!req.isGreedy())
+					nonGreedyIUs.addAll(slice.query(QueryUtil.createMatchQuery(req.getMatches()), null).toUnmodifiableSet());
+			}
+		}
+		Projector projector = new Projector(slice, Collections.emptyMap(), nonGreedyIUs, false);
+		projector.setDenseEncoding(dense);
+		projector.encode(root, new IInstallableUnit[0], new QueryableArray(new IInstallableUnit[0]), Collections.singleton(root), new NullProgressMonitor());
+		IStatus status = projector.invokeSolver(new NullProgressMonitor());
+		if (status.getSeverity() == IStatus.ERROR) {
+			Set<String> explanation = new TreeSet<>();
+			for (Explanation e : projector.getExplanation(new NullProgressMonitor()))
+				explanation.add(e.toString());
+			return "ERROR " + explanation;
+		}
+		Set<String> solution = new TreeSet<>();
+		for (IInstallableUnit iu : projector.extractSolution())
+			solution.add(iu.toString());
+		return status.getSeverity() + " " + solution;
+	}
+
+	private void assertSameResult(List<IInstallableUnit> ius, IRequirement... rootRequirements) {
+		IInstallableUnit root = createIU("root", rootRequirements);
+		List<IInstallableUnit> all = new ArrayList<>(ius);
+		all.add(root);
+		assertEquals(solve(all, root, false), solve(all, root, true));
+	}
+
+	private IRequirement require(String id, VersionRange range) {
+		return MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, id, range, null, false, false);
+	}
+
+	public void testSatisfiable() {
+		for (long seed = 1; seed <= 5; seed++) {
+			List<IInstallableUnit> ius = createProblem(seed);
+			assertSameResult(ius, require("iu0", VersionRange.emptyRange), require("iu1", VersionRange.emptyRange), require("iu2", VersionRange.emptyRange));
+		}
+	}
+
+	public void testSingletonConflict() {
+		List<IInstallableUnit> ius = createProblem(6);
+		assertSameResult(ius, require("iu1", new VersionRange("[1.0.0, 1.0.0]")), require("iu1", new VersionRange("[2.0.0, 2.0.0]")));
+	}
+
+	public void testMissingRequirement() {
+		List<IInstallableUnit> ius = createProblem(7);
+		assertSameResult(ius, require("iu3", VersionRange.emptyRange), require("missing", VersionRange.emptyRange));
+	}
+}
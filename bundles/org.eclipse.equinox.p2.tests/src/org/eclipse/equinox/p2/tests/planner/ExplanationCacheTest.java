@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.planner;
+
+import java.util.Arrays;
+import java.util.Set;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.equinox.internal.p2.director.ProfileChangeRequest;
+import org.eclipse.equinox.internal.provisional.p2.director.PlannerStatus;
+import org.eclipse.equinox.p2.engine.IProfile;
+import org.eclipse.equinox.p2.engine.IProvisioningPlan;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.planner.IPlanner;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+public class ExplanationCacheTest extends AbstractProvisioningTest {
+	private IInstallableUnit a1;
+	private IInstallableUnit x1;
+
+	private IProfile profile;
+	private IPlanner planner;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		a1 = createIU("A", Version.create("1.0.0"), createRequiredCapabilities(IInstallableUnit.NAMESPACE_IU_ID, "B", new VersionRange("[1.0.0, 1.0.0]")));
+		x1 = createIU("X", Version.create("1.0.0"), createRequiredCapabilities(IInstallableUnit.NAMESPACE_IU_ID, "B", new VersionRange("[2.0.0, 2.0.0]")));
+		IInstallableUnit b1 = createIU("B", Version.create("1.0.0"), true);
+		IInstallableUnit b2 = createIU("B", Version.create("2.0.0"), true);
+
+		createTestMetdataRepository(new IInstallableUnit[] {a1, x1, b1, b2});
+
+		profile = createProfile("TestProfile." + getName());
+		planner = createPlanner();
+	}
+
+	private IProvisioningPlan plan(IInstallableUnit... toInstall) {
+		ProfileChangeRequest req = new ProfileChangeRequest(profile);
+		req.addInstallableUnits(toInstall);
+		return planner.getProvisioningPlan(req, null, null);
+	}
+
+	private Set<?> getExplanations(IProvisioningPlan plan) {
+		assertEquals(IStatus.ERROR, plan.getStatus().getSeverity());
+		return ((PlannerStatus) plan.getStatus()).getRequestStatus().getExplanations();
+	}
+
+	public void testRepeatedFailure() {
+		Set<?> explanations = getExplanations(plan(a1, x1));
+		assertFalse(explanations.isEmpty());
+		Set<?> cached = getExplanations(plan(a1, x1));
+		assertEquals(explanations, cached);
+		assertSame(cached, getExplanations(plan(a1, x1)));
+	}
+
+	public void testDifferentRequests() {
+		Set<?> explanations = getExplanations(plan(a1, x1));
+		assertEquals(IStatus.OK, plan(a1).getStatus().getSeverity());
+		assertEquals(explanations, getExplanations(plan(x1, a1)));
+	}
+
+	public void testRepositoryChange() {
+		IInstallableUnit y1 = createIU("Y", Version.create("1.0.0"), createRequiredCapabilities(IInstallableUnit.NAMESPACE_IU_ID, "Z", new VersionRange("[1.0.0, 1.0.0]")));
+		createTestMetdataRepository(new IInstallableUnit[] {y1});
+		assertFalse(getExplanations(plan(y1)).isEmpty());
+
+		createTestMetdataRepository(new IInstallableUnit[] {createIU("Z", Version.create("1.0.0"), true)});
+		assertEquals(IStatus.OK, plan(y1).getStatus().getSeverity());
+	}
+
+	public void testRepositoryModified() throws Exception {
+		IInstallableUnit y1 = createIU("Y", Version.create("1.0.0"), createRequiredCapabilities(IInstallableUnit.NAMESPACE_IU_ID, "Z", new VersionRange("[1.0.0, 1.0.0]")));
+		IMetadataRepository repo = createMetadataRepository(getTempFolder().toURI(), null);
+		repo.addInstallableUnits(Arrays.asList(y1));
+		assertFalse(getExplanations(plan(y1)).isEmpty());
+
+		// the timestamp of the modified repository tells the request apart
+		repo.addInstallableUnits(Arrays.asList(createIU("Z", Version.create("1.0.0"), true)));
+		assertEquals(IStatus.OK, plan(y1).getStatus().getSeverity());
+	}
+}
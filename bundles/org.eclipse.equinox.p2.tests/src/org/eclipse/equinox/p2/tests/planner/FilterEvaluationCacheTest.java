@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.planner;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.internal.p2.director.*;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
+import org.eclipse.equinox.p2.query.IQueryable;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+public class FilterEvaluationCacheTest extends AbstractProvisioningTest {
+	public void testEvaluatedOnce() {
+		FilterEvaluationCache cache = new FilterEvaluationCache(InstallableUnit.contextIU("gtk", "linux", "x86_64"));
+		assertTrue(cache.isMatch(null));
+		for (int i = 0; i < 10; i++) {
+			assertTrue(cache.isMatch(InstallableUnit.parseFilter("(osgi.os=linux)")));
+			assertFalse(cache.isMatch(InstallableUnit.parseFilter("(&(osgi.os=linux)(osgi.arch=x86))")));
+		}
+		assertEquals(2, cache.getMisses());
+		assertEquals(18, cache.getHits());
+	}
+
+	public void testConcurrentLookups() throws Exception {
+		FilterEvaluationCache cache = new FilterEvaluationCache(InstallableUnit.contextIU("gtk", "linux", "x86_64"));
+		IMatchExpression<IInstallableUnit> linux = InstallableUnit.parseFilter("(osgi.os=linux)");
+		IMatchExpression<IInstallableUnit> win32 = InstallableUnit.parseFilter("(osgi.os=win32)");
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				results.add(executor.submit(() -> {
+					boolean consistent = true;
+					for (int i = 0; i < 1000; i++)
+						consistent &= cache.isMatch(linux) && !cache.isMatch(win32);
+					return consistent;
+				}));
+			}
+			for (Future<Boolean> result : results)
+				assertTrue(result.get());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(8000, cache.getHits() + cache.getMisses());
+		assertTrue(cache.getMisses() >= 2);
+	}
+
+	public void testSharedBySlicerAndProjector() {
+		List<IInstallableUnit> ius = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			InstallableUnitDescription desc = new InstallableUnitDescription();
+			desc.setId("iu" + i);
+			desc.setVersion(Version.createOSGi(1, 0, 0));
+			desc.setCapabilities(new IProvidedCapability[] {MetadataFactory.createProvidedCapability(IInstallableUnit.NAMESPACE_IU_ID, "iu" + i, Version.createOSGi(1, 0, 0))});
+			desc.setFilter(i % 2 == 0 ? "(osgi.os=linux)" : "(osgi.os=win32)");
+			ius.add(MetadataFactory.createInstallableUnit(desc));
+		}
+		IRequirement[] reqs = new IRequirement[ius.size()];
+		for (int i = 0; i < reqs.length; i++)
+			reqs[i] = MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "iu" + i, VersionRange.emptyRange, null, true, false);
+		IInstallableUnit root = createIU("root", reqs);
+		ius.add(root);
+
+		Map<String, String> context = new HashMap<>();
+		context.put("osgi.os", "linux");
+		Slicer slicer = new Slicer(new QueryableArray(ius.toArray(new IInstallableUnit[ius.size()])), context, false);
+		IQueryable<IInstallableUnit> slice = slicer.slice(new IInstallableUnit[] {root}, new NullProgressMonitor());
+		assertNotNull(slice);
+		FilterEvaluationCache cache = slicer.getFilterCache();
+		assertEquals(2, cache.getMisses());
+		assertEquals(11, queryResultSize(slice.query(QueryUtil.ALL_UNITS, null)));
+
+		Projector projector = new Projector(slice, context, Collections.emptySet(), false);
+		projector.setFilterCache(cache);
+		projector.encode(root, new IInstallableUnit[0], new QueryableArray(new IInstallableUnit[0]), Collections.singleton(root), new NullProgressMonitor());
+		assertOK("Solving", projector.invokeSolver(new NullProgressMonitor()));
+		Collection<IInstallableUnit> solution = projector.extractSolution();
+		assertTrue(solution.contains(ius.get(0)));
+		assertFalse(solution.contains(ius.get(1)));
+		assertEquals(2, cache.getMisses());
+	}
+}
@@ -13,7 +13,7 @@
  *******************************************************************************/
 package org.eclipse.equinox.p2.tests.planner;
 
-import java.util.HashMap;
+import java.util.*;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.equinox.p2.engine.*;
 import org.eclipse.equinox.p2.metadata.*;
@@ -70,4 +70,15 @@ public class FindingPatchesThroughUpdates extends AbstractProvisioningTest {
 		assertEquals(1, updates.toUnmodifiableSet().size());
 		assertTrue(updates.toUnmodifiableSet().contains(anotherPatch3));
 	}
+
+	public void testBatchUpdates() {
+		ProvisioningContext context = new ProvisioningContext(getAgent());
+		List<IInstallableUnit> ius = Arrays.asList(a1, a120, patchA1, anotherPatch2);
+		Map<IInstallableUnit, IQueryResult<IInstallableUnit>> updates = planner.updatesFor(ius, context, new NullProgressMonitor());
+		assertEquals(ius.size(), updates.size());
+		for (IInstallableUnit iu : ius)
+			assertEquals(iu.toString(), planner.updatesFor(iu, context, new NullProgressMonitor()).toUnmodifiableSet(), updates.get(iu).toUnmodifiableSet());
+		assertEquals(new HashSet<>(Arrays.asList(a120, patchA1)), updates.get(a1).toUnmodifiableSet());
+		assertEquals(Collections.singleton(anotherPatch3), updates.get(anotherPatch2).toUnmodifiableSet());
+	}
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.planner;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.equinox.internal.p2.director.SimplePlanner;
+import org.eclipse.equinox.p2.engine.IProvisioningPlan;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+
+public class IncrementalPlanningTest extends AbstractPlannerOptionTest {
+	private IProvisioningPlan plan(boolean incremental, IInstallableUnit... toInstall) {
+		return plan(SimplePlanner.INCREMENTAL, Boolean.toString(incremental), toInstall);
+	}
+
+	private void assertSamePlan(IInstallableUnit... toInstall) {
+		assertSamePlan(SimplePlanner.INCREMENTAL, Boolean.TRUE.toString(), toInstall);
+	}
+
+	public void testSameResultAsFullPlanning() {
+		assertSamePlan(a1);
+		assertSamePlan(a1, x1);
+		assertSamePlan(c1);
+		assertSamePlan(a1, c1);
+		assertSamePlan(x1);
+		assertSamePlan(y1);
+	}
+
+	public void testSuccessiveRequests() {
+		IProvisioningPlan plan = plan(true, a1);
+		assertEquals(IStatus.OK, plan.getStatus().getSeverity());
+		assertInstallOperand(plan, b3);
+
+		plan = plan(true, a1, x1);
+		assertEquals(IStatus.OK, plan.getStatus().getSeverity());
+		assertInstallOperand(plan, b2);
+		assertNoOperand(plan, b3);
+
+		plan = plan(true, y1);
+		assertEquals(IStatus.ERROR, plan.getStatus().getSeverity());
+
+		plan = plan(true, c1);
+		assertEquals(IStatus.OK, plan.getStatus().getSeverity());
+		assertInstallOperand(plan, d1);
+		assertNoOperand(plan, b3);
+	}
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.planner;
+
+import java.io.File;
+import java.util.*;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.internal.p2.director.PermissiveSlicer;
+import org.eclipse.equinox.internal.p2.director.QueryableArray;
+import org.eclipse.equinox.internal.p2.director.Slicer;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
+import org.eclipse.equinox.p2.query.IQueryable;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+/**
+ * Checks that slicing in parallel computes exactly what the sequential slicer
+ * computes.
+ */
+public class ParallelSlicerTest extends AbstractProvisioningTest {
+	private static final int IU_COUNT = 2000;
+
+	private IInstallableUnit[] createGraph() {
+		IInstallableUnit[] ius = new IInstallableUnit[IU_COUNT];
+		for (int i = 0; i < IU_COUNT; i++) {
+			List<IRequirement> reqs = new ArrayList<>();
+			for (int j = 1; j <= 3; j++) {
+				int target = (i * 7 + j * 13) % IU_COUNT;
+				reqs.add(MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "iu" + target, VersionRange.emptyRange, null, j == 3, false));
+			}
+			if (i % 50 == 0)
+				reqs.add(MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "missing" + i, VersionRange.emptyRange, null, false, false));
+			IMatchExpression<IInstallableUnit> filter = i % 11 == 0 ? createFilter("osgi.os", "win32") : null;
+			ius[i] = createIU("iu" + i, Version.createOSGi(1, 0, i % 3), filter, reqs.toArray(new IRequirement[reqs.size()]), NO_PROVIDES, NO_PROPERTIES, null, NO_TP_DATA, true);
+		}
+		return ius;
+	}
+
+	private void assertSameSlice(Slicer sequential, Slicer parallel, IInstallableUnit[] roots) {
+		parallel.setParallel(true);
+		IQueryable<IInstallableUnit> expected = sequential.slice(roots, new NullProgressMonitor());
+		IQueryable<IInstallableUnit> actual = parallel.slice(roots, new NullProgressMonitor());
+		if (expected == null) {
+			assertNull(actual);
+		} else {
+			assertNotNull(actual);
+			// the order of the slice matters since it drives the order of the encoding
+			assertEquals(Arrays.asList(expected.query(QueryUtil.ALL_UNITS, null).toArray(IInstallableUnit.class)), Arrays.asList(actual.query(QueryUtil.ALL_UNITS, null).toArray(IInstallableUnit.class)));
+		}
+		IStatus[] expectedProblems = sequential.getStatus().getChildren();
+		IStatus[] actualProblems = parallel.getStatus().getChildren();
+		assertEquals(expectedProblems.length, actualProblems.length);
+		for (int i = 0; i < expectedProblems.length; i++)
+			assertEquals(expectedProblems[i].getMessage(), actualProblems[i].getMessage());
+	}
+
+	public void testSlicer() {
+		IInstallableUnit[] ius = createGraph();
+		Map<String, String> env = Collections.singletonMap("osgi.os", "linux");
+		IInstallableUnit[] roots = new IInstallableUnit[] {ius[1], ius[2]};
+		assertSameSlice(new Slicer(new QueryableArray(ius), env, false), new Slicer(new QueryableArray(ius), env, false), roots);
+	}
+
+	public void testPermissiveSlicer() {
+		IInstallableUnit[] ius = createGraph();
+		IInstallableUnit[] roots = new IInstallableUnit[] {ius[1]};
+		assertSameSlice(new PermissiveSlicer(new QueryableArray(ius), Collections.emptyMap(), true, true, true, false, false), new PermissiveSlicer(new QueryableArray(ius), Collections.emptyMap(), true, true, true, false, false), roots);
+		assertSameSlice(new PermissiveSlicer(new QueryableArray(ius), Collections.emptyMap(), false, false, false, false, false), new PermissiveSlicer(new QueryableArray(ius), Collections.emptyMap(), false, false, false, false, false), roots);
+	}
+
+	public void testPermissiveSlicerOnRepository() throws Exception {
+		File repoFile = getTestData("Repo for permissive slicer test", "testData/permissiveSlicer");
+		IMetadataRepository repo = getMetadataRepositoryManager().loadRepository(repoFile.toURI(), new NullProgressMonitor());
+		IInstallableUnit[] roots = repo.query(QueryUtil.createIUQuery("org.eclipse.rcp.feature.group"), new NullProgressMonitor()).toArray(IInstallableUnit.class);
+		Map<String, String> p = new HashMap<>();
+		p.put("osgi.os", "win32");
+		p.put("osgi.ws", "win32");
+		p.put("osgi.arch", "x86");
+		assertSameSlice(new PermissiveSlicer(repo, p, true, true, false, false, false), new PermissiveSlicer(repo, p, true, true, false, false, false), roots);
+	}
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.planner;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.equinox.internal.p2.director.PlanCache;
+import org.eclipse.equinox.internal.p2.director.ProfileChangeRequest;
+import org.eclipse.equinox.p2.engine.IProfile;
+import org.eclipse.equinox.p2.engine.IProvisioningPlan;
+import org.eclipse.equinox.p2.engine.ProvisioningContext;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.planner.IPlanner;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+public class PlanCacheTest extends AbstractProvisioningTest {
+	IInstallableUnit a1;
+	IInstallableUnit b1;
+	IInstallableUnit x1;
+	IInstallableUnit y1;
+
+	IProfile profile;
+	IPlanner planner;
+	PlanCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		a1 = createIU("A", Version.create("1.0.0"), createRequiredCapabilities(IInstallableUnit.NAMESPACE_IU_ID, "B", new VersionRange("[1.0.0, 3.0.0)")));
+		b1 = createIU("B", Version.create("1.0.0"), true);
+		x1 = createIU("X", Version.create("1.0.0"), createRequiredCapabilities(IInstallableUnit.NAMESPACE_IU_ID, "B", new VersionRange("[2.0.0, 2.0.0]")));
+		y1 = createIU("Y", Version.create("1.0.0"), true);
+
+		createTestMetdataRepository(new IInstallableUnit[] {a1, b1, x1, y1});
+
+		profile = createProfile("TestProfile." + getName());
+		planner = createPlanner();
+		cache = new PlanCache();
+		getAgent().registerService(PlanCache.SERVICE_NAME, cache);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		getAgent().unregisterService(PlanCache.SERVICE_NAME, cache);
+		super.tearDown();
+	}
+
+	private IProvisioningPlan plan(ProvisioningContext ctx, IInstallableUnit... toInstall) {
+		ProfileChangeRequest req = new ProfileChangeRequest(profile);
+		req.addInstallableUnits(toInstall);
+		return planner.getProvisioningPlan(req, ctx, null);
+	}
+
+	public void testSameRequest() {
+		IProvisioningPlan first = plan(new ProvisioningContext(getAgent()), a1);
+		assertEquals(IStatus.OK, first.getStatus().getSeverity());
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		ProvisioningContext ctx = new ProvisioningContext(getAgent());
+		IProvisioningPlan second = plan(ctx, a1);
+		assertEquals(1, cache.getHits());
+		assertNotSame(first, second);
+		assertEquals(IStatus.OK, second.getStatus().getSeverity());
+		assertSame(ctx, second.getContext());
+		assertEquals(profile, second.getProfile());
+		assertInstallOperand(second, a1);
+		assertInstallOperand(second, b1);
+		assertEquals(first.getFutureState().query(QueryUtil.ALL_UNITS, null).toUnmodifiableSet(), second.getFutureState().query(QueryUtil.ALL_UNITS, null).toUnmodifiableSet());
+	}
+
+	public void testDifferentRequest() {
+		plan(new ProvisioningContext(getAgent()), a1);
+		plan(new ProvisioningContext(getAgent()), y1);
+		assertEquals(0, cache.getHits());
+
+		ProvisioningContext ctx = new ProvisioningContext(getAgent());
+		ctx.setProperty("org.eclipse.equinox.p2.planner.test", "true");
+		plan(ctx, a1);
+		assertEquals(0, cache.getHits());
+	}
+
+	public void testRepositoryChange() {
+		plan(new ProvisioningContext(getAgent()), a1);
+		IInstallableUnit b2 = createIU("B", Version.create("2.0.0"), true);
+		createTestMetdataRepository(new IInstallableUnit[] {b2});
+		IProvisioningPlan plan = plan(new ProvisioningContext(getAgent()), a1);
+		assertEquals(0, cache.getHits());
+		assertInstallOperand(plan, b2);
+		assertNoOperand(plan, b1);
+	}
+
+	public void testFailureNotCached() {
+		IProvisioningPlan first = plan(new ProvisioningContext(getAgent()), x1);
+		assertEquals(IStatus.ERROR, first.getStatus().getSeverity());
+		IProvisioningPlan second = plan(new ProvisioningContext(getAgent()), x1);
+		assertEquals(IStatus.ERROR, second.getStatus().getSeverity());
+		assertEquals(0, cache.getHits());
+	}
+}
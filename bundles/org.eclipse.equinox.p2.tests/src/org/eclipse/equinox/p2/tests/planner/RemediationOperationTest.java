@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.planner;
+
+import java.util.*;
+import org.eclipse.equinox.internal.p2.director.SimplePlanner;
+import org.eclipse.equinox.internal.p2.operations.SnapshotProvisioningContext;
+import org.eclipse.equinox.p2.engine.*;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.expression.ExpressionUtil;
+import org.eclipse.equinox.p2.operations.*;
+import org.eclipse.equinox.p2.planner.*;
+import org.eclipse.equinox.p2.query.ExpressionMatchQuery;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.tests.*;
+
+public class RemediationOperationTest extends AbstractProvisioningTest {
+	@IUDescription(content = "package: sdk \n" + "singleton: true\n" + "version: 1 \n" + "depends: platform = 1")
+	public IInstallableUnit sdk1;
+
+	@IUDescription(content = "package: platform \n" + "singleton: true\n" + "version: 1 \n")
+	public IInstallableUnit platform1;
+
+	@IUDescription(content = "package: sdk \n" + "singleton: true\n" + "version: 2 \n" + "depends: platform = 2")
+	public IInstallableUnit sdk2;
+
+	@IUDescription(content = "package: platform \n" + "singleton: true\n" + "version: 2 \n")
+	public IInstallableUnit platform2;
+
+	@IUDescription(content = "package: tool \n" + "singleton: true\n" + "version: 1 \n" + "depends: platform = 1")
+	public IInstallableUnit tool1;
+
+	private IProfile profile;
+	private IPlanner planner;
+	private IProfileChangeRequest originalRequest;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		profile = createProfile("TestProfile." + getName());
+		IULoader.loadIUs(this);
+		createTestMetdataRepository(new IInstallableUnit[] {sdk1, platform1, sdk2, platform2, tool1});
+		planner = createPlanner();
+		IEngine engine = createEngine();
+		assertOK(install(profile, new IInstallableUnit[] {sdk1, tool1}, true, planner, engine));
+
+		originalRequest = planner.createChangeRequest(profile);
+		originalRequest.add(sdk2);
+		originalRequest.setInstallableUnitInclusionRules(sdk2, ProfileInclusionRules.createStrictInclusionRule(sdk2));
+		assertNotOK(planner.getProvisioningPlan(originalRequest, null, null).getStatus());
+	}
+
+	private RemediationOperation createOperation(boolean parallel) {
+		RemediationOperation operation = new RemediationOperation(new ProvisioningSession(getAgent()), originalRequest);
+		operation.setProfileId(profile.getProfileId());
+		operation.setParallel(parallel);
+		return operation;
+	}
+
+	private static String describe(Remedy remedy) {
+		return remedy == null ? null : describe(remedy.getConfig());
+	}
+
+	private static String describe(RemedyConfig config) {
+		return "" + config.allowPartialInstall + config.allowDifferentVersion + config.allowInstalledUpdate + config.allowInstalledRemoval;
+	}
+
+	private static List<String> describe(List<Remedy> remedies) {
+		List<String> result = new ArrayList<>();
+		for (Remedy remedy : remedies)
+			result.add(describe(remedy.getConfig()) + " " + new HashSet<>(remedy.getRequest().getAdditions()) + " " + new HashSet<>(remedy.getRequest().getRemovals()));
+		return result;
+	}
+
+	public void testSnapshotContext() throws Exception {
+		IMetadataRepository consulted = createTestMetdataRepository(new IInstallableUnit[] {sdk2, platform2});
+		createTestMetdataRepository(new IInstallableUnit[] {tool1});
+		ProvisioningContext context = new ProvisioningContext(getAgent());
+		context.setMetadataRepositories(consulted.getLocation());
+		context.setProperty(SimplePlanner.INCREMENTAL, Boolean.FALSE.toString());
+
+		SnapshotProvisioningContext copy = SnapshotProvisioningContext.takeSnapshot(getAgent(), context, getMonitor()).copy();
+		assertEquals(Collections.singleton(consulted), copy.getMetadataRepositories(getMonitor()).query(new ExpressionMatchQuery<>(IMetadataRepository.class, ExpressionUtil.TRUE_EXPRESSION), null).toUnmodifiableSet());
+		assertEquals(new HashSet<>(Arrays.asList(sdk2, platform2)), copy.getMetadata(getMonitor()).query(QueryUtil.ALL_UNITS, null).toUnmodifiableSet());
+		assertEquals(Boolean.FALSE.toString(), copy.getProperty(SimplePlanner.INCREMENTAL));
+		copy.setProperty(SimplePlanner.INCREMENTAL, Boolean.TRUE.toString());
+		assertEquals(Boolean.FALSE.toString(), context.getProperty(SimplePlanner.INCREMENTAL));
+	}
+
+	public void testParallelRemedies() {
+		RemediationOperation sequential = createOperation(false);
+		assertOK(sequential.resolveModal(getMonitor()));
+		RemediationOperation parallel = createOperation(true);
+		assertOK(parallel.resolveModal(getMonitor()));
+		assertFalse(sequential.getRemedies().isEmpty());
+		assertEquals(describe(sequential.getRemedies()), describe(parallel.getRemedies()));
+		assertEquals(describe(sequential.bestSolutionChangingTheRequest()), describe(parallel.bestSolutionChangingTheRequest()));
+		assertEquals(describe(sequential.bestSolutionChangingWhatIsInstalled()), describe(parallel.bestSolutionChangingWhatIsInstalled()));
+	}
+
+	public void testRemedyListener() {
+		for (boolean parallel : new boolean[] {false, true}) {
+			RemediationOperation operation = createOperation(parallel);
+			List<Remedy> delivered = new ArrayList<>();
+			operation.setRemedyListener(delivered::add);
+			assertOK(operation.resolveModal(getMonitor()));
+			assertEquals(new HashSet<>(operation.getRemedies()), new HashSet<>(delivered));
+		}
+	}
+
+	public void testStopAtBestRemedy() {
+		RemediationOperation complete = createOperation(false);
+		assertOK(complete.resolveModal(getMonitor()));
+		int all = complete.getRemedies().size();
+		for (boolean parallel : new boolean[] {false, true}) {
+			RemediationOperation operation = createOperation(parallel);
+			operation.setStopAtBestRemedy(true);
+			List<Remedy> delivered = new ArrayList<>();
+			operation.setRemedyListener(delivered::add);
+			assertOK(operation.resolveModal(getMonitor()));
+			assertFalse(delivered.isEmpty());
+			assertEquals(operation.getRemedies().size(), delivered.size());
+			if (delivered.size() < all) {
+				// stopped early, so the last remedy found can not be improved upon
+				Remedy last = delivered.get(delivered.size() - 1);
+				assertTrue(last.getBeingInstalledRelaxedWeight() == 0 || last.getInstallationRelaxedWeight() == 0);
+				assertTrue(last.getBeingInstalledRelaxedWeight() == 3 || last.getInstallationRelaxedWeight() == 3);
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.planner;
+
+import java.util.*;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.internal.p2.director.*;
+import org.eclipse.equinox.internal.provisional.p2.director.PlannerStatus;
+import org.eclipse.equinox.p2.engine.IProvisioningPlan;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.query.IQueryable;
+import org.sat4j.minisat.core.RestartStrategy;
+
+public class SolverPortfolioTest extends AbstractPlannerOptionTest {
+	private Projector[] createProjectors(int count, IInstallableUnit root) {
+		IQueryable<IInstallableUnit> repo = new QueryableArray(new IInstallableUnit[] {a1, b1, b2, b3, c1, d1, x1, y1, root});
+		Slicer slicer = new Slicer(repo, Collections.emptyMap(), false);
+		IQueryable<IInstallableUnit> slice = slicer.slice(new IInstallableUnit[] {root}, new NullProgressMonitor());
+		assertNotNull(slice);
+		Projector[] projectors = new Projector[count];
+		for (int i = 0; i < count; i++) {
+			projectors[i] = new Projector(slice, Collections.emptyMap(), Collections.emptySet(), false);
+			projectors[i].setSolverConfiguration(i);
+		}
+		return projectors;
+	}
+
+	public void testSameResultAsSingleSolver() {
+		for (String portfolio : new String[] {"true", "2", "5"}) {
+			assertSamePlan(SimplePlanner.SOLVER_PORTFOLIO, portfolio, a1);
+			assertSamePlan(SimplePlanner.SOLVER_PORTFOLIO, portfolio, a1, x1);
+			assertSamePlan(SimplePlanner.SOLVER_PORTFOLIO, portfolio, a1, c1);
+			assertSamePlan(SimplePlanner.SOLVER_PORTFOLIO, portfolio, y1);
+		}
+	}
+
+	public void testOptimalSolution() {
+		IProvisioningPlan plan = plan(SimplePlanner.SOLVER_PORTFOLIO, "true", a1);
+		assertEquals(IStatus.OK, plan.getStatus().getSeverity());
+		assertInstallOperand(plan, b3);
+		assertNoOperand(plan, b1);
+		assertNoOperand(plan, b2);
+	}
+
+	public void testExplanation() {
+		IProvisioningPlan plan = plan(SimplePlanner.SOLVER_PORTFOLIO, "true", y1);
+		assertEquals(IStatus.ERROR, plan.getStatus().getSeverity());
+		assertFalse(((PlannerStatus) plan.getStatus()).getRequestStatus().getExplanations().isEmpty());
+	}
+
+	public void testConfigurationsDiffer() {
+		IInstallableUnit root = createIU("root", createRequiredCapabilities(IInstallableUnit.NAMESPACE_IU_ID, "A"));
+		Set<Class<?>> strategies = new HashSet<>();
+		for (Projector projector : createProjectors(4, root)) {
+			projector.encode(root, new IInstallableUnit[0], new QueryableArray(new IInstallableUnit[0]), Collections.singleton(root), new NullProgressMonitor());
+			RestartStrategy strategy = projector.getRestartStrategy();
+			assertNotNull(strategy);
+			strategies.add(strategy.getClass());
+		}
+		assertEquals(4, strategies.size());
+	}
+
+	public void testLosersStopped() {
+		IInstallableUnit root = createIU("root", createRequiredCapabilities(IInstallableUnit.NAMESPACE_IU_ID, "A"));
+		Projector[] projectors = createProjectors(3, root);
+		SolverPortfolio portfolio = new SolverPortfolio(projectors);
+		IStatus status = portfolio.solve(root, new IInstallableUnit[0], new QueryableArray(new IInstallableUnit[0]), Collections.singleton(root), new NullProgressMonitor());
+		assertEquals(IStatus.OK, status.getSeverity());
+		Projector winner = portfolio.getProjector();
+		assertNotNull(winner);
+		assertFalse(winner.isSolverStopped());
+		for (Projector projector : projectors) {
+			if (projector != winner)
+				assertTrue(projector.isSolverStopped());
+		}
+		assertTrue(winner.extractSolution().contains(b3));
+	}
+}
@@ -20,7 +20,7 @@ import org.junit.runners.Suite;
  * Performs all automated director tests.
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({ EvaluatorTest.class, PerformanceTest.class, TestQueryReimplementation.class })
+@Suite.SuiteClasses({ BoundedCacheTest.class, EvaluatorTest.class, ExpressionCompilerTest.class, PerformanceTest.class, TestQueryReimplementation.class })
 public class AllTests {
 // test suite
 }
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.ql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.internal.p2.metadata.expression.BoundedCache;
+import org.eclipse.equinox.internal.p2.metadata.expression.parser.LDAPFilterParser;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.expression.ExpressionUtil;
+import org.eclipse.equinox.p2.metadata.expression.IFilterExpression;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+public class BoundedCacheTest extends AbstractProvisioningTest {
+	public void testStatistics() {
+		BoundedCache<String, String> cache = new BoundedCache<>(10);
+		assertNull(cache.get("a"));
+		assertEquals("a1", cache.put("a", "a1"));
+		assertEquals("a1", cache.put("a", "a2"));
+		assertEquals("a1", cache.get("a"));
+		assertEquals("a1", cache.get("a"));
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.size());
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(2, cache.getHits());
+	}
+
+	public void testBounded() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(100);
+		cache.put(Integer.valueOf(-1), Integer.valueOf(-1));
+		for (int i = 0; i < 1000; i++) {
+			// keep using one entry, it should survive the sweeps
+			assertNotNull(cache.get(Integer.valueOf(-1)));
+			cache.put(Integer.valueOf(i), Integer.valueOf(i));
+			assertTrue(cache.size() <= 100);
+		}
+		assertTrue(cache.getEvictions() > 0);
+		assertEquals(1001, cache.size() + cache.getEvictions());
+		assertEquals(Integer.valueOf(-1), cache.get(Integer.valueOf(-1)));
+		assertEquals(Integer.valueOf(999), cache.get(Integer.valueOf(999)));
+	}
+
+	public void testSharedFilters() {
+		BoundedCache<String, IFilterExpression> ldapCache = LDAPFilterParser.getFilterCache();
+		String filterStr = "(&(osgi.os=" + getName() + ")(osgi.ws=gtk))";
+		long hits = ldapCache.getHits();
+		IFilterExpression filter = ExpressionUtil.parseLDAP(filterStr);
+		assertSame(filter, ExpressionUtil.parseLDAP(filterStr));
+		assertTrue(ldapCache.getHits() > hits);
+
+		IMatchExpression<IInstallableUnit> matchExpr = InstallableUnit.parseFilter(filterStr);
+		assertSame(matchExpr, InstallableUnit.parseFilter(filterStr));
+		assertSame(matchExpr, InstallableUnit.getFilterCache().get(filter));
+	}
+
+	public void testConcurrentParsing() throws InterruptedException {
+		List<Thread> threads = new ArrayList<>();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				try {
+					for (int i = 0; i < 5000; i++) {
+						String filterStr = "(&(osgi.os=os" + i % 6000 + ")(osgi.arch=x86_64))";
+						IMatchExpression<IInstallableUnit> matchExpr = InstallableUnit.parseFilter(filterStr);
+						assertEquals(ExpressionUtil.parseLDAP(filterStr), matchExpr.getParameters()[0]);
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			}));
+		}
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+		if (failure.get() != null)
+			fail("Concurrent parsing failed", failure.get());
+		assertTrue(LDAPFilterParser.getFilterCache().size() <= LDAPFilterParser.getFilterCache().getMaxSize());
+	}
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.ql;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.equinox.internal.p2.metadata.InstallableUnit;
+import org.eclipse.equinox.internal.p2.metadata.expression.MatchExpression;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IProvidedCapability;
+import org.eclipse.equinox.p2.metadata.IRequirement;
+import org.eclipse.equinox.p2.metadata.MetadataFactory;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.metadata.expression.ExpressionUtil;
+import org.eclipse.equinox.p2.metadata.expression.IFilterExpression;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+
+/**
+ * Checks that compiled expressions give the results of the interpreted ones.
+ */
+public class ExpressionCompilerTest extends AbstractProvisioningTest {
+	private List<IInstallableUnit> ius;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		ius = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			InstallableUnitDescription desc = new InstallableUnitDescription();
+			Version version = Version.createOSGi(1 + i % 3, i % 2, 0);
+			desc.setId("test.iu" + i % 4);
+			desc.setVersion(version);
+			desc.setSingleton(i % 2 == 0);
+			List<IProvidedCapability> capabilities = new ArrayList<>();
+			capabilities.add(MetadataFactory.createProvidedCapability(IInstallableUnit.NAMESPACE_IU_ID, "test.iu" + i % 4, version));
+			capabilities.add(MetadataFactory.createProvidedCapability("java.package", "test.package" + i % 5, Version.createOSGi(1, i % 4, 0)));
+			if (i % 3 == 0)
+				capabilities.add(MetadataFactory.createProvidedCapability("org.eclipse.equinox.p2.eclipse.type", "bundle", Version.createOSGi(1, 0, 0)));
+			desc.setCapabilities(capabilities.toArray(new IProvidedCapability[capabilities.size()]));
+			desc.setRequirements(new IRequirement[] {MetadataFactory.createRequirement("java.package", "test.package" + (i + 1) % 5, null, null, i % 4 == 0, false)});
+			desc.setProperty("org.eclipse.equinox.p2.type.group", Boolean.toString(i % 2 == 0));
+			desc.setProperty("test.size", Integer.toString(i));
+			if (i % 4 == 1)
+				desc.setFilter("(osgi.os=linux)");
+			ius.add(MetadataFactory.createInstallableUnit(desc));
+		}
+	}
+
+	private void assertSameMatches(IMatchExpression<IInstallableUnit> expression) {
+		assertNotNull(expression.toString(), ((MatchExpression<IInstallableUnit>) expression).getCompiled());
+		for (IInstallableUnit iu : ius)
+			assertEquals(expression + " on " + iu, expression.isMatch(expression.createContext(), iu), expression.isMatch(iu));
+	}
+
+	private void assertSameMatches(String expression, Object... parameters) {
+		assertSameMatches(ExpressionUtil.getFactory().matchExpression(ExpressionUtil.parse(expression), parameters));
+	}
+
+	public void testRequirements() {
+		String[] ranges = {null, "[1.0.0,1.0.0]", "1.1.0", "(1.0.0,2.0.0)", "[1.0.0,3.0.0)", "(1.0.0,3.0.0]", "[2.0.0,2.0.0]"};
+		for (String range : ranges) {
+			for (int i = 0; i < 5; i++) {
+				VersionRange versionRange = range == null ? null : new VersionRange(range);
+				assertSameMatches(MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "test.iu" + i, versionRange, null, false, false).getMatches());
+				assertSameMatches(MetadataFactory.createRequirement("java.package", "test.package" + i, versionRange, null, false, false).getMatches());
+			}
+		}
+	}
+
+	public void testExpressions() {
+		assertSameMatches("id == $0", "test.iu1");
+		assertSameMatches("id != $0 && version >= $1", "test.iu1", Version.create("2.0.0"));
+		assertSameMatches("version < $0 || singleton", Version.create("2.0.0"));
+		assertSameMatches("version ~= $0", new VersionRange("[1.1.0,3.0.0)"));
+		assertSameMatches("id ~= /test.iu*/ && !(id ~= /*2/)");
+		assertSameMatches("properties['org.eclipse.equinox.p2.type.group'] == true");
+		assertSameMatches("properties['test.size'] > 5");
+		assertSameMatches("providedCapabilities.all(c | c.version >= $0)", Version.create("1.1.0"));
+		assertSameMatches("providedCapabilities.exists(c | c.namespace == 'java.package' && providedCapabilities.exists(d | d.name == c.name && d != c))");
+		assertSameMatches("requirements.exists(r | r.greedy && r.min == 0)");
+		assertSameMatches("requirements.exists(r | $0 ~= r)", ius.get(2));
+		assertSameMatches("filter == null || $0 ~= filter", InstallableUnit.contextIU("gtk", "linux", "x86_64"));
+		assertSameMatches("$0.exists(x | x == id)", (Object) new String[] {"test.iu0", "test.iu3"});
+		assertSameMatches("this ~= $0", MetadataFactory.createRequirement(IInstallableUnit.NAMESPACE_IU_ID, "test.iu2", null, null, false, false));
+	}
+
+	public void testSameErrors() {
+		IMatchExpression<IInstallableUnit> expression = ExpressionUtil.getFactory().matchExpression(ExpressionUtil.parse("providedCapabilities.exists(c | c.noSuchMember == 1)"));
+		try {
+			expression.isMatch(expression.createContext(), ius.get(0));
+			fail("Interpreted expression should fail");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			expression.isMatch(ius.get(0));
+			fail("Compiled expression should fail");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testNonStringPropertyKey() {
+		IMatchExpression<IInstallableUnit> expression = ExpressionUtil.getFactory().matchExpression(ExpressionUtil.parse("properties[$0] == null"), Integer.valueOf(1));
+		assertSameMatches(expression);
+		assertTrue(expression.isMatch(ius.get(0)));
+		assertSameMatches("properties[$0] == $1", Version.create("1.0.0"), "true");
+	}
+
+	public void testNotCompiled() {
+		IMatchExpression<IInstallableUnit> expression = ExpressionUtil.getFactory().matchExpression(ExpressionUtil.parse("translatedProperties['org.eclipse.equinox.p2.name'] == 'x'"));
+		assertNull(((MatchExpression<IInstallableUnit>) expression).getCompiled());
+		expression = ExpressionUtil.getFactory().matchExpression(ExpressionUtil.parse("boolean(properties['org.eclipse.equinox.p2.type.group'])"));
+		assertNull(((MatchExpression<IInstallableUnit>) expression).getCompiled());
+		assertEquals(6, queryResultSize(QueryUtil.createMatchQuery("boolean(properties['org.eclipse.equinox.p2.type.group'])").perform(ius.iterator())));
+		assertEquals(1, queryResultSize(QueryUtil.createMatchQuery("id == $0 && version == $1", "test.iu1", Version.createOSGi(2, 1, 0)).perform(ius.iterator())));
+	}
+
+	public void testFilters() {
+		IFilterExpression filter = ExpressionUtil.parseLDAP("(&(osgi.os=linux)(|(osgi.ws=gtk)(osgi.ws=motif))(!(osgi.arch=x86)))");
+		Map<String, String> properties = new HashMap<>();
+		properties.put("osgi.os", "linux");
+		properties.put("osgi.ws", "gtk");
+		properties.put("osgi.arch", "x86_64");
+		assertTrue(filter.match(properties));
+		properties.put("osgi.arch", "x86");
+		assertFalse(filter.match(properties));
+		properties.put("osgi.arch", "ppc64le");
+		properties.put("osgi.ws", "win32");
+		assertFalse(filter.match(properties));
+		assertTrue(ExpressionUtil.parseLDAP("(osgi.ws=*)").match(properties));
+		assertTrue(ExpressionUtil.parseLDAP("(osgi.ws~=WIN32)").match(properties));
+		assertFalse(ExpressionUtil.parseLDAP("(osgi.nl=*)").match(properties));
+	}
+}
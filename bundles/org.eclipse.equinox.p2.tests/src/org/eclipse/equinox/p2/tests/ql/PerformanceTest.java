@@ -33,7 +33,9 @@ import org.eclipse.equinox.p2.metadata.MetadataFactory;
 import org.eclipse.equinox.p2.metadata.Version;
 import org.eclipse.equinox.p2.metadata.VersionRange;
 import org.eclipse.equinox.p2.metadata.expression.ExpressionUtil;
+import org.eclipse.equinox.p2.metadata.expression.IEvaluationContext;
 import org.eclipse.equinox.p2.metadata.expression.IExpressionParser;
+import org.eclipse.equinox.p2.metadata.expression.IMatchExpression;
 import org.eclipse.equinox.p2.publisher.actions.JREAction;
 import org.eclipse.equinox.p2.query.IQuery;
 import org.eclipse.equinox.p2.query.IQueryResult;
@@ -223,6 +225,46 @@ public class PerformanceTest extends AbstractProvisioningTest {
 		System.out.println();
 	}
 
+	public void testCompiledVersusInterpretedMatchPerformance() throws Exception {
+
+		IMetadataRepository repo = getMDR("/testData/galileoM7");
+		IInstallableUnit[] ius = repo.query(QueryUtil.createIUAnyQuery(), new NullProgressMonitor()).toArray(IInstallableUnit.class);
+		ArrayList<IMatchExpression<IInstallableUnit>> matches = new ArrayList<>();
+		for (IInstallableUnit iu : ius) {
+			for (IRequirement requirement : iu.getRequirements())
+				if (matches.size() < 500)
+					matches.add(requirement.getMatches());
+		}
+
+		long interpretedMS = 0;
+		long compiledMS = 0;
+
+		for (int i = 0; i < 5; ++i) {
+			long start = System.currentTimeMillis();
+			int interpretedCount = 0;
+			for (IMatchExpression<IInstallableUnit> match : matches) {
+				IEvaluationContext context = match.createContext();
+				for (IInstallableUnit iu : ius)
+					if (match.isMatch(context, iu))
+						interpretedCount++;
+			}
+			interpretedMS += (System.currentTimeMillis() - start);
+
+			start = System.currentTimeMillis();
+			int compiledCount = 0;
+			for (IMatchExpression<IInstallableUnit> match : matches) {
+				for (IInstallableUnit iu : ius)
+					if (match.isMatch(iu))
+						compiledCount++;
+			}
+			compiledMS += (System.currentTimeMillis() - start);
+			assertEquals(interpretedCount, compiledCount);
+		}
+		System.out.println("Interpreted requirements took: " + interpretedMS + " milliseconds");
+		System.out.println("Compiled requirements took: " + compiledMS + " milliseconds");
+		System.out.println();
+	}
+
 	public void testCapabilityQueryPerformance() throws Exception {
 
 		IMetadataRepository repo = getMDR("/testData/galileoM7");
@@ -14,10 +14,16 @@
 package org.eclipse.equinox.p2.tests.ql;
 
 import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.equinox.internal.p2.director.QueryableArray;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.IProvidedCapability;
 import org.eclipse.equinox.p2.metadata.IRequirement;
 import org.eclipse.equinox.p2.metadata.MetadataFactory;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
 import org.eclipse.equinox.p2.query.IQuery;
 import org.eclipse.equinox.p2.query.IQueryResult;
 import org.eclipse.equinox.p2.query.QueryUtil;
@@ -70,6 +76,29 @@ public class TestIndexes extends AbstractProvisioningTest {
 		assertEquals(queryResultSize(result), 487);
 	}
 
+	public void testCapabilityIndexVersionRange() {
+		IInstallableUnit[] ius = new IInstallableUnit[60];
+		for (int i = 0; i < ius.length; i++) {
+			Version version = Version.createOSGi(i / 10, i % 10, 0);
+			// Every other unit also provides a lower version of the same capability
+			IProvidedCapability[] provides = i % 2 == 0 ? new IProvidedCapability[] {MetadataFactory.createProvidedCapability("test.namespace", "cap", version)} : new IProvidedCapability[] {MetadataFactory.createProvidedCapability("test.namespace", "cap", version), MetadataFactory.createProvidedCapability("test.namespace", "cap", Version.createOSGi(0, 0, i))};
+			ius[i] = createIU("iu" + i, version, provides);
+		}
+		QueryableArray queryable = new QueryableArray(ius);
+		String[] ranges = {"0.0.0", "[1.0.0,2.0.0)", "(1.0.0,2.0.0]", "[2.5.0,2.5.0]", "[0.0.5,0.0.9)", "[6.0.0,7.0.0)"};
+		for (String range : ranges) {
+			IRequirement requirement = MetadataFactory.createRequirement("test.namespace", "cap", new VersionRange(range), null, false, false);
+			Set<IInstallableUnit> expected = new HashSet<>();
+			for (IInstallableUnit iu : ius)
+				if (requirement.isMatch(iu))
+					expected.add(iu);
+			assertEquals(range, expected, queryable.query(QueryUtil.createMatchQuery(requirement.getMatches()), getMonitor()).toUnmodifiableSet());
+			assertEquals(range, expected, queryable.query(QueryUtil.createQuery("select(x | x ~= $0)", requirement), getMonitor()).toUnmodifiableSet());
+		}
+		IRequirement otherNamespace = MetadataFactory.createRequirement("other.namespace", "cap", VersionRange.emptyRange, null, false, false);
+		assertTrue(queryable.query(QueryUtil.createMatchQuery(otherNamespace.getMatches()), getMonitor()).isEmpty());
+	}
+
 	private IMetadataRepository getMDR(String uri) throws Exception {
 		URI metadataRepo = getTestData("1.1", uri).toURI();
 
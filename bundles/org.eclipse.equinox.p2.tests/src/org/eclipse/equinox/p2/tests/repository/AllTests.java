@@ -21,7 +21,7 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ CacheManagerTest.class, RepositoryHelperTest.class, RepositoryExtensionPointTest.class,
-		FileReaderTest2.class, ChecksumHelperTest.class })
+		FileReaderTest2.class, ChecksumHelperTest.class, StreamingXMLReaderTest.class })
 public class AllTests {
 	// test suite
 }
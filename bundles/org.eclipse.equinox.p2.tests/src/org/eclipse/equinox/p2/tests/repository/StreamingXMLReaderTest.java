@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.p2.tests.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import javax.xml.parsers.SAXParserFactory;
+import org.eclipse.equinox.internal.p2.persistence.StreamingXMLReader;
+import org.eclipse.equinox.internal.p2.persistence.XMLParser;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
+import org.eclipse.equinox.p2.tests.AbstractProvisioningTest;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests that the {@link StreamingXMLReader} reports the events of a SAX parser.
+ */
+public class StreamingXMLReaderTest extends AbstractProvisioningTest {
+	private String originalProperty;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		originalProperty = System.getProperty(XMLParser.PROP_STREAMING_READER);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (originalProperty == null)
+			System.clearProperty(XMLParser.PROP_STREAMING_READER);
+		else
+			System.setProperty(XMLParser.PROP_STREAMING_READER, originalProperty);
+		super.tearDown();
+	}
+
+	/**
+	 * Records the events of a reader as text, with the character data between two
+	 * elements merged.
+	 */
+	private static class Recorder extends DefaultHandler {
+		final StringBuilder events = new StringBuilder();
+		private final StringBuilder text = new StringBuilder();
+
+		private void flush() {
+			if (text.length() > 0) {
+				events.append("text [").append(text).append("]\n");
+				text.setLength(0);
+			}
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			flush();
+			events.append("start ").append(localName).append(' ').append(qName);
+			for (int i = 0; i < attributes.getLength(); i++)
+				events.append(' ').append(attributes.getLocalName(i)).append('=').append(attributes.getValue(i));
+			events.append('\n');
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			flush();
+			events.append("end ").append(localName).append(' ').append(qName).append('\n');
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			text.append(ch, start, length);
+		}
+
+		@Override
+		public void processingInstruction(String target, String data) {
+			flush();
+			events.append("pi ").append(target).append(' ').append(data).append('\n');
+		}
+	}
+
+	private static String read(XMLReader reader, byte[] document) throws Exception {
+		Recorder recorder = new Recorder();
+		reader.setContentHandler(recorder);
+		reader.parse(new InputSource(new ByteArrayInputStream(document)));
+		return recorder.events.toString();
+	}
+
+	private static XMLReader createSAXReader() throws Exception {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		return factory.newSAXParser().getXMLReader();
+	}
+
+	private static void assertSameEvents(byte[] document) throws Exception {
+		assertEquals(read(createSAXReader(), document), read(new StreamingXMLReader(), document));
+	}
+
+	private static void assertSameEvents(String document) throws Exception {
+		assertSameEvents(document.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public void testRepositoryDocuments() throws Exception {
+		String[] documents = {"testData/orbitRepo/content.xml", "testData/bug362692/repo/artifacts.xml", "testData/metadataRepo/composite/good.remote/compositeContent.xml", "testData/bug309530/p2/org.eclipse.equinox.p2.engine/profileRegistry/PlatformProfile.profile/123.profile"};
+		for (String document : documents)
+			assertSameEvents(Files.readAllBytes(getTestData(document, document).toPath()));
+	}
+
+	public void testMarkup() throws Exception {
+		assertSameEvents("<?xml version='1.0' encoding='UTF-8'?>\r\n<!-- comment -->\r\n<?metadataRepository version='1.2.0'?>\r\n" //
+				+ "<repository name=\"a\tb\r\nc\" value='&lt;&#9;&#x1F600;&quot;&apos;&amp;&gt;'>\r\n" //
+				+ "  text &amp; more\r<![CDATA[<raw> ]] ]]>\r\n<!-- inner -->" //
+				+ "<empty/><?target data?>tail<\u00e9 attribute = \"\u00e9\" />\n</repository>\n<!-- after -->\n");
+		assertSameEvents("<!DOCTYPE repository [<!ELEMENT repository ANY>]><repository>x</repository>");
+		assertSameEvents("<p:repository xmlns:p='urn:p' xmlns='urn:d' p:name='1' value='2'><p:units/></p:repository>");
+	}
+
+	public void testEncodings() throws Exception {
+		String document = "<repository name='\u00e9'>\u00fc</repository>";
+		assertSameEvents(("\uFEFF" + document).getBytes(StandardCharsets.UTF_8));
+		assertSameEvents(("<?xml version='1.0' encoding='ISO-8859-1'?>" + document).getBytes(StandardCharsets.ISO_8859_1));
+		assertSameEvents(("<?xml version='1.0' encoding='UTF-16'?>" + document).getBytes(StandardCharsets.UTF_16));
+	}
+
+	public void testMalformedDocuments() throws Exception {
+		String[] documents = {"<repository a='1' a='2'/>", "<repository><units></repository>", "<repository>&undeclared;</repository>", //
+				"<repository/><repository/>", "<repository>", "text<repository/>", "<repository a=1/>", "<repository a='<'/>", //
+				"<repository>&#0;</repository>", "<?xml version='1.0'?><?xml version='1.0'?><repository/>"};
+		for (String document : documents) {
+			try {
+				read(new StreamingXMLReader(), document.getBytes(StandardCharsets.UTF_8));
+				fail(document);
+			} catch (SAXParseException e) {
+				// expected
+			}
+		}
+		try {
+			read(new StreamingXMLReader(), new byte[] {'<', 'a', '>', (byte) 0xFF, '<', '/', 'a', '>'});
+			fail();
+		} catch (IOException e) {
+			// expected, since the document is not UTF-8
+		}
+	}
+
+	public void testLocation() throws Exception {
+		try {
+			read(new StreamingXMLReader(), "<repository>\n  <units>\r\n  </unit>\n</repository>".getBytes(StandardCharsets.UTF_8));
+			fail();
+		} catch (SAXParseException e) {
+			assertEquals(3, e.getLineNumber());
+			assertEquals(10, e.getColumnNumber());
+		}
+	}
+
+	private List<IInstallableUnit> loadUnits(File location, boolean streaming) throws Exception {
+		System.setProperty(XMLParser.PROP_STREAMING_READER, Boolean.toString(streaming));
+		IMetadataRepositoryManager manager = getMetadataRepositoryManager();
+		manager.removeRepository(location.toURI());
+		try {
+			List<IInstallableUnit> units = new ArrayList<>(manager.loadRepository(location.toURI(), null).query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet());
+			units.sort(Comparator.naturalOrder());
+			return units;
+		} finally {
+			manager.removeRepository(location.toURI());
+		}
+	}
+
+	public void testLoadRepository() throws Exception {
+		File location = getTestData("orbit repository", "testData/orbitRepo");
+		List<IInstallableUnit> expected = loadUnits(location, false);
+		List<IInstallableUnit> actual = loadUnits(location, true);
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i), actual.get(i));
+			assertEquals(expected.get(i).getProperties(), actual.get(i).getProperties());
+			assertEquals(expected.get(i).getRequirements(), actual.get(i).getRequirements());
+			assertEquals(expected.get(i).getProvidedCapabilities(), actual.get(i).getProvidedCapabilities());
+			assertEquals(expected.get(i).getTouchpointData(), actual.get(i).getTouchpointData());
+		}
+	}
+}
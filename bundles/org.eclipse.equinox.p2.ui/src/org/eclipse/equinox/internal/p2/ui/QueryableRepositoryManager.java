@@ -162,7 +162,9 @@ public abstract class QueryableRepositoryManager<T> implements IQueryable<T> {
 				loadedRepos.add(repo);
 		}
 		if (loadedRepos.size() > 0) {
-			return QueryUtil.compoundQueryable(loadedRepos).query(query, sub.newChild(100));
+			// the results are read once to build the elements, so match them as they
+			// are read rather than copying all of them first
+			return QueryUtil.compoundQueryable(loadedRepos).query(QueryUtil.createStreamingQuery(query), sub.newChild(100));
 		}
 		return Collector.emptyCollector();
 	}